@@ -0,0 +1,428 @@
+package net.pterodactylus.sone.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import net.pterodactylus.sone.data.Album;
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Profile.Field;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.SoneOptions;
+import net.pterodactylus.util.config.Configuration;
+import net.pterodactylus.util.config.ConfigurationException;
+
+import com.google.common.collect.FluentIterable;
+
+/**
+ * Writes a local {@link Sone}’s data into a {@link Configuration}, in the
+ * format read by the {@link ConfigurationSoneParser}.
+ * <p>
+ * The writer remembers what it has written for every Sone, and only writes
+ * the sections of a Sone that have changed since the last time. Posts,
+ * replies, and likes keep the index they were first written at; a new
+ * element is appended after the existing elements, and a removed element is
+ * replaced by one of the last elements, so that adding a single post only
+ * writes that post. The other sections (the Sone’s time, its profile, its
+ * albums and images, and its options) are compared to the values that were
+ * written last, and are written completely if anything in them changed.
+ * <p>
+ * A Sone that was loaded from the configuration can be handed to
+ * {@link #loaded(Sone, String)}, so that the first write after a restart does
+ * not write the complete Sone again.
+ * <p>
+ * The writer does not save the configuration.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ConfigurationSoneWriter {
+
+	private final Configuration configuration;
+
+	/* all following fields are guarded by this. */
+	private final Map<String, WrittenSone> writtenSones = new HashMap<String, WrittenSone>();
+
+	public ConfigurationSoneWriter(Configuration configuration) {
+		this.configuration = configuration;
+	}
+
+	/**
+	 * Writes all sections of the given Sone that changed since the Sone was
+	 * last written. If an error occurs, the next call of this method will
+	 * write the complete Sone.
+	 *
+	 * @param sone
+	 * 		The Sone to write
+	 * @param lastInsertFingerprint
+	 * 		The fingerprint of the last insert of the Sone
+	 * @throws ConfigurationException
+	 * 		if the configuration can not be written
+	 */
+	public synchronized void write(Sone sone, @Nullable String lastInsertFingerprint) throws ConfigurationException {
+		WrittenSone writtenSone = writtenSones.remove(sone.getId());
+		if (writtenSone == null) {
+			writtenSone = new WrittenSone();
+		}
+		String sonePrefix = "Sone/" + sone.getId();
+		writeTime(sonePrefix, sone, lastInsertFingerprint, writtenSone);
+		writeProfile(sonePrefix, sone.getProfile(), writtenSone);
+		writtenSone.posts.write(sonePrefix + "/Posts/", indexPosts(sone.getPosts()), postWriter);
+		writtenSone.replies.write(sonePrefix + "/Replies/", indexReplies(sone.getReplies()), replyWriter);
+		writtenSone.likedPostIds.write(sonePrefix + "/Likes/Post/", indexIds(sone.getLikedPostIds()), likeWriter);
+		writtenSone.likedReplyIds.write(sonePrefix + "/Likes/Reply/", indexIds(sone.getLikedReplyIds()), likeWriter);
+		writeAlbums(sonePrefix, sone, writtenSone);
+		writeOptions(sonePrefix, sone.getOptions(), writtenSone);
+		writtenSones.put(sone.getId(), writtenSone);
+	}
+
+	/**
+	 * Remembers the given Sone, which has just been loaded from the
+	 * configuration, as written, so that the next call of
+	 * {@link #write(Sone, String)} only writes the sections that changed
+	 * since. The indexes of posts, replies, and likes are read from the
+	 * configuration; a section that contains an element twice is written
+	 * completely by the next write.
+	 *
+	 * @param sone
+	 * 		The Sone that was loaded
+	 * @param lastInsertFingerprint
+	 * 		The fingerprint of the last insert of the Sone, as loaded
+	 */
+	public synchronized void loaded(Sone sone, @Nullable String lastInsertFingerprint) {
+		WrittenSone writtenSone = new WrittenSone();
+		String sonePrefix = "Sone/" + sone.getId();
+		writtenSone.time = getTimeValues(sone, lastInsertFingerprint);
+		writtenSone.profile = getProfileValues(sone.getProfile());
+		writtenSone.posts.read(sonePrefix + "/Posts/");
+		writtenSone.replies.read(sonePrefix + "/Replies/");
+		writtenSone.likedPostIds.read(sonePrefix + "/Likes/Post/");
+		writtenSone.likedReplyIds.read(sonePrefix + "/Likes/Reply/");
+		writtenSone.albums = getAlbumValues(sone, getAlbums(sone));
+		writtenSone.options = getOptionValues(sone.getOptions());
+		writtenSones.put(sone.getId(), writtenSone);
+	}
+
+	/**
+	 * Forgets everything that was written for the Sone with the given ID, so
+	 * that the next call of {@link #write(Sone, String)} writes the complete
+	 * Sone.
+	 *
+	 * @param soneId
+	 * 		The ID of the Sone to forget
+	 */
+	public synchronized void forget(String soneId) {
+		writtenSones.remove(soneId);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void writeTime(String sonePrefix, Sone sone, String lastInsertFingerprint, WrittenSone writtenSone) throws ConfigurationException {
+		List<Object> time = getTimeValues(sone, lastInsertFingerprint);
+		if (time.equals(writtenSone.time)) {
+			return;
+		}
+		configuration.getLongValue(sonePrefix + "/Time").setValue(sone.getTime());
+		configuration.getStringValue(sonePrefix + "/LastInsertFingerprint").setValue(lastInsertFingerprint);
+		writtenSone.time = time;
+	}
+
+	private void writeProfile(String sonePrefix, Profile profile, WrittenSone writtenSone) throws ConfigurationException {
+		List<Object> profileValues = getProfileValues(profile);
+		if (profileValues.equals(writtenSone.profile)) {
+			return;
+		}
+		configuration.getStringValue(sonePrefix + "/Profile/FirstName").setValue(profile.getFirstName());
+		configuration.getStringValue(sonePrefix + "/Profile/MiddleName").setValue(profile.getMiddleName());
+		configuration.getStringValue(sonePrefix + "/Profile/LastName").setValue(profile.getLastName());
+		configuration.getIntValue(sonePrefix + "/Profile/BirthDay").setValue(profile.getBirthDay());
+		configuration.getIntValue(sonePrefix + "/Profile/BirthMonth").setValue(profile.getBirthMonth());
+		configuration.getIntValue(sonePrefix + "/Profile/BirthYear").setValue(profile.getBirthYear());
+		configuration.getStringValue(sonePrefix + "/Profile/Avatar").setValue(profile.getAvatar());
+
+		/* save profile fields. */
+		int fieldCounter = 0;
+		for (Field profileField : profile.getFields()) {
+			String fieldPrefix = sonePrefix + "/Profile/Fields/" + fieldCounter++;
+			configuration.getStringValue(fieldPrefix + "/Name").setValue(profileField.getName());
+			configuration.getStringValue(fieldPrefix + "/Value").setValue(profileField.getValue());
+		}
+		configuration.getStringValue(sonePrefix + "/Profile/Fields/" + fieldCounter + "/Name").setValue(null);
+		writtenSone.profile = profileValues;
+	}
+
+	private void writeAlbums(String sonePrefix, Sone sone, WrittenSone writtenSone) throws ConfigurationException {
+		List<Album> albums = getAlbums(sone);
+		List<Object> albumValues = getAlbumValues(sone, albums);
+		if (albumValues.equals(writtenSone.albums)) {
+			return;
+		}
+
+		int albumCounter = 0;
+		for (Album album : albums) {
+			String albumPrefix = sonePrefix + "/Albums/" + albumCounter++;
+			configuration.getStringValue(albumPrefix + "/ID").setValue(album.getId());
+			configuration.getStringValue(albumPrefix + "/Title").setValue(album.getTitle());
+			configuration.getStringValue(albumPrefix + "/Description").setValue(album.getDescription());
+			configuration.getStringValue(albumPrefix + "/Parent").setValue(getParentId(sone, album));
+		}
+		configuration.getStringValue(sonePrefix + "/Albums/" + albumCounter + "/ID").setValue(null);
+
+		/* save images. */
+		int imageCounter = 0;
+		for (Album album : albums) {
+			for (Image image : album.getImages()) {
+				if (!image.isInserted()) {
+					continue;
+				}
+				String imagePrefix = sonePrefix + "/Images/" + imageCounter++;
+				configuration.getStringValue(imagePrefix + "/ID").setValue(image.getId());
+				configuration.getStringValue(imagePrefix + "/Album").setValue(album.getId());
+				configuration.getStringValue(imagePrefix + "/Key").setValue(image.getKey());
+				configuration.getStringValue(imagePrefix + "/Title").setValue(image.getTitle());
+				configuration.getStringValue(imagePrefix + "/Description").setValue(image.getDescription());
+				configuration.getLongValue(imagePrefix + "/CreationTime").setValue(image.getCreationTime());
+				configuration.getIntValue(imagePrefix + "/Width").setValue(image.getWidth());
+				configuration.getIntValue(imagePrefix + "/Height").setValue(image.getHeight());
+			}
+		}
+		configuration.getStringValue(sonePrefix + "/Images/" + imageCounter + "/ID").setValue(null);
+		writtenSone.albums = albumValues;
+	}
+
+	private void writeOptions(String sonePrefix, SoneOptions options, WrittenSone writtenSone) throws ConfigurationException {
+		List<Object> optionValues = getOptionValues(options);
+		if (optionValues.equals(writtenSone.options)) {
+			return;
+		}
+		configuration.getBooleanValue(sonePrefix + "/Options/AutoFollow").setValue(options.isAutoFollow());
+		configuration.getBooleanValue(sonePrefix + "/Options/EnableSoneInsertNotifications").setValue(options.isSoneInsertNotificationEnabled());
+		configuration.getBooleanValue(sonePrefix + "/Options/ShowNotification/NewSones").setValue(options.isShowNewSoneNotifications());
+		configuration.getBooleanValue(sonePrefix + "/Options/ShowNotification/NewPosts").setValue(options.isShowNewPostNotifications());
+		configuration.getBooleanValue(sonePrefix + "/Options/ShowNotification/NewReplies").setValue(options.isShowNewReplyNotifications());
+		configuration.getStringValue(sonePrefix + "/Options/ShowCustomAvatars").setValue(options.getShowCustomAvatars().name());
+		configuration.getStringValue(sonePrefix + "/Options/LoadLinkedImages").setValue(options.getLoadLinkedImages().name());
+		writtenSone.options = optionValues;
+	}
+
+	private static List<Object> getTimeValues(Sone sone, String lastInsertFingerprint) {
+		return Arrays.<Object>asList(sone.getTime(), lastInsertFingerprint);
+	}
+
+	private static List<Object> getProfileValues(Profile profile) {
+		List<Object> profileValues = new ArrayList<Object>(Arrays.<Object>asList(profile.getFirstName(), profile.getMiddleName(), profile.getLastName(), profile.getBirthDay(), profile.getBirthMonth(), profile.getBirthYear(), profile.getAvatar()));
+		for (Field profileField : profile.getFields()) {
+			profileValues.add(profileField.getName());
+			profileValues.add(profileField.getValue());
+		}
+		return profileValues;
+	}
+
+	/**
+	 * Returns all albums of the given Sone in a flat structure, top-level
+	 * first.
+	 */
+	private static List<Album> getAlbums(Sone sone) {
+		return FluentIterable.from(sone.getRootAlbum().getAlbums()).transformAndConcat(Album.FLATTENER).toList();
+	}
+
+	private static List<Object> getAlbumValues(Sone sone, List<Album> albums) {
+		List<Object> albumValues = new ArrayList<Object>();
+		for (Album album : albums) {
+			albumValues.addAll(Arrays.<Object>asList(album.getId(), album.getTitle(), album.getDescription(), getParentId(sone, album)));
+			for (Image image : album.getImages()) {
+				if (image.isInserted()) {
+					albumValues.addAll(Arrays.<Object>asList(image.getId(), image.getKey(), image.getTitle(), image.getDescription(), image.getCreationTime(), image.getWidth(), image.getHeight()));
+				}
+			}
+		}
+		return albumValues;
+	}
+
+	private static List<Object> getOptionValues(SoneOptions options) {
+		return Arrays.<Object>asList(options.isAutoFollow(), options.isSoneInsertNotificationEnabled(), options.isShowNewSoneNotifications(), options.isShowNewPostNotifications(), options.isShowNewReplyNotifications(), options.getShowCustomAvatars(), options.getLoadLinkedImages());
+	}
+
+	@Nullable
+	private static String getParentId(Sone sone, Album album) {
+		return album.getParent().equals(sone.getRootAlbum()) ? null : album.getParent().getId();
+	}
+
+	private static Map<String, Post> indexPosts(Iterable<Post> posts) {
+		Map<String, Post> indexedPosts = new LinkedHashMap<String, Post>();
+		for (Post post : posts) {
+			indexedPosts.put(post.getId(), post);
+		}
+		return indexedPosts;
+	}
+
+	private static Map<String, PostReply> indexReplies(Iterable<PostReply> replies) {
+		Map<String, PostReply> indexedReplies = new LinkedHashMap<String, PostReply>();
+		for (PostReply reply : replies) {
+			indexedReplies.put(reply.getId(), reply);
+		}
+		return indexedReplies;
+	}
+
+	private static Map<String, String> indexIds(Iterable<String> ids) {
+		Map<String, String> indexedIds = new LinkedHashMap<String, String>();
+		for (String id : ids) {
+			indexedIds.put(id, id);
+		}
+		return indexedIds;
+	}
+
+	/**
+	 * Writes a single element of an indexed section.
+	 *
+	 * @param <T>
+	 * 		The type of the element
+	 */
+	private interface ElementWriter<T> {
+
+		void write(String elementPrefix, T element) throws ConfigurationException;
+
+	}
+
+	private final ElementWriter<Post> postWriter = new ElementWriter<Post>() {
+		@Override
+		public void write(String postPrefix, Post post) throws ConfigurationException {
+			configuration.getStringValue(postPrefix + "/ID").setValue(post.getId());
+			configuration.getStringValue(postPrefix + "/Recipient").setValue(post.getRecipientId().orNull());
+			configuration.getLongValue(postPrefix + "/Time").setValue(post.getTime());
+			configuration.getStringValue(postPrefix + "/Text").setValue(post.getText());
+		}
+	};
+
+	private final ElementWriter<PostReply> replyWriter = new ElementWriter<PostReply>() {
+		@Override
+		public void write(String replyPrefix, PostReply reply) throws ConfigurationException {
+			configuration.getStringValue(replyPrefix + "/ID").setValue(reply.getId());
+			configuration.getStringValue(replyPrefix + "/Post/ID").setValue(reply.getPostId());
+			configuration.getLongValue(replyPrefix + "/Time").setValue(reply.getTime());
+			configuration.getStringValue(replyPrefix + "/Text").setValue(reply.getText());
+		}
+	};
+
+	private final ElementWriter<String> likeWriter = new ElementWriter<String>() {
+		@Override
+		public void write(String likePrefix, String id) throws ConfigurationException {
+			configuration.getStringValue(likePrefix + "/ID").setValue(id);
+		}
+	};
+
+	/**
+	 * The IDs of the elements of a section, in the order they were written
+	 * in. Elements are never changed once they are written, so only added and
+	 * removed elements need to be written.
+	 */
+	private class IndexedSection {
+
+		private final List<String> ids = new ArrayList<String>();
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+		private boolean written;
+
+		private <T> void write(String sectionPrefix, Map<String, T> elements, ElementWriter<T> elementWriter) throws ConfigurationException {
+			int oldSize = written ? ids.size() : -1;
+			removeMissingElements(sectionPrefix, elements, elementWriter);
+			for (Entry<String, T> element : elements.entrySet()) {
+				if (!indexes.containsKey(element.getKey())) {
+					elementWriter.write(sectionPrefix + ids.size(), element.getValue());
+					indexes.put(element.getKey(), ids.size());
+					ids.add(element.getKey());
+				}
+			}
+			if (ids.size() != oldSize) {
+				configuration.getStringValue(sectionPrefix + ids.size() + "/ID").setValue(null);
+			}
+			written = true;
+		}
+
+		/**
+		 * Reads the IDs of the elements of this section from the
+		 * configuration. If an ID is contained twice, nothing is remembered,
+		 * and the next write writes the complete section.
+		 */
+		private void read(String sectionPrefix) {
+			for (int index = 0; ; index++) {
+				String id = configuration.getStringValue(sectionPrefix + index + "/ID").getValue(null);
+				if (id == null) {
+					break;
+				}
+				if (indexes.containsKey(id)) {
+					ids.clear();
+					indexes.clear();
+					return;
+				}
+				indexes.put(id, index);
+				ids.add(id);
+			}
+			written = true;
+		}
+
+		/**
+		 * Removes all elements that are not contained in the given elements.
+		 * The elements after the new end of the section are moved into the
+		 * gaps left by the removed elements.
+		 */
+		private <T> void removeMissingElements(String sectionPrefix, Map<String, T> elements, ElementWriter<T> elementWriter) throws ConfigurationException {
+			Set<String> removedIds = new HashSet<String>();
+			for (String id : ids) {
+				if (!elements.containsKey(id)) {
+					removedIds.add(id);
+				}
+			}
+			if (removedIds.isEmpty()) {
+				return;
+			}
+			int newSize = ids.size() - removedIds.size();
+			int movedIndex = newSize;
+			for (int index = 0; index < newSize; index++) {
+				if (!removedIds.contains(ids.get(index))) {
+					continue;
+				}
+				while (removedIds.contains(ids.get(movedIndex))) {
+					movedIndex++;
+				}
+				String movedId = ids.get(movedIndex++);
+				elementWriter.write(sectionPrefix + index, elements.get(movedId));
+				ids.set(index, movedId);
+				indexes.put(movedId, index);
+			}
+			for (String removedId : removedIds) {
+				indexes.remove(removedId);
+			}
+			ids.subList(newSize, ids.size()).clear();
+		}
+
+	}
+
+	/**
+	 * Everything that was written for a single Sone.
+	 */
+	private class WrittenSone {
+
+		private List<Object> time;
+		private List<Object> profile;
+		private final IndexedSection posts = new IndexedSection();
+		private final IndexedSection replies = new IndexedSection();
+		private final IndexedSection likedPostIds = new IndexedSection();
+		private final IndexedSection likedReplyIds = new IndexedSection();
+		private List<Object> albums;
+		private List<Object> options;
+
+	}
+
+}
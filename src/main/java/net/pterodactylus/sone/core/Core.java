@@ -21,20 +21,27 @@ import static com.google.common.base.Optional.fromNullable;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.primitives.Longs.tryParse;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
 import static java.lang.String.format;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -50,7 +57,9 @@ import net.pterodactylus.sone.core.ConfigurationSoneParser.InvalidPostFound;
 import net.pterodactylus.sone.core.ConfigurationSoneParser.InvalidPostReplyFound;
 import net.pterodactylus.sone.core.SoneChangeDetector.PostProcessor;
 import net.pterodactylus.sone.core.SoneChangeDetector.PostReplyProcessor;
+import net.pterodactylus.sone.core.event.FriendsChangedEvent;
 import net.pterodactylus.sone.core.event.ImageInsertFinishedEvent;
+import net.pterodactylus.sone.core.event.DownloadThreadsChangedEvent;
 import net.pterodactylus.sone.core.event.InsertionDelayChangedEvent;
 import net.pterodactylus.sone.core.event.MarkPostKnownEvent;
 import net.pterodactylus.sone.core.event.MarkPostReplyKnownEvent;
@@ -63,13 +72,13 @@ import net.pterodactylus.sone.core.event.PostReplyRemovedEvent;
 import net.pterodactylus.sone.core.event.SoneLockedEvent;
 import net.pterodactylus.sone.core.event.SoneRemovedEvent;
 import net.pterodactylus.sone.core.event.SoneUnlockedEvent;
+import net.pterodactylus.sone.core.event.SoneUpdatedBatchEvent;
 import net.pterodactylus.sone.data.Album;
 import net.pterodactylus.sone.data.Client;
 import net.pterodactylus.sone.data.Image;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.PostReply;
 import net.pterodactylus.sone.data.Profile;
-import net.pterodactylus.sone.data.Profile.Field;
 import net.pterodactylus.sone.data.Reply;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.data.Sone.SoneStatus;
@@ -91,17 +100,16 @@ import net.pterodactylus.sone.freenet.wot.OwnIdentity;
 import net.pterodactylus.sone.freenet.wot.event.IdentityAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.IdentityRemovedEvent;
 import net.pterodactylus.sone.freenet.wot.event.IdentityUpdatedEvent;
+import net.pterodactylus.sone.freenet.wot.event.OwnIdentitiesAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.OwnIdentityAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.OwnIdentityRemovedEvent;
 import net.pterodactylus.sone.main.SonePlugin;
 import net.pterodactylus.util.config.Configuration;
 import net.pterodactylus.util.config.ConfigurationException;
 import net.pterodactylus.util.service.AbstractService;
-import net.pterodactylus.util.thread.NamedThreadFactory;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
-import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
@@ -149,8 +157,11 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	/** The image inserter. */
 	private final ImageInserter imageInserter;
 
-	/** Sone downloader thread-pool. */
-	private final ExecutorService soneDownloaders = Executors.newFixedThreadPool(10, new NamedThreadFactory("Sone Downloader %2$d"));
+	/** The queue for Sone downloads. */
+	private final SoneDownloadQueue soneDownloadQueue = new SoneDownloadQueue();
+
+	/** The snapshots of remote Sones. */
+	private final SoneSnapshotStore soneSnapshotStore = new SoneSnapshotStore(new File("sone-snapshots"), SoneSnapshotStore.DEFAULT_MAXIMUM_SIZE);
 
 	/** The update checker. */
 	private final UpdateChecker updateChecker;
@@ -179,6 +190,12 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	/** The post database. */
 	private final Database database;
 
+	/** The timelines of the local Sones. */
+	private final Timelines timelines;
+
+	/** The full-text index of Sones, posts, and replies. */
+	private final SearchIndex searchIndex;
+
 	/** Trusted identities, sorted by own identities. */
 	private final Multimap<OwnIdentity, Identity> trustedIdentities = Multimaps.synchronizedSetMultimap(HashMultimap.<OwnIdentity, Identity>create());
 
@@ -188,6 +205,12 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	/** Ticker for threads that mark own elements as known. */
 	private final ScheduledExecutorService localElementTicker = Executors.newScheduledThreadPool(1);
 
+	/** The dispatcher for the changes found in updated Sones. */
+	private final SoneEventDispatcher soneEventDispatcher;
+
+	/** Writes the local Sones into the configuration. */
+	private final ConfigurationSoneWriter configurationSoneWriter;
+
 	/** The time the configuration was last touched. */
 	private volatile long lastConfigurationUpdate;
 
@@ -211,14 +234,18 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	public Core(Configuration configuration, FreenetInterface freenetInterface, IdentityManager identityManager, UpdateChecker updateChecker, WebOfTrustUpdater webOfTrustUpdater, EventBus eventBus, Database database) {
 		super("Sone Core");
 		this.configuration = configuration;
+		this.configurationSoneWriter = new ConfigurationSoneWriter(configuration);
 		this.freenetInterface = freenetInterface;
 		this.identityManager = identityManager;
-		this.soneDownloader = new SoneDownloaderImpl(this, freenetInterface);
+		this.soneDownloader = new SoneDownloaderImpl(this, freenetInterface, soneDownloadQueue, soneSnapshotStore);
 		this.imageInserter = new ImageInserter(freenetInterface, freenetInterface.new InsertTokenSupplier());
 		this.updateChecker = updateChecker;
 		this.webOfTrustUpdater = webOfTrustUpdater;
 		this.eventBus = eventBus;
+		this.soneEventDispatcher = new SoneEventDispatcher(eventBus, SoneEventDispatcher.DEFAULT_CAPACITY);
 		this.database = database;
+		this.timelines = new Timelines(this, this);
+		this.searchIndex = new SearchIndex(this, this, this);
 		preferences = new Preferences(eventBus);
 	}
 
@@ -226,6 +253,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	protected Core(Configuration configuration, FreenetInterface freenetInterface, IdentityManager identityManager, SoneDownloader soneDownloader, ImageInserter imageInserter, UpdateChecker updateChecker, WebOfTrustUpdater webOfTrustUpdater, EventBus eventBus, Database database) {
 		super("Sone Core");
 		this.configuration = configuration;
+		this.configurationSoneWriter = new ConfigurationSoneWriter(configuration);
 		this.freenetInterface = freenetInterface;
 		this.identityManager = identityManager;
 		this.soneDownloader = soneDownloader;
@@ -233,7 +261,11 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		this.updateChecker = updateChecker;
 		this.webOfTrustUpdater = webOfTrustUpdater;
 		this.eventBus = eventBus;
+		/* post events on the calling thread so that tests can verify them right away. */
+		this.soneEventDispatcher = new SoneEventDispatcher(eventBus, SoneEventDispatcher.DEFAULT_CAPACITY, sameThreadExecutor());
 		this.database = database;
+		this.timelines = new Timelines(this, this);
+		this.searchIndex = new SearchIndex(this, this, this);
 		preferences = new Preferences(eventBus);
 	}
 
@@ -446,6 +478,38 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		return database.getDirectedPosts(recipientId);
 	}
 
+	/**
+	 * Returns the timeline of the given local Sone, i.e. its own posts, the
+	 * posts of all Sones it follows, and all posts directed at it.
+	 *
+	 * @param localSone
+	 *            The local Sone to get the timeline for
+	 * @return An unmodifiable view of the posts of the timeline, newest first
+	 */
+	public Collection<Post> getTimeline(Sone localSone) {
+		checkNotNull(localSone, "localSone must not be null");
+		return timelines.getTimeline(localSone);
+	}
+
+	/**
+	 * Returns the queue for Sone downloads, e.g. to check its queue depth,
+	 * the number of running fetches, or the fetch latency.
+	 *
+	 * @return The queue for Sone downloads
+	 */
+	public SoneDownloadQueue getSoneDownloadQueue() {
+		return soneDownloadQueue;
+	}
+
+	/**
+	 * Returns the full-text index of all Sones, posts, and replies.
+	 *
+	 * @return The search index
+	 */
+	public SearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+
 	/**
 	 * Returns a post reply builder.
 	 *
@@ -480,13 +544,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	 * @return The Sones that like the given post
 	 */
 	public Set<Sone> getLikes(Post post) {
-		Set<Sone> sones = new HashSet<Sone>();
-		for (Sone sone : getSones()) {
-			if (sone.getLikedPostIds().contains(post.getId())) {
-				sones.add(sone);
-			}
-		}
-		return sones;
+		return database.getLikes(post);
 	}
 
 	/**
@@ -497,13 +555,51 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	 * @return The Sones that like the given reply
 	 */
 	public Set<Sone> getLikes(PostReply reply) {
-		Set<Sone> sones = new HashSet<Sone>();
-		for (Sone sone : getSones()) {
-			if (sone.getLikedReplyIds().contains(reply.getId())) {
-				sones.add(sone);
-			}
-		}
-		return sones;
+		return database.getLikes(reply);
+	}
+
+	/**
+	 * Returns the IDs of all Sones that are mentioned in the given post.
+	 *
+	 * @param post
+	 *            The post to get the mentioned Sones for
+	 * @return The IDs of the Sones mentioned in the given post
+	 */
+	public Set<String> getMentionedSoneIds(Post post) {
+		return database.getMentionedSoneIds(post);
+	}
+
+	/**
+	 * Returns the IDs of all Sones that are mentioned in the given reply.
+	 *
+	 * @param reply
+	 *            The reply to get the mentioned Sones for
+	 * @return The IDs of the Sones mentioned in the given reply
+	 */
+	public Set<String> getMentionedSoneIds(PostReply reply) {
+		return database.getMentionedSoneIds(reply);
+	}
+
+	/**
+	 * Returns all posts that mention the Sone with the given ID.
+	 *
+	 * @param soneId
+	 *            The ID of the mentioned Sone
+	 * @return The posts that mention the Sone
+	 */
+	public Set<Post> getMentioningPosts(String soneId) {
+		return database.getMentioningPosts(soneId);
+	}
+
+	/**
+	 * Returns all replies that mention the Sone with the given ID.
+	 *
+	 * @param soneId
+	 *            The ID of the mentioned Sone
+	 * @return The replies that mention the Sone
+	 */
+	public Set<PostReply> getMentioningPostReplies(String soneId) {
+		return database.getMentioningPostReplies(soneId);
 	}
 
 	/**
@@ -648,6 +744,66 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			logger.log(Level.WARNING, "Given OwnIdentity is null!");
 			return null;
 		}
+		return addLocalSones(Collections.singletonList(ownIdentity)).get(0);
+	}
+
+	/**
+	 * Adds local Sones from the given own identities. The Sones are loaded
+	 * from the configuration in parallel, and they are stored in the database
+	 * together.
+	 *
+	 * @param ownIdentities
+	 *            The own identities to create Sones from
+	 * @return The added (or already existing) Sones, in the order of the
+	 *         given own identities
+	 */
+	public List<Sone> addLocalSones(Collection<OwnIdentity> ownIdentities) {
+		long startTime = System.currentTimeMillis();
+		List<Sone> sones = new ArrayList<Sone>();
+		List<Sone> newSones = new ArrayList<Sone>();
+		for (OwnIdentity ownIdentity : ownIdentities) {
+			Sone existingSone = getLocalSone(ownIdentity.getId());
+			if (existingSone != null) {
+				sones.add(existingSone);
+				continue;
+			}
+			Sone sone = createLocalSone(ownIdentity);
+			sones.add(sone);
+			newSones.add(sone);
+		}
+		if (newSones.isEmpty()) {
+			return sones;
+		}
+		long parseTime = System.currentTimeMillis();
+		Map<Sone, LoadedSone> loadedSones = loadSones(newSones);
+		long applyTime = System.currentTimeMillis();
+		for (Entry<Sone, LoadedSone> loadedSone : loadedSones.entrySet()) {
+			applyLoadedSone(loadedSone.getKey(), loadedSone.getValue());
+		}
+		long storeTime = System.currentTimeMillis();
+		database.storeSones(newSones);
+		long startInsertersTime = System.currentTimeMillis();
+		for (Sone sone : newSones) {
+			searchIndex.soneAdded(sone);
+			sone.setStatus(SoneStatus.idle);
+			synchronized (soneInserters) {
+				soneInserters.get(sone).start();
+			}
+		}
+		long endTime = System.currentTimeMillis();
+		logger.info(String.format("Added %d local Sones in %d ms (create: %d ms, parse: %d ms, apply: %d ms, store: %d ms, start: %d ms).", newSones.size(), endTime - startTime, parseTime - startTime, applyTime - parseTime, storeTime - applyTime, startInsertersTime - storeTime, endTime - startInsertersTime));
+		return sones;
+	}
+
+	/**
+	 * Creates a local Sone and its {@link SoneInserter} for the given own
+	 * identity, without loading the Sone from the configuration.
+	 *
+	 * @param ownIdentity
+	 *            The own identity to create a Sone from
+	 * @return The created Sone
+	 */
+	private Sone createLocalSone(OwnIdentity ownIdentity) {
 		logger.info(String.format("Adding Sone from OwnIdentity: %s", ownIdentity));
 		Sone sone = database.newSoneBuilder().local().from(ownIdentity).build();
 		String property = fromNullable(ownIdentity.getProperty("Sone.LatestEdition")).or("0");
@@ -660,13 +816,57 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		synchronized (soneInserters) {
 			soneInserters.put(sone, soneInserter);
 		}
-		loadSone(sone);
-		database.storeSone(sone);
-		sone.setStatus(SoneStatus.idle);
-		soneInserter.start();
 		return sone;
 	}
 
+	/**
+	 * Parses the given local Sones from the configuration. If there is more
+	 * than one Sone, they are parsed in parallel, using at most as many
+	 * threads as there are processors.
+	 *
+	 * @param sones
+	 *            The local Sones to parse
+	 * @return The parsed data of all Sones that could be parsed
+	 */
+	private Map<Sone, LoadedSone> loadSones(List<Sone> sones) {
+		Map<Sone, LoadedSone> loadedSones = new LinkedHashMap<Sone, LoadedSone>();
+		if (sones.size() == 1) {
+			LoadedSone loadedSone = parseLocalSone(sones.get(0));
+			if (loadedSone != null) {
+				loadedSones.put(sones.get(0), loadedSone);
+			}
+			return loadedSones;
+		}
+		ExecutorService soneParsers = Executors.newFixedThreadPool(Math.min(sones.size(), Runtime.getRuntime().availableProcessors()));
+		try {
+			Map<Sone, Future<LoadedSone>> parsedSones = new LinkedHashMap<Sone, Future<LoadedSone>>();
+			for (final Sone sone : sones) {
+				parsedSones.put(sone, soneParsers.submit(new Callable<LoadedSone>() {
+					@Override
+					public LoadedSone call() {
+						return parseLocalSone(sone);
+					}
+				}));
+			}
+			for (Entry<Sone, Future<LoadedSone>> parsedSone : parsedSones.entrySet()) {
+				try {
+					LoadedSone loadedSone = parsedSone.getValue().get();
+					if (loadedSone != null) {
+						loadedSones.put(parsedSone.getKey(), loadedSone);
+					}
+				} catch (ExecutionException ee1) {
+					logger.log(Level.WARNING, String.format("Could not load Sone: %s", parsedSone.getKey()), ee1.getCause());
+				} catch (InterruptedException ie1) {
+					Thread.currentThread().interrupt();
+					logger.log(Level.WARNING, String.format("Interrupted while loading Sone: %s", parsedSone.getKey()), ie1);
+				}
+			}
+		} finally {
+			soneParsers.shutdown();
+		}
+		return loadedSones;
+	}
+
 	/**
 	 * Creates a new Sone for the given own identity.
 	 *
@@ -687,7 +887,10 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	}
 
 	/**
-	 * Adds the Sone of the given identity.
+	 * Adds the Sone of the given identity. A Sone that was not known yet is
+	 * restored from its snapshot right away, and only fetched if there is no
+	 * usable snapshot or if the snapshot is older than the latest edition of
+	 * the Sone.
 	 *
 	 * @param identity
 	 *            The identity whose Sone to add
@@ -722,9 +925,18 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			}
 		}
 		database.storeSone(sone);
+		if (existingSone == null) {
+			searchIndex.soneAdded(sone);
+		} else {
+			searchIndex.soneUpdated(sone);
+		}
 		soneDownloader.addSone(sone);
-		soneDownloaders.execute(soneDownloader.fetchSoneWithUriAction(sone));
-		return sone;
+		if ((existingSone == null) && soneDownloader.restoreSone(sone)) {
+			return getSone(sone.getId());
+		}
+		Sone storedSone = getSone(sone.getId());
+		soneDownloadQueue.fetch(sone.getId(), soneDownloader.fetchSoneWithUriAction(storedSone));
+		return storedSone;
 	}
 
 	/**
@@ -739,6 +951,8 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		checkNotNull(sone, "sone must not be null");
 		checkNotNull(soneId, "soneId must not be null");
 		database.addFriend(sone, soneId);
+		timelines.friendAdded(sone, soneId);
+		eventBus.post(new FriendsChangedEvent(sone, soneId));
 		synchronized (soneFollowingTimes) {
 			if (!soneFollowingTimes.containsKey(soneId)) {
 				long now = System.currentTimeMillis();
@@ -774,6 +988,8 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		checkNotNull(sone, "sone must not be null");
 		checkNotNull(soneId, "soneId must not be null");
 		database.removeFriend(sone, soneId);
+		timelines.friendRemoved(sone, soneId);
+		eventBus.post(new FriendsChangedEvent(sone, soneId));
 		boolean unfollowedSoneStillFollowed = false;
 		for (Sone localSone : getLocalSones()) {
 			unfollowedSoneStillFollowed |= localSone.hasFriend(soneId);
@@ -860,9 +1076,12 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	 *
 	 * @param sone
 	 *            The updated Sone
+	 * @return {@code true} if the stored Sone was updated, {@code false} if
+	 *         there is no stored Sone or if the given Sone is not newer than
+	 *         the stored Sone
 	 */
-	public void updateSone(Sone sone) {
-		updateSone(sone, false);
+	public boolean updateSone(Sone sone) {
+		return updateSone(sone, false);
 	}
 
 	/**
@@ -875,19 +1094,23 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	 * @param soneRescueMode
 	 *            {@code true} if the stored Sone should be updated regardless
 	 *            of the age of the given Sone
+	 * @return {@code true} if the stored Sone was updated, {@code false} if
+	 *         there is no stored Sone or if the given Sone is not newer than
+	 *         the stored Sone
 	 */
-	public void updateSone(final Sone sone, boolean soneRescueMode) {
+	public boolean updateSone(final Sone sone, boolean soneRescueMode) {
 		Sone storedSone = getSone(sone.getId());
 		if (storedSone != null) {
 			if (!soneRescueMode && !(sone.getTime() > storedSone.getTime())) {
 				logger.log(Level.FINE, String.format("Downloaded Sone %s is not newer than stored Sone %s.", sone, storedSone));
-				return;
+				return false;
 			}
-			List<Object> events =
-					collectEventsForChangesInSone(storedSone, sone);
+			SoneUpdatedBatchEvent soneUpdatedBatchEvent =
+					collectChangesInSone(storedSone, sone);
 			database.storeSone(sone);
-			for (Object event : events) {
-				eventBus.post(event);
+			searchIndex.soneUpdated(sone);
+			if (!soneUpdatedBatchEvent.isEmpty()) {
+				soneEventDispatcher.dispatch(soneUpdatedBatchEvent);
 			}
 			sone.setOptions(storedSone.getOptions());
 			sone.setKnown(storedSone.isKnown());
@@ -895,48 +1118,59 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			if (sone.isLocal()) {
 				touchConfiguration();
 			}
+			return true;
 		}
+		return false;
 	}
 
-	private List<Object> collectEventsForChangesInSone(Sone oldSone,
+	private SoneUpdatedBatchEvent collectChangesInSone(Sone oldSone,
 			final Sone newSone) {
-		final List<Object> events = new ArrayList<Object>();
+		final List<Post> newPosts = new ArrayList<Post>();
+		final List<Post> removedPosts = new ArrayList<Post>();
+		final List<PostReply> newPostReplies = new ArrayList<PostReply>();
+		final List<PostReply> removedPostReplies = new ArrayList<PostReply>();
 		SoneChangeDetector soneChangeDetector = new SoneChangeDetector(
 				oldSone);
 		soneChangeDetector.onNewPosts(new PostProcessor() {
 			@Override
 			public void processPost(Post post) {
+				timelines.postAdded(post);
+				searchIndex.postAdded(post);
 				if (post.getTime() < getSoneFollowingTime(newSone)) {
 					post.setKnown(true);
 				} else if (!post.isKnown()) {
-					events.add(new NewPostFoundEvent(post));
+					newPosts.add(post);
 				}
 			}
 		});
 		soneChangeDetector.onRemovedPosts(new PostProcessor() {
 			@Override
 			public void processPost(Post post) {
-				events.add(new PostRemovedEvent(post));
+				timelines.postRemoved(post);
+				searchIndex.postRemoved(post);
+				removedPosts.add(post);
 			}
 		});
 		soneChangeDetector.onNewPostReplies(new PostReplyProcessor() {
 			@Override
 			public void processPostReply(PostReply postReply) {
+				searchIndex.postReplyAdded(postReply);
 				if (postReply.getTime() < getSoneFollowingTime(newSone)) {
 					postReply.setKnown(true);
 				} else if (!postReply.isKnown()) {
-					events.add(new NewPostReplyFoundEvent(postReply));
+					newPostReplies.add(postReply);
 				}
 			}
 		});
 		soneChangeDetector.onRemovedPostReplies(new PostReplyProcessor() {
 			@Override
 			public void processPostReply(PostReply postReply) {
-				events.add(new PostReplyRemovedEvent(postReply));
+				searchIndex.postReplyRemoved(postReply);
+				removedPostReplies.add(postReply);
 			}
 		});
 		soneChangeDetector.detectChanges(newSone);
-		return events;
+		return new SoneUpdatedBatchEvent(newSone, newPosts, removedPosts, newPostReplies, removedPostReplies);
 	}
 
 	/**
@@ -958,10 +1192,13 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		}
 		SoneInserter soneInserter = soneInserters.remove(sone);
 		soneInserter.stop();
+		timelines.soneRemoved(sone);
+		searchIndex.soneRemoved(sone);
 		database.removeSone(sone);
 		webOfTrustUpdater.removeContext((OwnIdentity) sone.getIdentity(), "Sone");
 		webOfTrustUpdater.removeProperty((OwnIdentity) sone.getIdentity(), "Sone.LatestEdition");
 		try {
+			configurationSoneWriter.forget(sone.getId());
 			configuration.getLongValue("Sone/" + sone.getId() + "/Time").setValue(null);
 		} catch (ConfigurationException ce1) {
 			logger.log(Level.WARNING, "Could not remove Sone from configuration!", ce1);
@@ -994,9 +1231,26 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	 *            The Sone to load and update
 	 */
 	public void loadSone(Sone sone) {
+		LoadedSone loadedSone = parseLocalSone(sone);
+		if (loadedSone != null) {
+			applyLoadedSone(sone, loadedSone);
+		}
+	}
+
+	/**
+	 * Parses the given Sone from the configuration. Only the options of the
+	 * Sone are changed; everything else is returned, to be applied to the
+	 * Sone with {@link #applyLoadedSone(Sone, LoadedSone)}.
+	 *
+	 * @param sone
+	 *            The Sone to parse
+	 * @return The parsed Sone, or {@code null} if the Sone could not be parsed
+	 */
+	@Nullable
+	private LoadedSone parseLocalSone(Sone sone) {
 		if (!sone.isLocal()) {
 			logger.log(Level.FINE, String.format("Tried to load non-local Sone: %s", sone));
-			return;
+			return null;
 		}
 		logger.info(String.format("Loading local Sone: %s", sone));
 
@@ -1005,7 +1259,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		Long soneTime = configuration.getLongValue(sonePrefix + "/Time").getValue(null);
 		if (soneTime == null) {
 			logger.log(Level.INFO, "Could not load Sone because no Sone has been saved.");
-			return;
+			return null;
 		}
 		String lastInsertFingerprint = configuration.getStringValue(sonePrefix + "/LastInsertFingerprint").getValue("");
 
@@ -1019,7 +1273,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			posts = configurationSoneParser.parsePosts(database);
 		} catch (InvalidPostFound ipf) {
 			logger.log(Level.WARNING, "Invalid post found, aborting load!");
-			return;
+			return null;
 		}
 
 		/* load replies. */
@@ -1028,7 +1282,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			replies = configurationSoneParser.parsePostReplies(database);
 		} catch (InvalidPostReplyFound iprf) {
 			logger.log(Level.WARNING, "Invalid reply found, aborting load!");
-			return;
+			return null;
 		}
 
 		/* load post likes. */
@@ -1046,11 +1300,11 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 					configurationSoneParser.parseTopLevelAlbums(database);
 		} catch (InvalidAlbumFound iaf) {
 			logger.log(Level.WARNING, "Invalid album found, aborting load!");
-			return;
+			return null;
 		} catch (InvalidParentAlbumFound ipaf) {
 			logger.log(Level.WARNING, format("Invalid parent album ID: %s",
 					ipaf.getAlbumParentId()));
-			return;
+			return null;
 		}
 
 		/* load images. */
@@ -1058,12 +1312,12 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			configurationSoneParser.parseImages(database);
 		} catch (InvalidImageFound iif) {
 			logger.log(WARNING, "Invalid image found, aborting load!");
-			return;
+			return null;
 		} catch (InvalidParentAlbumFound ipaf) {
 			logger.log(Level.WARNING,
 					format("Invalid album image (%s) encountered, aborting load!",
 							ipaf.getAlbumParentId()));
-			return;
+			return null;
 		}
 
 		/* load avatar. */
@@ -1083,30 +1337,42 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		sone.getOptions().setShowCustomAvatars(LoadExternalContent.valueOf(configuration.getStringValue(sonePrefix + "/Options/ShowCustomAvatars").getValue(LoadExternalContent.NEVER.name())));
 		sone.getOptions().setLoadLinkedImages(LoadExternalContent.valueOf(configuration.getStringValue(sonePrefix + "/Options/LoadLinkedImages").getValue(LoadExternalContent.NEVER.name())));
 
-		/* if we’re still here, Sone was loaded successfully. */
+		return new LoadedSone(soneTime, lastInsertFingerprint, profile, posts, replies, likedPostIds, likedReplyIds, topLevelAlbums);
+	}
+
+	/**
+	 * Applies the data parsed from the configuration to the given Sone.
+	 *
+	 * @param sone
+	 *            The Sone to update
+	 * @param loadedSone
+	 *            The data parsed from the configuration
+	 */
+	private void applyLoadedSone(Sone sone, LoadedSone loadedSone) {
 		synchronized (sone) {
-			sone.setTime(soneTime);
-			sone.setProfile(profile);
-			sone.setPosts(posts);
-			sone.setReplies(replies);
-			sone.setLikePostIds(likedPostIds);
-			sone.setLikeReplyIds(likedReplyIds);
+			sone.setTime(loadedSone.time);
+			sone.setProfile(loadedSone.profile);
+			sone.setPosts(loadedSone.posts);
+			sone.setReplies(loadedSone.replies);
+			sone.setLikePostIds(loadedSone.likedPostIds);
+			sone.setLikeReplyIds(loadedSone.likedReplyIds);
 			for (Album album : sone.getRootAlbum().getAlbums()) {
 				sone.getRootAlbum().removeAlbum(album);
 			}
-			for (Album album : topLevelAlbums) {
+			for (Album album : loadedSone.topLevelAlbums) {
 				sone.getRootAlbum().addAlbum(album);
 			}
 			synchronized (soneInserters) {
-				soneInserters.get(sone).setLastInsertFingerprint(lastInsertFingerprint);
+				soneInserters.get(sone).setLastInsertFingerprint(loadedSone.lastInsertFingerprint);
 			}
 		}
-		for (Post post : posts) {
+		for (Post post : loadedSone.posts) {
 			post.setKnown(true);
 		}
-		for (PostReply reply : replies) {
+		for (PostReply reply : loadedSone.replies) {
 			reply.setKnown(true);
 		}
+		configurationSoneWriter.loaded(sone, loadedSone.lastInsertFingerprint);
 
 		logger.info(String.format("Sone loaded successfully: %s", sone));
 	}
@@ -1137,8 +1403,10 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		}
 		final Post post = postBuilder.build();
 		database.storePost(post);
-		eventBus.post(new NewPostFoundEvent(post));
+		soneEventDispatcher.dispatch(new NewPostFoundEvent(post));
 		sone.addPost(post);
+		timelines.postAdded(post);
+		searchIndex.postAdded(post);
 		touchConfiguration();
 		localElementTicker.schedule(new MarkPostKnown(post), 10, TimeUnit.SECONDS);
 		return post;
@@ -1156,8 +1424,10 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			return;
 		}
 		database.removePost(post);
-		eventBus.post(new PostRemovedEvent(post));
+		timelines.postRemoved(post);
+		searchIndex.postRemoved(post);
 		markPostKnown(post);
+		soneEventDispatcher.dispatch(new PostRemovedEvent(post));
 		touchConfiguration();
 	}
 
@@ -1213,8 +1483,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		postReplyBuilder.randomId().from(sone.getId()).to(post.getId()).currentTime().withText(text.trim());
 		final PostReply reply = postReplyBuilder.build();
 		database.storePostReply(reply);
-		eventBus.post(new NewPostReplyFoundEvent(reply));
+		soneEventDispatcher.dispatch(new NewPostReplyFoundEvent(reply));
 		sone.addReply(reply);
+		searchIndex.postReplyAdded(reply);
 		touchConfiguration();
 		localElementTicker.schedule(new MarkReplyKnown(reply), 10, TimeUnit.SECONDS);
 		return reply;
@@ -1233,6 +1504,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			return;
 		}
 		database.removePostReply(reply);
+		searchIndex.postReplyRemoved(reply);
 		markReplyKnown(reply);
 		sone.removeReply(reply);
 		touchConfiguration();
@@ -1384,6 +1656,8 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	@Override
 	public void serviceStart() {
 		loadConfiguration();
+		soneSnapshotStore.open();
+		searchIndex.start();
 		updateChecker.start();
 		identityManager.start();
 		webOfTrustUpdater.init();
@@ -1432,8 +1706,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		webOfTrustUpdater.stop();
 		updateChecker.stop();
 		soneDownloader.stop();
-		soneDownloaders.shutdown();
+		soneDownloadQueue.stop();
 		identityManager.stop();
+		soneEventDispatcher.stop();
 	}
 
 	//
@@ -1459,109 +1734,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 
 		logger.log(Level.INFO, String.format("Saving Sone: %s", sone));
 		try {
-			/* save Sone into configuration. */
-			String sonePrefix = "Sone/" + sone.getId();
-			configuration.getLongValue(sonePrefix + "/Time").setValue(sone.getTime());
-			configuration.getStringValue(sonePrefix + "/LastInsertFingerprint").setValue(soneInserters.get(sone).getLastInsertFingerprint());
-
-			/* save profile. */
-			Profile profile = sone.getProfile();
-			configuration.getStringValue(sonePrefix + "/Profile/FirstName").setValue(profile.getFirstName());
-			configuration.getStringValue(sonePrefix + "/Profile/MiddleName").setValue(profile.getMiddleName());
-			configuration.getStringValue(sonePrefix + "/Profile/LastName").setValue(profile.getLastName());
-			configuration.getIntValue(sonePrefix + "/Profile/BirthDay").setValue(profile.getBirthDay());
-			configuration.getIntValue(sonePrefix + "/Profile/BirthMonth").setValue(profile.getBirthMonth());
-			configuration.getIntValue(sonePrefix + "/Profile/BirthYear").setValue(profile.getBirthYear());
-			configuration.getStringValue(sonePrefix + "/Profile/Avatar").setValue(profile.getAvatar());
-
-			/* save profile fields. */
-			int fieldCounter = 0;
-			for (Field profileField : profile.getFields()) {
-				String fieldPrefix = sonePrefix + "/Profile/Fields/" + fieldCounter++;
-				configuration.getStringValue(fieldPrefix + "/Name").setValue(profileField.getName());
-				configuration.getStringValue(fieldPrefix + "/Value").setValue(profileField.getValue());
-			}
-			configuration.getStringValue(sonePrefix + "/Profile/Fields/" + fieldCounter + "/Name").setValue(null);
-
-			/* save posts. */
-			int postCounter = 0;
-			for (Post post : sone.getPosts()) {
-				String postPrefix = sonePrefix + "/Posts/" + postCounter++;
-				configuration.getStringValue(postPrefix + "/ID").setValue(post.getId());
-				configuration.getStringValue(postPrefix + "/Recipient").setValue(post.getRecipientId().orNull());
-				configuration.getLongValue(postPrefix + "/Time").setValue(post.getTime());
-				configuration.getStringValue(postPrefix + "/Text").setValue(post.getText());
-			}
-			configuration.getStringValue(sonePrefix + "/Posts/" + postCounter + "/ID").setValue(null);
-
-			/* save replies. */
-			int replyCounter = 0;
-			for (PostReply reply : sone.getReplies()) {
-				String replyPrefix = sonePrefix + "/Replies/" + replyCounter++;
-				configuration.getStringValue(replyPrefix + "/ID").setValue(reply.getId());
-				configuration.getStringValue(replyPrefix + "/Post/ID").setValue(reply.getPostId());
-				configuration.getLongValue(replyPrefix + "/Time").setValue(reply.getTime());
-				configuration.getStringValue(replyPrefix + "/Text").setValue(reply.getText());
-			}
-			configuration.getStringValue(sonePrefix + "/Replies/" + replyCounter + "/ID").setValue(null);
-
-			/* save post likes. */
-			int postLikeCounter = 0;
-			for (String postId : sone.getLikedPostIds()) {
-				configuration.getStringValue(sonePrefix + "/Likes/Post/" + postLikeCounter++ + "/ID").setValue(postId);
-			}
-			configuration.getStringValue(sonePrefix + "/Likes/Post/" + postLikeCounter + "/ID").setValue(null);
-
-			/* save reply likes. */
-			int replyLikeCounter = 0;
-			for (String replyId : sone.getLikedReplyIds()) {
-				configuration.getStringValue(sonePrefix + "/Likes/Reply/" + replyLikeCounter++ + "/ID").setValue(replyId);
-			}
-			configuration.getStringValue(sonePrefix + "/Likes/Reply/" + replyLikeCounter + "/ID").setValue(null);
-
-			/* save albums. first, collect in a flat structure, top-level first. */
-			List<Album> albums = FluentIterable.from(sone.getRootAlbum().getAlbums()).transformAndConcat(Album.FLATTENER).toList();
-
-			int albumCounter = 0;
-			for (Album album : albums) {
-				String albumPrefix = sonePrefix + "/Albums/" + albumCounter++;
-				configuration.getStringValue(albumPrefix + "/ID").setValue(album.getId());
-				configuration.getStringValue(albumPrefix + "/Title").setValue(album.getTitle());
-				configuration.getStringValue(albumPrefix + "/Description").setValue(album.getDescription());
-				configuration.getStringValue(albumPrefix + "/Parent").setValue(album.getParent().equals(sone.getRootAlbum()) ? null : album.getParent().getId());
-			}
-			configuration.getStringValue(sonePrefix + "/Albums/" + albumCounter + "/ID").setValue(null);
-
-			/* save images. */
-			int imageCounter = 0;
-			for (Album album : albums) {
-				for (Image image : album.getImages()) {
-					if (!image.isInserted()) {
-						continue;
-					}
-					String imagePrefix = sonePrefix + "/Images/" + imageCounter++;
-					configuration.getStringValue(imagePrefix + "/ID").setValue(image.getId());
-					configuration.getStringValue(imagePrefix + "/Album").setValue(album.getId());
-					configuration.getStringValue(imagePrefix + "/Key").setValue(image.getKey());
-					configuration.getStringValue(imagePrefix + "/Title").setValue(image.getTitle());
-					configuration.getStringValue(imagePrefix + "/Description").setValue(image.getDescription());
-					configuration.getLongValue(imagePrefix + "/CreationTime").setValue(image.getCreationTime());
-					configuration.getIntValue(imagePrefix + "/Width").setValue(image.getWidth());
-					configuration.getIntValue(imagePrefix + "/Height").setValue(image.getHeight());
-				}
-			}
-			configuration.getStringValue(sonePrefix + "/Images/" + imageCounter + "/ID").setValue(null);
-
-			/* save options. */
-			configuration.getBooleanValue(sonePrefix + "/Options/AutoFollow").setValue(sone.getOptions().isAutoFollow());
-			configuration.getBooleanValue(sonePrefix + "/Options/EnableSoneInsertNotifications").setValue(sone.getOptions().isSoneInsertNotificationEnabled());
-			configuration.getBooleanValue(sonePrefix + "/Options/ShowNotification/NewSones").setValue(sone.getOptions().isShowNewSoneNotifications());
-			configuration.getBooleanValue(sonePrefix + "/Options/ShowNotification/NewPosts").setValue(sone.getOptions().isShowNewPostNotifications());
-			configuration.getBooleanValue(sonePrefix + "/Options/ShowNotification/NewReplies").setValue(sone.getOptions().isShowNewReplyNotifications());
-			configuration.getStringValue(sonePrefix + "/Options/ShowCustomAvatars").setValue(sone.getOptions().getShowCustomAvatars().name());
-			configuration.getStringValue(sonePrefix + "/Options/LoadLinkedImages").setValue(sone.getOptions().getLoadLinkedImages().name());
-
-			configuration.save();
+			configurationSoneWriter.write(sone, soneInserters.get(sone).getLastInsertFingerprint());
 
 			webOfTrustUpdater.setProperty((OwnIdentity) sone.getIdentity(), "Sone.LatestEdition", String.valueOf(sone.getLatestEdition()));
 
@@ -1657,6 +1830,38 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		}
 	}
 
+	/**
+	 * Changes the number of threads used to download Sones.
+	 *
+	 * @param downloadThreadsChangedEvent
+	 *            The event
+	 */
+	@Subscribe
+	public void downloadThreadsChanged(DownloadThreadsChangedEvent downloadThreadsChangedEvent) {
+		soneDownloadQueue.setThreads(downloadThreadsChangedEvent.getDownloadThreads());
+	}
+
+	/**
+	 * Notifies the core that several {@link OwnIdentity}s were added. All own
+	 * identities that have the “Sone” context are added as local Sones at
+	 * once.
+	 *
+	 * @param ownIdentitiesAddedEvent
+	 *            The event
+	 */
+	@Subscribe
+	public void ownIdentitiesAdded(OwnIdentitiesAddedEvent ownIdentitiesAddedEvent) {
+		List<OwnIdentity> soneIdentities = new ArrayList<OwnIdentity>();
+		for (OwnIdentity ownIdentity : ownIdentitiesAddedEvent.ownIdentities()) {
+			if (ownIdentity.hasContext("Sone")) {
+				soneIdentities.add(ownIdentity);
+			}
+		}
+		if (!soneIdentities.isEmpty()) {
+			addLocalSones(soneIdentities);
+		}
+	}
+
 	/**
 	 * Notifies the core that a new {@link OwnIdentity} was added.
 	 *
@@ -1720,7 +1925,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			}
 		}
 		soneDownloader.addSone(sone);
-		soneDownloaders.execute(soneDownloader.fetchSoneAction(sone));
+		soneDownloadQueue.fetch(sone.getId(), soneDownloader.fetchSoneAction(sone));
 	}
 
 	/**
@@ -1747,14 +1952,18 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			/* TODO - we don’t have the Sone anymore. should this happen? */
 			return;
 		}
+		/* dispatch the events after the batches of earlier updates of the Sone. */
 		for (PostReply postReply : sone.getReplies()) {
-			eventBus.post(new PostReplyRemovedEvent(postReply));
+			soneEventDispatcher.dispatch(new PostReplyRemovedEvent(postReply));
 		}
 		for (Post post : sone.getPosts()) {
-			eventBus.post(new PostRemovedEvent(post));
+			soneEventDispatcher.dispatch(new PostRemovedEvent(post));
 		}
-		eventBus.post(new SoneRemovedEvent(sone));
+		soneEventDispatcher.dispatch(new SoneRemovedEvent(sone));
+		timelines.soneRemoved(sone);
+		searchIndex.soneRemoved(sone);
 		database.removeSone(sone);
+		soneSnapshotStore.remove(sone.getId());
 	}
 
 	/**
@@ -1787,6 +1996,33 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 
 	}
 
+	/**
+	 * The data of a local Sone that was parsed from the configuration.
+	 */
+	private static class LoadedSone {
+
+		private final long time;
+		private final String lastInsertFingerprint;
+		private final Profile profile;
+		private final Collection<Post> posts;
+		private final Collection<PostReply> replies;
+		private final Set<String> likedPostIds;
+		private final Set<String> likedReplyIds;
+		private final List<Album> topLevelAlbums;
+
+		private LoadedSone(long time, String lastInsertFingerprint, Profile profile, Collection<Post> posts, Collection<PostReply> replies, Set<String> likedPostIds, Set<String> likedReplyIds, List<Album> topLevelAlbums) {
+			this.time = time;
+			this.lastInsertFingerprint = lastInsertFingerprint;
+			this.profile = profile;
+			this.posts = posts;
+			this.replies = replies;
+			this.likedPostIds = likedPostIds;
+			this.likedReplyIds = likedReplyIds;
+			this.topLevelAlbums = topLevelAlbums;
+		}
+
+	}
+
 	@VisibleForTesting
 	class MarkReplyKnown implements Runnable {
 
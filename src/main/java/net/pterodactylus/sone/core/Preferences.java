@@ -22,6 +22,7 @@ import static java.lang.Integer.MAX_VALUE;
 import static net.pterodactylus.sone.fcp.FcpInterface.FullAccessRequired.ALWAYS;
 import static net.pterodactylus.sone.utils.IntegerRangePredicate.range;
 
+import net.pterodactylus.sone.core.event.DownloadThreadsChangedEvent;
 import net.pterodactylus.sone.core.event.InsertionDelayChangedEvent;
 import net.pterodactylus.sone.fcp.FcpInterface;
 import net.pterodactylus.sone.fcp.FcpInterface.FullAccessRequired;
@@ -47,6 +48,8 @@ public class Preferences {
 	private final EventBus eventBus;
 	private final Option<Integer> insertionDelay =
 			new DefaultOption<Integer>(60, range(0, MAX_VALUE));
+	private final Option<Integer> downloadThreads =
+			new DefaultOption<Integer>(SoneDownloadQueue.DEFAULT_THREADS, range(1, 100));
 	private final Option<Integer> postsPerPage =
 			new DefaultOption<Integer>(10, range(1, MAX_VALUE));
 	private final Option<Integer> imagesPerPage =
@@ -108,6 +111,41 @@ public class Preferences {
 		return this;
 	}
 
+	/**
+	 * Returns the number of threads used to download Sones.
+	 *
+	 * @return The number of download threads
+	 */
+	public int getDownloadThreads() {
+		return downloadThreads.get();
+	}
+
+	/**
+	 * Validates the number of threads used to download Sones.
+	 *
+	 * @param downloadThreads
+	 *            The number of download threads to validate
+	 * @return {@code true} if the number of download threads was valid,
+	 *         {@code false} otherwise
+	 */
+	public boolean validateDownloadThreads(Integer downloadThreads) {
+		return this.downloadThreads.validate(downloadThreads);
+	}
+
+	/**
+	 * Sets the number of threads used to download Sones.
+	 *
+	 * @param downloadThreads
+	 *            The new number of download threads, or {@code null} to
+	 *            restore it to the default value
+	 * @return This preferences
+	 */
+	public Preferences setDownloadThreads(Integer downloadThreads) {
+		this.downloadThreads.set(downloadThreads);
+		eventBus.post(new DownloadThreadsChangedEvent(getDownloadThreads()));
+		return this;
+	}
+
 	/**
 	 * Returns the number of posts to show per page.
 	 *
@@ -415,6 +453,7 @@ public class Preferences {
 	public void saveTo(Configuration configuration) throws ConfigurationException {
 		configuration.getIntValue("Option/ConfigurationVersion").setValue(0);
 		configuration.getIntValue("Option/InsertionDelay").setValue(insertionDelay.getReal());
+		configuration.getIntValue("Option/DownloadThreads").setValue(downloadThreads.getReal());
 		configuration.getIntValue("Option/PostsPerPage").setValue(postsPerPage.getReal());
 		configuration.getIntValue("Option/ImagesPerPage").setValue(imagesPerPage.getReal());
 		configuration.getIntValue("Option/CharactersPerPost").setValue(charactersPerPost.getReal());
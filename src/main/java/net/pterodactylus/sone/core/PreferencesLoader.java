@@ -20,6 +20,7 @@ public class PreferencesLoader {
 
 	public void loadFrom(Configuration configuration) {
 		loadInsertionDelay(configuration);
+		loadDownloadThreads(configuration);
 		loadPostsPerPage(configuration);
 		loadImagesPerPage(configuration);
 		loadCharactersPerPost(configuration);
@@ -37,6 +38,11 @@ public class PreferencesLoader {
 				"Option/InsertionDelay").getValue(null));
 	}
 
+	private void loadDownloadThreads(Configuration configuration) {
+		preferences.setDownloadThreads(configuration.getIntValue(
+				"Option/DownloadThreads").getValue(null));
+	}
+
 	private void loadPostsPerPage(Configuration configuration) {
 		preferences.setPostsPerPage(
 				configuration.getIntValue("Option/PostsPerPage")
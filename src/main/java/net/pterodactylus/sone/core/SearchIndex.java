@@ -0,0 +1,637 @@
+/*
+ * Sone - SearchIndex.java - Copyright © 2010–2016 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Profile.Field;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.database.PostProvider;
+import net.pterodactylus.sone.database.PostReplyProvider;
+import net.pterodactylus.sone.database.SoneProvider;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * Inverted index over the searchable text of Sones, posts, and replies. Texts
+ * are split into words at whitespace, and every word has an array of the
+ * elements it occurs in. A phrase is looked up by splitting it into words as
+ * well; every word of the phrase has to be contained in a word of an element
+ * for the element to be a candidate. The words that contain a word of the
+ * phrase are found using the n-grams of up to three characters of all
+ * indexed words. The texts of posts and replies are not kept, so the index
+ * only returns candidates, and the caller has to check whether a candidate
+ * really contains the phrase.
+ * <p>
+ * The indexed texts are the same ones the search page scores: a Sone’s names
+ * and profile fields, a post’s text and the names of its recipient, and a
+ * reply’s text and the names of its Sone. Changes are indexed as soon as they
+ * are reported; the elements that already exist are indexed by {@link
+ * #build()}, one Sone at a time, so that changes do not have to wait for the
+ * whole index to be built. Queries wait until the index has been built.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SearchIndex {
+
+	private final SoneProvider soneProvider;
+	private final PostProvider postProvider;
+	private final PostReplyProvider postReplyProvider;
+
+	/* synchronize on this. */
+	private final WordIndex sones = new WordIndex();
+	private final WordIndex posts = new WordIndex();
+	private final WordIndex postReplies = new WordIndex();
+	private final Map<String, String> soneTexts = new HashMap<String, String>();
+	private final Map<String, String> soneNames = new HashMap<String, String>();
+	private final SetMultimap<String, String> directedPostIds = HashMultimap.create();
+	private boolean building;
+	private boolean built;
+
+	public SearchIndex(SoneProvider soneProvider, PostProvider postProvider, PostReplyProvider postReplyProvider) {
+		this.soneProvider = soneProvider;
+		this.postProvider = postProvider;
+		this.postReplyProvider = postReplyProvider;
+	}
+
+	/**
+	 * Returns the IDs of all Sones whose names or profile fields can contain
+	 * the given phrase.
+	 *
+	 * @param phrase
+	 * 		The lower-case phrase to search for
+	 * @return The IDs of the candidate Sones, or {@link Optional#absent()} if
+	 * the phrase does not contain any words
+	 */
+	@Nonnull
+	public synchronized Optional<Set<String>> findSoneIds(@Nonnull String phrase) {
+		List<String> words = getWords(phrase);
+		if (words.isEmpty()) {
+			return Optional.absent();
+		}
+		awaitBuild();
+		BitSet documents = null;
+		for (String word : words) {
+			documents = intersect(documents, sones.findDocuments(word));
+		}
+		return Optional.of(sones.getIds(documents));
+	}
+
+	/**
+	 * Returns the IDs of all posts whose text, the names of whose recipient,
+	 * or the text or the names of the Sone of one of whose replies can contain
+	 * the given phrase.
+	 *
+	 * @param phrase
+	 * 		The lower-case phrase to search for
+	 * @return The IDs of the candidate posts, or {@link Optional#absent()} if
+	 * the phrase does not contain any words
+	 */
+	@Nonnull
+	public synchronized Optional<Set<String>> findPostIds(@Nonnull String phrase) {
+		List<String> words = getWords(phrase);
+		if (words.isEmpty()) {
+			return Optional.absent();
+		}
+		awaitBuild();
+		Set<String> postIds = null;
+		for (String word : words) {
+			Set<String> wordPostIds = posts.getIds(posts.findDocuments(word));
+			wordPostIds.addAll(postReplies.getOwnerIds(postReplies.findDocuments(word)));
+			if (postIds == null) {
+				postIds = wordPostIds;
+			} else {
+				postIds.retainAll(wordPostIds);
+			}
+		}
+		return Optional.of(postIds);
+	}
+
+	/**
+	 * Adds the given Sone and all its posts and replies to the index.
+	 *
+	 * @param sone
+	 * 		The Sone that was added
+	 */
+	public synchronized void soneAdded(@Nonnull Sone sone) {
+		for (Post post : sone.getPosts()) {
+			addPost(post);
+		}
+		for (PostReply postReply : sone.getReplies()) {
+			addPostReply(postReply);
+		}
+		soneUpdated(sone);
+	}
+
+	/**
+	 * Re-indexes the names and the profile of the given Sone. If its names
+	 * have changed, its replies and all posts directed at it are re-indexed
+	 * as well. Posts and replies that were added or removed have to be
+	 * {@link #postAdded(Post) added} or {@link #postRemoved(Post) removed}
+	 * separately.
+	 *
+	 * @param sone
+	 * 		The Sone that was updated
+	 */
+	public synchronized void soneUpdated(@Nonnull Sone sone) {
+		String names = getNames(sone);
+		String text = getText(sone, names);
+		if (!text.equals(soneTexts.put(sone.getId(), text))) {
+			sones.add(sone.getId(), null, text);
+		}
+		String oldNames = soneNames.put(sone.getId(), names);
+		if ((oldNames != null) && !names.equals(oldNames)) {
+			for (PostReply postReply : sone.getReplies()) {
+				addPostReply(postReply);
+			}
+		}
+		if (!names.equals(oldNames)) {
+			for (String postId : new ArrayList<String>(directedPostIds.get(sone.getId()))) {
+				addPost(postProvider.getPost(postId));
+			}
+		}
+	}
+
+	/**
+	 * Removes the given Sone, its posts and its replies from the index.
+	 *
+	 * @param sone
+	 * 		The Sone that was removed
+	 */
+	public synchronized void soneRemoved(@Nonnull Sone sone) {
+		sones.remove(sone.getId());
+		soneTexts.remove(sone.getId());
+		soneNames.remove(sone.getId());
+		for (Post post : sone.getPosts()) {
+			postRemoved(post);
+		}
+		for (PostReply postReply : sone.getReplies()) {
+			postReplyRemoved(postReply);
+		}
+	}
+
+	/**
+	 * Adds the given post to the index.
+	 *
+	 * @param post
+	 * 		The post that was added
+	 */
+	public synchronized void postAdded(@Nonnull Post post) {
+		addPost(post);
+	}
+
+	/**
+	 * Removes the given post from the index.
+	 *
+	 * @param post
+	 * 		The post that was removed
+	 */
+	public synchronized void postRemoved(@Nonnull Post post) {
+		if (posts.remove(post.getId()) && post.getRecipientId().isPresent()) {
+			directedPostIds.remove(post.getRecipientId().get(), post.getId());
+		}
+	}
+
+	/**
+	 * Adds the given reply to the index.
+	 *
+	 * @param postReply
+	 * 		The reply that was added
+	 */
+	public synchronized void postReplyAdded(@Nonnull PostReply postReply) {
+		addPostReply(postReply);
+	}
+
+	/**
+	 * Removes the given reply from the index.
+	 *
+	 * @param postReply
+	 * 		The reply that was removed
+	 */
+	public synchronized void postReplyRemoved(@Nonnull PostReply postReply) {
+		postReplies.remove(postReply.getId());
+	}
+
+	/**
+	 * Starts a thread that {@link #build() builds} the index.
+	 */
+	public void start() {
+		Thread builder = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				build();
+			}
+		}, "Sone Search Index Builder");
+		builder.setDaemon(true);
+		builder.start();
+	}
+
+	/**
+	 * Indexes all Sones that currently exist, with their posts and the
+	 * replies to their posts. Every Sone is indexed separately so that
+	 * changes that are reported in the meantime are not blocked until all
+	 * Sones have been indexed. Once all Sones have been indexed, queries are
+	 * answered. If the index has already been built, or is being built by
+	 * another thread, this method does nothing.
+	 */
+	public void build() {
+		synchronized (this) {
+			if (building || built) {
+				return;
+			}
+			building = true;
+		}
+		try {
+			for (Sone sone : new ArrayList<Sone>(soneProvider.getSones())) {
+				synchronized (this) {
+					Sone currentSone = soneProvider.getSone(sone.getId());
+					if (currentSone != null) {
+						indexSone(currentSone);
+					}
+				}
+			}
+		} finally {
+			synchronized (this) {
+				building = false;
+				built = true;
+				notifyAll();
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Waits until the index has been built, building it on the current thread
+	 * if nobody has started building it. As the profiles of local Sones are
+	 * edited without any notification, they are checked for changes
+	 * afterwards.
+	 */
+	private void awaitBuild() {
+		if (!building && !built) {
+			build();
+		}
+		while (!built) {
+			try {
+				wait();
+			} catch (InterruptedException ie1) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		for (Sone localSone : soneProvider.getLocalSones()) {
+			soneUpdated(localSone);
+		}
+	}
+
+	private void indexSone(Sone sone) {
+		soneUpdated(sone);
+		for (Post post : sone.getPosts()) {
+			addPost(post);
+			for (PostReply postReply : postReplyProvider.getReplies(post.getId())) {
+				addPostReply(postReply);
+			}
+		}
+	}
+
+	private void addPost(@Nullable Post post) {
+		if (post == null) {
+			return;
+		}
+		StringBuilder text = new StringBuilder(post.getText());
+		if (post.getRecipientId().isPresent()) {
+			directedPostIds.put(post.getRecipientId().get(), post.getId());
+		}
+		if (post.getRecipient().isPresent()) {
+			text.append(' ').append(getNames(post.getRecipient().get()));
+		}
+		posts.add(post.getId(), null, text.toString().toLowerCase());
+	}
+
+	private void addPostReply(@Nonnull PostReply postReply) {
+		StringBuilder text = new StringBuilder();
+		if (postReply.getSone() != null) {
+			text.append(getNames(postReply.getSone())).append(' ');
+		}
+		text.append(postReply.getText());
+		postReplies.add(postReply.getId(), postReply.getPostId(), text.toString().toLowerCase());
+	}
+
+	private static String getNames(Sone sone) {
+		StringBuilder names = new StringBuilder();
+		Profile profile = sone.getProfile();
+		for (String name : new String[] { sone.getName(), profile.getFirstName(), profile.getMiddleName(), profile.getLastName() }) {
+			if (name != null) {
+				names.append(name);
+			}
+		}
+		return names.toString();
+	}
+
+	private static String getText(Sone sone, String names) {
+		StringBuilder text = new StringBuilder(names).append(' ');
+		for (Field field : sone.getProfile().getFields()) {
+			if (text.length() > names.length() + 1) {
+				text.append(' ');
+			}
+			text.append(field.getName()).append(' ').append(field.getValue());
+		}
+		return text.toString().toLowerCase();
+	}
+
+	/**
+	 * Splits the given text into words at whitespace.
+	 *
+	 * @param text
+	 * 		The text to split
+	 * @return The words of the text, in the order they appear in the text
+	 */
+	private static List<String> getWords(String text) {
+		List<String> words = new ArrayList<String>();
+		int wordStart = -1;
+		for (int index = 0; index <= text.length(); index++) {
+			boolean whitespace = (index == text.length()) || Character.isWhitespace(text.charAt(index));
+			if (whitespace && (wordStart > -1)) {
+				words.add(text.substring(wordStart, index));
+				wordStart = -1;
+			} else if (!whitespace && (wordStart == -1)) {
+				wordStart = index;
+			}
+		}
+		return words;
+	}
+
+	private static BitSet intersect(@Nullable BitSet documents, BitSet otherDocuments) {
+		if (documents == null) {
+			return otherDocuments;
+		}
+		documents.and(otherDocuments);
+		return documents;
+	}
+
+	/**
+	 * Word index over the texts of one kind of element. Every indexed element
+	 * is a document with a number, and every word has an ascending array of
+	 * the numbers of the documents it occurs in. Removing a document only
+	 * clears its number; the numbers are compacted once more than half of
+	 * them are cleared. A document can have the ID of an owner, e.g. the ID of
+	 * the post a reply belongs to.
+	 * <p>
+	 * Every word has a number as well, and every n-gram of up to {@link
+	 * #MAX_NGRAM_LENGTH} characters has an ascending array of the numbers of
+	 * the words it occurs in. A query word that is not longer than that is
+	 * looked up directly; for a longer query word only the words that contain
+	 * its rarest n-gram are checked.
+	 */
+	private static class WordIndex {
+
+		private static final int MAX_NGRAM_LENGTH = 3;
+
+		/** The postings of every word; the first element is the length. */
+		private final Map<String, int[]> postings = new HashMap<String, int[]>();
+		/** The word numbers of every n-gram; the first element is the length. */
+		private final Map<String, int[]> ngrams = new HashMap<String, int[]>();
+		private String[] words = new String[16];
+		private int wordCount;
+		private final Map<String, Integer> documentNumbers = new HashMap<String, Integer>();
+		private final BitSet liveDocuments = new BitSet();
+		private String[] ids = new String[16];
+		private String[] ownerIds = new String[16];
+		private int documentCount;
+
+		public void add(String id, @Nullable String ownerId, String text) {
+			remove(id);
+			if (documentCount == ids.length) {
+				ids = Arrays.copyOf(ids, documentCount * 2);
+				ownerIds = Arrays.copyOf(ownerIds, documentCount * 2);
+			}
+			int documentNumber = documentCount++;
+			ids[documentNumber] = id;
+			ownerIds[documentNumber] = ownerId;
+			liveDocuments.set(documentNumber);
+			documentNumbers.put(id, documentNumber);
+			for (String word : getWords(text)) {
+				int[] documentNumbers = postings.get(word);
+				if (documentNumbers == null) {
+					addWord(word);
+				}
+				int[] newDocumentNumbers = append(documentNumbers, documentNumber);
+				if (newDocumentNumbers != documentNumbers) {
+					postings.put(word, newDocumentNumbers);
+				}
+			}
+		}
+
+		public boolean remove(String id) {
+			Integer documentNumber = documentNumbers.remove(id);
+			if (documentNumber == null) {
+				return false;
+			}
+			liveDocuments.clear(documentNumber);
+			ids[documentNumber] = null;
+			ownerIds[documentNumber] = null;
+			if (documentNumbers.size() < documentCount / 2) {
+				compact();
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the numbers of all documents that contain a word that
+		 * contains the given word.
+		 *
+		 * @param word
+		 * 		The word to search for
+		 * @return The numbers of the matching documents
+		 */
+		public BitSet findDocuments(String word) {
+			BitSet documents = new BitSet(documentCount);
+			int[] wordNumbers = findWordCandidates(word);
+			if (wordNumbers == null) {
+				return documents;
+			}
+			for (int wordIndex = 1; wordIndex <= wordNumbers[0]; wordIndex++) {
+				String indexedWord = words[wordNumbers[wordIndex]];
+				if ((word.length() > MAX_NGRAM_LENGTH) && !indexedWord.contains(word)) {
+					continue;
+				}
+				int[] documentNumbers = postings.get(indexedWord);
+				for (int index = 1; index <= documentNumbers[0]; index++) {
+					documents.set(documentNumbers[index]);
+				}
+			}
+			documents.and(liveDocuments);
+			return documents;
+		}
+
+		/**
+		 * Returns the numbers of the words that can contain the given word.
+		 * If the given word is not longer than {@link #MAX_NGRAM_LENGTH}, all
+		 * returned words contain it.
+		 *
+		 * @param word
+		 * 		The word to search for
+		 * @return The word numbers, with the length as first element, or
+		 * {@code null} if no word contains the given word
+		 */
+		@Nullable
+		private int[] findWordCandidates(String word) {
+			if (word.length() <= MAX_NGRAM_LENGTH) {
+				return ngrams.get(word);
+			}
+			int[] rarestWordNumbers = null;
+			for (int start = 0; start + MAX_NGRAM_LENGTH <= word.length(); start++) {
+				int[] wordNumbers = ngrams.get(word.substring(start, start + MAX_NGRAM_LENGTH));
+				if (wordNumbers == null) {
+					return null;
+				}
+				if ((rarestWordNumbers == null) || (wordNumbers[0] < rarestWordNumbers[0])) {
+					rarestWordNumbers = wordNumbers;
+				}
+			}
+			return rarestWordNumbers;
+		}
+
+		private void addWord(String word) {
+			if (wordCount == words.length) {
+				words = Arrays.copyOf(words, wordCount * 2);
+			}
+			int wordNumber = wordCount++;
+			words[wordNumber] = word;
+			for (int length = 1; length <= MAX_NGRAM_LENGTH; length++) {
+				for (int start = 0; start + length <= word.length(); start++) {
+					String ngram = word.substring(start, start + length);
+					int[] wordNumbers = ngrams.get(ngram);
+					int[] newWordNumbers = append(wordNumbers, wordNumber);
+					if (newWordNumbers != wordNumbers) {
+						ngrams.put(ngram, newWordNumbers);
+					}
+				}
+			}
+		}
+
+		public Set<String> getIds(BitSet documents) {
+			return getIds(ids, documents);
+		}
+
+		public Set<String> getOwnerIds(BitSet documents) {
+			return getIds(ownerIds, documents);
+		}
+
+		private static Set<String> getIds(String[] ids, BitSet documents) {
+			Set<String> documentIds = new HashSet<String>();
+			for (int document = documents.nextSetBit(0); document > -1; document = documents.nextSetBit(document + 1)) {
+				if (ids[document] != null) {
+					documentIds.add(ids[document]);
+				}
+			}
+			return documentIds;
+		}
+
+		private static int[] append(@Nullable int[] documentNumbers, int documentNumber) {
+			if (documentNumbers == null) {
+				return new int[] { 1, documentNumber };
+			}
+			int length = documentNumbers[0];
+			if (documentNumbers[length] == documentNumber) {
+				/* the word occurs more than once in the document. */
+				return documentNumbers;
+			}
+			if (length + 1 == documentNumbers.length) {
+				documentNumbers = Arrays.copyOf(documentNumbers, documentNumbers.length + (documentNumbers.length >> 1) + 1);
+			}
+			documentNumbers[length + 1] = documentNumber;
+			documentNumbers[0] = length + 1;
+			return documentNumbers;
+		}
+
+		/**
+		 * Renumbers the live documents so that their numbers are consecutive
+		 * again, and removes the numbers of removed documents and words that
+		 * do not occur in any live document from the postings. The words are
+		 * renumbered as well, and their n-grams are indexed again.
+		 */
+		private void compact() {
+			int[] newDocumentNumbers = new int[documentCount];
+			int newDocumentCount = 0;
+			for (int document = 0; document < documentCount; document++) {
+				if (liveDocuments.get(document)) {
+					newDocumentNumbers[document] = newDocumentCount;
+					ids[newDocumentCount] = ids[document];
+					ownerIds[newDocumentCount] = ownerIds[document];
+					newDocumentCount++;
+				} else {
+					newDocumentNumbers[document] = -1;
+				}
+			}
+			Arrays.fill(ids, newDocumentCount, documentCount, null);
+			Arrays.fill(ownerIds, newDocumentCount, documentCount, null);
+			liveDocuments.clear();
+			liveDocuments.set(0, newDocumentCount);
+			documentCount = newDocumentCount;
+			for (Entry<String, Integer> documentNumber : documentNumbers.entrySet()) {
+				documentNumber.setValue(newDocumentNumbers[documentNumber.getValue()]);
+			}
+			for (Iterator<Entry<String, int[]>> wordPostings = postings.entrySet().iterator(); wordPostings.hasNext(); ) {
+				Entry<String, int[]> entry = wordPostings.next();
+				int[] documentNumbers = entry.getValue();
+				int length = 0;
+				for (int index = 1; index <= documentNumbers[0]; index++) {
+					int newDocumentNumber = newDocumentNumbers[documentNumbers[index]];
+					if (newDocumentNumber > -1) {
+						documentNumbers[++length] = newDocumentNumber;
+					}
+				}
+				if (length == 0) {
+					wordPostings.remove();
+				} else {
+					documentNumbers[0] = length;
+					entry.setValue(Arrays.copyOf(documentNumbers, length + 1));
+				}
+			}
+			ngrams.clear();
+			words = new String[Math.max(16, postings.size())];
+			wordCount = 0;
+			for (String word : postings.keySet()) {
+				addWord(word);
+			}
+		}
+
+	}
+
+}
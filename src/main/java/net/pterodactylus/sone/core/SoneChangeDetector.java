@@ -2,21 +2,25 @@ package net.pterodactylus.sone.core;
 
 import static com.google.common.base.Optional.absent;
 import static com.google.common.base.Optional.fromNullable;
-import static com.google.common.collect.FluentIterable.from;
 
-import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.PostReply;
 import net.pterodactylus.sone.data.Sone;
 
 import com.google.common.base.Optional;
-import com.google.common.base.Predicate;
-import com.google.common.collect.FluentIterable;
 
 /**
- * Compares the contents of two {@link Sone}s and fires events for new and
- * removed elements.
+ * Compares the contents of two {@link Sone}s and fires events for new,
+ * removed, and unchanged elements.
+ * <p>
+ * The elements of the old Sone are stored in hash sets (posts and replies
+ * are equal if their IDs are equal) so that every element of the new Sone is
+ * classified with a single lookup, and the elements of the old Sone that are
+ * left over afterwards have been removed. Comparing two Sones is thus linear
+ * in the number of their posts and replies.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
@@ -25,8 +29,10 @@ public class SoneChangeDetector {
 	private final Sone oldSone;
 	private Optional<PostProcessor> newPostProcessor = absent();
 	private Optional<PostProcessor> removedPostProcessor = absent();
+	private Optional<PostProcessor> unchangedPostProcessor = absent();
 	private Optional<PostReplyProcessor> newPostReplyProcessor = absent();
 	private Optional<PostReplyProcessor> removedPostReplyProcessor = absent();
+	private Optional<PostReplyProcessor> unchangedPostReplyProcessor = absent();
 
 	public SoneChangeDetector(Sone oldSone) {
 		this.oldSone = oldSone;
@@ -40,6 +46,10 @@ public class SoneChangeDetector {
 		this.removedPostProcessor = fromNullable(removedPostProcessor);
 	}
 
+	public void onUnchangedPosts(PostProcessor unchangedPostProcessor) {
+		this.unchangedPostProcessor = fromNullable(unchangedPostProcessor);
+	}
+
 	public void onNewPostReplies(PostReplyProcessor newPostReplyProcessor) {
 		this.newPostReplyProcessor = fromNullable(newPostReplyProcessor);
 	}
@@ -49,21 +59,33 @@ public class SoneChangeDetector {
 		this.removedPostReplyProcessor = fromNullable(removedPostReplyProcessor);
 	}
 
-	public void detectChanges(Sone newSone) {
-		processPosts(from(newSone.getPosts()).filter(
-				notContainedIn(oldSone.getPosts())), newPostProcessor);
-		processPosts(from(oldSone.getPosts()).filter(
-				notContainedIn(newSone.getPosts())), removedPostProcessor);
-		processPostReplies(from(newSone.getReplies()).filter(
-				notContainedIn(oldSone.getReplies())), newPostReplyProcessor);
-		processPostReplies(from(oldSone.getReplies()).filter(
-				notContainedIn(newSone.getReplies())), removedPostReplyProcessor);
+	public void onUnchangedPostReplies(
+			PostReplyProcessor unchangedPostReplyProcessor) {
+		this.unchangedPostReplyProcessor = fromNullable(unchangedPostReplyProcessor);
 	}
 
-	private void processPostReplies(FluentIterable<PostReply> postReplies,
-			Optional<PostReplyProcessor> postReplyProcessor) {
-		for (PostReply postReply : postReplies) {
-			notifyPostReplyProcessor(postReplyProcessor, postReply);
+	public void detectChanges(Sone newSone) {
+		Set<Post> removedPosts = new LinkedHashSet<Post>(oldSone.getPosts());
+		for (Post post : newSone.getPosts()) {
+			if (removedPosts.remove(post)) {
+				notifyPostProcessor(unchangedPostProcessor, post);
+			} else {
+				notifyPostProcessor(newPostProcessor, post);
+			}
+		}
+		for (Post post : removedPosts) {
+			notifyPostProcessor(removedPostProcessor, post);
+		}
+		Set<PostReply> removedPostReplies = new LinkedHashSet<PostReply>(oldSone.getReplies());
+		for (PostReply postReply : newSone.getReplies()) {
+			if (removedPostReplies.remove(postReply)) {
+				notifyPostReplyProcessor(unchangedPostReplyProcessor, postReply);
+			} else {
+				notifyPostReplyProcessor(newPostReplyProcessor, postReply);
+			}
+		}
+		for (PostReply postReply : removedPostReplies) {
+			notifyPostReplyProcessor(removedPostReplyProcessor, postReply);
 		}
 	}
 
@@ -76,13 +98,6 @@ public class SoneChangeDetector {
 		}
 	}
 
-	private void processPosts(FluentIterable<Post> posts,
-			Optional<PostProcessor> newPostProcessor) {
-		for (Post post : posts) {
-			notifyPostProcessor(newPostProcessor, post);
-		}
-	}
-
 	private void notifyPostProcessor(Optional<PostProcessor> postProcessor,
 			Post newPost) {
 		if (postProcessor.isPresent()) {
@@ -90,15 +105,6 @@ public class SoneChangeDetector {
 		}
 	}
 
-	private <T> Predicate<T> notContainedIn(final Collection<T> posts) {
-		return new Predicate<T>() {
-			@Override
-			public boolean apply(T element) {
-				return !posts.contains(element);
-			}
-		};
-	}
-
 	public interface PostProcessor {
 
 		void processPost(Post post);
@@ -0,0 +1,215 @@
+/*
+ * Sone - SoneDownloadQueue.java - Copyright © 2010–2016 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.logging.Logger.getLogger;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+
+import net.pterodactylus.util.thread.NamedThreadFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Runs Sone fetches on a bounded number of threads. Fetches are coalesced per
+ * Sone: if a fetch for a Sone is already waiting to be run, the new fetch
+ * replaces it; if a fetch for a Sone is currently running, the new fetch is
+ * run once the current fetch has finished, and further fetches replace it.
+ * Thus at most one fetch per Sone is running at any time, and a burst of
+ * edition announcements for a Sone results in at most two fetches.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneDownloadQueue {
+
+	/** The logger. */
+	private static final Logger logger = getLogger(SoneDownloadQueue.class.getName());
+
+	/** The default number of threads. */
+	public static final int DEFAULT_THREADS = 10;
+
+	private final ThreadPoolExecutor executor;
+
+	/* synchronize on this. */
+	private final Map<String, Runnable> queuedFetches = new HashMap<String, Runnable>();
+	private final Set<String> runningFetches = new HashSet<String>();
+	private final Map<String, Runnable> deferredFetches = new HashMap<String, Runnable>();
+	private long finishedFetches;
+	private long totalFetchTime;
+	private long maximumFetchTime;
+
+	public SoneDownloadQueue() {
+		this(DEFAULT_THREADS, new NamedThreadFactory("Sone Downloader %2$d"));
+	}
+
+	@VisibleForTesting
+	SoneDownloadQueue(int threads, ThreadFactory threadFactory) {
+		executor = new ThreadPoolExecutor(threads, threads, 60, SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+	}
+
+	/**
+	 * Changes the number of threads that run fetches.
+	 *
+	 * @param threads
+	 * 		The new number of threads
+	 */
+	public void setThreads(int threads) {
+		if (threads > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(threads);
+			executor.setCorePoolSize(threads);
+		} else {
+			executor.setCorePoolSize(threads);
+			executor.setMaximumPoolSize(threads);
+		}
+	}
+
+	/**
+	 * Queues the given fetch for the Sone with the given ID.
+	 *
+	 * @param soneId
+	 * 		The ID of the Sone to fetch
+	 * @param fetch
+	 * 		The fetch to run
+	 */
+	public void fetch(@Nonnull String soneId, @Nonnull Runnable fetch) {
+		synchronized (this) {
+			if (runningFetches.contains(soneId)) {
+				deferredFetches.put(soneId, fetch);
+				return;
+			}
+			if (queuedFetches.put(soneId, fetch) != null) {
+				return;
+			}
+		}
+		try {
+			executor.execute(new QueuedFetch(soneId));
+		} catch (RejectedExecutionException ree1) {
+			logger.log(Level.FINE, String.format("Not fetching Sone %s, queue is stopped.", soneId));
+			synchronized (this) {
+				queuedFetches.remove(soneId);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of fetches that are waiting for a free thread.
+	 *
+	 * @return The number of queued fetches
+	 */
+	public synchronized int getQueueDepth() {
+		return queuedFetches.size();
+	}
+
+	/**
+	 * Returns the number of fetches that are currently running.
+	 *
+	 * @return The number of running fetches
+	 */
+	public synchronized int getInFlightCount() {
+		return runningFetches.size();
+	}
+
+	/**
+	 * Returns the number of fetches that have finished.
+	 *
+	 * @return The number of finished fetches
+	 */
+	public synchronized long getFinishedFetches() {
+		return finishedFetches;
+	}
+
+	/**
+	 * Returns the average time a finished fetch took.
+	 *
+	 * @return The average fetch latency (in milliseconds)
+	 */
+	public synchronized long getAverageFetchLatency() {
+		return (finishedFetches == 0) ? 0 : NANOSECONDS.toMillis(totalFetchTime / finishedFetches);
+	}
+
+	/**
+	 * Returns the time the slowest finished fetch took.
+	 *
+	 * @return The maximum fetch latency (in milliseconds)
+	 */
+	public synchronized long getMaximumFetchLatency() {
+		return NANOSECONDS.toMillis(maximumFetchTime);
+	}
+
+	/**
+	 * Stops the queue. Queued fetches are not run anymore.
+	 */
+	public void stop() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Runs the newest fetch queued for a Sone.
+	 */
+	private class QueuedFetch implements Runnable {
+
+		private final String soneId;
+
+		public QueuedFetch(String soneId) {
+			this.soneId = soneId;
+		}
+
+		@Override
+		public void run() {
+			Runnable fetch;
+			synchronized (SoneDownloadQueue.this) {
+				fetch = queuedFetches.remove(soneId);
+				runningFetches.add(soneId);
+			}
+			long startTime = System.nanoTime();
+			try {
+				fetch.run();
+			} catch (RuntimeException re1) {
+				logger.log(Level.WARNING, String.format("Could not fetch Sone %s!", soneId), re1);
+			} finally {
+				long fetchTime = System.nanoTime() - startTime;
+				Runnable deferredFetch;
+				synchronized (SoneDownloadQueue.this) {
+					runningFetches.remove(soneId);
+					finishedFetches++;
+					totalFetchTime += fetchTime;
+					maximumFetchTime = Math.max(maximumFetchTime, fetchTime);
+					deferredFetch = deferredFetches.remove(soneId);
+				}
+				if (deferredFetch != null) {
+					fetch(soneId, deferredFetch);
+				}
+			}
+		}
+
+	}
+
+}
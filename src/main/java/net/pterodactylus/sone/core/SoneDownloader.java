@@ -17,6 +17,8 @@ public interface SoneDownloader extends Service {
 	void fetchSone(Sone sone, FreenetURI soneUri);
 	Sone fetchSone(Sone sone, FreenetURI soneUri, boolean fetchOnly);
 
+	boolean restoreSone(Sone sone);
+
 	Runnable fetchSoneWithUriAction(Sone sone);
 	Runnable fetchSoneAction(Sone sone);
 
@@ -23,6 +23,8 @@ import static java.lang.System.currentTimeMillis;
 import static java.util.concurrent.TimeUnit.DAYS;
 import static java.util.logging.Logger.getLogger;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashSet;
 import java.util.Set;
@@ -30,11 +32,11 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.pterodactylus.sone.core.FreenetInterface.Fetched;
+import net.pterodactylus.sone.core.SoneSnapshotStore.Snapshot;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.data.Sone.SoneStatus;
 import net.pterodactylus.util.service.AbstractService;
 
-import freenet.client.FetchResult;
 import freenet.client.async.ClientContext;
 import freenet.client.async.USKCallback;
 import freenet.keys.FreenetURI;
@@ -66,6 +68,12 @@ public class SoneDownloaderImpl extends AbstractService implements SoneDownloade
 	/** The Freenet interface. */
 	private final FreenetInterface freenetInterface;
 
+	/** The queue that runs the fetches. */
+	private final SoneDownloadQueue soneDownloadQueue;
+
+	/** The snapshots of downloaded Sones. */
+	private final SoneSnapshotStore soneSnapshotStore;
+
 	/** The sones to update. */
 	private final Set<Sone> sones = new HashSet<Sone>();
 
@@ -76,9 +84,13 @@ public class SoneDownloaderImpl extends AbstractService implements SoneDownloade
 	 * 		The core
 	 * @param freenetInterface
 	 * 		The Freenet interface
+	 * @param soneDownloadQueue
+	 * 		The queue that runs the fetches
+	 * @param soneSnapshotStore
+	 * 		The snapshots of downloaded Sones
 	 */
-	public SoneDownloaderImpl(Core core, FreenetInterface freenetInterface) {
-		this(core, freenetInterface, new SoneParser(core));
+	public SoneDownloaderImpl(Core core, FreenetInterface freenetInterface, SoneDownloadQueue soneDownloadQueue, SoneSnapshotStore soneSnapshotStore) {
+		this(core, freenetInterface, new StreamingSoneParser(core), soneDownloadQueue, soneSnapshotStore);
 	}
 
 	/**
@@ -89,13 +101,19 @@ public class SoneDownloaderImpl extends AbstractService implements SoneDownloade
 	 * @param freenetInterface
 	 * 		The Freenet interface
 	 * @param soneParser
+	 * @param soneDownloadQueue
+	 * 		The queue that runs the fetches
+	 * @param soneSnapshotStore
+	 * 		The snapshots of downloaded Sones
 	 */
 	@VisibleForTesting
-	SoneDownloaderImpl(Core core, FreenetInterface freenetInterface, SoneParser soneParser) {
+	SoneDownloaderImpl(Core core, FreenetInterface freenetInterface, SoneParser soneParser, SoneDownloadQueue soneDownloadQueue, SoneSnapshotStore soneSnapshotStore) {
 		super("Sone Downloader", false);
 		this.core = core;
 		this.freenetInterface = freenetInterface;
 		this.soneParser = soneParser;
+		this.soneDownloadQueue = soneDownloadQueue;
+		this.soneSnapshotStore = soneSnapshotStore;
 	}
 
 	//
@@ -126,8 +144,7 @@ public class SoneDownloaderImpl extends AbstractService implements SoneDownloade
 						sone, key, newKnownGood, newSlotToo));
 				if (edition > sone.getLatestEdition()) {
 					sone.setLatestEdition(edition);
-					new Thread(fetchSoneAction(sone),
-							"Sone Downloader").start();
+					soneDownloadQueue.fetch(sone.getId(), fetchSoneAction(sone));
 				}
 			}
 
@@ -197,52 +214,133 @@ public class SoneDownloaderImpl extends AbstractService implements SoneDownloade
 				return null;
 			}
 			logger.log(Level.FINEST, String.format("Got %d bytes back.", fetchResults.getFetchResult().size()));
-			Sone parsedSone = parseSone(sone, fetchResults.getFetchResult(), fetchResults.getFreenetUri());
-			if (parsedSone != null) {
-				if (!fetchOnly) {
-					parsedSone.setStatus((parsedSone.getTime() == 0) ? SoneStatus.unknown : SoneStatus.idle);
-					core.updateSone(parsedSone);
-					addSone(parsedSone);
+			Bucket soneBucket = fetchResults.getFetchResult().asBucket();
+			try {
+				Sone parsedSone = parseSone(sone, soneBucket, fetchResults.getFreenetUri());
+				if (parsedSone != null) {
+					if (!fetchOnly) {
+						parsedSone.setStatus((parsedSone.getTime() == 0) ? SoneStatus.unknown : SoneStatus.idle);
+						boolean soneUpdated = core.updateSone(parsedSone);
+						addSone(parsedSone);
+						if (soneUpdated) {
+							storeSnapshot(parsedSone, soneBucket, fetchResults.getFreenetUri());
+						}
+					}
 				}
+				return parsedSone;
+			} finally {
+				close(soneBucket);
 			}
-			return parsedSone;
 		} finally {
 			sone.setStatus((sone.getTime() == 0) ? SoneStatus.unknown : SoneStatus.idle);
 		}
 	}
 
 	/**
-	 * Parses a Sone from a fetch result.
+	 * Parses a Sone from the content of a fetch result.
 	 *
 	 * @param originalSone
-	 * 		The sone to parse, or {@code null} if the Sone is yet unknown
-	 * @param fetchResult
-	 * 		The fetch result
+	 * 		The sone to parse
+	 * @param soneBucket
+	 * 		The bucket of the fetch result
+	 * @param requestUri
+	 * 		The requested URI
+	 * @return The parsed Sone, or {@code null} if the Sone could not be read
+	 *         or parsed
+	 */
+	private Sone parseSone(Sone originalSone, Bucket soneBucket, FreenetURI requestUri) {
+		logger.log(Level.FINEST, String.format("Parsing %d bytes from %s for %s…", soneBucket.size(), requestUri, originalSone));
+		InputStream soneInputStream = null;
+		try {
+			soneInputStream = soneBucket.getInputStream();
+			return parseSone(originalSone, soneInputStream, requestUri);
+		} catch (IOException ioe1) {
+			logger.log(Level.WARNING, String.format("Could not read Sone from %s!", requestUri), ioe1);
+		} finally {
+			close(soneInputStream);
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the content of a fetch result as snapshot of the given Sone.
+	 *
+	 * @param sone
+	 * 		The parsed Sone
+	 * @param soneBucket
+	 * 		The bucket of the fetch result
 	 * @param requestUri
 	 * 		The requested URI
-	 * @return The parsed Sone, or {@code null} if the Sone could not be parsed
 	 */
-	private Sone parseSone(Sone originalSone, FetchResult fetchResult, FreenetURI requestUri) {
-		logger.log(Level.FINEST, String.format("Parsing FetchResult (%d bytes, %s) for %s…", fetchResult.size(), fetchResult.getMimeType(), originalSone));
-		Bucket soneBucket = fetchResult.asBucket();
+	private void storeSnapshot(Sone sone, Bucket soneBucket, FreenetURI requestUri) {
 		InputStream soneInputStream = null;
 		try {
 			soneInputStream = soneBucket.getInputStream();
-			Sone parsedSone = soneParser.parseSone(originalSone,
-					soneInputStream);
+			soneSnapshotStore.store(sone.getId(), sone.getLatestEdition(), soneInputStream);
+		} catch (IOException ioe1) {
+			logger.log(Level.WARNING, String.format("Could not read Sone from %s!", requestUri), ioe1);
+		} finally {
+			close(soneInputStream);
+		}
+	}
+
+	/**
+	 * Parses a Sone from its XML.
+	 *
+	 * @param originalSone
+	 * 		The sone to parse, or {@code null} if the Sone is yet unknown
+	 * @param soneXml
+	 * 		The input stream delivering the XML of the Sone
+	 * @param requestUri
+	 * 		The requested URI
+	 * @return The parsed Sone, or {@code null} if the Sone could not be parsed
+	 */
+	private Sone parseSone(Sone originalSone, InputStream soneXml, FreenetURI requestUri) {
+		try {
+			Sone parsedSone = soneParser.parseSone(originalSone, soneXml);
 			if (parsedSone != null) {
 				parsedSone.setLatestEdition(requestUri.getEdition());
 			}
 			return parsedSone;
 		} catch (Exception e1) {
 			logger.log(Level.WARNING, String.format("Could not parse Sone from %s!", requestUri), e1);
-		} finally {
-			close(soneInputStream);
-			close(soneBucket);
 		}
 		return null;
 	}
 
+	/**
+	 * Restores the given Sone from its snapshot, without going to the network.
+	 * The restored Sone is {@link Core#updateSone(Sone) updated} in the core
+	 * and watched for updates instead of the given Sone. A snapshot that can
+	 * not be parsed is removed.
+	 *
+	 * @param sone
+	 * 		The Sone to restore
+	 * @return {@code true} if the Sone was restored from a snapshot that is
+	 *         not older than the latest edition of the Sone, {@code false} if
+	 *         the Sone still needs to be fetched
+	 */
+	@Override
+	public boolean restoreSone(Sone sone) {
+		Snapshot snapshot = soneSnapshotStore.load(sone.getId());
+		if (snapshot == null) {
+			return false;
+		}
+		Sone parsedSone = parseSone(sone, new ByteArrayInputStream(snapshot.getSoneXml()), sone.getRequestUri());
+		if (parsedSone == null) {
+			soneSnapshotStore.remove(sone.getId());
+			return false;
+		}
+		parsedSone.setLatestEdition(snapshot.getEdition());
+		parsedSone.setStatus((parsedSone.getTime() == 0) ? SoneStatus.unknown : SoneStatus.idle);
+		if (!core.updateSone(parsedSone)) {
+			return false;
+		}
+		addSone(parsedSone);
+		logger.log(Level.FINE, String.format("Restored Sone %s from snapshot of edition %d.", sone, snapshot.getEdition()));
+		return sone.getLatestEdition() <= snapshot.getEdition();
+	}
+
 	@Override
 	public Runnable fetchSoneWithUriAction(final Sone sone) {
 		return new Runnable() {
@@ -0,0 +1,241 @@
+/*
+ * Sone - SoneEventDispatcher.java - Copyright © 2016 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static java.util.logging.Logger.getLogger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.pterodactylus.sone.core.event.SoneUpdatedBatchEvent;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Posts events to an {@link EventBus} on a separate thread, so that the
+ * thread that creates the events does not have to wait for the subscribers.
+ * Events are posted in the order they are dispatched.
+ * <p>
+ * A {@link SoneUpdatedBatchEvent} is merged into the queued batch event of
+ * the same Sone if no other event has been queued after it, so a Sone that
+ * is updated faster than its events are posted only ever occupies one place
+ * in the queue. At most a fixed number of other events can wait to be
+ * posted; when that number is reached, {@link #dispatch(Object)} waits for a
+ * short time and then queues the event anyway, so that a thread creating
+ * events (e.g. a web request) is never stalled by slow subscribers. Events
+ * that are dispatched by a subscriber, i.e. on the dispatcher thread itself,
+ * are posted right away instead of being queued.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneEventDispatcher {
+
+	/** The default number of events that can wait to be posted. */
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	/** The default time to wait for a free place in the queue (in milliseconds). */
+	public static final long DEFAULT_TIMEOUT = 1000;
+
+	/** The logger. */
+	private static final Logger logger = getLogger(SoneEventDispatcher.class.getName());
+
+	private final EventBus eventBus;
+	private final Semaphore capacity;
+	private final long timeout;
+	private final ExecutorService executorService;
+	private final ThreadLocal<Boolean> posting = new ThreadLocal<Boolean>();
+
+	/* all following fields are guarded by this. */
+	private final Map<String, QueuedEvent> queuedBatchEvents = new HashMap<String, QueuedEvent>();
+
+	public SoneEventDispatcher(EventBus eventBus, int capacity) {
+		this(eventBus, capacity, DEFAULT_TIMEOUT, Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Sone Event Dispatcher").setDaemon(true).build()));
+	}
+
+	@VisibleForTesting
+	SoneEventDispatcher(EventBus eventBus, int capacity, ExecutorService executorService) {
+		this(eventBus, capacity, DEFAULT_TIMEOUT, executorService);
+	}
+
+	@VisibleForTesting
+	SoneEventDispatcher(EventBus eventBus, int capacity, long timeout, ExecutorService executorService) {
+		this.eventBus = eventBus;
+		this.capacity = new Semaphore(capacity);
+		this.timeout = timeout;
+		this.executorService = executorService;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Posts the given event on the dispatcher thread, after all events that
+	 * were dispatched before it. If too many events are waiting to be posted,
+	 * this method waits for a short time before queueing the event anyway.
+	 * Events dispatched on the dispatcher thread are posted immediately.
+	 *
+	 * @param event
+	 *            The event to post
+	 */
+	public void dispatch(Object event) {
+		if (posting.get() != null) {
+			eventBus.post(event);
+			return;
+		}
+		if ((event instanceof SoneUpdatedBatchEvent) && mergeIntoQueuedEvent((SoneUpdatedBatchEvent) event)) {
+			return;
+		}
+		boolean acquired = acquireCapacity();
+		if (!acquired) {
+			logger.log(Level.WARNING, String.format("Queueing event after waiting %d ms for subscribers: %s", timeout, event));
+		}
+		queue(event, acquired);
+	}
+
+	/**
+	 * Stops the dispatcher. Events that have already been dispatched are
+	 * still posted, waiting for at most a few seconds.
+	 */
+	public void stop() {
+		executorService.shutdown();
+		try {
+			if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
+				logger.log(Level.WARNING, "Not all events could be posted before stopping.");
+			}
+		} catch (InterruptedException ie1) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Merges the given event into the queued batch event of the same Sone, if
+	 * there is one and no other event has been queued after it.
+	 *
+	 * @param event
+	 *            The event to merge
+	 * @return {@code true} if the event was merged, {@code false} if it needs
+	 *         to be queued
+	 */
+	private synchronized boolean mergeIntoQueuedEvent(SoneUpdatedBatchEvent event) {
+		QueuedEvent queuedEvent = queuedBatchEvents.get(event.sone().getId());
+		if (queuedEvent == null) {
+			return false;
+		}
+		queuedEvent.event = ((SoneUpdatedBatchEvent) queuedEvent.event).merge(event);
+		return true;
+	}
+
+	private boolean acquireCapacity() {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return capacity.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException ie1) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private synchronized void queue(Object event, final boolean acquired) {
+		final QueuedEvent queuedEvent = new QueuedEvent(event);
+		String soneId = null;
+		if (event instanceof SoneUpdatedBatchEvent) {
+			soneId = ((SoneUpdatedBatchEvent) event).sone().getId();
+			queuedBatchEvents.put(soneId, queuedEvent);
+		} else {
+			/* later batch events must not be moved before this event. */
+			queuedBatchEvents.clear();
+		}
+		try {
+			executorService.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					post(queuedEvent, acquired);
+				}
+			});
+		} catch (RejectedExecutionException ree1) {
+			if ((soneId != null) && (queuedBatchEvents.get(soneId) == queuedEvent)) {
+				queuedBatchEvents.remove(soneId);
+			}
+			if (acquired) {
+				capacity.release();
+			}
+			logger.log(Level.FINE, String.format("Dropping event after stop: %s", event));
+		}
+	}
+
+	private void post(QueuedEvent queuedEvent, boolean acquired) {
+		Object event;
+		synchronized (this) {
+			event = queuedEvent.event;
+			if (event instanceof SoneUpdatedBatchEvent) {
+				String soneId = ((SoneUpdatedBatchEvent) event).sone().getId();
+				if (queuedBatchEvents.get(soneId) == queuedEvent) {
+					queuedBatchEvents.remove(soneId);
+				}
+			}
+		}
+		posting.set(true);
+		try {
+			eventBus.post(event);
+		} finally {
+			posting.remove();
+			if (acquired) {
+				capacity.release();
+			}
+		}
+	}
+
+	/**
+	 * An event waiting to be posted. The event of a queued
+	 * {@link SoneUpdatedBatchEvent} is replaced when a later batch event of
+	 * the same Sone is merged into it.
+	 */
+	private static class QueuedEvent {
+
+		/* guarded by the dispatcher. */
+		private Object event;
+
+		private QueuedEvent(Object event) {
+			this.event = event;
+		}
+
+	}
+
+}
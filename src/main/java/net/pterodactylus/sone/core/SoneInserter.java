@@ -22,15 +22,20 @@ import static java.lang.System.currentTimeMillis;
 import static java.util.logging.Logger.getLogger;
 import static net.pterodactylus.sone.data.Album.NOT_EMPTY;
 
+import java.io.BufferedWriter;
 import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.StringWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -58,7 +63,6 @@ import net.pterodactylus.util.template.TemplateParser;
 import net.pterodactylus.util.template.XmlFilter;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Charsets;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Ordering;
 import com.google.common.eventbus.EventBus;
@@ -95,6 +99,9 @@ public class SoneInserter extends AbstractService {
 	/** The UTF-8 charset. */
 	private static final Charset utf8Charset = Charset.forName("UTF-8");
 
+	/** The parsed insert templates, by resource name. */
+	private static final ConcurrentMap<String, Template> templates = new ConcurrentHashMap<String, Template>();
+
 	/** The core. */
 	private final Core core;
 
@@ -106,6 +113,9 @@ public class SoneInserter extends AbstractService {
 
 	private final SoneModificationDetector soneModificationDetector;
 	private final long delay;
+
+	/** Whether the sone.xml is written by a {@link SoneXmlWriter}. */
+	private volatile boolean soneXmlWriterUsed = true;
 	private final String soneId;
 
 	/**
@@ -173,6 +183,21 @@ public class SoneInserter extends AbstractService {
 		SoneInserter.insertionDelay.set(insertionDelay);
 	}
 
+	/**
+	 * Sets whether the {@code sone.xml} of an insert is written by a
+	 * {@link SoneXmlWriter} or rendered from the
+	 * {@code /templates/insert/sone.xml} template. Both create the same
+	 * document; the writer is a lot faster for Sones with many posts and
+	 * replies.
+	 *
+	 * @param soneXmlWriterUsed
+	 *            {@code true} to use the {@link SoneXmlWriter}, {@code false}
+	 *            to render the template
+	 */
+	public void setSoneXmlWriterUsed(boolean soneXmlWriterUsed) {
+		this.soneXmlWriterUsed = soneXmlWriterUsed;
+	}
+
 	/**
 	 * Returns the fingerprint of the last insert.
 	 *
@@ -340,9 +365,14 @@ public class SoneInserter extends AbstractService {
 					"/templates/insert/index.html"));
 
 			/* now, store the sone. */
-			manifestEntries.put("sone.xml", manifestCreator.createManifestElement(
-					"sone.xml", "text/xml; charset=utf-8",
-					"/templates/insert/sone.xml"));
+			if (soneXmlWriterUsed) {
+				manifestEntries.put("sone.xml", manifestCreator.createSoneXmlManifestElement(
+						"sone.xml", "text/xml; charset=utf-8"));
+			} else {
+				manifestEntries.put("sone.xml", manifestCreator.createManifestElement(
+						"sone.xml", "text/xml; charset=utf-8",
+						"/templates/insert/sone.xml"));
+			}
 
 			return manifestEntries;
 		}
@@ -372,19 +402,9 @@ public class SoneInserter extends AbstractService {
 		}
 
 		public ManifestElement createManifestElement(String name, String contentType, String templateName) {
-			InputStreamReader templateInputStreamReader = null;
-			InputStream templateInputStream = null;
-			Template template;
-			try {
-				templateInputStream = getClass().getResourceAsStream(templateName);
-				templateInputStreamReader = new InputStreamReader(templateInputStream, utf8Charset);
-				template = TemplateParser.parse(templateInputStreamReader);
-			} catch (TemplateException te1) {
-				logger.log(Level.SEVERE, String.format("Could not parse template “%s”!", templateName), te1);
+			Template template = getTemplate(templateName);
+			if (template == null) {
 				return null;
-			} finally {
-				Closer.close(templateInputStreamReader);
-				Closer.close(templateInputStream);
 			}
 
 			TemplateContext templateContext = templateContextFactory.createTemplateContext();
@@ -392,20 +412,77 @@ public class SoneInserter extends AbstractService {
 			templateContext.set("currentSone", soneProperties);
 			templateContext.set("currentEdition", core.getUpdateChecker().getLatestEdition());
 			templateContext.set("version", SonePlugin.getPluginVersion());
-			StringWriter writer = new StringWriter();
+			RandomAccessBucket bucket = new ArrayBucket();
+			Writer writer = null;
 			try {
+				writer = new OutputStreamWriter(bucket.getOutputStream(), utf8Charset);
 				template.render(templateContext, writer);
-				RandomAccessBucket bucket = new ArrayBucket(writer.toString().getBytes(Charsets.UTF_8));
+				writer.close();
 				buckets.add(bucket);
 				return new ManifestElement(name, bucket, contentType, bucket.size());
 			} catch (TemplateException te1) {
 				logger.log(Level.SEVERE, String.format("Could not render template “%s”!", templateName), te1);
+				bucket.free();
+				return null;
+			} catch (IOException ioe1) {
+				logger.log(Level.SEVERE, String.format("Could not write template “%s”!", templateName), ioe1);
+				bucket.free();
 				return null;
 			} finally {
 				Closer.close(writer);
 			}
 		}
 
+		public ManifestElement createSoneXmlManifestElement(String name, String contentType) {
+			RandomAccessBucket bucket = new ArrayBucket();
+			Writer writer = null;
+			try {
+				writer = new BufferedWriter(new OutputStreamWriter(bucket.getOutputStream(), utf8Charset));
+				new SoneXmlWriter(writer).write(soneProperties, SonePlugin.getPluginVersion());
+				writer.close();
+				buckets.add(bucket);
+				return new ManifestElement(name, bucket, contentType, bucket.size());
+			} catch (IOException ioe1) {
+				logger.log(Level.SEVERE, String.format("Could not write “%s”!", name), ioe1);
+				bucket.free();
+				return null;
+			} finally {
+				Closer.close(writer);
+			}
+		}
+
+		/**
+		 * Returns the parsed template with the given name. Templates are only
+		 * parsed once and are shared by all inserts; templates that can not be
+		 * parsed are not cached.
+		 *
+		 * @param templateName
+		 *            The name of the template resource
+		 * @return The parsed template, or {@code null} if the template could
+		 *         not be parsed
+		 */
+		private Template getTemplate(String templateName) {
+			Template template = templates.get(templateName);
+			if (template != null) {
+				return template;
+			}
+			InputStreamReader templateInputStreamReader = null;
+			InputStream templateInputStream = null;
+			try {
+				templateInputStream = getClass().getResourceAsStream(templateName);
+				templateInputStreamReader = new InputStreamReader(templateInputStream, utf8Charset);
+				template = TemplateParser.parse(templateInputStreamReader);
+			} catch (TemplateException te1) {
+				logger.log(Level.SEVERE, String.format("Could not parse template “%s”!", templateName), te1);
+				return null;
+			} finally {
+				Closer.close(templateInputStreamReader);
+				Closer.close(templateInputStream);
+			}
+			Template existingTemplate = templates.putIfAbsent(templateName, template);
+			return (existingTemplate != null) ? existingTemplate : template;
+		}
+
 		public void close() {
 			for (Bucket bucket : buckets) {
 				bucket.free();
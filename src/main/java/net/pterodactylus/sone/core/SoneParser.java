@@ -4,6 +4,7 @@ import static java.util.logging.Logger.getLogger;
 import static net.pterodactylus.sone.utils.NumberParsers.parseInt;
 import static net.pterodactylus.sone.utils.NumberParsers.parseLong;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -14,6 +15,11 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
 import net.pterodactylus.sone.data.Album;
 import net.pterodactylus.sone.data.Client;
 import net.pterodactylus.sone.data.Image;
@@ -27,9 +33,11 @@ import net.pterodactylus.sone.database.PostBuilder;
 import net.pterodactylus.sone.database.PostReplyBuilder;
 import net.pterodactylus.sone.database.SoneBuilder;
 import net.pterodactylus.util.xml.SimpleXML;
-import net.pterodactylus.util.xml.XML;
 
 import org.w3c.dom.Document;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 /**
  * Parses a {@link Sone} from an XML {@link InputStream}.
@@ -39,7 +47,55 @@ import org.w3c.dom.Document;
 public class SoneParser {
 
 	private static final Logger logger = getLogger(SoneParser.class.getName());
-	private static final int MAX_PROTOCOL_VERSION = 0;
+	static final int MAX_PROTOCOL_VERSION = 0;
+
+	/**
+	 * The factory for all document builders. Sones are fetched from other
+	 * users, so documents with a document type declaration are rejected, and
+	 * external entities are never loaded.
+	 */
+	private static final DocumentBuilderFactory documentBuilderFactory = createDocumentBuilderFactory();
+
+	/**
+	 * Document builders are not thread-safe, so every thread that parses
+	 * Sones gets its own document builder which is reused for every Sone
+	 * parsed on that thread.
+	 */
+	private static final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>() {
+
+		@Override
+		protected DocumentBuilder initialValue() {
+			synchronized (documentBuilderFactory) {
+				try {
+					return documentBuilderFactory.newDocumentBuilder();
+				} catch (ParserConfigurationException pce1) {
+					throw new IllegalStateException("Could not create document builder!", pce1);
+				}
+			}
+		}
+
+	};
+
+	/** Logs parser warnings and errors instead of printing them. */
+	private static final ErrorHandler errorHandler = new ErrorHandler() {
+
+		@Override
+		public void warning(SAXParseException spe1) {
+			logger.log(Level.FINE, "Warning while parsing XML!", spe1);
+		}
+
+		@Override
+		public void error(SAXParseException spe1) {
+			logger.log(Level.FINE, "Error while parsing XML!", spe1);
+		}
+
+		@Override
+		public void fatalError(SAXParseException spe1) throws SAXException {
+			throw spe1;
+		}
+
+	};
+
 	private final Core core;
 
 	public SoneParser(Core core) {
@@ -49,11 +105,7 @@ public class SoneParser {
 	public Sone parseSone(Sone originalSone, InputStream soneInputStream) throws SoneException {
 		/* TODO - impose a size limit? */
 
-		Document document;
-		/* XML parsing is not thread-safe. */
-		synchronized (this) {
-			document = XML.transformToDocument(soneInputStream);
-		}
+		Document document = parseDocument(soneInputStream);
 		if (document == null) {
 			/* TODO - mark Sone as bad. */
 			logger.log(Level.WARNING, String.format("Could not parse XML for Sone %s!", originalSone));
@@ -336,4 +388,45 @@ public class SoneParser {
 
 	}
 
+	/**
+	 * Parses the given input stream into a DOM document, using the document
+	 * builder of the current thread.
+	 *
+	 * @param inputStream
+	 * 		The input stream to parse
+	 * @return The parsed document, or {@code null} if the input stream could
+	 * 		not be parsed
+	 */
+	private static DocumentBuilderFactory createDocumentBuilderFactory() {
+		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		try {
+			documentBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			documentBuilderFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			documentBuilderFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+			documentBuilderFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+			documentBuilderFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+		} catch (ParserConfigurationException pce1) {
+			throw new IllegalStateException("Could not configure document builder factory!", pce1);
+		}
+		documentBuilderFactory.setXIncludeAware(false);
+		documentBuilderFactory.setExpandEntityReferences(false);
+		return documentBuilderFactory;
+	}
+
+	private static Document parseDocument(InputStream inputStream) {
+		DocumentBuilder documentBuilder = documentBuilders.get();
+		/* resetting the document builder also resets its error handler. */
+		documentBuilder.setErrorHandler(errorHandler);
+		try {
+			return documentBuilder.parse(inputStream);
+		} catch (SAXException se1) {
+			logger.log(Level.FINE, "Could not parse XML!", se1);
+		} catch (IOException ioe1) {
+			logger.log(Level.FINE, "Could not read XML!", ioe1);
+		} finally {
+			documentBuilder.reset();
+		}
+		return null;
+	}
+
 }
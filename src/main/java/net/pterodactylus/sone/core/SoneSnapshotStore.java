@@ -0,0 +1,436 @@
+/*
+ * Sone - SoneSnapshotStore.java - Copyright © 2016 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.logging.Logger.getLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.pterodactylus.util.io.Closer;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Stores the last downloaded state of remote Sones on disk, so that they can
+ * be shown right after a restart without having to be fetched again.
+ * <p>
+ * Every Sone is stored in its own file, named after the hexadecimal
+ * representation of its ID. A file consists of a magic number, the edition
+ * of the Sone, the length of the Sone’s XML, the length and the content of
+ * the deflated XML, and a CRC-32 checksum of everything before it. Files that
+ * can not be read or whose checksum does not match are deleted. The XML is
+ * deflated straight into the file while it is being read, so storing a
+ * snapshot does not need a copy of the XML in memory.
+ * <p>
+ * The total size of all files is limited; once it is exceeded, the files
+ * that have not been written for the longest time are deleted.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneSnapshotStore {
+
+	/** The logger. */
+	private static final Logger logger = getLogger(SoneSnapshotStore.class.getName());
+
+	/** The default maximum size of all snapshots. */
+	public static final long DEFAULT_MAXIMUM_SIZE = 256 * 1024 * 1024;
+
+	private static final Charset utf8Charset = Charset.forName("UTF-8");
+	private static final BaseEncoding fileNameEncoding = BaseEncoding.base16().lowerCase();
+	private static final String SUFFIX = ".snapshot";
+	private static final int MAGIC = 0x53535331; /* “SSS1” */
+	private static final int HEADER_LENGTH = 4 + 8 + 4 + 4;
+	private static final int CHECKSUM_LENGTH = 4;
+
+	private final File directory;
+	private final long maximumSize;
+
+	/* all following fields are guarded by this. */
+	private final Map<String, SnapshotFile> snapshotFiles = new HashMap<String, SnapshotFile>();
+	private long totalSize;
+
+	public SoneSnapshotStore(@Nonnull File directory, long maximumSize) {
+		this.directory = directory;
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Scans the store’s directory for snapshots, creating the directory if it
+	 * does not exist yet. Snapshots are only read when they are
+	 * {@link #load(String) loaded}.
+	 */
+	public synchronized void open() {
+		snapshotFiles.clear();
+		totalSize = 0;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			logger.log(Level.WARNING, String.format("Could not create snapshot directory %s!", directory));
+			return;
+		}
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			String soneId = getSoneId(file);
+			if (soneId == null) {
+				if (file.getName().endsWith(SUFFIX + ".new")) {
+					file.delete();
+				}
+				continue;
+			}
+			snapshotFiles.put(soneId, new SnapshotFile(file.length(), file.lastModified()));
+			totalSize += file.length();
+		}
+		evictSnapshots();
+		logger.log(Level.INFO, String.format("Found %d Sone snapshots with %d bytes.", snapshotFiles.size(), totalSize));
+	}
+
+	/**
+	 * Returns the number of stored snapshots.
+	 *
+	 * @return The number of snapshots
+	 */
+	public synchronized int size() {
+		return snapshotFiles.size();
+	}
+
+	/**
+	 * Returns the total size of all stored snapshots.
+	 *
+	 * @return The size of all snapshots (in bytes)
+	 */
+	public synchronized long getTotalSize() {
+		return totalSize;
+	}
+
+	/**
+	 * Loads the snapshot of the Sone with the given ID. If the snapshot is
+	 * corrupt, it is deleted.
+	 *
+	 * @param soneId
+	 * 		The ID of the Sone
+	 * @return The snapshot of the Sone, or {@code null} if there is no valid
+	 *         snapshot of the Sone
+	 */
+	@Nullable
+	public Snapshot load(@Nonnull String soneId) {
+		synchronized (this) {
+			if (!snapshotFiles.containsKey(soneId)) {
+				return null;
+			}
+		}
+		File file = getFile(soneId);
+		try {
+			return decode(Files.readAllBytes(file.toPath()));
+		} catch (IOException ioe1) {
+			logger.log(Level.WARNING, String.format("Could not read snapshot of Sone %s, removing it.", soneId), ioe1);
+			remove(soneId);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a snapshot of a Sone, replacing an existing snapshot of the
+	 * Sone. Snapshots that are larger than the maximum size of the store are
+	 * not stored.
+	 *
+	 * @param soneId
+	 * 		The ID of the Sone
+	 * @param edition
+	 * 		The edition of the Sone
+	 * @param soneXml
+	 * 		The XML of the Sone
+	 */
+	public void store(@Nonnull String soneId, long edition, @Nonnull byte[] soneXml) {
+		store(soneId, edition, new ByteArrayInputStream(soneXml));
+	}
+
+	/**
+	 * Stores a snapshot of a Sone, replacing an existing snapshot of the
+	 * Sone. Snapshots that are larger than the maximum size of the store are
+	 * not stored. The given input stream is read completely but not closed.
+	 *
+	 * @param soneId
+	 * 		The ID of the Sone
+	 * @param edition
+	 * 		The edition of the Sone
+	 * @param soneXml
+	 * 		The input stream delivering the XML of the Sone
+	 */
+	public void store(@Nonnull String soneId, long edition, @Nonnull InputStream soneXml) {
+		File file = getFile(soneId);
+		File newFile = new File(file.getPath() + ".new");
+		long snapshotSize;
+		try {
+			snapshotSize = write(newFile, edition, soneXml);
+			if (snapshotSize < 0) {
+				logger.log(Level.FINE, String.format("Not storing too large snapshot of Sone %s.", soneId));
+				newFile.delete();
+				return;
+			}
+			Files.move(newFile.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+		} catch (IOException ioe1) {
+			logger.log(Level.WARNING, String.format("Could not store snapshot of Sone %s!", soneId), ioe1);
+			newFile.delete();
+			return;
+		}
+		synchronized (this) {
+			SnapshotFile oldSnapshotFile = snapshotFiles.put(soneId, new SnapshotFile(snapshotSize, System.currentTimeMillis()));
+			totalSize += snapshotSize - ((oldSnapshotFile != null) ? oldSnapshotFile.size : 0);
+			evictSnapshots();
+		}
+	}
+
+	/**
+	 * Removes the snapshot of the Sone with the given ID.
+	 *
+	 * @param soneId
+	 * 		The ID of the Sone
+	 */
+	public synchronized void remove(@Nonnull String soneId) {
+		SnapshotFile snapshotFile = snapshotFiles.remove(soneId);
+		if (snapshotFile != null) {
+			totalSize -= snapshotFile.size;
+			getFile(soneId).delete();
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private File getFile(String soneId) {
+		return new File(directory, fileNameEncoding.encode(soneId.getBytes(utf8Charset)) + SUFFIX);
+	}
+
+	@Nullable
+	private static String getSoneId(File file) {
+		String fileName = file.getName();
+		if (!fileName.endsWith(SUFFIX)) {
+			return null;
+		}
+		try {
+			return new String(fileNameEncoding.decode(fileName.substring(0, fileName.length() - SUFFIX.length())), utf8Charset);
+		} catch (IllegalArgumentException iae1) {
+			return null;
+		}
+	}
+
+	/**
+	 * Deletes the least recently written snapshots until the total size of
+	 * all snapshots does not exceed the maximum size anymore.
+	 */
+	private void evictSnapshots() {
+		if (totalSize <= maximumSize) {
+			return;
+		}
+		List<Entry<String, SnapshotFile>> snapshotFilesByTime = new ArrayList<Entry<String, SnapshotFile>>(snapshotFiles.entrySet());
+		Collections.sort(snapshotFilesByTime, new Comparator<Entry<String, SnapshotFile>>() {
+			@Override
+			public int compare(Entry<String, SnapshotFile> leftEntry, Entry<String, SnapshotFile> rightEntry) {
+				long leftTime = leftEntry.getValue().lastModified;
+				long rightTime = rightEntry.getValue().lastModified;
+				return (leftTime < rightTime) ? -1 : ((leftTime > rightTime) ? 1 : 0);
+			}
+		});
+		int evictedSnapshots = 0;
+		for (Entry<String, SnapshotFile> snapshotFile : snapshotFilesByTime) {
+			if (totalSize <= maximumSize) {
+				break;
+			}
+			remove(snapshotFile.getKey());
+			evictedSnapshots++;
+		}
+		logger.log(Level.FINE, String.format("Evicted %d Sone snapshots.", evictedSnapshots));
+	}
+
+	/**
+	 * Writes a snapshot into the given file. The XML is deflated into the file
+	 * first, then the header is filled in, and finally the checksum of the
+	 * header and the deflated XML is appended.
+	 *
+	 * @param file
+	 * 		The file to write the snapshot to
+	 * @param edition
+	 * 		The edition of the Sone
+	 * @param soneXml
+	 * 		The input stream delivering the XML of the Sone
+	 * @return The size of the written snapshot, or {@code -1} if the
+	 *         snapshot is too large to be stored
+	 * @throws IOException
+	 * 		if an I/O error occurs
+	 */
+	private long write(File file, long edition, InputStream soneXml) throws IOException {
+		long soneXmlLength = 0;
+		long deflatedSoneXmlLength;
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		FileOutputStream fileOutputStream = new FileOutputStream(file);
+		try {
+			fileOutputStream.write(new byte[HEADER_LENGTH]);
+			CountingOutputStream deflatedSoneXml = new CountingOutputStream(new BufferedOutputStream(fileOutputStream));
+			DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(deflatedSoneXml, deflater, 8192);
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = soneXml.read(buffer)) != -1) {
+				deflaterOutputStream.write(buffer, 0, read);
+				soneXmlLength += read;
+				if ((soneXmlLength > StreamingSoneParser.DEFAULT_MAXIMUM_BYTES) || (deflatedSoneXml.getCount() > maximumSize)) {
+					return -1;
+				}
+			}
+			deflaterOutputStream.finish();
+			deflaterOutputStream.flush();
+			deflatedSoneXmlLength = deflatedSoneXml.getCount();
+		} finally {
+			Closer.close(fileOutputStream);
+			deflater.end();
+		}
+		if (HEADER_LENGTH + deflatedSoneXmlLength + CHECKSUM_LENGTH > maximumSize) {
+			return -1;
+		}
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.writeInt(MAGIC);
+			randomAccessFile.writeLong(edition);
+			randomAccessFile.writeInt((int) soneXmlLength);
+			randomAccessFile.writeInt((int) deflatedSoneXmlLength);
+			randomAccessFile.seek(0);
+			CRC32 checksum = new CRC32();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = randomAccessFile.read(buffer)) != -1) {
+				checksum.update(buffer, 0, read);
+			}
+			randomAccessFile.writeInt((int) checksum.getValue());
+			return randomAccessFile.length();
+		} finally {
+			Closer.close(randomAccessFile);
+		}
+	}
+
+	private static Snapshot decode(byte[] encodedSnapshot) throws IOException {
+		if (encodedSnapshot.length < HEADER_LENGTH + CHECKSUM_LENGTH) {
+			throw new IOException("Snapshot is too short.");
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(encodedSnapshot);
+		CRC32 checksum = new CRC32();
+		checksum.update(encodedSnapshot, 0, encodedSnapshot.length - CHECKSUM_LENGTH);
+		if (buffer.getInt(encodedSnapshot.length - CHECKSUM_LENGTH) != (int) checksum.getValue()) {
+			throw new IOException("Checksum of snapshot does not match.");
+		}
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException("Snapshot has an unknown format.");
+		}
+		long edition = buffer.getLong();
+		int soneXmlLength = buffer.getInt();
+		int deflatedSoneXmlLength = buffer.getInt();
+		if ((soneXmlLength < 0) || (soneXmlLength > StreamingSoneParser.DEFAULT_MAXIMUM_BYTES) || (deflatedSoneXmlLength != (encodedSnapshot.length - HEADER_LENGTH - CHECKSUM_LENGTH))) {
+			throw new IOException("Snapshot has invalid lengths.");
+		}
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(encodedSnapshot, HEADER_LENGTH, deflatedSoneXmlLength);
+			byte[] soneXml = new byte[soneXmlLength];
+			int inflatedLength = 0;
+			while (!inflater.finished()) {
+				int length = inflater.inflate(soneXml, inflatedLength, soneXmlLength - inflatedLength);
+				if ((length == 0) && !inflater.finished()) {
+					throw new IOException("Snapshot is truncated or too long.");
+				}
+				inflatedLength += length;
+			}
+			if (inflatedLength != soneXmlLength) {
+				throw new IOException("Snapshot has an invalid length.");
+			}
+			return new Snapshot(edition, soneXml);
+		} catch (DataFormatException dfe1) {
+			throw new IOException("Snapshot can not be inflated.", dfe1);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * The stored edition and XML of a Sone.
+	 */
+	public static class Snapshot {
+
+		private final long edition;
+		private final byte[] soneXml;
+
+		public Snapshot(long edition, @Nonnull byte[] soneXml) {
+			this.edition = edition;
+			this.soneXml = soneXml;
+		}
+
+		public long getEdition() {
+			return edition;
+		}
+
+		@Nonnull
+		public byte[] getSoneXml() {
+			return soneXml;
+		}
+
+	}
+
+	/**
+	 * The size and the modification time of a snapshot file.
+	 */
+	private static class SnapshotFile {
+
+		private final long size;
+		private final long lastModified;
+
+		private SnapshotFile(long size, long lastModified) {
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+	}
+
+}
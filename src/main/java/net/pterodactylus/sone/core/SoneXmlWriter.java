@@ -0,0 +1,306 @@
+/*
+ * Sone - SoneXmlWriter.java - Copyright © 2010–2016 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Map;
+
+import net.pterodactylus.sone.data.Album;
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Profile.Field;
+
+/**
+ * Writes the {@code sone.xml} of a Sone insert without going through the
+ * template engine. It writes the same bytes the
+ * {@code /templates/insert/sone.xml} template renders: the literal text of the
+ * template, including the indentation and line breaks around its
+ * {@code <%foreach>}, {@code <%first>}, {@code <%last>}, and {@code <%if>}
+ * tags, with the same Sone properties that are handed to the template as
+ * {@code currentSone}, escaped the same way the template’s {@code xml} filter
+ * escapes them.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneXmlWriter {
+
+	private final Writer writer;
+
+	/**
+	 * Creates a new Sone XML writer.
+	 *
+	 * @param writer
+	 *            The writer to write the XML to
+	 */
+	public SoneXmlWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Writes the {@code sone.xml} for the given Sone properties. The writer
+	 * is flushed but not closed.
+	 *
+	 * @param soneProperties
+	 *            The properties of the Sone, as created by the Sone inserter
+	 * @param version
+	 *            The version of the Sone plugin
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@SuppressWarnings("unchecked")
+	public void write(Map<String, Object> soneProperties, String version) throws IOException {
+		writer.write("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<sone>\n\n\t<time>");
+		write(soneProperties.get("time"));
+		writer.write("</time>\n\t<protocol-version>0</protocol-version>\n\n\t<client>\n\t\t<name>Sone</name>\n\t\t<version>");
+		writeEscaped(version);
+		writer.write("</version>\n\t</client>\n\n");
+		writeProfile((Profile) soneProperties.get("profile"));
+		writer.write("\n");
+		writePosts((Collection<Post>) soneProperties.get("posts"));
+		writer.write("\n");
+		writeReplies((Collection<PostReply>) soneProperties.get("replies"));
+		writer.write("\n");
+		writeIds("post-likes", "post-like", (Collection<String>) soneProperties.get("likedPostIds"));
+		writer.write("\n");
+		writeIds("reply-likes", "reply-like", (Collection<String>) soneProperties.get("likedReplyIds"));
+		writer.write("\n\t");
+		writeAlbums((Collection<Album>) soneProperties.get("albums"));
+		writer.write("\n\n</sone>\n");
+		writer.flush();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void writeProfile(Profile profile) throws IOException {
+		writer.write("\t<profile>\n\t\t<first-name>");
+		if (profile != null) {
+			writeEscaped(profile.getFirstName());
+		}
+		writer.write("</first-name>\n\t\t<middle-name>");
+		if (profile != null) {
+			writeEscaped(profile.getMiddleName());
+		}
+		writer.write("</middle-name>\n\t\t<last-name>");
+		if (profile != null) {
+			writeEscaped(profile.getLastName());
+		}
+		writer.write("</last-name>\n\t\t<birth-day>");
+		if (profile != null) {
+			writeEscaped(profile.getBirthDay());
+		}
+		writer.write("</birth-day>\n\t\t<birth-month>");
+		if (profile != null) {
+			writeEscaped(profile.getBirthMonth());
+		}
+		writer.write("</birth-month>\n\t\t<birth-year>");
+		if (profile != null) {
+			writeEscaped(profile.getBirthYear());
+		}
+		writer.write("</birth-year>\n\t\t<avatar>");
+		if (profile != null) {
+			writeEscaped(profile.getAvatar());
+		}
+		writer.write("</avatar>\n\t\t<fields>\n\t\t\t");
+		if (profile != null) {
+			for (Field field : profile.getFields()) {
+				writer.write("\n\t\t\t<field>\n\t\t\t\t<field-name>");
+				writeEscaped(field.getName());
+				writer.write("</field-name>\n\t\t\t\t<field-value>");
+				writeEscaped(field.getValue());
+				writer.write("</field-value>\n\t\t\t</field>\n\t\t\t");
+			}
+		}
+		writer.write("\n\t\t</fields>\n\t</profile>\n");
+	}
+
+	private void writePosts(Collection<Post> posts) throws IOException {
+		writer.write("\t<posts>\n\t\t");
+		if (posts != null) {
+			for (Post post : posts) {
+				writer.write("\n\t\t<post>\n\t\t\t<id>");
+				writeEscaped(post.getId());
+				writer.write("</id>\n\t\t\t<recipient>");
+				writeEscaped(post.getRecipientId().orNull());
+				writer.write("</recipient>\n\t\t\t<time>");
+				write(post.getTime());
+				writer.write("</time>\n\t\t\t<text>");
+				writeEscaped(post.getText());
+				writer.write("</text>\n\t\t</post>\n\t\t");
+			}
+		}
+		writer.write("\n\t</posts>\n");
+	}
+
+	private void writeReplies(Collection<PostReply> replies) throws IOException {
+		writer.write("\t<replies>\n\t\t");
+		if (replies != null) {
+			for (PostReply reply : replies) {
+				writer.write("\n\t\t<reply>\n\t\t\t<id>");
+				write(reply.getId());
+				writer.write("</id>\n\t\t\t<post-id>");
+				writeEscaped(reply.getPostId());
+				writer.write("</post-id>\n\t\t\t<time>");
+				write(reply.getTime());
+				writer.write("</time>\n\t\t\t<text>");
+				writeEscaped(reply.getText());
+				writer.write("</text>\n\t\t</reply>\n\t\t");
+			}
+		}
+		writer.write("\n\t</replies>\n");
+	}
+
+	private void writeIds(String listElement, String idElement, Collection<String> ids) throws IOException {
+		writer.write("\t<" + listElement + ">\n\t\t");
+		if (ids != null) {
+			for (String id : ids) {
+				writer.write("\n\t\t<" + idElement + ">");
+				writeEscaped(id);
+				writer.write("</" + idElement + ">\n\t\t");
+			}
+		}
+		writer.write("\n\t</" + listElement + ">\n");
+	}
+
+	private void writeAlbums(Collection<Album> albums) throws IOException {
+		if (albums == null) {
+			return;
+		}
+		int albumIndex = 0;
+		for (Album album : albums) {
+			writer.write("\n\t");
+			if (albumIndex == 0) {
+				writer.write("\n\t<albums>\n\t\t");
+			}
+			writer.write("\n\t\t<album>\n\t\t\t<id>");
+			writeEscaped(album.getId());
+			writer.write("</id>\n\t\t\t");
+			if (!album.getParent().isRoot()) {
+				writer.write("\n\t\t\t<parent>");
+				writeEscaped(album.getParent().getId());
+				writer.write("</parent>\n\t\t\t");
+			}
+			writer.write("\n\t\t\t<title>");
+			writeEscaped(album.getTitle());
+			writer.write("</title>\n\t\t\t<description>");
+			writeEscaped(album.getDescription());
+			writer.write("</description>\n\t\t\t<!-- album-image is ignored, a random image is shown as album image. -->\n\t\t\t<album-image></album-image>\n\t\t\t");
+			writeImages(album.getImages());
+			writer.write("\n\t\t</album>\n\t\t");
+			if (++albumIndex == albums.size()) {
+				writer.write("\n\t</albums>\n\t");
+			}
+			writer.write("\n\t");
+		}
+	}
+
+	private void writeImages(Collection<Image> images) throws IOException {
+		int imageIndex = 0;
+		for (Image image : images) {
+			writer.write("\n\t\t\t");
+			if (imageIndex == 0) {
+				writer.write("\n\t\t\t<images>\n\t\t\t\t");
+			}
+			writer.write("\n\t\t\t\t<image>\n\t\t\t\t\t<id>");
+			writeEscaped(image.getId());
+			writer.write("</id>\n\t\t\t\t\t<creation-time>");
+			writeEscaped(image.getCreationTime());
+			writer.write("</creation-time>\n\t\t\t\t\t<key>");
+			writeEscaped(image.getKey());
+			writer.write("</key>\n\t\t\t\t\t<title>");
+			writeEscaped(image.getTitle());
+			writer.write("</title>\n\t\t\t\t\t<description>");
+			writeEscaped(image.getDescription());
+			writer.write("</description>\n\t\t\t\t\t<width>");
+			writeEscaped(image.getWidth());
+			writer.write("</width>\n\t\t\t\t\t<height>");
+			writeEscaped(image.getHeight());
+			writer.write("</height>\n\t\t\t\t</image>\n\t\t\t\t");
+			if (++imageIndex == images.size()) {
+				writer.write("\n\t\t\t</images>\n\t\t\t");
+			}
+			writer.write("\n\t\t\t");
+		}
+	}
+
+	/**
+	 * Writes the given value without escaping it, the way the template writes
+	 * properties that are not passed through the {@code xml} filter.
+	 * {@code null} is written as an empty string.
+	 *
+	 * @param value
+	 *            The value to write (may be {@code null})
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private void write(Object value) throws IOException {
+		if (value != null) {
+			writer.write(String.valueOf(value));
+		}
+	}
+
+	/**
+	 * Writes the given value, replacing the characters that have a special
+	 * meaning in XML with their entities. {@code null} is written as an empty
+	 * string.
+	 *
+	 * @param value
+	 *            The value to write (may be {@code null})
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private void writeEscaped(Object value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		String text = String.valueOf(value);
+		int start = 0;
+		for (int index = 0; index < text.length(); index++) {
+			String entity;
+			switch (text.charAt(index)) {
+				case '&':
+					entity = "&amp;";
+					break;
+				case '<':
+					entity = "&lt;";
+					break;
+				case '>':
+					entity = "&gt;";
+					break;
+				case '"':
+					entity = "&quot;";
+					break;
+				case '\'':
+					entity = "&apos;";
+					break;
+				default:
+					continue;
+			}
+			writer.write(text, start, index - start);
+			writer.write(entity);
+			start = index + 1;
+		}
+		writer.write(text, start, text.length() - start);
+	}
+
+}
@@ -0,0 +1,711 @@
+/*
+ * Sone - StreamingSoneParser.java - Copyright © 2010–2016 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+import static java.util.logging.Logger.getLogger;
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_DOCUMENT;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static net.pterodactylus.sone.utils.NumberParsers.parseInt;
+import static net.pterodactylus.sone.utils.NumberParsers.parseLong;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import net.pterodactylus.sone.data.Album;
+import net.pterodactylus.sone.data.Client;
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Profile.DuplicateField;
+import net.pterodactylus.sone.data.Profile.EmptyFieldName;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.database.PostBuilder;
+import net.pterodactylus.sone.database.PostReplyBuilder;
+import net.pterodactylus.sone.database.SoneBuilder;
+
+/**
+ * {@link SoneParser} that reads the XML of a Sone in a single pass, without
+ * building a DOM first. Posts and replies are created while the XML is read;
+ * only the few values that are needed to validate the Sone and the albums
+ * (which can only be created once the Sone is known to be valid) are kept
+ * until the end of the document.
+ * <p>
+ * To keep a malicious or broken Sone from using up all memory, the number of
+ * bytes read, the number of elements, and the length of every text are
+ * limited; parsing is stopped as soon as one of these limits is exceeded, or
+ * as soon as the XML is found to be malformed.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class StreamingSoneParser extends SoneParser {
+
+	private static final Logger logger = getLogger(StreamingSoneParser.class.getName());
+
+	/** The default maximum number of bytes of a Sone’s XML. */
+	public static final long DEFAULT_MAXIMUM_BYTES = 16 * 1024 * 1024;
+
+	/** The default maximum number of elements in a Sone’s XML. */
+	public static final int DEFAULT_MAXIMUM_ELEMENTS = 500000;
+
+	/** The default maximum length of a single text in a Sone’s XML. */
+	public static final int DEFAULT_MAXIMUM_TEXT_LENGTH = 1024 * 1024;
+
+	/** XML input factories are not guaranteed to be thread-safe. */
+	private static final ThreadLocal<XMLInputFactory> xmlInputFactories = new ThreadLocal<XMLInputFactory>() {
+
+		@Override
+		protected XMLInputFactory initialValue() {
+			XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+			xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+			xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+			xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+			return xmlInputFactory;
+		}
+
+	};
+
+	/** The single values of the sone element that are used. */
+	private static final Set<String> singleValueElements = new HashSet<String>(asList("protocol-version", "time"));
+
+	private final Core core;
+	private final long maximumBytes;
+	private final int maximumElements;
+	private final int maximumTextLength;
+
+	public StreamingSoneParser(Core core) {
+		this(core, DEFAULT_MAXIMUM_BYTES, DEFAULT_MAXIMUM_ELEMENTS, DEFAULT_MAXIMUM_TEXT_LENGTH);
+	}
+
+	public StreamingSoneParser(Core core, long maximumBytes, int maximumElements, int maximumTextLength) {
+		super(core);
+		this.core = core;
+		this.maximumBytes = maximumBytes;
+		this.maximumElements = maximumElements;
+		this.maximumTextLength = maximumTextLength;
+	}
+
+	@Override
+	public Sone parseSone(Sone originalSone, InputStream soneInputStream) throws SoneException {
+		SoneBuilder soneBuilder = core.soneBuilder().from(originalSone.getIdentity());
+		if (originalSone.isLocal()) {
+			soneBuilder = soneBuilder.local();
+		}
+		Sone sone = soneBuilder.build();
+
+		XMLStreamReader xmlStreamReader = null;
+		try {
+			xmlStreamReader = xmlInputFactories.get().createXMLStreamReader(new LimitedInputStream(soneInputStream, maximumBytes));
+			return new SoneReader(sone, xmlStreamReader).read();
+		} catch (XMLStreamException xse1) {
+			/* TODO - mark Sone as bad. */
+			logger.log(Level.WARNING, format("Could not parse XML for Sone %s!", originalSone), xse1);
+		} catch (InvalidSone is1) {
+			/* TODO - mark Sone as bad. */
+			logger.log(Level.WARNING, format("Downloaded Sone %s is invalid: %s", sone, is1.getMessage()), is1.getCause());
+		} finally {
+			close(xmlStreamReader);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the value with the given name. If there is no value with the
+	 * given name, the default value is returned; if the element with the
+	 * given name does not have a text, {@code null} is returned.
+	 *
+	 * @param values
+	 * 		The values to get the value from
+	 * @param name
+	 * 		The name of the value
+	 * @param defaultValue
+	 * 		The value to return if there is no value with the given name
+	 * @return The value with the given name
+	 */
+	private static String getValue(Map<String, String> values, String name, String defaultValue) {
+		return values.containsKey(name) ? values.get(name) : defaultValue;
+	}
+
+	private static void close(XMLStreamReader xmlStreamReader) {
+		if (xmlStreamReader == null) {
+			return;
+		}
+		try {
+			xmlStreamReader.close();
+		} catch (XMLStreamException xse1) {
+			/* ignore. */
+		}
+	}
+
+	/**
+	 * Reads a single Sone from an {@link XMLStreamReader}.
+	 */
+	private class SoneReader {
+
+		private final Sone sone;
+		private final XMLStreamReader xmlStreamReader;
+		private int elements;
+
+		/* single values of the sone element; the first occurrence wins. */
+		private final Map<String, String> soneValues = new HashMap<String, String>();
+		private Map<String, String> clientValues;
+		private Profile profile;
+		private String avatarId;
+		private Set<Post> posts;
+		private Set<PostReply> replies;
+		private Set<String> likedPostIds;
+		private Set<String> likedReplyIds;
+		private List<AlbumValues> albums;
+
+		private SoneReader(Sone sone, XMLStreamReader xmlStreamReader) {
+			this.sone = sone;
+			this.xmlStreamReader = xmlStreamReader;
+		}
+
+		public Sone read() throws XMLStreamException, InvalidSone {
+			if (nextTag() != START_ELEMENT) {
+				throw new InvalidSone("document is empty");
+			}
+			while (nextTag() == START_ELEMENT) {
+				readSoneElement(xmlStreamReader.getLocalName());
+			}
+			/* read the rest of the document so that malformed XML is detected. */
+			while (xmlStreamReader.hasNext()) {
+				xmlStreamReader.next();
+			}
+			return createSone();
+		}
+
+		private void readSoneElement(String name) throws XMLStreamException, InvalidSone {
+			if (name.equals("client") && (clientValues == null)) {
+				clientValues = readValues();
+			} else if (name.equals("profile") && (profile == null)) {
+				readProfile();
+			} else if (name.equals("posts") && (posts == null)) {
+				readPosts();
+			} else if (name.equals("replies") && (replies == null)) {
+				readReplies();
+			} else if (name.equals("post-likes") && (likedPostIds == null)) {
+				likedPostIds = readTexts("post-like");
+			} else if (name.equals("reply-likes") && (likedReplyIds == null)) {
+				likedReplyIds = readTexts("reply-like");
+			} else if (name.equals("albums") && (albums == null)) {
+				readAlbums();
+			} else if (!singleValueElements.contains(name) || soneValues.containsKey(name)) {
+				skipElement();
+			} else {
+				soneValues.put(name, readText());
+			}
+		}
+
+		private void readProfile() throws XMLStreamException, InvalidSone {
+			profile = new Profile(sone);
+			Map<String, String> profileValues = new HashMap<String, String>();
+			boolean fieldsRead = false;
+			while (nextTag() == START_ELEMENT) {
+				String name = xmlStreamReader.getLocalName();
+				if (name.equals("fields")) {
+					if (!fieldsRead) {
+						readProfileFields();
+						fieldsRead = true;
+					} else {
+						skipElement();
+					}
+				} else if (!profileValues.containsKey(name)) {
+					profileValues.put(name, readText());
+				} else {
+					skipElement();
+				}
+			}
+			profile.setFirstName(getValue(profileValues, "first-name", null));
+			profile.setMiddleName(getValue(profileValues, "middle-name", null));
+			profile.setLastName(getValue(profileValues, "last-name", null));
+			profile.setBirthDay(parseInt(getValue(profileValues, "birth-day", ""), null));
+			profile.setBirthMonth(parseInt(getValue(profileValues, "birth-month", ""), null));
+			profile.setBirthYear(parseInt(getValue(profileValues, "birth-year", ""), null));
+			/* avatar is processed after images are loaded. */
+			avatarId = getValue(profileValues, "avatar", null);
+		}
+
+		private void readProfileFields() throws XMLStreamException, InvalidSone {
+			while (nextTag() == START_ELEMENT) {
+				if (!xmlStreamReader.getLocalName().equals("field")) {
+					skipElement();
+					continue;
+				}
+				Map<String, String> fieldValues = readValues();
+				String fieldName = getValue(fieldValues, "field-name", null);
+				String fieldValue = getValue(fieldValues, "field-value", "");
+				if (fieldName == null) {
+					throw new InvalidSone(format("profile field with missing data! Name: %s, Value: %s", fieldName, fieldValue));
+				}
+				try {
+					profile.addField(fieldName.trim()).setValue(fieldValue);
+				} catch (EmptyFieldName efn1) {
+					throw new InvalidSone("empty field name!", efn1);
+				} catch (DuplicateField df1) {
+					throw new InvalidSone(format("duplicate field: %s", fieldName), df1);
+				}
+			}
+		}
+
+		private void readPosts() throws XMLStreamException, InvalidSone {
+			posts = new HashSet<Post>();
+			while (nextTag() == START_ELEMENT) {
+				if (!xmlStreamReader.getLocalName().equals("post")) {
+					skipElement();
+					continue;
+				}
+				Map<String, String> postValues = readValues();
+				String postId = getValue(postValues, "id", null);
+				String postRecipientId = getValue(postValues, "recipient", null);
+				String postTime = getValue(postValues, "time", null);
+				String postText = getValue(postValues, "text", null);
+				if ((postId == null) || (postTime == null) || (postText == null)) {
+					throw new InvalidSone(format("post with missing data! ID: %s, Time: %s, Text: %s", postId, postTime, postText));
+				}
+				try {
+					PostBuilder postBuilder = core.postBuilder();
+					/* TODO - parse time correctly. */
+					postBuilder.withId(postId).from(sone.getId()).withTime(Long.parseLong(postTime)).withText(postText);
+					if ((postRecipientId != null) && (postRecipientId.length() == 43)) {
+						postBuilder.to(postRecipientId);
+					}
+					posts.add(postBuilder.build());
+				} catch (NumberFormatException nfe1) {
+					throw new InvalidSone(format("post with invalid time: %s", postTime));
+				}
+			}
+		}
+
+		private void readReplies() throws XMLStreamException, InvalidSone {
+			replies = new HashSet<PostReply>();
+			while (nextTag() == START_ELEMENT) {
+				if (!xmlStreamReader.getLocalName().equals("reply")) {
+					skipElement();
+					continue;
+				}
+				Map<String, String> replyValues = readValues();
+				String replyId = getValue(replyValues, "id", null);
+				String replyPostId = getValue(replyValues, "post-id", null);
+				String replyTime = getValue(replyValues, "time", null);
+				String replyText = getValue(replyValues, "text", null);
+				if ((replyId == null) || (replyPostId == null) || (replyTime == null) || (replyText == null)) {
+					throw new InvalidSone(format("reply with missing data! ID: %s, Post: %s, Time: %s, Text: %s", replyId, replyPostId, replyTime, replyText));
+				}
+				try {
+					PostReplyBuilder postReplyBuilder = core.postReplyBuilder();
+					/* TODO - parse time correctly. */
+					postReplyBuilder.withId(replyId).from(sone.getId()).to(replyPostId).withTime(Long.parseLong(replyTime)).withText(replyText);
+					replies.add(postReplyBuilder.build());
+				} catch (NumberFormatException nfe1) {
+					throw new InvalidSone(format("reply with invalid time: %s", replyTime));
+				}
+			}
+		}
+
+		private Set<String> readTexts(String elementName) throws XMLStreamException, InvalidSone {
+			Set<String> texts = new HashSet<String>();
+			while (nextTag() == START_ELEMENT) {
+				if (xmlStreamReader.getLocalName().equals(elementName)) {
+					texts.add(readText());
+				} else {
+					skipElement();
+				}
+			}
+			return texts;
+		}
+
+		private void readAlbums() throws XMLStreamException, InvalidSone {
+			albums = new ArrayList<AlbumValues>();
+			while (nextTag() == START_ELEMENT) {
+				if (!xmlStreamReader.getLocalName().equals("album")) {
+					skipElement();
+					continue;
+				}
+				Map<String, String> albumValues = new HashMap<String, String>();
+				List<Map<String, String>> imageValues = null;
+				while (nextTag() == START_ELEMENT) {
+					String name = xmlStreamReader.getLocalName();
+					if (name.equals("images")) {
+						if (imageValues == null) {
+							imageValues = readImages();
+						} else {
+							skipElement();
+						}
+					} else if (!albumValues.containsKey(name)) {
+						albumValues.put(name, readText());
+					} else {
+						skipElement();
+					}
+				}
+				albums.add(new AlbumValues(albumValues, imageValues));
+			}
+		}
+
+		private List<Map<String, String>> readImages() throws XMLStreamException, InvalidSone {
+			List<Map<String, String>> images = new ArrayList<Map<String, String>>();
+			while (nextTag() == START_ELEMENT) {
+				if (xmlStreamReader.getLocalName().equals("image")) {
+					images.add(readValues());
+				} else {
+					skipElement();
+				}
+			}
+			return images;
+		}
+
+		private Sone createSone() throws InvalidSone {
+			Integer protocolVersion = null;
+			String soneProtocolVersion = getValue(soneValues, "protocol-version", null);
+			if (soneProtocolVersion != null) {
+				protocolVersion = parseInt(soneProtocolVersion, null);
+			}
+			if (protocolVersion == null) {
+				logger.log(Level.INFO, "No protocol version found, assuming 0.");
+				protocolVersion = 0;
+			}
+			if (protocolVersion < 0) {
+				throw new InvalidSone(format("invalid protocol version: %d!", protocolVersion));
+			}
+			if (protocolVersion > MAX_PROTOCOL_VERSION) {
+				throw new InvalidSone(format("unknown protocol version: %d!", protocolVersion));
+			}
+
+			String soneTime = getValue(soneValues, "time", null);
+			if (soneTime == null) {
+				throw new InvalidSone("time was null!");
+			}
+			try {
+				sone.setTime(Long.parseLong(soneTime));
+			} catch (NumberFormatException nfe1) {
+				throw new InvalidSone(format("invalid time: %s", soneTime));
+			}
+
+			if (clientValues != null) {
+				String clientName = getValue(clientValues, "name", null);
+				String clientVersion = getValue(clientValues, "version", null);
+				if ((clientName == null) || (clientVersion == null)) {
+					throw new InvalidSone("client XML is missing name or version!");
+				}
+				sone.setClient(new Client(clientName, clientVersion));
+			}
+
+			if (profile == null) {
+				throw new InvalidSone("no profile!");
+			}
+			if (posts == null) {
+				/* TODO - mark Sone as bad. */
+				logger.log(Level.WARNING, format("Downloaded Sone %s has no posts!", sone));
+				posts = new HashSet<Post>();
+			}
+			if (replies == null) {
+				/* TODO - mark Sone as bad. */
+				logger.log(Level.WARNING, format("Downloaded Sone %s has no replies!", sone));
+				replies = new HashSet<PostReply>();
+			}
+			if (likedPostIds == null) {
+				/* TODO - mark Sone as bad. */
+				logger.log(Level.WARNING, format("Downloaded Sone %s has no post likes!", sone));
+				likedPostIds = new HashSet<String>();
+			}
+			if (likedReplyIds == null) {
+				/* TODO - mark Sone as bad. */
+				logger.log(Level.WARNING, format("Downloaded Sone %s has no reply likes!", sone));
+				likedReplyIds = new HashSet<String>();
+			}
+
+			Map<String, Image> allImages = new HashMap<String, Image>();
+			List<Album> topLevelAlbums = new ArrayList<Album>();
+			if (albums != null) {
+				for (AlbumValues albumValues : albums) {
+					createAlbum(albumValues, topLevelAlbums, allImages);
+				}
+			}
+
+			/* process avatar. */
+			if (avatarId != null) {
+				profile.setAvatar(allImages.get(avatarId));
+			}
+
+			/* okay, apparently everything was parsed correctly. Now import. */
+			sone.setProfile(profile);
+			sone.setPosts(posts);
+			sone.setReplies(replies);
+			sone.setLikePostIds(likedPostIds);
+			sone.setLikeReplyIds(likedReplyIds);
+			for (Album album : topLevelAlbums) {
+				sone.getRootAlbum().addAlbum(album);
+			}
+			return sone;
+		}
+
+		private void createAlbum(AlbumValues albumValues, List<Album> topLevelAlbums, Map<String, Image> allImages) throws InvalidSone {
+			String id = getValue(albumValues.values, "id", null);
+			String parentId = getValue(albumValues.values, "parent", null);
+			String title = getValue(albumValues.values, "title", null);
+			String description = getValue(albumValues.values, "description", "");
+			if ((id == null) || (title == null)) {
+				throw new InvalidSone("invalid album!");
+			}
+			Album parent = null;
+			if (parentId != null) {
+				parent = core.getAlbum(parentId);
+				if (parent == null) {
+					throw new InvalidSone("album with invalid parent!");
+				}
+			}
+			Album album = core.albumBuilder()
+					.withId(id)
+					.by(sone)
+					.build()
+					.modify()
+					.setTitle(title)
+					.setDescription(description)
+					.update();
+			if (parent != null) {
+				parent.addAlbum(album);
+			} else {
+				topLevelAlbums.add(album);
+			}
+			if (albumValues.images == null) {
+				return;
+			}
+			for (Map<String, String> imageValues : albumValues.images) {
+				String imageId = getValue(imageValues, "id", null);
+				String imageCreationTimeString = getValue(imageValues, "creation-time", null);
+				String imageKey = getValue(imageValues, "key", null);
+				String imageTitle = getValue(imageValues, "title", null);
+				String imageDescription = getValue(imageValues, "description", "");
+				String imageWidthString = getValue(imageValues, "width", null);
+				String imageHeightString = getValue(imageValues, "height", null);
+				if ((imageId == null) || (imageCreationTimeString == null) || (imageKey == null) || (imageTitle == null) || (imageWidthString == null) || (imageHeightString == null)) {
+					throw new InvalidSone("invalid images!");
+				}
+				long creationTime = parseLong(imageCreationTimeString, 0L);
+				int imageWidth = parseInt(imageWidthString, 0);
+				int imageHeight = parseInt(imageHeightString, 0);
+				if ((imageWidth < 1) || (imageHeight < 1)) {
+					throw new InvalidSone(format("image %s with invalid dimensions (%s, %s)!", imageId, imageWidthString, imageHeightString));
+				}
+				Image image = core.imageBuilder().withId(imageId).build().modify().setSone(sone).setKey(imageKey).setCreationTime(creationTime).update();
+				image = image.modify().setTitle(imageTitle).setDescription(imageDescription).update();
+				image = image.modify().setWidth(imageWidth).setHeight(imageHeight).update();
+				album.addImage(image);
+				allImages.put(imageId, image);
+			}
+		}
+
+		/**
+		 * Reads the single values of the children of the current element. If
+		 * an element contains more than one child element with the same name,
+		 * only the first one is used.
+		 *
+		 * @return The values of the child elements, by element name
+		 */
+		private Map<String, String> readValues() throws XMLStreamException, InvalidSone {
+			Map<String, String> values = new HashMap<String, String>();
+			while (nextTag() == START_ELEMENT) {
+				String name = xmlStreamReader.getLocalName();
+				if (values.containsKey(name)) {
+					skipElement();
+				} else {
+					values.put(name, readText());
+				}
+			}
+			return values;
+		}
+
+		/**
+		 * Reads the text of the current element. Elements that do not contain
+		 * text, or that contain other elements, do not have a text.
+		 *
+		 * @return The text of the current element, or {@code null}
+		 */
+		private String readText() throws XMLStreamException, InvalidSone {
+			StringBuilder text = null;
+			boolean containsElements = false;
+			while (true) {
+				int event = xmlStreamReader.next();
+				if ((event == CHARACTERS) || (event == CDATA) || (event == SPACE)) {
+					if (text == null) {
+						text = new StringBuilder();
+					}
+					text.append(xmlStreamReader.getTextCharacters(), xmlStreamReader.getTextStart(), xmlStreamReader.getTextLength());
+					if (text.length() > maximumTextLength) {
+						throw new InvalidSone(format("text is longer than %d characters!", maximumTextLength));
+					}
+				} else if (event == START_ELEMENT) {
+					countElement();
+					containsElements = true;
+					skipElement();
+				} else if (event == END_ELEMENT) {
+					return (containsElements || (text == null)) ? null : text.toString();
+				}
+			}
+		}
+
+		/**
+		 * Skips the current element and all its children.
+		 */
+		private void skipElement() throws XMLStreamException, InvalidSone {
+			int depth = 1;
+			while (depth > 0) {
+				int event = xmlStreamReader.next();
+				if (event == START_ELEMENT) {
+					countElement();
+					depth++;
+				} else if (event == END_ELEMENT) {
+					depth--;
+				}
+			}
+		}
+
+		/**
+		 * Moves to the next start or end element, ignoring all text, comments,
+		 * and processing instructions in between.
+		 *
+		 * @return The type of the event the reader is at
+		 */
+		private int nextTag() throws XMLStreamException, InvalidSone {
+			while (true) {
+				int event = xmlStreamReader.next();
+				if (event == START_ELEMENT) {
+					countElement();
+					return event;
+				}
+				if ((event == END_ELEMENT) || (event == END_DOCUMENT)) {
+					return event;
+				}
+			}
+		}
+
+		private void countElement() throws InvalidSone {
+			if (++elements > maximumElements) {
+				throw new InvalidSone(format("contains more than %d elements!", maximumElements));
+			}
+		}
+
+	}
+
+	/**
+	 * Container for the values of an album and its images, which are only
+	 * turned into albums and images once the complete Sone has been read.
+	 */
+	private static class AlbumValues {
+
+		private final Map<String, String> values;
+		private final List<Map<String, String>> images;
+
+		private AlbumValues(Map<String, String> values, List<Map<String, String>> images) {
+			this.values = values;
+			this.images = images;
+		}
+
+	}
+
+	/**
+	 * Exception that signals that a Sone can not be parsed, either because its
+	 * XML is invalid or because it exceeds a limit.
+	 */
+	private static class InvalidSone extends Exception {
+
+		private InvalidSone(String message) {
+			super(message);
+		}
+
+		private InvalidSone(String message, Throwable cause) {
+			super(message, cause);
+		}
+
+	}
+
+	/**
+	 * {@link FilterInputStream} that throws an {@link IOException} once more
+	 * than a given number of bytes have been read.
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+
+		private final long limit;
+		private long count;
+
+		private LimitedInputStream(InputStream inputStream, long limit) {
+			super(inputStream);
+			this.limit = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int result = super.read();
+			if (result != -1) {
+				count(1);
+			}
+			return result;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int result = super.read(buffer, offset, length);
+			if (result > 0) {
+				count(result);
+			}
+			return result;
+		}
+
+		@Override
+		public long skip(long bytes) throws IOException {
+			long result = super.skip(bytes);
+			count(result);
+			return result;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		private void count(long bytes) throws IOException {
+			count += bytes;
+			if (count > limit) {
+				throw new IOException(format("Sone XML is larger than %d bytes!", limit));
+			}
+		}
+
+	}
+
+}
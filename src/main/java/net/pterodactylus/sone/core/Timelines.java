@@ -0,0 +1,204 @@
+/*
+ * Sone - Timelines.java - Copyright © 2010–2016 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static net.pterodactylus.sone.data.Post.NEWEST_FIRST;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import javax.annotation.Nonnull;
+
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.database.PostProvider;
+import net.pterodactylus.sone.database.SoneProvider;
+
+/**
+ * Maintains the timelines of local Sones. The timeline of a local Sone
+ * consists of the posts of the local Sone, the posts of all Sones it follows,
+ * and all posts that are directed at it, ordered newest first.
+ * <p>
+ * A timeline is built from the current state the first time it is requested
+ * and is updated incrementally afterwards, so requesting it does not have to
+ * collect and sort the posts of all followed Sones again. The returned
+ * timeline is a view that reflects later changes and can be iterated while
+ * the timeline is updated, so callers only iterate as many posts as they
+ * need. Visibility (trust and posts from the future) is not considered here.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class Timelines {
+
+	/** Orders posts newest first, using the ID for posts with the same time. */
+	private static final Comparator<Post> TIMELINE_ORDER = new Comparator<Post>() {
+
+		@Override
+		public int compare(Post leftPost, Post rightPost) {
+			int timeDifference = NEWEST_FIRST.compare(leftPost, rightPost);
+			return (timeDifference != 0) ? timeDifference : leftPost.getId().compareTo(rightPost.getId());
+		}
+
+	};
+
+	private final SoneProvider soneProvider;
+	private final PostProvider postProvider;
+
+	/** The timelines by the ID of the local Sone. */
+	/* synchronize on this. */
+	private final Map<String, SortedSet<Post>> timelines = new HashMap<String, SortedSet<Post>>();
+
+	public Timelines(SoneProvider soneProvider, PostProvider postProvider) {
+		this.soneProvider = soneProvider;
+		this.postProvider = postProvider;
+	}
+
+	/**
+	 * Returns the timeline of the given local Sone.
+	 *
+	 * @param localSone
+	 * 		The local Sone to get the timeline for
+	 * @return An unmodifiable view of all posts of the timeline, newest first
+	 */
+	@Nonnull
+	public synchronized Collection<Post> getTimeline(@Nonnull Sone localSone) {
+		SortedSet<Post> timeline = timelines.get(localSone.getId());
+		if (timeline == null) {
+			timeline = createTimeline(localSone);
+			timelines.put(localSone.getId(), timeline);
+		}
+		return Collections.unmodifiableSortedSet(timeline);
+	}
+
+	/**
+	 * Adds the given post to all timelines it belongs to.
+	 *
+	 * @param post
+	 * 		The post that was added
+	 */
+	public synchronized void postAdded(@Nonnull Post post) {
+		Sone postSone = post.getSone();
+		if (postSone == null) {
+			return;
+		}
+		for (Entry<String, SortedSet<Post>> timeline : timelines.entrySet()) {
+			Sone localSone = soneProvider.getSone(timeline.getKey());
+			if ((localSone != null) && belongsToTimeline(localSone, postSone.getId(), post)) {
+				timeline.getValue().add(post);
+			}
+		}
+	}
+
+	/**
+	 * Removes the given post from all timelines.
+	 *
+	 * @param post
+	 * 		The post that was removed
+	 */
+	public synchronized void postRemoved(@Nonnull Post post) {
+		for (SortedSet<Post> timeline : timelines.values()) {
+			timeline.remove(post);
+		}
+	}
+
+	/**
+	 * Removes all posts of the given Sone from all timelines. If the given Sone
+	 * is a local Sone, its timeline is removed as well.
+	 *
+	 * @param sone
+	 * 		The Sone that was removed
+	 */
+	public synchronized void soneRemoved(@Nonnull Sone sone) {
+		timelines.remove(sone.getId());
+		for (Post post : sone.getPosts()) {
+			postRemoved(post);
+		}
+	}
+
+	/**
+	 * Adds the posts of the followed Sone to the timeline of the given local
+	 * Sone.
+	 *
+	 * @param localSone
+	 * 		The local Sone that followed another Sone
+	 * @param friendSoneId
+	 * 		The ID of the followed Sone
+	 */
+	public synchronized void friendAdded(@Nonnull Sone localSone, @Nonnull String friendSoneId) {
+		SortedSet<Post> timeline = timelines.get(localSone.getId());
+		Sone friendSone = soneProvider.getSone(friendSoneId);
+		if ((timeline == null) || (friendSone == null)) {
+			return;
+		}
+		timeline.addAll(friendSone.getPosts());
+	}
+
+	/**
+	 * Removes the posts of the unfollowed Sone from the timeline of the given
+	 * local Sone, unless they are directed at the local Sone.
+	 *
+	 * @param localSone
+	 * 		The local Sone that unfollowed another Sone
+	 * @param friendSoneId
+	 * 		The ID of the unfollowed Sone
+	 */
+	public synchronized void friendRemoved(@Nonnull Sone localSone, @Nonnull String friendSoneId) {
+		SortedSet<Post> timeline = timelines.get(localSone.getId());
+		if (timeline == null) {
+			return;
+		}
+		for (Iterator<Post> posts = timeline.iterator(); posts.hasNext(); ) {
+			Post post = posts.next();
+			Sone postSone = post.getSone();
+			if ((postSone != null) && !belongsToTimeline(localSone, postSone.getId(), post)) {
+				posts.remove();
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private SortedSet<Post> createTimeline(Sone localSone) {
+		SortedSet<Post> timeline = new ConcurrentSkipListSet<Post>(TIMELINE_ORDER);
+		timeline.addAll(localSone.getPosts());
+		for (String friendSoneId : localSone.getFriends()) {
+			Sone friendSone = soneProvider.getSone(friendSoneId);
+			if (friendSone != null) {
+				timeline.addAll(friendSone.getPosts());
+			}
+		}
+		timeline.addAll(postProvider.getDirectedPosts(localSone.getId()));
+		return timeline;
+	}
+
+	private static boolean belongsToTimeline(Sone localSone, String postSoneId, Post post) {
+		return localSone.getId().equals(postSoneId)
+				|| localSone.hasFriend(postSoneId)
+				|| localSone.getId().equals(post.getRecipientId().orNull());
+	}
+
+}
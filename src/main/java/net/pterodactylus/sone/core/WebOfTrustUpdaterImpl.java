@@ -31,9 +31,11 @@ import net.pterodactylus.sone.freenet.wot.OwnIdentity;
 import net.pterodactylus.sone.freenet.wot.Trust;
 import net.pterodactylus.sone.freenet.wot.WebOfTrustConnector;
 import net.pterodactylus.sone.freenet.wot.WebOfTrustException;
+import net.pterodactylus.sone.freenet.wot.event.TrustUpdatedEvent;
 import net.pterodactylus.util.service.AbstractService;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.eventbus.EventBus;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -56,6 +58,9 @@ public class WebOfTrustUpdaterImpl extends AbstractService implements WebOfTrust
 	/** The web of trust connector. */
 	private final WebOfTrustConnector webOfTrustConnector;
 
+	/** The event bus. */
+	private final EventBus eventBus;
+
 	/** The queue for jobs. */
 	private final BlockingQueue<WebOfTrustUpdateJob> updateJobs = new LinkedBlockingQueue<WebOfTrustUpdateJob>();
 
@@ -64,11 +69,14 @@ public class WebOfTrustUpdaterImpl extends AbstractService implements WebOfTrust
 	 *
 	 * @param webOfTrustConnector
 	 * 		The web of trust connector
+	 * @param eventBus
+	 * 		The event bus
 	 */
 	@Inject
-	public WebOfTrustUpdaterImpl(WebOfTrustConnector webOfTrustConnector) {
+	public WebOfTrustUpdaterImpl(WebOfTrustConnector webOfTrustConnector, EventBus eventBus) {
 		super("Trust Updater");
 		this.webOfTrustConnector = webOfTrustConnector;
+		this.eventBus = eventBus;
 	}
 
 	//
@@ -352,6 +360,7 @@ public class WebOfTrustUpdaterImpl extends AbstractService implements WebOfTrust
 					webOfTrustConnector.removeTrust(truster, trustee);
 					trustee.removeTrust(truster);
 				}
+				eventBus.post(new TrustUpdatedEvent(truster, trustee));
 				finish(true);
 			} catch (WebOfTrustException wote1) {
 				logger.log(Level.WARNING, "Could not set Trust value for " + truster + " -> " + trustee + " to " + score + " (" + comment + ")!", wote1);
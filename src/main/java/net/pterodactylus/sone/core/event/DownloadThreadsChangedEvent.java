@@ -0,0 +1,23 @@
+package net.pterodactylus.sone.core.event;
+
+import com.google.common.eventbus.EventBus;
+
+/**
+ * Notifies interested {@link EventBus} clients that the number of threads
+ * used to download Sones has changed.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class DownloadThreadsChangedEvent {
+
+	private final int downloadThreads;
+
+	public DownloadThreadsChangedEvent(int downloadThreads) {
+		this.downloadThreads = downloadThreads;
+	}
+
+	public int getDownloadThreads() {
+		return downloadThreads;
+	}
+
+}
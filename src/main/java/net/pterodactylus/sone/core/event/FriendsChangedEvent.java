@@ -0,0 +1,59 @@
+/*
+ * Sone - FriendsChangedEvent.java - Copyright © 2013–2016 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core.event;
+
+import net.pterodactylus.sone.data.Sone;
+
+/**
+ * Event that signals that a {@link Sone#isLocal() local Sone} started or
+ * stopped following another Sone.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class FriendsChangedEvent extends SoneEvent {
+
+	/** The ID of the Sone that was followed or unfollowed. */
+	private final String friendSoneId;
+
+	/**
+	 * Creates a new “friends changed” event.
+	 *
+	 * @param sone
+	 *            The local Sone whose friends changed
+	 * @param friendSoneId
+	 *            The ID of the Sone that was followed or unfollowed
+	 */
+	public FriendsChangedEvent(Sone sone, String friendSoneId) {
+		super(sone);
+		this.friendSoneId = friendSoneId;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the ID of the Sone that was followed or unfollowed.
+	 *
+	 * @return The ID of the friend Sone
+	 */
+	public String friendSoneId() {
+		return friendSoneId;
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Sone - SoneUpdatedBatchEvent.java - Copyright © 2016 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Sone;
+
+/**
+ * Event that contains all new and removed posts and replies that were found
+ * in one update of a {@link Sone}. It replaces the {@link NewPostFoundEvent}s,
+ * {@link PostRemovedEvent}s, {@link NewPostReplyFoundEvent}s, and {@link
+ * PostReplyRemovedEvent}s for the update.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneUpdatedBatchEvent extends SoneEvent {
+
+	private final List<Post> newPosts;
+	private final List<Post> removedPosts;
+	private final List<PostReply> newPostReplies;
+	private final List<PostReply> removedPostReplies;
+
+	/**
+	 * Creates a new “Sone updated” batch event.
+	 *
+	 * @param sone
+	 *            The Sone that was updated
+	 * @param newPosts
+	 *            The new posts of the Sone
+	 * @param removedPosts
+	 *            The removed posts of the Sone
+	 * @param newPostReplies
+	 *            The new replies of the Sone
+	 * @param removedPostReplies
+	 *            The removed replies of the Sone
+	 */
+	public SoneUpdatedBatchEvent(Sone sone, List<Post> newPosts, List<Post> removedPosts, List<PostReply> newPostReplies, List<PostReply> removedPostReplies) {
+		super(sone);
+		this.newPosts = Collections.unmodifiableList(new ArrayList<Post>(newPosts));
+		this.removedPosts = Collections.unmodifiableList(new ArrayList<Post>(removedPosts));
+		this.newPostReplies = Collections.unmodifiableList(new ArrayList<PostReply>(newPostReplies));
+		this.removedPostReplies = Collections.unmodifiableList(new ArrayList<PostReply>(removedPostReplies));
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	public List<Post> newPosts() {
+		return newPosts;
+	}
+
+	public List<Post> removedPosts() {
+		return removedPosts;
+	}
+
+	public List<PostReply> newPostReplies() {
+		return newPostReplies;
+	}
+
+	public List<PostReply> removedPostReplies() {
+		return removedPostReplies;
+	}
+
+	public boolean isEmpty() {
+		return newPosts.isEmpty() && removedPosts.isEmpty() && newPostReplies.isEmpty() && removedPostReplies.isEmpty();
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Merges this event with an event of a later update of the same Sone. An
+	 * element that is new in one event and removed in the other is only
+	 * contained in the removed elements of the merged event.
+	 *
+	 * @param laterEvent
+	 *            The event of the later update
+	 * @return An event containing the changes of both events
+	 */
+	public SoneUpdatedBatchEvent merge(SoneUpdatedBatchEvent laterEvent) {
+		return new SoneUpdatedBatchEvent(laterEvent.sone(),
+				merge(newPosts, laterEvent.removedPosts, laterEvent.newPosts),
+				merge(removedPosts, laterEvent.newPosts, laterEvent.removedPosts),
+				merge(newPostReplies, laterEvent.removedPostReplies, laterEvent.newPostReplies),
+				merge(removedPostReplies, laterEvent.newPostReplies, laterEvent.removedPostReplies));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static <T> List<T> merge(List<T> elements, List<T> laterExcludedElements, List<T> laterElements) {
+		List<T> mergedElements = new ArrayList<T>(elements);
+		mergedElements.removeAll(new HashSet<T>(laterExcludedElements));
+		mergedElements.addAll(laterElements);
+		return mergedElements;
+	}
+
+}
@@ -112,6 +112,7 @@ public class AlbumImpl implements Album {
 		album.setParent(this);
 		if (!albums.contains(album)) {
 			albums.add(album);
+			modified();
 		}
 	}
 
@@ -122,6 +123,7 @@ public class AlbumImpl implements Album {
 		checkArgument(equals(album.getParent()), "album must belong to this album");
 		albums.remove(album);
 		album.removeParent();
+		modified();
 	}
 
 	@Override
@@ -135,6 +137,7 @@ public class AlbumImpl implements Album {
 		}
 		albums.remove(oldIndex);
 		albums.add(oldIndex - 1, album);
+		modified();
 		return albums.get(oldIndex);
 	}
 
@@ -149,6 +152,7 @@ public class AlbumImpl implements Album {
 		}
 		albums.remove(oldIndex);
 		albums.add(oldIndex + 1, album);
+		modified();
 		return albums.get(oldIndex);
 	}
 
@@ -176,6 +180,7 @@ public class AlbumImpl implements Album {
 		if (!imageIds.contains(image.getId())) {
 			imageIds.add(image.getId());
 			images.put(image.getId(), image);
+			modified();
 		}
 	}
 
@@ -186,6 +191,7 @@ public class AlbumImpl implements Album {
 		checkArgument(image.getSone().equals(sone), "image must belong to the same Sone as this album");
 		imageIds.remove(image.getId());
 		images.remove(image.getId());
+		modified();
 	}
 
 	@Override
@@ -200,6 +206,7 @@ public class AlbumImpl implements Album {
 		}
 		imageIds.remove(image.getId());
 		imageIds.add(oldIndex - 1, image.getId());
+		modified();
 		return images.get(imageIds.get(oldIndex));
 	}
 
@@ -215,6 +222,7 @@ public class AlbumImpl implements Album {
 		}
 		imageIds.remove(image.getId());
 		imageIds.add(oldIndex + 1, image.getId());
+		modified();
 		return images.get(imageIds.get(oldIndex));
 	}
 
@@ -286,11 +294,25 @@ public class AlbumImpl implements Album {
 				if (description.isPresent()) {
 					AlbumImpl.this.description = description.get();
 				}
+				modified();
 				return AlbumImpl.this;
 			}
 		};
 	}
 
+	/**
+	 * Notifies the Sone this album belongs to that this album, one of its
+	 * images, or one of its nested albums has been modified. The
+	 * notification is passed up to the root album which notifies its Sone.
+	 */
+	void modified() {
+		if (parent instanceof AlbumImpl) {
+			((AlbumImpl) parent).modified();
+		} else if ((parent == null) && (sone instanceof SoneImpl)) {
+			((SoneImpl) sone).albumsModified();
+		}
+	}
+
 	//
 	// FINGERPRINTABLE METHODS
 	//
@@ -235,6 +235,9 @@ public class ImageImpl implements Image {
 				if (height.isPresent()) {
 					ImageImpl.this.height = height.get();
 				}
+				if (album instanceof AlbumImpl) {
+					((AlbumImpl) album).modified();
+				}
 
 				return ImageImpl.this;
 			}
@@ -28,6 +28,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -112,6 +113,12 @@ public class SoneImpl implements Sone {
 	/** Sone-specific options. */
 	private SoneOptions options = new DefaultSoneOptions();
 
+	/** Counts the modifications of everything the fingerprint is made of. */
+	private final AtomicLong modifications = new AtomicLong();
+
+	/** The last calculated fingerprint. */
+	private volatile CachedFingerprint cachedFingerprint;
+
 	/**
 	 * Creates a new Sone.
 	 *
@@ -305,6 +312,7 @@ public class SoneImpl implements Sone {
 	 */
 	public void setProfile(@Nonnull Profile profile) {
 		this.profile = new Profile(profile);
+		modifications.incrementAndGet();
 	}
 
 	/**
@@ -402,6 +410,7 @@ public class SoneImpl implements Sone {
 			this.posts.clear();
 			this.posts.addAll(posts);
 		}
+		modifications.incrementAndGet();
 		return this;
 	}
 
@@ -415,6 +424,7 @@ public class SoneImpl implements Sone {
 	public void addPost(@Nonnull Post post) {
 		if (post.getSone().equals(this) && posts.add(post)) {
 			logger.log(Level.FINEST, String.format("Adding %s to “%s”.", post, getName()));
+			modifications.incrementAndGet();
 		}
 	}
 
@@ -425,8 +435,8 @@ public class SoneImpl implements Sone {
 	 * 		The post to remove
 	 */
 	public void removePost(@Nonnull Post post) {
-		if (post.getSone().equals(this)) {
-			posts.remove(post);
+		if (post.getSone().equals(this) && posts.remove(post)) {
+			modifications.incrementAndGet();
 		}
 	}
 
@@ -451,6 +461,7 @@ public class SoneImpl implements Sone {
 	public Sone setReplies(@Nonnull Collection<PostReply> replies) {
 		this.replies.clear();
 		this.replies.addAll(replies);
+		modifications.incrementAndGet();
 		return this;
 	}
 
@@ -462,8 +473,8 @@ public class SoneImpl implements Sone {
 	 * 		The reply to add
 	 */
 	public void addReply(@Nonnull PostReply reply) {
-		if (reply.getSone().equals(this)) {
-			replies.add(reply);
+		if (reply.getSone().equals(this) && replies.add(reply)) {
+			modifications.incrementAndGet();
 		}
 	}
 
@@ -474,8 +485,8 @@ public class SoneImpl implements Sone {
 	 * 		The reply to remove
 	 */
 	public void removeReply(@Nonnull PostReply reply) {
-		if (reply.getSone().equals(this)) {
-			replies.remove(reply);
+		if (reply.getSone().equals(this) && replies.remove(reply)) {
+			modifications.incrementAndGet();
 		}
 	}
 
@@ -498,8 +509,18 @@ public class SoneImpl implements Sone {
 	 */
 	@Nonnull
 	public Sone setLikePostIds(@Nonnull Set<String> likedPostIds) {
-		this.likedPostIds.clear();
-		this.likedPostIds.addAll(likedPostIds);
+		for (String postId : this.likedPostIds) {
+			if (!likedPostIds.contains(postId)) {
+				this.likedPostIds.remove(postId);
+				database.unlikePost(this, postId);
+			}
+		}
+		for (String postId : likedPostIds) {
+			if (this.likedPostIds.add(postId)) {
+				database.likePost(this, postId);
+			}
+		}
+		modifications.incrementAndGet();
 		return this;
 	}
 
@@ -524,7 +545,10 @@ public class SoneImpl implements Sone {
 	 */
 	@Nonnull
 	public Sone addLikedPostId(@Nonnull String postId) {
-		likedPostIds.add(postId);
+		if (likedPostIds.add(postId)) {
+			modifications.incrementAndGet();
+			database.likePost(this, postId);
+		}
 		return this;
 	}
 
@@ -535,7 +559,10 @@ public class SoneImpl implements Sone {
 	 * 		The ID of the post
 	 */
 	public void removeLikedPostId(@Nonnull String postId) {
-		likedPostIds.remove(postId);
+		if (likedPostIds.remove(postId)) {
+			modifications.incrementAndGet();
+			database.unlikePost(this, postId);
+		}
 	}
 
 	/**
@@ -557,8 +584,18 @@ public class SoneImpl implements Sone {
 	 */
 	@Nonnull
 	public Sone setLikeReplyIds(@Nonnull Set<String> likedReplyIds) {
-		this.likedReplyIds.clear();
-		this.likedReplyIds.addAll(likedReplyIds);
+		for (String replyId : this.likedReplyIds) {
+			if (!likedReplyIds.contains(replyId)) {
+				this.likedReplyIds.remove(replyId);
+				database.unlikePostReply(this, replyId);
+			}
+		}
+		for (String replyId : likedReplyIds) {
+			if (this.likedReplyIds.add(replyId)) {
+				database.likePostReply(this, replyId);
+			}
+		}
+		modifications.incrementAndGet();
 		return this;
 	}
 
@@ -583,7 +620,10 @@ public class SoneImpl implements Sone {
 	 */
 	@Nonnull
 	public Sone addLikedReplyId(@Nonnull String replyId) {
-		likedReplyIds.add(replyId);
+		if (likedReplyIds.add(replyId)) {
+			modifications.incrementAndGet();
+			database.likePostReply(this, replyId);
+		}
 		return this;
 	}
 
@@ -594,7 +634,10 @@ public class SoneImpl implements Sone {
 	 * 		The ID of the reply
 	 */
 	public void removeLikedReplyId(@Nonnull String replyId) {
-		likedReplyIds.remove(replyId);
+		if (likedReplyIds.remove(replyId)) {
+			modifications.incrementAndGet();
+			database.unlikePostReply(this, replyId);
+		}
 	}
 
 	/**
@@ -632,9 +675,32 @@ public class SoneImpl implements Sone {
 	// FINGERPRINTABLE METHODS
 	//
 
-	/** {@inheritDoc} */
+	/**
+	 * Notifies this Sone that one of its albums or images has been modified.
+	 */
+	void albumsModified() {
+		modifications.incrementAndGet();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The fingerprint is only calculated again after this Sone has been
+	 * modified; until then the last calculated fingerprint is returned.
+	 */
 	@Override
-	public synchronized String getFingerprint() {
+	public String getFingerprint() {
+		long currentModifications = modifications.get();
+		CachedFingerprint cachedFingerprint = this.cachedFingerprint;
+		if ((cachedFingerprint != null) && (cachedFingerprint.modifications == currentModifications)) {
+			return cachedFingerprint.fingerprint;
+		}
+		String fingerprint = calculateFingerprint();
+		this.cachedFingerprint = new CachedFingerprint(currentModifications, fingerprint);
+		return fingerprint;
+	}
+
+	private synchronized String calculateFingerprint() {
 		Hasher hash = Hashing.sha256().newHasher();
 		hash.putString(profile.getFingerprint());
 
@@ -715,4 +781,20 @@ public class SoneImpl implements Sone {
 		return getClass().getName() + "[identity=" + identity + ",posts(" + posts.size() + "),replies(" + replies.size() + "),albums(" + getRootAlbum().getAlbums().size() + ")]";
 	}
 
+	/**
+	 * A fingerprint, and the number of modifications of the Sone at the time
+	 * the fingerprint was calculated.
+	 */
+	private static class CachedFingerprint {
+
+		private final long modifications;
+		private final String fingerprint;
+
+		private CachedFingerprint(long modifications, String fingerprint) {
+			this.modifications = modifications;
+			this.fingerprint = fingerprint;
+		}
+
+	}
+
 }
@@ -0,0 +1,36 @@
+package net.pterodactylus.sone.database.memory;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Keeps a single instance of every ID of a post or a post reply that is in
+ * use, so that posts, replies, known IDs, likes, and bookmarks all share it
+ * instead of holding copies of their own. IDs that are no longer used can be
+ * garbage-collected.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+final class CanonicalIds {
+
+	private static final Interner<String> ids = Interners.newWeakInterner();
+
+	private CanonicalIds() {
+	}
+
+	/**
+	 * Returns the canonical instance of the given ID.
+	 *
+	 * @param id
+	 * 		The ID (may be {@code null})
+	 * @return The canonical instance of the ID, or {@code null} if the given
+	 *         ID was {@code null}
+	 */
+	@Nullable
+	static String canonicalId(@Nullable String id) {
+		return (id == null) ? null : ids.intern(id);
+	}
+
+}
@@ -9,6 +9,7 @@ import java.util.logging.Logger;
 
 import net.pterodactylus.util.config.Configuration;
 import net.pterodactylus.util.config.ConfigurationException;
+import net.pterodactylus.util.config.Value;
 
 /**
  * Helper class for interacting with a {@link Configuration}.
@@ -40,6 +41,14 @@ public class ConfigurationLoader {
 		return loadIds("KnownReplies");
 	}
 
+	public synchronized void removeKnownPosts() {
+		removeIds("KnownPosts");
+	}
+
+	public synchronized void removeKnownPostReplies() {
+		removeIds("KnownReplies");
+	}
+
 	public synchronized Set<String> loadBookmarkedPosts() {
 		return loadIds("Bookmarks/Post");
 	}
@@ -80,4 +89,19 @@ public class ConfigurationLoader {
 		}
 	}
 
+	private void removeIds(String prefix) {
+		try {
+			int idCounter = 0;
+			while (true) {
+				Value<String> idValue = configuration.getStringValue(prefix + "/" + idCounter++ + "/ID");
+				if (idValue.getValue(null) == null) {
+					break;
+				}
+				idValue.setValue(null);
+			}
+		} catch (ConfigurationException ce1) {
+			logger.log(WARNING, String.format("Could not remove %s!", prefix), ce1);
+		}
+	}
+
 }
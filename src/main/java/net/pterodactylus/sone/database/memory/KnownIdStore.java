@@ -0,0 +1,290 @@
+package net.pterodactylus.sone.database.memory;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.logging.Level.SEVERE;
+import static java.util.logging.Level.WARNING;
+import static net.pterodactylus.sone.database.memory.CanonicalIds.canonicalId;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import net.pterodactylus.util.io.Closer;
+
+/**
+ * Append-only store for the IDs of known elements.
+ * <p>
+ * Every change of the set of known IDs is appended to a log file, so marking
+ * an element as known does not need to write all known IDs again. The log
+ * is read into memory when the store is opened, and it is compacted (i.e.
+ * rewritten with only the currently known IDs) by {@link #flush()} once it
+ * contains considerably more records than there are known IDs.
+ * <p>
+ * Each record consists of a single byte denoting whether the ID was added
+ * or removed, the length of the ID as an unsigned short, and the UTF-8
+ * encoded ID. An incomplete record at the end of the file (e.g. from a crash
+ * while writing) is ignored and removed when the store is opened. A file
+ * that can not be read at all is moved aside (to a file with the suffix
+ * “.corrupt”) so that it is not overwritten, and the store starts without
+ * known IDs.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+class KnownIdStore {
+
+	private static final Logger logger = Logger.getLogger(KnownIdStore.class.getName());
+	private static final Charset utf8Charset = Charset.forName("UTF-8");
+	private static final int MAGIC = 0x534b4931; /* “SKI1” */
+	private static final int HEADER_LENGTH = 4;
+	private static final byte ADDED = 1;
+	private static final byte REMOVED = 0;
+	private static final int MINIMUM_RECORDS_FOR_COMPACTION = 1000;
+
+	private final File file;
+	private final Set<String> knownIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/* all following fields are guarded by this. */
+	private DataOutputStream log;
+	private long records;
+	private boolean failed;
+	private boolean unreadable;
+
+	KnownIdStore(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Reads the known IDs from the store’s file and opens the file for
+	 * appending. If the file can not be read, it is moved aside and the store
+	 * starts without known IDs.
+	 *
+	 * @return {@code true} if the store’s file existed, {@code false} if it
+	 *         was created
+	 * @throws IOException
+	 * 		if the file can not be opened, or if it can not be read and
+	 * 		can not be moved aside
+	 */
+	synchronized boolean open() throws IOException {
+		knownIds.clear();
+		records = 0;
+		failed = false;
+		unreadable = false;
+		boolean existed = file.exists();
+		if (existed && (file.length() >= HEADER_LENGTH)) {
+			long validLength;
+			try {
+				validLength = read();
+			} catch (IOException ioe1) {
+				moveAside(ioe1);
+				compact();
+				return existed;
+			}
+			if (validLength < file.length()) {
+				logger.log(WARNING, String.format("Ignoring %d bytes of incomplete records in %s.", file.length() - validLength, file));
+				truncate(validLength);
+			}
+			log = openLog();
+		} else {
+			compact();
+		}
+		return existed;
+	}
+
+	boolean contains(String id) {
+		return knownIds.contains(id);
+	}
+
+	int size() {
+		return knownIds.size();
+	}
+
+	synchronized void add(String id) {
+		if (knownIds.add(canonicalId(id))) {
+			append(ADDED, id);
+		}
+	}
+
+	synchronized void addAll(Collection<String> ids) {
+		for (String id : ids) {
+			add(id);
+		}
+	}
+
+	synchronized void remove(String id) {
+		if (knownIds.remove(id)) {
+			append(REMOVED, id);
+		}
+	}
+
+	/**
+	 * Writes all appended records to the store’s file, and compacts the file
+	 * if it has grown too much.
+	 *
+	 * @throws IOException
+	 * 		if an I/O error occurs
+	 */
+	synchronized void flush() throws IOException {
+		if (unreadable) {
+			return;
+		}
+		if (failed || (records > Math.max(MINIMUM_RECORDS_FOR_COMPACTION, 2 * knownIds.size()))) {
+			closeLog();
+			compact();
+			return;
+		}
+		if (log != null) {
+			log.flush();
+		}
+	}
+
+	synchronized void close() throws IOException {
+		flush();
+		closeLog();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private long read() throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (input.readInt() != MAGIC) {
+				throw new IOException(String.format("%s is not a known ID store.", file));
+			}
+			long validLength = HEADER_LENGTH;
+			while (true) {
+				byte type;
+				String id;
+				try {
+					type = input.readByte();
+					byte[] idBytes = new byte[input.readUnsignedShort()];
+					input.readFully(idBytes);
+					id = new String(idBytes, utf8Charset);
+					validLength += 3 + idBytes.length;
+				} catch (EOFException eofe1) {
+					return validLength;
+				}
+				if (type == ADDED) {
+					knownIds.add(canonicalId(id));
+				} else {
+					knownIds.remove(id);
+				}
+				records++;
+			}
+		} finally {
+			Closer.close(input);
+		}
+	}
+
+	/**
+	 * Moves the store’s unreadable file aside so that it is not replaced by a
+	 * file without the known IDs. If the file can not be moved, the store
+	 * will not write to it at all.
+	 *
+	 * @param readException
+	 * 		The exception that occurred while reading the file
+	 * @throws IOException
+	 * 		if the file can not be moved
+	 */
+	private void moveAside(IOException readException) throws IOException {
+		knownIds.clear();
+		records = 0;
+		File corruptFile = new File(file.getPath() + ".corrupt");
+		logger.log(SEVERE, String.format("Could not read %s, moving it to %s and starting without known IDs!", file, corruptFile), readException);
+		try {
+			Files.move(file.toPath(), corruptFile.toPath(), REPLACE_EXISTING);
+		} catch (IOException ioe1) {
+			unreadable = true;
+			throw ioe1;
+		}
+	}
+
+	private void truncate(long length) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.setLength(length);
+		} finally {
+			Closer.close(randomAccessFile);
+		}
+	}
+
+	private void append(byte type, String id) {
+		if (unreadable) {
+			return;
+		}
+		if ((log == null) || failed) {
+			failed = true;
+			return;
+		}
+		try {
+			writeRecord(log, type, id);
+			records++;
+		} catch (IOException ioe1) {
+			logger.log(WARNING, String.format("Could not append to %s, will rewrite it.", file), ioe1);
+			failed = true;
+		}
+	}
+
+	/**
+	 * Writes all known IDs into a new file and replaces the store’s file
+	 * with it.
+	 */
+	private void compact() throws IOException {
+		File newFile = new File(file.getPath() + ".new");
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newFile)));
+		long writtenRecords = 0;
+		try {
+			output.writeInt(MAGIC);
+			for (String knownId : knownIds) {
+				writeRecord(output, ADDED, knownId);
+				writtenRecords++;
+			}
+			output.close();
+		} finally {
+			Closer.close(output);
+		}
+		Files.move(newFile.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+		records = writtenRecords;
+		failed = false;
+		log = openLog();
+	}
+
+	private DataOutputStream openLog() throws FileNotFoundException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+	}
+
+	private void closeLog() throws IOException {
+		if (log != null) {
+			try {
+				log.close();
+			} finally {
+				log = null;
+			}
+		}
+	}
+
+	private static void writeRecord(DataOutputStream output, byte type, String id) throws IOException {
+		byte[] idBytes = id.getBytes(utf8Charset);
+		output.writeByte(type);
+		output.writeShort(idBytes.length);
+		output.write(idBytes);
+	}
+
+}
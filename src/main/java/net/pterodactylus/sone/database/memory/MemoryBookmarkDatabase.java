@@ -2,6 +2,7 @@ package net.pterodactylus.sone.database.memory;
 
 import static com.google.common.base.Optional.fromNullable;
 import static com.google.common.collect.FluentIterable.from;
+import static net.pterodactylus.sone.database.memory.CanonicalIds.canonicalId;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -41,7 +42,9 @@ public class MemoryBookmarkDatabase implements BookmarkDatabase {
 		lock.writeLock().lock();
 		try {
 			this.bookmarkedPosts.clear();
-			this.bookmarkedPosts.addAll(bookmarkedPosts);
+			for (String bookmarkedPost : bookmarkedPosts) {
+				this.bookmarkedPosts.add(canonicalId(bookmarkedPost));
+			}
 		} finally {
 			lock.writeLock().unlock();
 		}
@@ -24,8 +24,14 @@ import static com.google.common.collect.FluentIterable.from;
 import static net.pterodactylus.sone.data.Reply.TIME_COMPARATOR;
 import static net.pterodactylus.sone.data.Sone.LOCAL_SONE_FILTER;
 import static net.pterodactylus.sone.data.Sone.toAllAlbums;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
 import static net.pterodactylus.sone.data.Sone.toAllImages;
+import static net.pterodactylus.sone.database.memory.CanonicalIds.canonicalId;
+import static net.pterodactylus.sone.database.memory.MentionedSoneIds.extractMentionedSoneIds;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -33,13 +39,18 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import net.pterodactylus.sone.core.event.PostRemovedEvent;
+import net.pterodactylus.sone.core.event.PostReplyRemovedEvent;
+import net.pterodactylus.sone.core.event.SoneUpdatedBatchEvent;
 import net.pterodactylus.sone.data.Album;
 import net.pterodactylus.sone.data.Image;
 import net.pterodactylus.sone.data.Post;
@@ -57,13 +68,13 @@ import net.pterodactylus.sone.database.PostReplyBuilder;
 import net.pterodactylus.sone.database.SoneBuilder;
 import net.pterodactylus.sone.database.SoneProvider;
 import net.pterodactylus.util.config.Configuration;
-import net.pterodactylus.util.config.ConfigurationException;
 
-import com.google.common.base.Predicate;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.SetMultimap;
 import com.google.common.collect.SortedSetMultimap;
 import com.google.common.collect.TreeMultimap;
+import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.AbstractService;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -77,14 +88,14 @@ import kotlin.jvm.functions.Function1;
 @Singleton
 public class MemoryDatabase extends AbstractService implements Database {
 
+	private static final Logger logger = Logger.getLogger(MemoryDatabase.class.getName());
+
 	/** The lock. */
 	private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
 	/** The Sone provider. */
 	private final SoneProvider soneProvider;
 
-	/** The configuration. */
-	private final Configuration configuration;
 	private final ConfigurationLoader configurationLoader;
 
 	private final Map<String, Sone> allSones = new HashMap<String, Sone>();
@@ -95,8 +106,11 @@ public class MemoryDatabase extends AbstractService implements Database {
 	/** All posts by their Sones. */
 	private final Multimap<String, Post> sonePosts = HashMultimap.create();
 
+	/** All posts by their recipients. */
+	private final Multimap<String, Post> recipientPosts = HashMultimap.create();
+
 	/** Whether posts are known. */
-	private final Set<String> knownPosts = new HashSet<String>();
+	private final KnownIdStore knownPosts;
 
 	/** All post replies by their ID. */
 	private final Map<String, PostReply> allPostReplies = new HashMap<String, PostReply>();
@@ -110,8 +124,36 @@ public class MemoryDatabase extends AbstractService implements Database {
 		}
 	}, TIME_COMPARATOR);
 
+	/** Replies sorted by the post they refer to. */
+	private final SortedSetMultimap<String, PostReply> postPostReplies = TreeMultimap.create(new Comparator<String>() {
+
+		@Override
+		public int compare(String leftString, String rightString) {
+			return leftString.compareTo(rightString);
+		}
+	}, new Comparator<PostReply>() {
+
+		@Override
+		public int compare(PostReply leftPostReply, PostReply rightPostReply) {
+			int timeDifference = TIME_COMPARATOR.compare(leftPostReply, rightPostReply);
+			return (timeDifference != 0) ? timeDifference : leftPostReply.getId().compareTo(rightPostReply.getId());
+		}
+	});
+
 	/** Whether post replies are known. */
-	private final Set<String> knownPostReplies = new HashSet<String>();
+	private final KnownIdStore knownPostReplies;
+
+	/** The IDs of the Sones liking a post, by post ID. */
+	private final SetMultimap<String, String> postLikingSones = HashMultimap.create();
+
+	/** The IDs of the Sones liking a post reply, by post reply ID. */
+	private final SetMultimap<String, String> postReplyLikingSones = HashMultimap.create();
+
+	/** The posts that mention a Sone, by the ID of the mentioned Sone. */
+	private final SetMultimap<String, Post> mentioningPosts = HashMultimap.create();
+
+	/** The post replies that mention a Sone, by the ID of the mentioned Sone. */
+	private final SetMultimap<String, PostReply> mentioningPostReplies = HashMultimap.create();
 
 	private final Map<String, Album> allAlbums = new HashMap<String, Album>();
 	private final Multimap<String, Album> soneAlbums = HashMultimap.create();
@@ -132,9 +174,26 @@ public class MemoryDatabase extends AbstractService implements Database {
 	 */
 	@Inject
 	public MemoryDatabase(SoneProvider soneProvider, Configuration configuration) {
+		this(soneProvider, configuration, new File("known-posts.dat"), new File("known-replies.dat"));
+	}
+
+	/**
+	 * Creates a new memory database.
+	 *
+	 * @param soneProvider
+	 * 		The Sone provider
+	 * @param configuration
+	 * 		The configuration for loading and saving elements
+	 * @param knownPostsFile
+	 * 		The file to store the IDs of known posts in
+	 * @param knownPostRepliesFile
+	 * 		The file to store the IDs of known post replies in
+	 */
+	MemoryDatabase(SoneProvider soneProvider, Configuration configuration, File knownPostsFile, File knownPostRepliesFile) {
 		this.soneProvider = soneProvider;
-		this.configuration = configuration;
 		this.configurationLoader = new ConfigurationLoader(configuration);
+		this.knownPosts = new KnownIdStore(knownPostsFile);
+		this.knownPostReplies = new KnownIdStore(knownPostRepliesFile);
 		memoryBookmarkDatabase =
 				new MemoryBookmarkDatabase(this, configurationLoader);
 		memoryFriendDatabase = new MemoryFriendDatabase(configurationLoader);
@@ -152,8 +211,12 @@ public class MemoryDatabase extends AbstractService implements Database {
 	 */
 	@Override
 	public void save() throws DatabaseException {
-		saveKnownPosts();
-		saveKnownPostReplies();
+		try {
+			knownPosts.flush();
+			knownPostReplies.flush();
+		} catch (IOException ioe1) {
+			throw new DatabaseException("Could not save database.", ioe1);
+		}
 	}
 
 	//
@@ -174,10 +237,55 @@ public class MemoryDatabase extends AbstractService implements Database {
 	protected void doStop() {
 		try {
 			memoryBookmarkDatabase.stop();
-			save();
+			knownPosts.close();
+			knownPostReplies.close();
 			notifyStopped();
-		} catch (DatabaseException de1) {
-			notifyFailed(de1);
+		} catch (IOException ioe1) {
+			notifyFailed(new DatabaseException("Could not save database.", ioe1));
+		}
+	}
+
+	//
+	// EVENT HANDLERS
+	//
+
+	/**
+	 * Forgets whether a removed post is known, as it will not be seen again.
+	 *
+	 * @param postRemovedEvent
+	 * 		The post removed event
+	 */
+	@Subscribe
+	public void postRemoved(PostRemovedEvent postRemovedEvent) {
+		knownPosts.remove(postRemovedEvent.post().getId());
+	}
+
+	/**
+	 * Forgets whether a removed post reply is known, as it will not be seen
+	 * again.
+	 *
+	 * @param postReplyRemovedEvent
+	 * 		The post reply removed event
+	 */
+	@Subscribe
+	public void postReplyRemoved(PostReplyRemovedEvent postReplyRemovedEvent) {
+		knownPostReplies.remove(postReplyRemovedEvent.postReply().getId());
+	}
+
+	/**
+	 * Forgets whether the removed posts and post replies of an updated Sone
+	 * are known, as they will not be seen again.
+	 *
+	 * @param soneUpdatedBatchEvent
+	 * 		The Sone updated batch event
+	 */
+	@Subscribe
+	public void soneUpdated(SoneUpdatedBatchEvent soneUpdatedBatchEvent) {
+		for (Post post : soneUpdatedBatchEvent.removedPosts()) {
+			knownPosts.remove(post.getId());
+		}
+		for (PostReply postReply : soneUpdatedBatchEvent.removedPostReplies()) {
+			knownPostReplies.remove(postReply.getId());
 		}
 	}
 
@@ -196,10 +304,22 @@ public class MemoryDatabase extends AbstractService implements Database {
 			sonePosts.putAll(sone.getId(), sone.getPosts());
 			for (Post post : sone.getPosts()) {
 				allPosts.put(post.getId(), post);
+				if (post.getRecipientId().isPresent()) {
+					recipientPosts.put(post.getRecipientId().get(), post);
+				}
+				addMentions(post);
 			}
 			sonePostReplies.putAll(sone.getId(), sone.getReplies());
 			for (PostReply postReply : sone.getReplies()) {
 				allPostReplies.put(postReply.getId(), postReply);
+				postPostReplies.put(postReply.getPostId(), postReply);
+				addMentions(postReply);
+			}
+			for (String likedPostId : sone.getLikedPostIds()) {
+				postLikingSones.put(canonicalId(likedPostId), sone.getId());
+			}
+			for (String likedPostReplyId : sone.getLikedReplyIds()) {
+				postReplyLikingSones.put(canonicalId(likedPostReplyId), sone.getId());
 			}
 			soneAlbums.putAll(sone.getId(), toAllAlbums.apply(sone));
 			for (Album album : toAllAlbums.apply(sone)) {
@@ -214,19 +334,45 @@ public class MemoryDatabase extends AbstractService implements Database {
 		}
 	}
 
+	@Override
+	public void storeSones(Collection<? extends Sone> sones) {
+		lock.writeLock().lock();
+		try {
+			for (Sone sone : sones) {
+				storeSone(sone);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
 	@Override
 	public void removeSone(Sone sone) {
 		lock.writeLock().lock();
 		try {
-			allSones.remove(sone.getId());
+			Sone storedSone = allSones.remove(sone.getId());
+			if (storedSone != null) {
+				for (String likedPostId : storedSone.getLikedPostIds()) {
+					postLikingSones.remove(likedPostId, storedSone.getId());
+				}
+				for (String likedPostReplyId : storedSone.getLikedReplyIds()) {
+					postReplyLikingSones.remove(likedPostReplyId, storedSone.getId());
+				}
+			}
 			Collection<Post> removedPosts = sonePosts.removeAll(sone.getId());
 			for (Post removedPost : removedPosts) {
 				allPosts.remove(removedPost.getId());
+				if (removedPost.getRecipientId().isPresent()) {
+					recipientPosts.remove(removedPost.getRecipientId().get(), removedPost);
+				}
+				removeMentions(removedPost);
 			}
 			Collection<PostReply> removedPostReplies =
 					sonePostReplies.removeAll(sone.getId());
 			for (PostReply removedPostReply : removedPostReplies) {
 				allPostReplies.remove(removedPostReply.getId());
+				postPostReplies.remove(removedPostReply.getPostId(), removedPostReply);
+				removeMentions(removedPostReply);
 			}
 			Collection<Album> removedAlbums =
 					soneAlbums.removeAll(sone.getId());
@@ -350,15 +496,10 @@ public class MemoryDatabase extends AbstractService implements Database {
 
 	/** {@inheritDocs} */
 	@Override
-	public Collection<Post> getDirectedPosts(final String recipientId) {
+	public Collection<Post> getDirectedPosts(String recipientId) {
 		lock.readLock().lock();
 		try {
-			return from(sonePosts.values()).filter(new Predicate<Post>() {
-				@Override
-				public boolean apply(Post post) {
-					return post.getRecipientId().asSet().contains(recipientId);
-				}
-			}).toSet();
+			return new HashSet<Post>(recipientPosts.get(recipientId));
 		} finally {
 			lock.readLock().unlock();
 		}
@@ -386,6 +527,10 @@ public class MemoryDatabase extends AbstractService implements Database {
 		try {
 			allPosts.put(post.getId(), post);
 			getPostsFrom(post.getSone().getId()).add(post);
+			if (post.getRecipientId().isPresent()) {
+				recipientPosts.put(post.getRecipientId().get(), post);
+			}
+			addMentions(post);
 		} finally {
 			lock.writeLock().unlock();
 		}
@@ -399,6 +544,10 @@ public class MemoryDatabase extends AbstractService implements Database {
 		try {
 			allPosts.remove(post.getId());
 			getPostsFrom(post.getSone().getId()).remove(post);
+			if (post.getRecipientId().isPresent()) {
+				recipientPosts.remove(post.getRecipientId().get(), post);
+			}
+			removeMentions(post);
 			post.getSone().removePost(post);
 		} finally {
 			lock.writeLock().unlock();
@@ -425,13 +574,7 @@ public class MemoryDatabase extends AbstractService implements Database {
 	public List<PostReply> getReplies(final String postId) {
 		lock.readLock().lock();
 		try {
-			return from(allPostReplies.values())
-					.filter(new Predicate<PostReply>() {
-						@Override
-						public boolean apply(PostReply postReply) {
-							return postReply.getPostId().equals(postId);
-						}
-					}).toSortedList(TIME_COMPARATOR);
+			return from(postPostReplies.get(postId)).toList();
 		} finally {
 			lock.readLock().unlock();
 		}
@@ -456,7 +599,13 @@ public class MemoryDatabase extends AbstractService implements Database {
 	public void storePostReply(PostReply postReply) {
 		lock.writeLock().lock();
 		try {
-			allPostReplies.put(postReply.getId(), postReply);
+			PostReply storedPostReply = allPostReplies.put(postReply.getId(), postReply);
+			if (storedPostReply != null) {
+				postPostReplies.remove(storedPostReply.getPostId(), storedPostReply);
+				removeMentions(storedPostReply);
+			}
+			postPostReplies.put(postReply.getPostId(), postReply);
+			addMentions(postReply);
 		} finally {
 			lock.writeLock().unlock();
 		}
@@ -467,7 +616,11 @@ public class MemoryDatabase extends AbstractService implements Database {
 	public void removePostReply(PostReply postReply) {
 		lock.writeLock().lock();
 		try {
-			allPostReplies.remove(postReply.getId());
+			PostReply storedPostReply = allPostReplies.remove(postReply.getId());
+			if (storedPostReply != null) {
+				postPostReplies.remove(storedPostReply.getPostId(), storedPostReply);
+				removeMentions(storedPostReply);
+			}
 		} finally {
 			lock.writeLock().unlock();
 		}
@@ -573,6 +726,128 @@ public class MemoryDatabase extends AbstractService implements Database {
 		}
 	}
 
+	//
+	// LIKEPROVIDER METHODS
+	//
+
+	@Nonnull
+	@Override
+	public Set<Sone> getLikes(@Nonnull Post post) {
+		lock.readLock().lock();
+		try {
+			return getStoredSones(postLikingSones.get(post.getId()));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Nonnull
+	@Override
+	public Set<Sone> getLikes(@Nonnull PostReply postReply) {
+		lock.readLock().lock();
+		try {
+			return getStoredSones(postReplyLikingSones.get(postReply.getId()));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	//
+	// LIKESTORE METHODS
+	//
+
+	@Override
+	public void likePost(@Nonnull Sone sone, @Nonnull String postId) {
+		lock.writeLock().lock();
+		try {
+			if (isStoredSone(sone)) {
+				postLikingSones.put(canonicalId(postId), sone.getId());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void unlikePost(@Nonnull Sone sone, @Nonnull String postId) {
+		lock.writeLock().lock();
+		try {
+			if (isStoredSone(sone)) {
+				postLikingSones.remove(postId, sone.getId());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void likePostReply(@Nonnull Sone sone, @Nonnull String postReplyId) {
+		lock.writeLock().lock();
+		try {
+			if (isStoredSone(sone)) {
+				postReplyLikingSones.put(canonicalId(postReplyId), sone.getId());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void unlikePostReply(@Nonnull Sone sone, @Nonnull String postReplyId) {
+		lock.writeLock().lock();
+		try {
+			if (isStoredSone(sone)) {
+				postReplyLikingSones.remove(postReplyId, sone.getId());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	//
+	// MENTIONPROVIDER METHODS
+	//
+
+	@Nonnull
+	@Override
+	public Set<String> getMentionedSoneIds(@Nonnull Post post) {
+		if (post instanceof MemoryPost) {
+			return ((MemoryPost) post).getMentionedSoneIds();
+		}
+		return extractMentionedSoneIds(post.getText());
+	}
+
+	@Nonnull
+	@Override
+	public Set<String> getMentionedSoneIds(@Nonnull PostReply postReply) {
+		if (postReply instanceof MemoryPostReply) {
+			return ((MemoryPostReply) postReply).getMentionedSoneIds();
+		}
+		return extractMentionedSoneIds(postReply.getText());
+	}
+
+	@Nonnull
+	@Override
+	public Set<Post> getMentioningPosts(@Nonnull String soneId) {
+		lock.readLock().lock();
+		try {
+			return new HashSet<Post>(mentioningPosts.get(soneId));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Nonnull
+	@Override
+	public Set<PostReply> getMentioningPostReplies(@Nonnull String soneId) {
+		lock.readLock().lock();
+		try {
+			return new HashSet<PostReply>(mentioningPostReplies.get(soneId));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public void bookmarkPost(Post post) {
 		memoryBookmarkDatabase.bookmarkPost(post);
@@ -605,12 +880,7 @@ public class MemoryDatabase extends AbstractService implements Database {
 	 * @return {@code true} if the post is known, {@code false} otherwise
 	 */
 	boolean isPostKnown(Post post) {
-		lock.readLock().lock();
-		try {
-			return knownPosts.contains(post.getId());
-		} finally {
-			lock.readLock().unlock();
-		}
+		return knownPosts.contains(post.getId());
 	}
 
 	/**
@@ -622,15 +892,10 @@ public class MemoryDatabase extends AbstractService implements Database {
 	 * 		{@code true} if the post is known, {@code false} otherwise
 	 */
 	void setPostKnown(Post post, boolean known) {
-		lock.writeLock().lock();
-		try {
-			if (known) {
-				knownPosts.add(post.getId());
-			} else {
-				knownPosts.remove(post.getId());
-			}
-		} finally {
-			lock.writeLock().unlock();
+		if (known) {
+			knownPosts.add(post.getId());
+		} else {
+			knownPosts.remove(post.getId());
 		}
 	}
 
@@ -643,12 +908,7 @@ public class MemoryDatabase extends AbstractService implements Database {
 	 *         otherwise
 	 */
 	boolean isPostReplyKnown(PostReply postReply) {
-		lock.readLock().lock();
-		try {
-			return knownPostReplies.contains(postReply.getId());
-		} finally {
-			lock.readLock().unlock();
-		}
+		return knownPostReplies.contains(postReply.getId());
 	}
 
 	/**
@@ -660,22 +920,108 @@ public class MemoryDatabase extends AbstractService implements Database {
 	 * 		{@code true} if the post reply is known, {@code false} otherwise
 	 */
 	void setPostReplyKnown(PostReply postReply, boolean known) {
-		lock.writeLock().lock();
-		try {
-			if (known) {
-				knownPostReplies.add(postReply.getId());
-			} else {
-				knownPostReplies.remove(postReply.getId());
-			}
-		} finally {
-			lock.writeLock().unlock();
+		if (known) {
+			knownPostReplies.add(postReply.getId());
+		} else {
+			knownPostReplies.remove(postReply.getId());
+		}
+	}
+
+	/**
+	 * Returns the IDs of the Sones mentioned in the given text of the post
+	 * with the given ID. If the post is already stored with the same text, the
+	 * IDs of the stored post are returned, so that the text of a post is not
+	 * parsed again every time the post is built from an updated Sone.
+	 *
+	 * @param postId
+	 * 		The ID of the post
+	 * @param text
+	 * 		The text of the post
+	 * @return The IDs of the mentioned Sones
+	 */
+	Set<String> getMentionedSoneIdsForPost(String postId, String text) {
+		Post storedPost = getPost(postId);
+		if ((storedPost instanceof MemoryPost) && Objects.equals(storedPost.getText(), text)) {
+			return ((MemoryPost) storedPost).getMentionedSoneIds();
+		}
+		return extractMentionedSoneIds(text);
+	}
+
+	/**
+	 * Returns the IDs of the Sones mentioned in the given text of the post
+	 * reply with the given ID. If the post reply is already stored with the
+	 * same text, the IDs of the stored post reply are returned.
+	 *
+	 * @param postReplyId
+	 * 		The ID of the post reply
+	 * @param text
+	 * 		The text of the post reply
+	 * @return The IDs of the mentioned Sones
+	 */
+	Set<String> getMentionedSoneIdsForPostReply(String postReplyId, String text) {
+		PostReply storedPostReply = getPostReply(postReplyId);
+		if ((storedPostReply instanceof MemoryPostReply) && Objects.equals(storedPostReply.getText(), text)) {
+			return ((MemoryPostReply) storedPostReply).getMentionedSoneIds();
 		}
+		return extractMentionedSoneIds(text);
 	}
 
 	//
 	// PRIVATE METHODS
 	//
 
+	/**
+	 * Adds the given post to the posts that mention a Sone. The caller needs
+	 * to hold the lock.
+	 *
+	 * @param post
+	 * 		The post to add
+	 */
+	private void addMentions(Post post) {
+		for (String mentionedSoneId : getMentionedSoneIds(post)) {
+			mentioningPosts.put(mentionedSoneId, post);
+		}
+	}
+
+	/**
+	 * Removes the given post from the posts that mention a Sone. The caller
+	 * needs to hold the lock.
+	 *
+	 * @param post
+	 * 		The post to remove
+	 */
+	private void removeMentions(Post post) {
+		for (String mentionedSoneId : getMentionedSoneIds(post)) {
+			mentioningPosts.remove(mentionedSoneId, post);
+		}
+	}
+
+	/**
+	 * Adds the given post reply to the post replies that mention a Sone. The
+	 * caller needs to hold the lock.
+	 *
+	 * @param postReply
+	 * 		The post reply to add
+	 */
+	private void addMentions(PostReply postReply) {
+		for (String mentionedSoneId : getMentionedSoneIds(postReply)) {
+			mentioningPostReplies.put(mentionedSoneId, postReply);
+		}
+	}
+
+	/**
+	 * Removes the given post reply from the post replies that mention a Sone.
+	 * The caller needs to hold the lock.
+	 *
+	 * @param postReply
+	 * 		The post reply to remove
+	 */
+	private void removeMentions(PostReply postReply) {
+		for (String mentionedSoneId : getMentionedSoneIds(postReply)) {
+			mentioningPostReplies.remove(mentionedSoneId, postReply);
+		}
+	}
+
 	/**
 	 * Gets all posts for the given Sone, creating a new collection if there is
 	 * none yet.
@@ -693,69 +1039,86 @@ public class MemoryDatabase extends AbstractService implements Database {
 		}
 	}
 
-	/** Loads the known posts. */
-	private void loadKnownPosts() {
-		Set<String> knownPosts = configurationLoader.loadKnownPosts();
-		lock.writeLock().lock();
-		try {
-			this.knownPosts.clear();
-			this.knownPosts.addAll(knownPosts);
-		} finally {
-			lock.writeLock().unlock();
-		}
+	/**
+	 * Returns whether the given Sone is the Sone that is currently stored in
+	 * this database. Only stored Sones contribute to the like index; the likes
+	 * of any other Sone are indexed once it is {@link #storeSone(Sone) stored}.
+	 * The caller needs to hold the lock.
+	 *
+	 * @param sone
+	 * 		The Sone to check
+	 * @return {@code true} if the given Sone is stored, {@code false} otherwise
+	 */
+	private boolean isStoredSone(Sone sone) {
+		return allSones.get(sone.getId()) == sone;
 	}
 
 	/**
-	 * Saves the known posts to the configuration.
+	 * Returns the stored Sones with the given IDs. The caller needs to hold the
+	 * lock.
 	 *
-	 * @throws DatabaseException
-	 * 		if a configuration error occurs
+	 * @param soneIds
+	 * 		The IDs of the Sones to get
+	 * @return The Sones with the given IDs
 	 */
-	private void saveKnownPosts() throws DatabaseException {
-		lock.readLock().lock();
-		try {
-			int postCounter = 0;
-			for (String knownPostId : knownPosts) {
-				configuration.getStringValue("KnownPosts/" + postCounter++ + "/ID").setValue(knownPostId);
+	private Set<Sone> getStoredSones(Collection<String> soneIds) {
+		Set<Sone> sones = new HashSet<Sone>();
+		for (String soneId : soneIds) {
+			Sone sone = allSones.get(soneId);
+			if (sone != null) {
+				sones.add(sone);
 			}
-			configuration.getStringValue("KnownPosts/" + postCounter + "/ID").setValue(null);
-		} catch (ConfigurationException ce1) {
-			throw new DatabaseException("Could not save database.", ce1);
-		} finally {
-			lock.readLock().unlock();
 		}
+		return sones;
 	}
 
-	/** Loads the known post replies. */
-	private void loadKnownPostReplies() {
-		Set<String> knownPostReplies = configurationLoader.loadKnownPostReplies();
-		lock.writeLock().lock();
-		try {
-			this.knownPostReplies.clear();
-			this.knownPostReplies.addAll(knownPostReplies);
-		} finally {
-			lock.writeLock().unlock();
+	/**
+	 * Loads the IDs of known posts. If the configuration still contains known
+	 * posts, they are moved into the store of known posts.
+	 */
+	private void loadKnownPosts() {
+		openKnownIdStore(knownPosts);
+		Set<String> knownPostIds = configurationLoader.loadKnownPosts();
+		if (!knownPostIds.isEmpty()) {
+			knownPosts.addAll(knownPostIds);
+			if (flushKnownIdStore(knownPosts)) {
+				configurationLoader.removeKnownPosts();
+				logger.log(INFO, String.format("Moved %d known posts from the configuration.", knownPostIds.size()));
+			}
 		}
 	}
 
 	/**
-	 * Saves the known post replies to the configuration.
-	 *
-	 * @throws DatabaseException
-	 * 		if a configuration error occurs
+	 * Loads the IDs of known post replies. If the configuration still contains
+	 * known post replies, they are moved into the store of known post replies.
 	 */
-	private void saveKnownPostReplies() throws DatabaseException {
-		lock.readLock().lock();
-		try {
-			int replyCounter = 0;
-			for (String knownReplyId : knownPostReplies) {
-				configuration.getStringValue("KnownReplies/" + replyCounter++ + "/ID").setValue(knownReplyId);
+	private void loadKnownPostReplies() {
+		openKnownIdStore(knownPostReplies);
+		Set<String> knownPostReplyIds = configurationLoader.loadKnownPostReplies();
+		if (!knownPostReplyIds.isEmpty()) {
+			knownPostReplies.addAll(knownPostReplyIds);
+			if (flushKnownIdStore(knownPostReplies)) {
+				configurationLoader.removeKnownPostReplies();
+				logger.log(INFO, String.format("Moved %d known post replies from the configuration.", knownPostReplyIds.size()));
 			}
-			configuration.getStringValue("KnownReplies/" + replyCounter + "/ID").setValue(null);
-		} catch (ConfigurationException ce1) {
-			throw new DatabaseException("Could not save database.", ce1);
-		} finally {
-			lock.readLock().unlock();
+		}
+	}
+
+	private void openKnownIdStore(KnownIdStore knownIdStore) {
+		try {
+			knownIdStore.open();
+		} catch (IOException ioe1) {
+			logger.log(WARNING, "Could not load known IDs, starting without them!", ioe1);
+		}
+	}
+
+	private boolean flushKnownIdStore(KnownIdStore knownIdStore) {
+		try {
+			knownIdStore.flush();
+			return true;
+		} catch (IOException ioe1) {
+			logger.log(WARNING, "Could not store known IDs!", ioe1);
+			return false;
 		}
 	}
 
@@ -1,80 +1,75 @@
 package net.pterodactylus.sone.database.memory;
 
 import java.util.Collection;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * In-memory implementation of friend-related functionality.
+ * <p>
+ * The friends of every local Sone are stored as an immutable set that is
+ * replaced when a friend is added or removed, so checking for a friend does
+ * not need any locks. The friends of a local Sone are loaded from the
+ * configuration once, when they are first accessed.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
 class MemoryFriendDatabase {
 
-	private final ReadWriteLock lock = new ReentrantReadWriteLock();
 	private final ConfigurationLoader configurationLoader;
-	private final Multimap<String, String> soneFriends = HashMultimap.create();
+
+	/* modifications synchronize on this. */
+	private final ConcurrentMap<String, Set<String>> soneFriends = new ConcurrentHashMap<String, Set<String>>();
 
 	MemoryFriendDatabase(ConfigurationLoader configurationLoader) {
 		this.configurationLoader = configurationLoader;
 	}
 
 	Collection<String> getFriends(String localSoneId) {
-		loadFriends(localSoneId);
-		lock.readLock().lock();
-		try {
-			return soneFriends.get(localSoneId);
-		} finally {
-			lock.readLock().unlock();
-		}
+		return loadFriends(localSoneId);
 	}
 
 	boolean isFriend(String localSoneId, String friendSoneId) {
-		loadFriends(localSoneId);
-		lock.readLock().lock();
-		try {
-			return soneFriends.containsEntry(localSoneId, friendSoneId);
-		} finally {
-			lock.readLock().unlock();
-		}
+		return loadFriends(localSoneId).contains(friendSoneId);
 	}
 
-	void addFriend(String localSoneId, String friendSoneId) {
-		loadFriends(localSoneId);
-		lock.writeLock().lock();
-		try {
-			if (soneFriends.put(localSoneId, friendSoneId)) {
-				configurationLoader.saveFriends(localSoneId, soneFriends.get(localSoneId));
-			}
-		} finally {
-			lock.writeLock().unlock();
+	synchronized void addFriend(String localSoneId, String friendSoneId) {
+		Set<String> friends = loadFriends(localSoneId);
+		if (friends.contains(friendSoneId)) {
+			return;
 		}
+		Set<String> newFriends = ImmutableSet.<String>builder().addAll(friends).add(friendSoneId).build();
+		soneFriends.put(localSoneId, newFriends);
+		configurationLoader.saveFriends(localSoneId, newFriends);
 	}
 
-	void removeFriend(String localSoneId, String friendSoneId) {
-		loadFriends(localSoneId);
-		lock.writeLock().lock();
-		try {
-			if (soneFriends.remove(localSoneId, friendSoneId)) {
-				configurationLoader.saveFriends(localSoneId, soneFriends.get(localSoneId));
-			}
-		} finally {
-			lock.writeLock().unlock();
+	synchronized void removeFriend(String localSoneId, String friendSoneId) {
+		Set<String> friends = loadFriends(localSoneId);
+		if (!friends.contains(friendSoneId)) {
+			return;
 		}
+		Set<String> newFriends = new HashSet<String>(friends);
+		newFriends.remove(friendSoneId);
+		soneFriends.put(localSoneId, ImmutableSet.copyOf(newFriends));
+		configurationLoader.saveFriends(localSoneId, newFriends);
 	}
 
-	private void loadFriends(String localSoneId) {
-		lock.writeLock().lock();
-		try {
-			if (soneFriends.containsKey(localSoneId)) {
-				return;
+	private Set<String> loadFriends(String localSoneId) {
+		Set<String> friends = soneFriends.get(localSoneId);
+		if (friends != null) {
+			return friends;
+		}
+		synchronized (this) {
+			friends = soneFriends.get(localSoneId);
+			if (friends == null) {
+				friends = ImmutableSet.copyOf(configurationLoader.loadFriends(localSoneId));
+				soneFriends.put(localSoneId, friends);
 			}
-			soneFriends.putAll(localSoneId, configurationLoader.loadFriends(localSoneId));
-		} finally {
-			lock.writeLock().unlock();
+			return friends;
 		}
 	}
 
@@ -18,7 +18,9 @@
 package net.pterodactylus.sone.database.memory;
 
 import static com.google.common.base.Optional.fromNullable;
+import static net.pterodactylus.sone.database.memory.CanonicalIds.canonicalId;
 
+import java.util.Set;
 import java.util.UUID;
 
 import net.pterodactylus.sone.data.Post;
@@ -41,8 +43,8 @@ class MemoryPost implements Post {
 	/** The Sone provider. */
 	private final SoneProvider soneProvider;
 
-	/** The GUID of the post. */
-	private final UUID id;
+	/** The GUID of the post, in its canonical form. */
+	private final String id;
 
 	/** The ID of the owning Sone. */
 	private final String soneId;
@@ -56,6 +58,9 @@ class MemoryPost implements Post {
 	/** The text of the post. */
 	private final String text;
 
+	/** The IDs of the Sones mentioned in the text. */
+	private final Set<String> mentionedSoneIds;
+
 	/**
 	 * Creates a new post.
 	 *
@@ -73,15 +78,18 @@ class MemoryPost implements Post {
 	 *            The time of the post (in milliseconds since Jan 1, 1970 UTC)
 	 * @param text
 	 *            The text of the post
+	 * @param mentionedSoneIds
+	 *            The IDs of the Sones mentioned in the text
 	 */
-	public MemoryPost(MemoryDatabase postDatabase, SoneProvider soneProvider, String id, String soneId, String recipientId, long time, String text) {
+	public MemoryPost(MemoryDatabase postDatabase, SoneProvider soneProvider, String id, String soneId, String recipientId, long time, String text, Set<String> mentionedSoneIds) {
 		this.postDatabase = postDatabase;
 		this.soneProvider = soneProvider;
-		this.id = UUID.fromString(id);
-		this.soneId = soneId;
-		this.recipientId = recipientId;
+		this.id = canonicalId(UUID.fromString(id).toString());
+		this.soneId = canonicalId(soneId);
+		this.recipientId = canonicalId(recipientId);
 		this.time = time;
 		this.text = text;
+		this.mentionedSoneIds = mentionedSoneIds;
 	}
 
 	//
@@ -93,7 +101,7 @@ class MemoryPost implements Post {
 	 */
 	@Override
 	public String getId() {
-		return id.toString();
+		return id;
 	}
 
 	@Override
@@ -141,6 +149,16 @@ class MemoryPost implements Post {
 		return text;
 	}
 
+	/**
+	 * Returns the IDs of the Sones that are mentioned in the text of this
+	 * post.
+	 *
+	 * @return The IDs of the mentioned Sones
+	 */
+	Set<String> getMentionedSoneIds() {
+		return mentionedSoneIds;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -53,7 +53,8 @@ class MemoryPostBuilder extends AbstractPostBuilder {
 	@Override
 	public Post build() throws IllegalStateException {
 		validate();
-		Post post = new MemoryPost(database, soneProvider, randomId ? UUID.randomUUID().toString() : id, senderId, recipientId, currentTime ? System.currentTimeMillis() : time, text);
+		String postId = randomId ? UUID.randomUUID().toString() : id;
+		Post post = new MemoryPost(database, soneProvider, postId, senderId, recipientId, currentTime ? System.currentTimeMillis() : time, text, database.getMentionedSoneIdsForPost(postId, text));
 		post.setKnown(database.isPostKnown(post));
 		return post;
 	}
@@ -18,6 +18,9 @@
 package net.pterodactylus.sone.database.memory;
 
 import static com.google.common.base.Optional.fromNullable;
+import static net.pterodactylus.sone.database.memory.CanonicalIds.canonicalId;
+
+import java.util.Set;
 
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.PostReply;
@@ -54,6 +57,9 @@ class MemoryPostReply implements PostReply {
 	/** The ID of the post this post reply refers to. */
 	private final String postId;
 
+	/** The IDs of the Sones mentioned in the text. */
+	private final Set<String> mentionedSoneIds;
+
 	/**
 	 * Creates a new memory-based {@link PostReply} implementation.
 	 *
@@ -71,15 +77,18 @@ class MemoryPostReply implements PostReply {
 	 *            The text of the post reply
 	 * @param postId
 	 *            The ID of the post this post reply refers to
+	 * @param mentionedSoneIds
+	 *            The IDs of the Sones mentioned in the text
 	 */
-	public MemoryPostReply(MemoryDatabase database, SoneProvider soneProvider, String id, String soneId, long time, String text, String postId) {
+	public MemoryPostReply(MemoryDatabase database, SoneProvider soneProvider, String id, String soneId, long time, String text, String postId, Set<String> mentionedSoneIds) {
 		this.database = database;
 		this.soneProvider = soneProvider;
-		this.id = id;
-		this.soneId = soneId;
+		this.id = canonicalId(id);
+		this.soneId = canonicalId(soneId);
 		this.time = time;
 		this.text = text;
-		this.postId = postId;
+		this.postId = canonicalId(postId);
+		this.mentionedSoneIds = mentionedSoneIds;
 	}
 
 	//
@@ -118,6 +127,16 @@ class MemoryPostReply implements PostReply {
 		return text;
 	}
 
+	/**
+	 * Returns the IDs of the Sones that are mentioned in the text of this post
+	 * reply.
+	 *
+	 * @return The IDs of the mentioned Sones
+	 */
+	Set<String> getMentionedSoneIds() {
+		return mentionedSoneIds;
+	}
+
 	/**
 	 * {@inheritDocs}
 	 */
@@ -58,7 +58,8 @@ class MemoryPostReplyBuilder extends AbstractPostReplyBuilder {
 	public PostReply build() throws IllegalStateException {
 		validate();
 
-		PostReply postReply = new MemoryPostReply(database, soneProvider, randomId ? UUID.randomUUID().toString() : id, senderId, currentTime ? System.currentTimeMillis() : time, text, postId);
+		String postReplyId = randomId ? UUID.randomUUID().toString() : id;
+		PostReply postReply = new MemoryPostReply(database, soneProvider, postReplyId, senderId, currentTime ? System.currentTimeMillis() : time, text, postId, database.getMentionedSoneIdsForPostReply(postReplyId, text));
 		postReply.setKnown(database.isPostReplyKnown(postReply));
 		return postReply;
 	}
@@ -0,0 +1,53 @@
+package net.pterodactylus.sone.database.memory;
+
+import static net.pterodactylus.sone.database.memory.CanonicalIds.canonicalId;
+
+import java.util.Collections;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.pterodactylus.sone.text.Part;
+import net.pterodactylus.sone.text.SonePart;
+import net.pterodactylus.sone.text.SoneTextParser;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Extracts the IDs of the Sones that are mentioned in the text of a post or a
+ * post reply, i.e. the Sones that the {@link SoneTextParser} creates {@link
+ * SonePart}s for.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+final class MentionedSoneIds {
+
+	/** The parser; it needs no providers to find the IDs of Sones. */
+	private static final SoneTextParser soneTextParser = new SoneTextParser(null, null);
+
+	private MentionedSoneIds() {
+	}
+
+	/**
+	 * Returns the IDs of the Sones that are mentioned in the given text.
+	 *
+	 * @param text
+	 * 		The text to parse (may be {@code null})
+	 * @return The IDs of the mentioned Sones
+	 */
+	@Nonnull
+	static Set<String> extractMentionedSoneIds(@Nullable String text) {
+		if ((text == null) || !text.contains("sone://")) {
+			return Collections.emptySet();
+		}
+		ImmutableSet.Builder<String> mentionedSoneIds = ImmutableSet.builder();
+		for (Part part : soneTextParser.parse(text, null)) {
+			if (part instanceof SonePart) {
+				mentionedSoneIds.add(canonicalId(((SonePart) part).getSone().getId()));
+			}
+		}
+		return mentionedSoneIds.build();
+	}
+
+}
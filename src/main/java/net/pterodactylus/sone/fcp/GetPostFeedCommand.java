@@ -17,10 +17,6 @@
 
 package net.pterodactylus.sone.fcp;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 
 import net.pterodactylus.sone.core.Core;
@@ -28,7 +24,7 @@ import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.freenet.fcp.FcpException;
 
-import com.google.common.collect.Collections2;
+import com.google.common.collect.FluentIterable;
 
 import freenet.support.SimpleFieldSet;
 
@@ -59,26 +55,10 @@ public class GetPostFeedCommand extends AbstractSoneCommand {
 		int startPost = getInt(parameters, "StartPost", 0);
 		int maxPosts = getInt(parameters, "MaxPosts", -1);
 
-		Collection<Post> allPosts = new HashSet<Post>();
-		allPosts.addAll(sone.getPosts());
-		for (String friendSoneId : sone.getFriends()) {
-			Sone friendSone = getCore().getSone(friendSoneId);
-			if (friendSone == null) {
-				continue;
-			}
-			allPosts.addAll(friendSone.getPosts());
-		}
-		allPosts.addAll(getCore().getDirectedPosts(sone.getId()));
-		allPosts = Collections2.filter(allPosts, Post.FUTURE_POSTS_FILTER);
+		FluentIterable<Post> posts = FluentIterable.from(getCore().getTimeline(sone)).filter(Post.FUTURE_POSTS_FILTER).skip(Math.max(0, startPost));
+		List<Post> feedPosts = ((maxPosts == -1) ? posts : posts.limit(maxPosts)).toList();
 
-		List<Post> sortedPosts = new ArrayList<Post>(allPosts);
-		Collections.sort(sortedPosts, Post.NEWEST_FIRST);
-
-		if (sortedPosts.size() < startPost) {
-			return new Response("PostFeed", encodePosts(Collections.<Post> emptyList(), "Posts.", false));
-		}
-
-		return new Response("PostFeed", encodePosts(sortedPosts.subList(startPost, (maxPosts == -1) ? sortedPosts.size() : Math.min(startPost + maxPosts, sortedPosts.size())), "Posts.", true));
+		return new Response("PostFeed", encodePosts(feedPosts, "Posts.", true));
 	}
 
 }
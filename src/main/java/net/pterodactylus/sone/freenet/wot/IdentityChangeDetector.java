@@ -71,7 +71,7 @@ public class IdentityChangeDetector {
 
 	public void detectChanges(final Collection<? extends Identity> newIdentities) {
 		notifyForRemovedIdentities(from(oldIdentities.values()).filter(notContainedIn(newIdentities)));
-		notifyForNewIdentities(from(newIdentities).filter(notContainedIn(oldIdentities.values())));
+		notifyForNewIdentities(from(newIdentities).filter(not(containedIn(oldIdentities))));
 		notifyForChangedIdentities(from(newIdentities).filter(containedIn(oldIdentities)).filter(hasChanged(oldIdentities)));
 		notifyForUnchangedIdentities(from(newIdentities).filter(containedIn(oldIdentities)).filter(not(hasChanged(oldIdentities))));
 	}
@@ -17,13 +17,18 @@
 
 package net.pterodactylus.sone.freenet.wot;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import net.pterodactylus.sone.freenet.wot.IdentityChangeDetector.IdentityProcessor;
 import net.pterodactylus.sone.freenet.wot.event.IdentityAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.IdentityRemovedEvent;
 import net.pterodactylus.sone.freenet.wot.event.IdentityUpdatedEvent;
+import net.pterodactylus.sone.freenet.wot.event.OwnIdentitiesAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.OwnIdentityAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.OwnIdentityRemovedEvent;
 
@@ -47,6 +52,10 @@ public class IdentityChangeEventSender {
 	}
 
 	public void detectChanges(Map<OwnIdentity, Collection<Identity>> identities) {
+		List<OwnIdentity> newOwnIdentities = getNewOwnIdentities(identities.keySet());
+		if (!newOwnIdentities.isEmpty()) {
+			eventBus.post(new OwnIdentitiesAddedEvent(newOwnIdentities));
+		}
 		IdentityChangeDetector identityChangeDetector = new IdentityChangeDetector(oldIdentities.keySet());
 		identityChangeDetector.onNewIdentity(addNewOwnIdentityAndItsTrustedIdentities(identities));
 		identityChangeDetector.onRemovedIdentity(removeOwnIdentityAndItsTrustedIdentities(oldIdentities));
@@ -54,6 +63,20 @@ public class IdentityChangeEventSender {
 		identityChangeDetector.detectChanges(identities.keySet());
 	}
 
+	private List<OwnIdentity> getNewOwnIdentities(Collection<OwnIdentity> ownIdentities) {
+		Set<String> oldOwnIdentityIds = new HashSet<String>();
+		for (OwnIdentity oldOwnIdentity : oldIdentities.keySet()) {
+			oldOwnIdentityIds.add(oldOwnIdentity.getId());
+		}
+		List<OwnIdentity> newOwnIdentities = new ArrayList<OwnIdentity>();
+		for (OwnIdentity ownIdentity : ownIdentities) {
+			if (!oldOwnIdentityIds.contains(ownIdentity.getId())) {
+				newOwnIdentities.add(ownIdentity);
+			}
+		}
+		return newOwnIdentities;
+	}
+
 	private IdentityProcessor addNewOwnIdentityAndItsTrustedIdentities(final Map<OwnIdentity, Collection<Identity>> newIdentities) {
 		return new IdentityProcessor() {
 			@Override
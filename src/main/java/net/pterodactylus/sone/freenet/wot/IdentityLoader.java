@@ -26,6 +26,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import net.pterodactylus.sone.freenet.plugin.PluginException;
 
 import com.google.common.base.Optional;
@@ -72,8 +74,38 @@ public class IdentityLoader {
 		return currentIdentities;
 	}
 
-	private boolean identityDoesNotHaveTheCorrectContext(OwnIdentity ownIdentity) {
-		return context.isPresent() && !ownIdentity.hasContext(context.transform(extractContext).get());
+	/**
+	 * Loads a single identity if the given own identity trusts it, i.e. it
+	 * has a positive score, and if it has the correct context.
+	 *
+	 * @param ownIdentity
+	 *            The own identity
+	 * @param identityId
+	 *            The ID of the identity to load
+	 * @return The loaded identity, or {@code null} if the identity is not
+	 *         trusted or does not have the correct context
+	 * @throws PluginException
+	 *             if the identity can not be loaded
+	 */
+	@Nullable
+	public Identity loadTrustedIdentity(OwnIdentity ownIdentity, String identityId) throws PluginException {
+		if (identityDoesNotHaveTheCorrectContext(ownIdentity)) {
+			return null;
+		}
+		Identity identity = webOfTrustConnector.loadIdentity(ownIdentity, identityId);
+		Trust trust = identity.getTrust(ownIdentity);
+		if ((trust == null) || (trust.getImplicit() == null) || (trust.getImplicit() <= 0) || identityDoesNotHaveTheCorrectContext(identity)) {
+			return null;
+		}
+		return identity;
+	}
+
+	public boolean hasCorrectContext(Identity identity) {
+		return !identityDoesNotHaveTheCorrectContext(identity);
+	}
+
+	private boolean identityDoesNotHaveTheCorrectContext(Identity identity) {
+		return context.isPresent() && !identity.hasContext(context.transform(extractContext).get());
 	}
 
 }
@@ -17,12 +17,16 @@
 
 package net.pterodactylus.sone.freenet.wot;
 
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.logging.Logger.getLogger;
 
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -40,9 +44,13 @@ import com.google.inject.Singleton;
  * contexts, and properties. It does so in a way that does not expose errors via
  * exceptions but it only logs them and tries to return sensible defaults.
  * <p>
- * It is also responsible for polling identities from the Web of Trust plugin
+ * It is also responsible for loading identities from the Web of Trust plugin
  * and sending events to the {@link EventBus} when {@link Identity}s and
- * {@link OwnIdentity}s are discovered or disappearing.
+ * {@link OwnIdentity}s are discovered or disappearing. If the Web of Trust
+ * plugin accepts a subscription for changes, all identities are loaded once
+ * and only the changes are applied afterwards, using an {@link
+ * IncrementalIdentityUpdater}; otherwise, all identities are reloaded every
+ * minute.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
@@ -60,9 +68,24 @@ public class IdentityManagerImpl extends AbstractService implements IdentityMana
 	/** The Web of Trust connector. */
 	private final WebOfTrustConnector webOfTrustConnector;
 
+	/** The time between two checks for changes when subscribed. */
+	private static final long UPDATE_INTERVAL = SECONDS.toMillis(1);
+
+	/** The time between two complete reloads when not subscribed. */
+	private static final long RELOAD_INTERVAL = MINUTES.toMillis(1);
+
+	/** The time between two complete reloads when subscribed. */
+	private static final long SUBSCRIBED_RELOAD_INTERVAL = HOURS.toMillis(1);
+
+	/** The updater for changes of the subscription. */
+	private final IncrementalIdentityUpdater incrementalIdentityUpdater;
+
 	/** The currently known own identities. */
 	private final Set<OwnIdentity> currentOwnIdentities = Sets.newHashSet();
 
+	/** The identities trusted by the own identities, indexed by their IDs. */
+	private Map<OwnIdentity, Map<String, Identity>> currentIdentities = new HashMap<OwnIdentity, Map<String, Identity>>();
+
 	/**
 	 * Creates a new identity manager.
 	 *
@@ -77,6 +100,7 @@ public class IdentityManagerImpl extends AbstractService implements IdentityMana
 		this.eventBus = eventBus;
 		this.webOfTrustConnector = webOfTrustConnector;
 		this.identityLoader = identityLoader;
+		this.incrementalIdentityUpdater = new IncrementalIdentityUpdater(eventBus, identityLoader);
 	}
 
 	//
@@ -122,27 +146,106 @@ public class IdentityManagerImpl extends AbstractService implements IdentityMana
 	 */
 	@Override
 	protected void serviceRun() {
-		Map<OwnIdentity, Collection<Identity>> oldIdentities = new HashMap<OwnIdentity, Collection<Identity>>();
+		boolean subscribed = false;
+		boolean reloadNeeded = true;
+		long lastReload = 0;
 
 		while (!shouldStop()) {
-			try {
-				Map<OwnIdentity, Collection<Identity>> currentIdentities = identityLoader.loadIdentities();
+			if (!subscribed) {
+				subscribed = subscribe();
+			}
+			long reloadInterval = subscribed ? SUBSCRIBED_RELOAD_INTERVAL : RELOAD_INTERVAL;
+			if (reloadNeeded || ((System.currentTimeMillis() - lastReload) >= reloadInterval)) {
+				incrementalIdentityUpdater.reset();
+				reloadNeeded = !reloadIdentities();
+				lastReload = System.currentTimeMillis();
+			} else if (!updateIdentities()) {
+				/* changes to own identities or a lost subscription. */
+				webOfTrustConnector.unsubscribe();
+				subscribed = false;
+				reloadNeeded = true;
+				continue;
+			}
 
-				IdentityChangeEventSender identityChangeEventSender = new IdentityChangeEventSender(eventBus, oldIdentities);
-				identityChangeEventSender.detectChanges(currentIdentities);
+			sleep((subscribed && !reloadNeeded) ? UPDATE_INTERVAL : RELOAD_INTERVAL);
+		}
 
-				oldIdentities = currentIdentities;
+		if (subscribed) {
+			webOfTrustConnector.unsubscribe();
+		}
+	}
 
-				synchronized (currentOwnIdentities) {
-					currentOwnIdentities.clear();
-					currentOwnIdentities.addAll(currentIdentities.keySet());
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Subscribes to changes of identities and scores.
+	 *
+	 * @return {@code true} if the subscription was successful, {@code false}
+	 *         otherwise
+	 */
+	boolean subscribe() {
+		try {
+			webOfTrustConnector.subscribe(incrementalIdentityUpdater);
+			return true;
+		} catch (PluginException pe1) {
+			logger.log(Level.FINE, "Could not subscribe to WoT, reloading all identities periodically.", pe1);
+			return false;
+		}
+	}
+
+	/**
+	 * Reloads all identities and sends events for all changes.
+	 *
+	 * @return {@code true} if the identities were reloaded, {@code false}
+	 *         otherwise
+	 */
+	boolean reloadIdentities() {
+		try {
+			Map<OwnIdentity, Collection<Identity>> loadedIdentities = identityLoader.loadIdentities();
+
+			Map<OwnIdentity, Collection<Identity>> oldIdentities = new HashMap<OwnIdentity, Collection<Identity>>();
+			for (Entry<OwnIdentity, Map<String, Identity>> ownIdentityIdentities : currentIdentities.entrySet()) {
+				oldIdentities.put(ownIdentityIdentities.getKey(), ownIdentityIdentities.getValue().values());
+			}
+			IdentityChangeEventSender identityChangeEventSender = new IdentityChangeEventSender(eventBus, oldIdentities);
+			identityChangeEventSender.detectChanges(loadedIdentities);
+
+			Map<OwnIdentity, Map<String, Identity>> newIdentities = new HashMap<OwnIdentity, Map<String, Identity>>();
+			for (Entry<OwnIdentity, Collection<Identity>> ownIdentityIdentities : loadedIdentities.entrySet()) {
+				Map<String, Identity> trustedIdentities = new HashMap<String, Identity>();
+				for (Identity identity : ownIdentityIdentities.getValue()) {
+					trustedIdentities.put(identity.getId(), identity);
 				}
-			} catch (WebOfTrustException wote1) {
-				logger.log(Level.WARNING, "WoT has disappeared!", wote1);
+				newIdentities.put(ownIdentityIdentities.getKey(), trustedIdentities);
+			}
+			currentIdentities = newIdentities;
+
+			synchronized (currentOwnIdentities) {
+				currentOwnIdentities.clear();
+				currentOwnIdentities.addAll(loadedIdentities.keySet());
 			}
+			return true;
+		} catch (WebOfTrustException wote1) {
+			logger.log(Level.WARNING, "WoT has disappeared!", wote1);
+			return false;
+		}
+	}
 
-			/* wait a minute before checking again. */
-			sleep(60 * 1000);
+	/**
+	 * Applies the changes received for the subscription since the last
+	 * update.
+	 *
+	 * @return {@code true} if the changes were applied, {@code false} if all
+	 *         identities need to be reloaded
+	 */
+	boolean updateIdentities() {
+		try {
+			return incrementalIdentityUpdater.applyChanges(currentIdentities);
+		} catch (PluginException pe1) {
+			logger.log(Level.WARNING, "Could not apply changes from WoT!", pe1);
+			return false;
 		}
 	}
 
@@ -0,0 +1,227 @@
+/*
+ * Sone - IncrementalIdentityUpdater.java - Copyright © 2016 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.freenet.wot;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import net.pterodactylus.sone.freenet.plugin.PluginException;
+import net.pterodactylus.sone.freenet.wot.WebOfTrustConnector.SubscriptionListener;
+import net.pterodactylus.sone.freenet.wot.event.IdentityAddedEvent;
+import net.pterodactylus.sone.freenet.wot.event.IdentityRemovedEvent;
+import net.pterodactylus.sone.freenet.wot.event.IdentityUpdatedEvent;
+import net.pterodactylus.sone.freenet.wot.event.TrustUpdatedEvent;
+
+import com.google.common.base.Optional;
+import com.google.common.eventbus.EventBus;
+
+/**
+ * Collects the changes the Web of Trust plugin sends for a subscription and
+ * applies them to the identities tracked by the {@link IdentityManager},
+ * sending the same events a complete reload of all identities would send.
+ * Changes are collected on the thread that receives them from the Web of
+ * Trust plugin and are applied by the identity manager; multiple changes to
+ * the same identity that arrive between two updates are merged.
+ * <p>
+ * Changes to own identities are not applied incrementally; they require a
+ * complete reload of all identities, as does a lost subscription.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class IncrementalIdentityUpdater implements SubscriptionListener {
+
+	private final EventBus eventBus;
+	private final IdentityLoader identityLoader;
+
+	/* all following fields are guarded by this. */
+	private Map<String, Identity> changedIdentities = new LinkedHashMap<String, Identity>();
+	private Set<String> deletedIdentityIds = new HashSet<String>();
+	private Map<String, Map<String, Optional<Trust>>> changedScores = new HashMap<String, Map<String, Optional<Trust>>>();
+	private boolean reloadNeeded;
+
+	public IncrementalIdentityUpdater(EventBus eventBus, IdentityLoader identityLoader) {
+		this.eventBus = eventBus;
+		this.identityLoader = identityLoader;
+	}
+
+	//
+	// SUBSCRIPTIONLISTENER METHODS
+	//
+
+	@Override
+	public synchronized void identityChanged(Identity identity) {
+		deletedIdentityIds.remove(identity.getId());
+		changedIdentities.put(identity.getId(), identity);
+	}
+
+	@Override
+	public synchronized void identityDeleted(String identityId) {
+		changedIdentities.remove(identityId);
+		for (Map<String, Optional<Trust>> scores : changedScores.values()) {
+			scores.remove(identityId);
+		}
+		deletedIdentityIds.add(identityId);
+	}
+
+	@Override
+	public synchronized void ownIdentityChanged(String ownIdentityId) {
+		reloadNeeded = true;
+	}
+
+	@Override
+	public synchronized void scoreChanged(String trusterId, String trusteeId, @Nullable Trust score) {
+		Map<String, Optional<Trust>> scores = changedScores.get(trusterId);
+		if (scores == null) {
+			scores = new HashMap<String, Optional<Trust>>();
+			changedScores.put(trusterId, scores);
+		}
+		scores.put(trusteeId, Optional.fromNullable(score));
+	}
+
+	@Override
+	public synchronized void subscriptionLost() {
+		reloadNeeded = true;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Discards all collected changes. This method should be called right
+	 * before all identities are reloaded.
+	 */
+	public synchronized void reset() {
+		changedIdentities = new LinkedHashMap<String, Identity>();
+		deletedIdentityIds = new HashSet<String>();
+		changedScores = new HashMap<String, Map<String, Optional<Trust>>>();
+		reloadNeeded = false;
+	}
+
+	/**
+	 * Applies all changes collected since the last call of this method to the
+	 * given identities, sending events for every added, removed, and updated
+	 * identity.
+	 *
+	 * @param identities
+	 *            The identities trusted by the own identities, indexed by
+	 *            their IDs
+	 * @return {@code true} if the changes were applied, {@code false} if the
+	 *         changes could not be applied and all identities need to be
+	 *         reloaded
+	 * @throws PluginException
+	 *             if an identity can not be loaded; all identities need to
+	 *             be reloaded in this case
+	 */
+	public boolean applyChanges(Map<OwnIdentity, Map<String, Identity>> identities) throws PluginException {
+		Map<String, Identity> changedIdentities;
+		Set<String> deletedIdentityIds;
+		Map<String, Map<String, Optional<Trust>>> changedScores;
+		synchronized (this) {
+			if (reloadNeeded) {
+				return false;
+			}
+			changedIdentities = this.changedIdentities;
+			deletedIdentityIds = this.deletedIdentityIds;
+			changedScores = this.changedScores;
+			this.changedIdentities = new LinkedHashMap<String, Identity>();
+			this.deletedIdentityIds = new HashSet<String>();
+			this.changedScores = new HashMap<String, Map<String, Optional<Trust>>>();
+		}
+		for (Entry<OwnIdentity, Map<String, Identity>> ownIdentityIdentities : identities.entrySet()) {
+			OwnIdentity ownIdentity = ownIdentityIdentities.getKey();
+			if (!identityLoader.hasCorrectContext(ownIdentity)) {
+				continue;
+			}
+			Map<String, Identity> trustedIdentities = ownIdentityIdentities.getValue();
+			for (String deletedIdentityId : deletedIdentityIds) {
+				removeIdentity(ownIdentity, trustedIdentities, deletedIdentityId);
+			}
+			Map<String, Optional<Trust>> scores = changedScores.get(ownIdentity.getId());
+			if (scores != null) {
+				for (Entry<String, Optional<Trust>> score : scores.entrySet()) {
+					applyScore(ownIdentity, trustedIdentities, score.getKey(), score.getValue().orNull());
+				}
+			}
+			for (Identity changedIdentity : changedIdentities.values()) {
+				applyIdentity(ownIdentity, trustedIdentities, changedIdentity);
+			}
+		}
+		return true;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void applyScore(OwnIdentity ownIdentity, Map<String, Identity> trustedIdentities, String identityId, @Nullable Trust score) throws PluginException {
+		Identity identity = trustedIdentities.get(identityId);
+		if ((score == null) || (score.getImplicit() == null) || (score.getImplicit() <= 0)) {
+			removeIdentity(ownIdentity, trustedIdentities, identityId);
+		} else if (identity != null) {
+			Trust oldTrust = identity.getTrust(ownIdentity);
+			Trust newTrust = new Trust((oldTrust != null) ? oldTrust.getExplicit() : null, score.getImplicit(), score.getDistance());
+			if (!newTrust.equals(oldTrust)) {
+				identity.setTrust(ownIdentity, newTrust);
+				eventBus.post(new TrustUpdatedEvent(ownIdentity, identity));
+			}
+		} else {
+			addIdentity(ownIdentity, trustedIdentities, identityId);
+		}
+	}
+
+	private void applyIdentity(OwnIdentity ownIdentity, Map<String, Identity> trustedIdentities, Identity changedIdentity) throws PluginException {
+		Identity identity = trustedIdentities.get(changedIdentity.getId());
+		if (identity == null) {
+			if (identityLoader.hasCorrectContext(changedIdentity)) {
+				addIdentity(ownIdentity, trustedIdentities, changedIdentity.getId());
+			}
+		} else if (!identityLoader.hasCorrectContext(changedIdentity)) {
+			removeIdentity(ownIdentity, trustedIdentities, identity.getId());
+		} else if (!identity.getContexts().equals(changedIdentity.getContexts()) || !identity.getProperties().equals(changedIdentity.getProperties())) {
+			Identity updatedIdentity = new DefaultIdentity(changedIdentity.getId(), changedIdentity.getNickname(), changedIdentity.getRequestUri());
+			updatedIdentity.setContexts(changedIdentity.getContexts());
+			updatedIdentity.setProperties(changedIdentity.getProperties());
+			updatedIdentity.setTrust(ownIdentity, identity.getTrust(ownIdentity));
+			trustedIdentities.put(updatedIdentity.getId(), updatedIdentity);
+			eventBus.post(new IdentityUpdatedEvent(ownIdentity, updatedIdentity));
+		}
+	}
+
+	private void addIdentity(OwnIdentity ownIdentity, Map<String, Identity> trustedIdentities, String identityId) throws PluginException {
+		Identity identity = identityLoader.loadTrustedIdentity(ownIdentity, identityId);
+		if (identity != null) {
+			trustedIdentities.put(identityId, identity);
+			eventBus.post(new IdentityAddedEvent(ownIdentity, identity));
+		}
+	}
+
+	private void removeIdentity(OwnIdentity ownIdentity, Map<String, Identity> trustedIdentities, String identityId) {
+		Identity identity = trustedIdentities.remove(identityId);
+		if (identity != null) {
+			eventBus.post(new IdentityRemovedEvent(ownIdentity, identity));
+		}
+	}
+
+}
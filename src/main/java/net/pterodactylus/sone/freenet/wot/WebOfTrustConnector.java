@@ -23,11 +23,15 @@ import static net.pterodactylus.sone.utils.NumberParsers.parseInt;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+
 import net.pterodactylus.sone.freenet.plugin.PluginConnector;
 import net.pterodactylus.sone.freenet.plugin.PluginException;
 import net.pterodactylus.sone.freenet.plugin.event.ReceivedReplyEvent;
@@ -55,6 +59,9 @@ public class WebOfTrustConnector {
 	/** The name of the WoT plugin. */
 	private static final String WOT_PLUGIN_NAME = "plugins.WebOfTrust.WebOfTrust";
 
+	/** The time to wait for the confirmation of a subscription. */
+	private static final long SUBSCRIPTION_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
 	/** Counter for connection identifiers. */
 	private final AtomicLong counter = new AtomicLong();
 
@@ -64,6 +71,9 @@ public class WebOfTrustConnector {
 	/** Map for replies. */
 	private final Map<PluginIdentifier, Reply> replies = new MapMaker().makeMap();
 
+	/** The current subscriptions. */
+	private final Map<PluginIdentifier, Subscription> subscriptions = new MapMaker().makeMap();
+
 	/**
 	 * Creates a new Web of Trust connector that uses the given plugin
 	 * connector.
@@ -165,6 +175,68 @@ public class WebOfTrustConnector {
 		return identities;
 	}
 
+	/**
+	 * Loads a single identity, and the trust the given own identity has in
+	 * it.
+	 *
+	 * @param ownIdentity
+	 *            The own identity
+	 * @param identityId
+	 *            The ID of the identity to load
+	 * @return The loaded identity
+	 * @throws PluginException
+	 *             if an error occured talking to the Web of Trust plugin
+	 */
+	public Identity loadIdentity(OwnIdentity ownIdentity, String identityId) throws PluginException {
+		Reply reply = performRequest(SimpleFieldSetConstructor.create().put("Message", "GetIdentity").put("Truster", ownIdentity.getId()).put("Identity", identityId).get());
+		SimpleFieldSet fields = reply.getFields();
+		DefaultIdentity identity = parseIdentity("", fields);
+		Integer trust = parseInt(fields.get("Trust"), null);
+		int score = parseInt(fields.get("Score"), 0);
+		int rank = parseInt(fields.get("Rank"), 0);
+		identity.setTrust(ownIdentity, new Trust(trust, score, rank));
+		return identity;
+	}
+
+	/**
+	 * Subscribes to changes of identities and scores. The Web of Trust plugin
+	 * will send a notification for every change, which is handed to the given
+	 * listener on the thread that receives replies from plugins.
+	 *
+	 * @param subscriptionListener
+	 *            The listener for changes
+	 * @throws PluginException
+	 *             if the Web of Trust plugin does not confirm the
+	 *             subscriptions
+	 */
+	public void subscribe(SubscriptionListener subscriptionListener) throws PluginException {
+		try {
+			subscribe("Identities", subscriptionListener);
+			subscribe("Scores", subscriptionListener);
+		} catch (PluginException pe1) {
+			unsubscribe();
+			throw pe1;
+		}
+	}
+
+	/**
+	 * Cancels all subscriptions.
+	 */
+	public void unsubscribe() {
+		for (Entry<PluginIdentifier, Subscription> subscription : subscriptions.entrySet()) {
+			subscriptions.remove(subscription.getKey());
+			String subscriptionId = subscription.getValue().getSubscriptionId();
+			if (subscriptionId == null) {
+				continue;
+			}
+			try {
+				performRequest(SimpleFieldSetConstructor.create().put("Message", "Unsubscribe").put("SubscriptionID", subscriptionId).get());
+			} catch (PluginException pe1) {
+				logger.log(Level.FINE, String.format("Could not cancel subscription %s.", subscriptionId), pe1);
+			}
+		}
+	}
+
 	/**
 	 * Adds the given context to the given identity.
 	 *
@@ -321,6 +393,51 @@ public class WebOfTrustConnector {
 	// PRIVATE ACTIONS
 	//
 
+	/**
+	 * Subscribes to the given type of changes and waits for the confirmation
+	 * of the subscription.
+	 *
+	 * @param to
+	 *            The type of changes to subscribe to
+	 * @param subscriptionListener
+	 *            The listener for changes
+	 * @throws PluginException
+	 *             if the subscription is not confirmed
+	 */
+	private void subscribe(String to, SubscriptionListener subscriptionListener) throws PluginException {
+		String identifier = "FCP-Subscription-" + System.currentTimeMillis() + "-" + counter.getAndIncrement();
+		PluginIdentifier pluginIdentifier = new PluginIdentifier(WOT_PLUGIN_NAME, identifier);
+		Subscription subscription = new Subscription(subscriptionListener);
+		subscriptions.put(pluginIdentifier, subscription);
+		logger.log(Level.FINE, String.format("Subscribing to %s…", to));
+		try {
+			pluginConnector.sendRequest(WOT_PLUGIN_NAME, identifier, SimpleFieldSetConstructor.create().put("Message", "Subscribe").put("To", to).get());
+			subscription.waitForConfirmation(SUBSCRIPTION_TIMEOUT);
+		} catch (PluginException pe1) {
+			subscriptions.remove(pluginIdentifier);
+			throw pe1;
+		}
+	}
+
+	/**
+	 * Parses an identity from the given fields.
+	 *
+	 * @param prefix
+	 *            The prefix to use to access the identity
+	 * @param fields
+	 *            The fields to parse the identity from
+	 * @return The parsed identity
+	 */
+	private static DefaultIdentity parseIdentity(String prefix, SimpleFieldSet fields) {
+		String id = fields.get(prefix + "Identity");
+		String nickname = fields.get(prefix + "Nickname");
+		String requestUri = fields.get(prefix + "RequestURI");
+		DefaultIdentity identity = new DefaultIdentity(id, nickname, requestUri);
+		identity.setContexts(parseContexts(prefix + "Contexts.", fields));
+		identity.setProperties(parseProperties(prefix + "Properties.", fields));
+		return identity;
+	}
+
 	/**
 	 * Parses the contexts from the given fields.
 	 *
@@ -431,6 +548,10 @@ public class WebOfTrustConnector {
 		PluginIdentifier pluginIdentifier = new PluginIdentifier(receivedReplyEvent.pluginName(), receivedReplyEvent.identifier());
 		Reply reply = replies.remove(pluginIdentifier);
 		if (reply == null) {
+			Subscription subscription = subscriptions.get(pluginIdentifier);
+			if (subscription != null) {
+				acknowledge(receivedReplyEvent.identifier(), subscription, receivedReplyEvent.fieldSet());
+			}
 			return;
 		}
 		logger.log(Level.FINEST, String.format("Received Reply from Plugin: %s", receivedReplyEvent.fieldSet().get("Message")));
@@ -441,6 +562,197 @@ public class WebOfTrustConnector {
 		}
 	}
 
+	/**
+	 * Hands a message of the Web of Trust plugin to the given subscription and,
+	 * if the message is a notification, acknowledges it. The Web of Trust
+	 * plugin only removes a notification from its queue once it has been
+	 * answered with a “Success” message; an “Error” message makes it resend
+	 * the notification later.
+	 *
+	 * @param identifier
+	 *            The identifier of the subscription
+	 * @param subscription
+	 *            The subscription
+	 * @param fields
+	 *            The fields of the message
+	 */
+	private void acknowledge(String identifier, Subscription subscription, SimpleFieldSet fields) {
+		SimpleFieldSet acknowledgement;
+		try {
+			if (!subscription.receivedMessage(fields)) {
+				return;
+			}
+			acknowledgement = SimpleFieldSetConstructor.create().put("Message", "Success").get();
+		} catch (RuntimeException re1) {
+			logger.log(Level.WARNING, String.format("Could not process %s.", fields.get("Message")), re1);
+			acknowledgement = SimpleFieldSetConstructor.create().put("Message", "Error").put("Description", String.valueOf(re1.getMessage())).get();
+		}
+		try {
+			pluginConnector.sendRequest(WOT_PLUGIN_NAME, identifier, acknowledgement);
+		} catch (PluginException pe1) {
+			logger.log(Level.WARNING, String.format("Could not acknowledge %s.", fields.get("Message")), pe1);
+		}
+	}
+
+	/**
+	 * Listener for changes the Web of Trust plugin sends for a
+	 * {@link #subscribe(SubscriptionListener) subscription}.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	public interface SubscriptionListener {
+
+		/**
+		 * Notifies the listener that an identity was created or changed.
+		 *
+		 * @param identity
+		 *            The identity after the change (without any trust)
+		 */
+		void identityChanged(Identity identity);
+
+		/**
+		 * Notifies the listener that an identity was deleted.
+		 *
+		 * @param identityId
+		 *            The ID of the deleted identity
+		 */
+		void identityDeleted(String identityId);
+
+		/**
+		 * Notifies the listener that an own identity was created, changed, or
+		 * deleted.
+		 *
+		 * @param ownIdentityId
+		 *            The ID of the own identity
+		 */
+		void ownIdentityChanged(String ownIdentityId);
+
+		/**
+		 * Notifies the listener that the score of an identity changed.
+		 *
+		 * @param trusterId
+		 *            The ID of the own identity that assigns the score
+		 * @param trusteeId
+		 *            The ID of the identity that receives the score
+		 * @param score
+		 *            The new score (the explicit trust is always
+		 *            {@code null}), or {@code null} if the identity does
+		 *            not have a score anymore
+		 */
+		void scoreChanged(String trusterId, String trusteeId, @Nullable Trust score);
+
+		/**
+		 * Notifies the listener that a subscription has been terminated by
+		 * the Web of Trust plugin, and that changes may have been lost.
+		 */
+		void subscriptionLost();
+
+	}
+
+	/**
+	 * A subscription to changes.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class Subscription {
+
+		private final SubscriptionListener subscriptionListener;
+
+		/* all following fields are guarded by this. */
+		private String subscriptionId;
+		private boolean failed;
+
+		private Subscription(SubscriptionListener subscriptionListener) {
+			this.subscriptionListener = subscriptionListener;
+		}
+
+		private synchronized String getSubscriptionId() {
+			return subscriptionId;
+		}
+
+		private synchronized void waitForConfirmation(long timeout) throws PluginException {
+			long end = System.currentTimeMillis() + timeout;
+			while ((subscriptionId == null) && !failed) {
+				long remaining = end - System.currentTimeMillis();
+				if (remaining <= 0) {
+					throw new PluginException("Subscription was not confirmed.");
+				}
+				try {
+					wait(remaining);
+				} catch (InterruptedException ie1) {
+					throw new PluginException("Interrupted while waiting for subscription.", ie1);
+				}
+			}
+			if (failed) {
+				throw new PluginException("Subscription was rejected.");
+			}
+		}
+
+		/**
+		 * Processes a message the Web of Trust plugin sent for this
+		 * subscription. Notifications use the same fields as the replies to
+		 * “GetIdentity” (without a suffix), prefixed with “BeforeChange.” and
+		 * “AfterChange.”, respectively, and a “Type” of “Identity”,
+		 * “OwnIdentity”, “Score”, or “Inexistent”.
+		 *
+		 * @param fields
+		 *            The fields of the message
+		 * @return {@code true} if the message needs to be acknowledged,
+		 *         {@code false} otherwise
+		 */
+		private boolean receivedMessage(SimpleFieldSet fields) {
+			String message = fields.get("Message");
+			if ("Subscribed".equals(message)) {
+				synchronized (this) {
+					subscriptionId = fields.get("SubscriptionID");
+					notifyAll();
+				}
+			} else if ("Error".equals(message)) {
+				boolean confirmed;
+				synchronized (this) {
+					confirmed = subscriptionId != null;
+					failed = true;
+					notifyAll();
+				}
+				if (confirmed) {
+					subscriptionListener.subscriptionLost();
+				}
+			} else if (getSubscriptionId() == null) {
+				/* the initial synchronization is ignored, identities are loaded after subscribing. */
+				return true;
+			} else if ("IdentityChangedNotification".equals(message)) {
+				identityChanged(fields);
+				return true;
+			} else if ("ScoreChangedNotification".equals(message)) {
+				scoreChanged(fields);
+				return true;
+			}
+			return false;
+		}
+
+		private void identityChanged(SimpleFieldSet fields) {
+			String type = fields.get("AfterChange.Type");
+			if ("OwnIdentity".equals(type) || "OwnIdentity".equals(fields.get("BeforeChange.Type"))) {
+				subscriptionListener.ownIdentityChanged((fields.get("AfterChange.Identity") != null) ? fields.get("AfterChange.Identity") : fields.get("BeforeChange.Identity"));
+			} else if ("Inexistent".equals(type)) {
+				subscriptionListener.identityDeleted(fields.get("BeforeChange.Identity"));
+			} else {
+				subscriptionListener.identityChanged(parseIdentity("AfterChange.", fields));
+			}
+		}
+
+		private void scoreChanged(SimpleFieldSet fields) {
+			if ("Inexistent".equals(fields.get("AfterChange.Type"))) {
+				subscriptionListener.scoreChanged(fields.get("BeforeChange.Truster"), fields.get("BeforeChange.Trustee"), null);
+				return;
+			}
+			int score = parseInt(fields.get("AfterChange.Value"), 0);
+			int rank = parseInt(fields.get("AfterChange.Rank"), 0);
+			subscriptionListener.scoreChanged(fields.get("AfterChange.Truster"), fields.get("AfterChange.Trustee"), new Trust(null, score, rank));
+		}
+
+	}
+
 	/**
 	 * Container for the data of the reply from a plugin.
 	 *
@@ -0,0 +1,76 @@
+/*
+ * Sone - OwnIdentitiesAddedEvent.java - Copyright © 2016 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.freenet.wot.event;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+import net.pterodactylus.sone.freenet.wot.OwnIdentity;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Event that signals that several {@link OwnIdentity}s were added at once,
+ * e.g. when the identities are loaded for the first time. It is sent before
+ * the {@link OwnIdentityAddedEvent}s for each of the own identities, so that
+ * they can be processed together.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class OwnIdentitiesAddedEvent {
+
+	private final Collection<OwnIdentity> ownIdentities;
+
+	/**
+	 * Creates a new “own identities added” event.
+	 *
+	 * @param ownIdentities
+	 *            The own identities that were added
+	 */
+	public OwnIdentitiesAddedEvent(Collection<OwnIdentity> ownIdentities) {
+		this.ownIdentities = ImmutableList.copyOf(ownIdentities);
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the own identities that were added.
+	 *
+	 * @return The own identities that were added
+	 */
+	public Collection<OwnIdentity> ownIdentities() {
+		return ownIdentities;
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashSet<OwnIdentity>(ownIdentities).hashCode();
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (!(object instanceof OwnIdentitiesAddedEvent)) {
+			return false;
+		}
+		OwnIdentitiesAddedEvent ownIdentitiesAddedEvent = (OwnIdentitiesAddedEvent) object;
+		return new HashSet<OwnIdentity>(ownIdentities).equals(new HashSet<OwnIdentity>(ownIdentitiesAddedEvent.ownIdentities));
+	}
+
+}
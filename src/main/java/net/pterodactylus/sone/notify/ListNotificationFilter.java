@@ -42,13 +42,11 @@ import com.google.common.base.Optional;
 @Singleton
 public class ListNotificationFilter {
 
-	private final PostVisibilityFilter postVisibilityFilter;
-	private final ReplyVisibilityFilter replyVisibilityFilter;
+	private final VisibilityCache visibilityCache;
 
 	@Inject
-	public ListNotificationFilter(@Nonnull PostVisibilityFilter postVisibilityFilter, @Nonnull ReplyVisibilityFilter replyVisibilityFilter) {
-		this.postVisibilityFilter = postVisibilityFilter;
-		this.replyVisibilityFilter = replyVisibilityFilter;
+	public ListNotificationFilter(@Nonnull VisibilityCache visibilityCache) {
+		this.visibilityCache = visibilityCache;
 	}
 
 	/**
@@ -121,7 +119,7 @@ public class ListNotificationFilter {
 	@Nonnull
 	private Optional<ListNotification<Post>> filterPostNotification(@Nonnull ListNotification<Post> postNotification,
 			@Nullable Sone currentSone) {
-		List<Post> newPosts = from(postNotification.getElements()).filter(postVisibilityFilter.isVisible(currentSone)).toList();
+		List<Post> newPosts = from(postNotification.getElements()).filter(visibilityCache.isPostVisible(currentSone)).toList();
 		if (newPosts.isEmpty()) {
 			return Optional.absent();
 		}
@@ -150,7 +148,7 @@ public class ListNotificationFilter {
 	 */
 	private Optional<ListNotification<PostReply>> filterNewReplyNotification(ListNotification<PostReply> newReplyNotification,
 			@Nonnull Sone currentSone) {
-		List<PostReply> newReplies = from(newReplyNotification.getElements()).filter(replyVisibilityFilter.isVisible(currentSone)).toList();
+		List<PostReply> newReplies = from(newReplyNotification.getElements()).filter(visibilityCache.isReplyVisible(currentSone)).toList();
 		if (newReplies.isEmpty()) {
 			return Optional.absent();
 		}
@@ -54,19 +54,37 @@ public class PostVisibilityFilter {
 	 * otherwise
 	 */
 	boolean isPostVisible(@Nullable Sone sone, @Nonnull Post post) {
+		return getVisibleTime(sone, post) <= System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the time from which on the given post is visible to the given
+	 * Sone. This is the {@link Post#getTime() time} of the post unless one of
+	 * the conditions described in {@link #isPostVisible(Sone, Post)} that do
+	 * not depend on the current time hides the post.
+	 *
+	 * @param sone
+	 * 		The Sone that checks for a post’s visibility (may be
+	 * 		{@code null} to skip Sone-specific checks, such as trust)
+	 * @param post
+	 * 		The post to check for visibility
+	 * @return The time from which on the post is visible, or
+	 * {@link Long#MAX_VALUE} if the post is not visible at all
+	 */
+	long getVisibleTime(@Nullable Sone sone, @Nonnull Post post) {
 		checkNotNull(post, "post must not be null");
 		if (!post.isLoaded()) {
-			return false;
+			return Long.MAX_VALUE;
 		}
 		Sone postSone = post.getSone();
 		if (sone != null) {
 			Trust trust = postSone.getIdentity().getTrust((OwnIdentity) sone.getIdentity());
 			if (trust != null) {
 				if ((trust.getExplicit() != null) && (trust.getExplicit() < 0)) {
-					return false;
+					return Long.MAX_VALUE;
 				}
 				if ((trust.getExplicit() == null) && (trust.getImplicit() != null) && (trust.getImplicit() < 0)) {
-					return false;
+					return Long.MAX_VALUE;
 				}
 			} else {
 				/*
@@ -78,10 +96,10 @@ public class PostVisibilityFilter {
 				 */
 			}
 			if ((!postSone.equals(sone)) && !sone.hasFriend(postSone.getId()) && !sone.getId().equals(post.getRecipientId().orNull())) {
-				return false;
+				return Long.MAX_VALUE;
 			}
 		}
-		return post.getTime() <= System.currentTimeMillis();
+		return post.getTime();
 	}
 
 	@Nonnull
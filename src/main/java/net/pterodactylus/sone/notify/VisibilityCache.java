@@ -0,0 +1,313 @@
+package net.pterodactylus.sone.notify;
+
+import static java.lang.System.currentTimeMillis;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.pterodactylus.sone.core.event.FriendsChangedEvent;
+import net.pterodactylus.sone.core.event.PostRemovedEvent;
+import net.pterodactylus.sone.core.event.PostReplyRemovedEvent;
+import net.pterodactylus.sone.core.event.SoneRemovedEvent;
+import net.pterodactylus.sone.core.event.SoneUpdatedBatchEvent;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.freenet.wot.event.IdentityUpdatedEvent;
+import net.pterodactylus.sone.freenet.wot.event.OwnIdentityRemovedEvent;
+import net.pterodactylus.sone.freenet.wot.event.TrustUpdatedEvent;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Caches the visibility of posts and replies for every local Sone.
+ * <p>
+ * For every post and reply the time from which on it is visible to a local
+ * Sone is stored, so the trust and friendship checks of the
+ * {@link PostVisibilityFilter} are only performed once per element. Posts
+ * and replies with a time in the future are stored with their time, and
+ * turn visible once that time has come without being checked again.
+ * <p>
+ * The cached visibility of all posts of a Sone and of all replies to these
+ * posts is discarded when the Sone’s identity is updated, when the trust of a
+ * local Sone in the Sone changes, and when a local Sone starts or stops
+ * following the Sone. To find these without looking at every cached element,
+ * the IDs of the cached elements are also stored by the ID of the Sone whose
+ * changes can change their visibility. Posts that are not loaded yet and
+ * replies to posts that are not known yet are not cached.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+@Singleton
+public class VisibilityCache {
+
+	private final PostVisibilityFilter postVisibilityFilter;
+	private final ReplyVisibilityFilter replyVisibilityFilter;
+	private final ConcurrentMap<String, LocalSoneVisibility> localSoneVisibilities = new ConcurrentHashMap<String, LocalSoneVisibility>();
+
+	@Inject
+	public VisibilityCache(@Nonnull PostVisibilityFilter postVisibilityFilter, @Nonnull ReplyVisibilityFilter replyVisibilityFilter) {
+		this.postVisibilityFilter = postVisibilityFilter;
+		this.replyVisibilityFilter = replyVisibilityFilter;
+	}
+
+	/**
+	 * Returns a predicate that returns whether a post is visible to the given
+	 * Sone. The current time is determined once, when the predicate is
+	 * created.
+	 *
+	 * @param currentSone
+	 * 		The current Sone (may be {@code null})
+	 * @return A predicate for the visibility of posts
+	 */
+	@Nonnull
+	public Predicate<Post> isPostVisible(@Nullable final Sone currentSone) {
+		if (currentSone == null) {
+			return postVisibilityFilter.isVisible(null);
+		}
+		final LocalSoneVisibility localSoneVisibility = getLocalSoneVisibility(currentSone);
+		final long now = currentTimeMillis();
+		return new Predicate<Post>() {
+			@Override
+			public boolean apply(@Nullable Post post) {
+				return (post != null) && (localSoneVisibility.getVisibleTime(currentSone, post) <= now);
+			}
+		};
+	}
+
+	/**
+	 * Returns a predicate that returns whether a reply is visible to the given
+	 * Sone. The current time is determined once, when the predicate is
+	 * created.
+	 *
+	 * @param currentSone
+	 * 		The current Sone (may be {@code null})
+	 * @return A predicate for the visibility of replies
+	 */
+	@Nonnull
+	public Predicate<PostReply> isReplyVisible(@Nullable final Sone currentSone) {
+		if (currentSone == null) {
+			return replyVisibilityFilter.isVisible(null);
+		}
+		final LocalSoneVisibility localSoneVisibility = getLocalSoneVisibility(currentSone);
+		final long now = currentTimeMillis();
+		return new Predicate<PostReply>() {
+			@Override
+			public boolean apply(@Nullable PostReply postReply) {
+				return (postReply != null) && (localSoneVisibility.getVisibleTime(currentSone, postReply) <= now);
+			}
+		};
+	}
+
+	//
+	// EVENT HANDLERS
+	//
+
+	@Subscribe
+	public void identityUpdated(IdentityUpdatedEvent identityUpdatedEvent) {
+		invalidate(identityUpdatedEvent.ownIdentity().getId(), identityUpdatedEvent.identity().getId());
+	}
+
+	@Subscribe
+	public void trustUpdated(TrustUpdatedEvent trustUpdatedEvent) {
+		invalidate(trustUpdatedEvent.ownIdentity().getId(), trustUpdatedEvent.identity().getId());
+	}
+
+	@Subscribe
+	public void friendsChanged(FriendsChangedEvent friendsChangedEvent) {
+		invalidate(friendsChangedEvent.sone().getId(), friendsChangedEvent.friendSoneId());
+	}
+
+	@Subscribe
+	public void postRemoved(PostRemovedEvent postRemovedEvent) {
+		for (LocalSoneVisibility localSoneVisibility : localSoneVisibilities.values()) {
+			localSoneVisibility.postVisibleTimes.remove(postRemovedEvent.post().getId());
+		}
+	}
+
+	@Subscribe
+	public void postReplyRemoved(PostReplyRemovedEvent postReplyRemovedEvent) {
+		for (LocalSoneVisibility localSoneVisibility : localSoneVisibilities.values()) {
+			localSoneVisibility.replyVisibleTimes.remove(postReplyRemovedEvent.postReply().getId());
+		}
+	}
+
+	@Subscribe
+	public void soneUpdated(SoneUpdatedBatchEvent soneUpdatedBatchEvent) {
+		for (LocalSoneVisibility localSoneVisibility : localSoneVisibilities.values()) {
+			for (Post post : soneUpdatedBatchEvent.removedPosts()) {
+				localSoneVisibility.postVisibleTimes.remove(post.getId());
+			}
+			for (PostReply postReply : soneUpdatedBatchEvent.removedPostReplies()) {
+				localSoneVisibility.replyVisibleTimes.remove(postReply.getId());
+			}
+		}
+	}
+
+	@Subscribe
+	public void soneRemoved(SoneRemovedEvent soneRemovedEvent) {
+		localSoneVisibilities.remove(soneRemovedEvent.sone().getId());
+		for (LocalSoneVisibility localSoneVisibility : localSoneVisibilities.values()) {
+			localSoneVisibility.invalidate(soneRemovedEvent.sone().getId());
+		}
+	}
+
+	@Subscribe
+	public void ownIdentityRemoved(OwnIdentityRemovedEvent ownIdentityRemovedEvent) {
+		localSoneVisibilities.remove(ownIdentityRemovedEvent.ownIdentity().getId());
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private LocalSoneVisibility getLocalSoneVisibility(Sone localSone) {
+		LocalSoneVisibility localSoneVisibility = localSoneVisibilities.get(localSone.getId());
+		if (localSoneVisibility != null) {
+			return localSoneVisibility;
+		}
+		localSoneVisibility = new LocalSoneVisibility();
+		LocalSoneVisibility existingLocalSoneVisibility = localSoneVisibilities.putIfAbsent(localSone.getId(), localSoneVisibility);
+		return (existingLocalSoneVisibility != null) ? existingLocalSoneVisibility : localSoneVisibility;
+	}
+
+	private void invalidate(String localSoneId, String soneId) {
+		LocalSoneVisibility localSoneVisibility = localSoneVisibilities.get(localSoneId);
+		if (localSoneVisibility != null) {
+			localSoneVisibility.invalidate(soneId);
+		}
+	}
+
+	/**
+	 * The cached visibility of posts and replies for a single local Sone.
+	 */
+	private class LocalSoneVisibility {
+
+		private final VisibleTimes postVisibleTimes = new VisibleTimes();
+		private final VisibleTimes replyVisibleTimes = new VisibleTimes();
+
+		/**
+		 * Counts invalidations, so that a visibility that was calculated
+		 * while an invalidation was running is not kept.
+		 */
+		private final AtomicLong invalidations = new AtomicLong();
+
+		private long getVisibleTime(Sone localSone, Post post) {
+			VisibleTime visibleTime = postVisibleTimes.get(post.getId());
+			if (visibleTime != null) {
+				return visibleTime.time;
+			}
+			if (!post.isLoaded()) {
+				return Long.MAX_VALUE;
+			}
+			long invalidationsBefore = invalidations.get();
+			long time = postVisibilityFilter.getVisibleTime(localSone, post);
+			store(postVisibleTimes, post.getId(), new VisibleTime(post.getSone().getId(), time), invalidationsBefore);
+			return time;
+		}
+
+		private long getVisibleTime(Sone localSone, PostReply postReply) {
+			VisibleTime visibleTime = replyVisibleTimes.get(postReply.getId());
+			if (visibleTime != null) {
+				return visibleTime.time;
+			}
+			Optional<Post> post = postReply.getPost();
+			if (!post.isPresent() || !post.get().isLoaded()) {
+				return Long.MAX_VALUE;
+			}
+			long invalidationsBefore = invalidations.get();
+			long time = Math.max(getVisibleTime(localSone, post.get()), postReply.getTime());
+			store(replyVisibleTimes, postReply.getId(), new VisibleTime(post.get().getSone().getId(), time), invalidationsBefore);
+			return time;
+		}
+
+		private void store(VisibleTimes visibleTimes, String id, VisibleTime visibleTime, long invalidationsBefore) {
+			visibleTimes.put(id, visibleTime);
+			if (invalidations.get() != invalidationsBefore) {
+				visibleTimes.remove(id);
+			}
+		}
+
+		private void invalidate(String soneId) {
+			invalidations.incrementAndGet();
+			postVisibleTimes.removeSone(soneId);
+			replyVisibleTimes.removeSone(soneId);
+		}
+
+	}
+
+	/**
+	 * The visible times of one kind of element, by the ID of the element, and
+	 * the IDs of the elements, by the ID of the Sone in their visible times.
+	 */
+	private static class VisibleTimes {
+
+		private final ConcurrentMap<String, VisibleTime> visibleTimes = new ConcurrentHashMap<String, VisibleTime>();
+		private final ConcurrentMap<String, Set<String>> idsBySone = new ConcurrentHashMap<String, Set<String>>();
+
+		@Nullable
+		private VisibleTime get(String id) {
+			return visibleTimes.get(id);
+		}
+
+		private void put(String id, VisibleTime visibleTime) {
+			visibleTimes.put(id, visibleTime);
+			Set<String> ids = idsBySone.get(visibleTime.soneId);
+			if (ids == null) {
+				Set<String> newIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+				ids = idsBySone.putIfAbsent(visibleTime.soneId, newIds);
+				if (ids == null) {
+					ids = newIds;
+				}
+			}
+			ids.add(id);
+		}
+
+		private void remove(String id) {
+			VisibleTime visibleTime = visibleTimes.remove(id);
+			if (visibleTime != null) {
+				Set<String> ids = idsBySone.get(visibleTime.soneId);
+				if (ids != null) {
+					ids.remove(id);
+				}
+			}
+		}
+
+		private void removeSone(String soneId) {
+			Set<String> ids = idsBySone.remove(soneId);
+			if (ids != null) {
+				for (String id : ids) {
+					visibleTimes.remove(id);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * The time from which on a post or reply is visible, and the ID of the
+	 * Sone whose changes can change this time.
+	 */
+	private static class VisibleTime {
+
+		private final String soneId;
+		private final long time;
+
+		private VisibleTime(String soneId, long time) {
+			this.soneId = soneId;
+			this.time = time;
+		}
+
+	}
+
+}
@@ -26,7 +26,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -60,6 +59,7 @@ import net.pterodactylus.sone.core.event.SoneInsertingEvent;
 import net.pterodactylus.sone.core.event.SoneLockedEvent;
 import net.pterodactylus.sone.core.event.SoneRemovedEvent;
 import net.pterodactylus.sone.core.event.SoneUnlockedEvent;
+import net.pterodactylus.sone.core.event.SoneUpdatedBatchEvent;
 import net.pterodactylus.sone.core.event.UpdateFoundEvent;
 import net.pterodactylus.sone.data.Album;
 import net.pterodactylus.sone.data.Image;
@@ -79,8 +79,7 @@ import net.pterodactylus.sone.main.SonePlugin.PluginVersion;
 import net.pterodactylus.sone.main.SonePlugin.PluginYear;
 import net.pterodactylus.sone.notify.ListNotification;
 import net.pterodactylus.sone.notify.ListNotificationFilter;
-import net.pterodactylus.sone.notify.PostVisibilityFilter;
-import net.pterodactylus.sone.notify.ReplyVisibilityFilter;
+import net.pterodactylus.sone.notify.VisibilityCache;
 import net.pterodactylus.sone.template.AlbumAccessor;
 import net.pterodactylus.sone.template.CollectionAccessor;
 import net.pterodactylus.sone.template.CssClassNameFilter;
@@ -104,8 +103,7 @@ import net.pterodactylus.sone.template.SubstringFilter;
 import net.pterodactylus.sone.template.TrustAccessor;
 import net.pterodactylus.sone.template.UniqueElementFilter;
 import net.pterodactylus.sone.template.UnknownDateFilter;
-import net.pterodactylus.sone.text.Part;
-import net.pterodactylus.sone.text.SonePart;
+import net.pterodactylus.sone.text.ParsedTextCache;
 import net.pterodactylus.sone.text.SoneTextParser;
 import net.pterodactylus.sone.text.TimeTextConverter;
 import net.pterodactylus.sone.web.ajax.BookmarkAjaxPage;
@@ -213,7 +211,6 @@ import freenet.l10n.BaseL10n;
 import freenet.support.api.HTTPRequest;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.eventbus.Subscribe;
 import com.google.inject.Inject;
@@ -247,8 +244,8 @@ public class WebInterface implements SessionProvider {
 	/** The template context factory. */
 	private final TemplateContextFactory templateContextFactory;
 
-	/** The Sone text parser. */
-	private final SoneTextParser soneTextParser;
+	/** The cache for parsed texts. */
+	private final ParsedTextCache parsedTextCache;
 
 	/** The parser filter. */
 	private final ParserFilter parserFilter;
@@ -256,8 +253,7 @@ public class WebInterface implements SessionProvider {
 	private final RenderFilter renderFilter;
 
 	private final ListNotificationFilter listNotificationFilter;
-	private final PostVisibilityFilter postVisibilityFilter;
-	private final ReplyVisibilityFilter replyVisibilityFilter;
+	private final VisibilityCache visibilityCache;
 
 	private final ElementLoader elementLoader;
 	private final LinkedElementRenderFilter linkedElementRenderFilter;
@@ -313,15 +309,14 @@ public class WebInterface implements SessionProvider {
 	 *            The Sone plugin
 	 */
 	@Inject
-	public WebInterface(SonePlugin sonePlugin, Loaders loaders, ListNotificationFilter listNotificationFilter, PostVisibilityFilter postVisibilityFilter, ReplyVisibilityFilter replyVisibilityFilter, ElementLoader elementLoader) {
+	public WebInterface(SonePlugin sonePlugin, Loaders loaders, ListNotificationFilter listNotificationFilter, VisibilityCache visibilityCache, ElementLoader elementLoader) {
 		this.sonePlugin = sonePlugin;
 		this.loaders = loaders;
 		this.listNotificationFilter = listNotificationFilter;
-		this.postVisibilityFilter = postVisibilityFilter;
-		this.replyVisibilityFilter = replyVisibilityFilter;
+		this.visibilityCache = visibilityCache;
 		this.elementLoader = elementLoader;
 		formPassword = sonePlugin.pluginRespirator().getToadletContainer().getFormPassword();
-		soneTextParser = new SoneTextParser(getCore(), getCore());
+		parsedTextCache = new ParsedTextCache(getCore(), new SoneTextParser(getCore(), getCore()));
 
 		templateContextFactory = new TemplateContextFactory();
 		templateContextFactory.addAccessor(Object.class, new ReflectionAccessor());
@@ -346,9 +341,9 @@ public class WebInterface implements SessionProvider {
 		templateContextFactory.addFilter("match", new MatchFilter());
 		templateContextFactory.addFilter("css", new CssClassNameFilter());
 		templateContextFactory.addFilter("js", new JavascriptFilter());
-		templateContextFactory.addFilter("parse", parserFilter = new ParserFilter(getCore(), soneTextParser));
+		templateContextFactory.addFilter("parse", parserFilter = new ParserFilter(getCore(), parsedTextCache));
 		templateContextFactory.addFilter("shorten", shortenFilter = new ShortenFilter());
-		templateContextFactory.addFilter("render", renderFilter = new RenderFilter(getCore(), templateContextFactory));
+		templateContextFactory.addFilter("render", renderFilter = new RenderFilter(getCore(), parsedTextCache));
 		templateContextFactory.addFilter("linked-elements", new LinkedElementsFilter(elementLoader));
 		templateContextFactory.addFilter("render-linked-element", linkedElementRenderFilter = new LinkedElementRenderFilter(templateContextFactory));
 		templateContextFactory.addFilter("reparse", new ReparseFilter());
@@ -424,6 +419,16 @@ public class WebInterface implements SessionProvider {
 		return templateContextFactory;
 	}
 
+	/**
+	 * Returns the cache for parsed texts, e.g. to check its hit and miss
+	 * counters.
+	 *
+	 * @return The cache for parsed texts
+	 */
+	public ParsedTextCache getParsedTextCache() {
+		return parsedTextCache;
+	}
+
 	private Session getCurrentSessionWithoutCreation(ToadletContext toadletContenxt) {
 		return getSessionManager().useSession(toadletContenxt);
 	}
@@ -557,7 +562,7 @@ public class WebInterface implements SessionProvider {
 				.addAll(newPostNotification.getElements())
 				.addAll(localPostNotification.getElements())
 				.build();
-		return from(allNewPosts).filter(postVisibilityFilter.isVisible(currentSone)).toSet();
+		return from(allNewPosts).filter(visibilityCache.isPostVisible(currentSone)).toSet();
 	}
 
 	/**
@@ -576,7 +581,7 @@ public class WebInterface implements SessionProvider {
 				.addAll(newReplyNotification.getElements())
 				.addAll(localReplyNotification.getElements())
 				.build();
-		return from(allNewReplies).filter(replyVisibilityFilter.isVisible(currentSone)).toSet();
+		return from(allNewReplies).filter(visibilityCache.isReplyVisible(currentSone)).toSet();
 	}
 
 	/**
@@ -716,7 +721,7 @@ public class WebInterface implements SessionProvider {
 
 		PageToadletFactory pageToadletFactory = new PageToadletFactory(sonePlugin.pluginRespirator().getHLSimpleClient(), "/Sone/");
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new RedirectPage<FreenetRequest>("", "index.html")));
-		pageToadlets.add(pageToadletFactory.createPageToadlet(new IndexPage(indexTemplate, this, postVisibilityFilter), "Index"));
+		pageToadlets.add(pageToadletFactory.createPageToadlet(new IndexPage(indexTemplate, this, visibilityCache), "Index"));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new NewPage(newTemplate, this), "New"));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new CreateSonePage(createSoneTemplate, this), "CreateSone"));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new KnownSonesPage(knownSonesTemplate, this), "KnownSones"));
@@ -821,23 +826,24 @@ public class WebInterface implements SessionProvider {
 	}
 
 	/**
-	 * Returns all {@link Sone#isLocal() local Sone}s that are referenced by
-	 * {@link SonePart}s in the given text (after parsing it using
-	 * {@link SoneTextParser}).
+	 * Returns whether any of the Sones with the given IDs is a {@link
+	 * Sone#isLocal() local Sone}. The IDs of the Sones mentioned in a post or
+	 * a reply are extracted by the database when the post or reply is created,
+	 * so the text does not have to be parsed again.
 	 *
-	 * @param text
-	 *            The text to parse
-	 * @return All mentioned local Sones
+	 * @param mentionedSoneIds
+	 *            The IDs of the mentioned Sones
+	 * @return {@code true} if a local Sone is mentioned, {@code false}
+	 *         otherwise
 	 */
-	private Collection<Sone> getMentionedSones(String text) {
-		/* we need no context to find mentioned Sones. */
-		Set<Sone> mentionedSones = new HashSet<Sone>();
-		for (Part part : soneTextParser.parse(text, null)) {
-			if (part instanceof SonePart) {
-				mentionedSones.add(((SonePart) part).getSone());
+	private boolean isLocalSoneMentioned(Set<String> mentionedSoneIds) {
+		for (String mentionedSoneId : mentionedSoneIds) {
+			Sone mentionedSone = getCore().getSone(mentionedSoneId);
+			if ((mentionedSone != null) && mentionedSone.isLocal()) {
+				return true;
 			}
 		}
-		return Collections2.filter(mentionedSones, Sone.LOCAL_SONE_FILTER);
+		return false;
 	}
 
 	/**
@@ -861,23 +867,37 @@ public class WebInterface implements SessionProvider {
 		}
 	}
 
+	/**
+	 * Returns whether a local Sone is mentioned in the given post or in one of
+	 * its replies that has not been marked as known yet. The replies are not
+	 * taken from the post’s thread but from the replies that mention a local
+	 * Sone, so the whole thread does not have to be looked at.
+	 *
+	 * @param post
+	 *            The post to check
+	 * @return {@code true} if a local Sone is mentioned in the post or in a
+	 *         new reply to it, {@code false} otherwise
+	 */
 	private boolean localSoneMentionedInNewPostOrReply(Post post) {
 		if (!post.getSone().isLocal()) {
-			if (!getMentionedSones(post.getText()).isEmpty() && !post.isKnown()) {
+			if (isLocalSoneMentioned(getCore().getMentionedSoneIds(post)) && !post.isKnown()) {
 				return true;
 			}
 		}
-		for (PostReply postReply : getCore().getReplies(post.getId())) {
-			if (postReply.getSone().isLocal()) {
-				continue;
-			}
-			if (!getMentionedSones(postReply.getText()).isEmpty() && !postReply.isKnown()) {
-				return true;
+		for (Sone localSone : getCore().getLocalSones()) {
+			for (PostReply postReply : getCore().getMentioningPostReplies(localSone.getId())) {
+				if (postReply.getPostId().equals(post.getId()) && !postReply.getSone().isLocal() && !postReply.isKnown()) {
+					return true;
+				}
 			}
 		}
 		return false;
 	}
 
+	private boolean localSoneMentionedInNewReply(PostReply postReply) {
+		return !postReply.getSone().isLocal() && isLocalSoneMentioned(getCore().getMentionedSoneIds(postReply)) && !postReply.isKnown();
+	}
+
 	//
 	// EVENT HANDLERS
 	//
@@ -904,7 +924,10 @@ public class WebInterface implements SessionProvider {
 	 */
 	@Subscribe
 	public void newPostFound(NewPostFoundEvent newPostFoundEvent) {
-		Post post = newPostFoundEvent.post();
+		newPostFound(newPostFoundEvent.post());
+	}
+
+	private void newPostFound(Post post) {
 		boolean isLocal = post.getSone().isLocal();
 		if (isLocal) {
 			localPostNotification.add(post);
@@ -913,7 +936,7 @@ public class WebInterface implements SessionProvider {
 		}
 		if (!hasFirstStartNotification()) {
 			notificationManager.addNotification(isLocal ? localPostNotification : newPostNotification);
-			if (!getMentionedSones(post.getText()).isEmpty() && !isLocal) {
+			if (!isLocal && isLocalSoneMentioned(getCore().getMentionedSoneIds(post))) {
 				mentionNotification.add(post);
 				notificationManager.addNotification(mentionNotification);
 			}
@@ -930,7 +953,10 @@ public class WebInterface implements SessionProvider {
 	 */
 	@Subscribe
 	public void newReplyFound(NewPostReplyFoundEvent newPostReplyFoundEvent) {
-		PostReply reply = newPostReplyFoundEvent.postReply();
+		newReplyFound(newPostReplyFoundEvent.postReply());
+	}
+
+	private void newReplyFound(PostReply reply) {
 		boolean isLocal = reply.getSone().isLocal();
 		if (isLocal) {
 			localReplyNotification.add(reply);
@@ -939,7 +965,7 @@ public class WebInterface implements SessionProvider {
 		}
 		if (!hasFirstStartNotification()) {
 			notificationManager.addNotification(isLocal ? localReplyNotification : newReplyNotification);
-			if (reply.getPost().isPresent() && localSoneMentionedInNewPostOrReply(reply.getPost().get())) {
+			if (reply.getPost().isPresent() && localSoneMentionedInNewReply(reply)) {
 				mentionNotification.add(reply.getPost().get());
 				notificationManager.addNotification(mentionNotification);
 			}
@@ -948,6 +974,29 @@ public class WebInterface implements SessionProvider {
 		}
 	}
 
+	/**
+	 * Notifies the web interface about the new and removed {@link Post}s and
+	 * {@link PostReply}s of an updated {@link Sone}.
+	 *
+	 * @param soneUpdatedBatchEvent
+	 *            The event
+	 */
+	@Subscribe
+	public void soneUpdated(SoneUpdatedBatchEvent soneUpdatedBatchEvent) {
+		for (Post post : soneUpdatedBatchEvent.newPosts()) {
+			newPostFound(post);
+		}
+		for (Post post : soneUpdatedBatchEvent.removedPosts()) {
+			removePost(post);
+		}
+		for (PostReply reply : soneUpdatedBatchEvent.newPostReplies()) {
+			newReplyFound(reply);
+		}
+		for (PostReply reply : soneUpdatedBatchEvent.removedPostReplies()) {
+			removeReply(reply);
+		}
+	}
+
 	/**
 	 * Notifies the web interface that a {@link Sone} was marked as known.
 	 *
@@ -23,7 +23,7 @@ import com.google.common.util.concurrent.Service
  * Database for Sone data. This interface combines the various provider,
  * store, and builder factory interfaces into a single interface.
  */
-interface Database : Service, SoneDatabase, FriendDatabase, PostDatabase, PostReplyDatabase, AlbumDatabase, ImageDatabase, BookmarkDatabase {
+interface Database : Service, SoneDatabase, FriendDatabase, PostDatabase, PostReplyDatabase, AlbumDatabase, ImageDatabase, BookmarkDatabase, LikeDatabase, MentionProvider {
 
 	@Throws(DatabaseException::class)
 	fun save()
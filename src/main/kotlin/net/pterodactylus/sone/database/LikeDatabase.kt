@@ -0,0 +1,6 @@
+package net.pterodactylus.sone.database
+
+/**
+ * Combines a [LikeProvider] and a [LikeStore] into a like database.
+ */
+interface LikeDatabase : LikeProvider, LikeStore
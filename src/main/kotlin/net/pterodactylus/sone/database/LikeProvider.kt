@@ -0,0 +1,15 @@
+package net.pterodactylus.sone.database
+
+import net.pterodactylus.sone.data.Post
+import net.pterodactylus.sone.data.PostReply
+import net.pterodactylus.sone.data.Sone
+
+/**
+ * Provides the [Sone]s that like a [Post] or a [PostReply].
+ */
+interface LikeProvider {
+
+	fun getLikes(post: Post): Set<Sone>
+	fun getLikes(postReply: PostReply): Set<Sone>
+
+}
@@ -0,0 +1,15 @@
+package net.pterodactylus.sone.database
+
+import net.pterodactylus.sone.data.Sone
+
+/**
+ * Stores which [Sone]s like which posts and replies.
+ */
+interface LikeStore {
+
+	fun likePost(sone: Sone, postId: String)
+	fun unlikePost(sone: Sone, postId: String)
+	fun likePostReply(sone: Sone, postReplyId: String)
+	fun unlikePostReply(sone: Sone, postReplyId: String)
+
+}
@@ -0,0 +1,18 @@
+package net.pterodactylus.sone.database
+
+import net.pterodactylus.sone.data.Post
+import net.pterodactylus.sone.data.PostReply
+import net.pterodactylus.sone.data.Sone
+
+/**
+ * Provides the IDs of the [Sone]s that are mentioned in a [Post] or a
+ * [PostReply], and the posts and replies that mention a [Sone].
+ */
+interface MentionProvider {
+
+	fun getMentionedSoneIds(post: Post): Set<String>
+	fun getMentionedSoneIds(postReply: PostReply): Set<String>
+	fun getMentioningPosts(soneId: String): Set<Post>
+	fun getMentioningPostReplies(soneId: String): Set<PostReply>
+
+}
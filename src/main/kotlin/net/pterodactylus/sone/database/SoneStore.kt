@@ -8,6 +8,7 @@ import net.pterodactylus.sone.data.Sone
 interface SoneStore {
 
 	fun storeSone(sone: Sone)
+	fun storeSones(sones: Collection<Sone>)
 	fun removeSone(sone: Sone)
 
 }
@@ -2,9 +2,8 @@ package net.pterodactylus.sone.template
 
 import net.pterodactylus.sone.core.Core
 import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.text.ParsedTextCache
 import net.pterodactylus.sone.text.Part
-import net.pterodactylus.sone.text.SoneTextParser
-import net.pterodactylus.sone.text.SoneTextParserContext
 import net.pterodactylus.util.template.Filter
 import net.pterodactylus.util.template.TemplateContext
 import javax.inject.Inject
@@ -14,7 +13,7 @@ import javax.inject.Singleton
  * Parses a [String] into a number of [Part]s.
  */
 @Singleton
-class ParserFilter @Inject constructor(private val core: Core, private val soneTextParser: SoneTextParser) : Filter {
+class ParserFilter @Inject constructor(private val core: Core, private val parsedTextCache: ParsedTextCache) : Filter {
 
 	override fun format(templateContext: TemplateContext?, data: Any?, parameters: MutableMap<String, Any?>?): Any? {
 		val text = data?.toString() ?: return listOf<Part>()
@@ -24,8 +23,7 @@ class ParserFilter @Inject constructor(private val core: Core, private val soneT
 			is Sone -> soneParameter
 			else -> null
 		}
-		val context = SoneTextParserContext(sone)
-		return soneTextParser.parse(text, context)
+		return parsedTextCache.parse(text, sone)
 	}
 
 }
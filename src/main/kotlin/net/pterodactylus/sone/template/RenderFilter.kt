@@ -4,84 +4,96 @@ import net.pterodactylus.sone.core.Core
 import net.pterodactylus.sone.text.FreemailPart
 import net.pterodactylus.sone.text.FreenetLinkPart
 import net.pterodactylus.sone.text.LinkPart
+import net.pterodactylus.sone.text.ParsedTextCache
 import net.pterodactylus.sone.text.Part
 import net.pterodactylus.sone.text.PlainTextPart
 import net.pterodactylus.sone.text.PostPart
 import net.pterodactylus.sone.text.SonePart
-import net.pterodactylus.sone.text.SoneTextParser
-import net.pterodactylus.sone.text.SoneTextParserContext
-import net.pterodactylus.sone.utils.asTemplate
 import net.pterodactylus.util.template.Filter
+import net.pterodactylus.util.template.HtmlFilter
 import net.pterodactylus.util.template.TemplateContext
-import net.pterodactylus.util.template.TemplateContextFactory
-import java.io.StringWriter
-import java.io.Writer
 import java.net.URLEncoder
 
 /**
  * Renders a number of pre-parsed [Part] into a [String].
  *
+ * The HTML is written directly into a per-thread buffer instead of rendering
+ * a template for every part. Texts are escaped with the same replacements
+ * the [HtmlFilter] uses, so the output is identical to rendering
+ * `<%text|html>` and the link template for every part.
+ *
  * @author [David ‘Bombe’ Roden](mailto:bombe@pterodactylus.net)
  */
-class RenderFilter(private val core: Core, private val templateContextFactory: TemplateContextFactory) : Filter {
+class RenderFilter(private val core: Core, private val parsedTextCache: ParsedTextCache) : Filter {
 
 	companion object {
-		private val plainTextTemplate = "<%text|html>".asTemplate()
-		private val linkTemplate = "<a class=\"<%cssClass|html>\" href=\"<%link|html>\" title=\"<%title|html>\"><%text|html></a>".asTemplate()
+
+		/** The replacements of the [HtmlFilter], indexed by character. */
+		private val htmlReplacements: Array<String?> = HtmlFilter().let { htmlFilter ->
+			(Char.MIN_VALUE..Char.MAX_VALUE)
+					.map { it.toString() }
+					.map { it to htmlFilter.format(null, it, mutableMapOf())?.toString() }
+					.filter { it.first != it.second }
+					.let { replacements ->
+						arrayOfNulls<String>((replacements.map { it.first[0].toInt() }.max() ?: -1) + 1).apply {
+							replacements.forEach { this[it.first[0].toInt()] = it.second }
+						}
+					}
+		}
+
+		private val buffer = object : ThreadLocal<StringBuilder>() {
+			override fun initialValue() = StringBuilder()
+		}
+
 	}
 
 	override fun format(templateContext: TemplateContext?, data: Any?, parameters: MutableMap<String, Any?>?): Any? {
 		@Suppress("UNCHECKED_CAST")
 		val parts = data as? Iterable<Part> ?: return null
-		val parsedTextWriter = StringWriter()
-		render(parsedTextWriter, parts)
-		return parsedTextWriter.toString()
+		return buffer.get().apply { setLength(0) }
+				.also { render(it, parts) }
+				.toString()
 	}
 
-	private fun render(writer: Writer, parts: Iterable<Part>) {
-		parts.forEach { render(writer, it) }
+	private fun render(output: StringBuilder, parts: Iterable<Part>) {
+		parts.forEach { render(output, it) }
 	}
 
-	private fun render(writer: Writer, part: Part) {
-		@Suppress("UNCHECKED_CAST")
+	private fun render(output: StringBuilder, part: Part) {
 		when (part) {
-			is PlainTextPart -> render(writer, part)
-			is FreenetLinkPart -> render(writer, part)
-			is LinkPart -> render(writer, part)
-			is SonePart -> render(writer, part)
-			is PostPart -> render(writer, part)
-			is FreemailPart -> render(writer, part)
+			is PlainTextPart -> render(output, part)
+			is FreenetLinkPart -> render(output, part)
+			is LinkPart -> render(output, part)
+			is SonePart -> render(output, part)
+			is PostPart -> render(output, part)
+			is FreemailPart -> render(output, part)
 		}
 	}
 
-	private fun render(writer: Writer, plainTextPart: PlainTextPart) {
-		val templateContext = templateContextFactory.createTemplateContext()
-		templateContext.set("text", plainTextPart.text)
-		plainTextTemplate.render(templateContext, writer)
+	private fun render(output: StringBuilder, plainTextPart: PlainTextPart) {
+		output.appendHtml(plainTextPart.text)
 	}
 
-	private fun render(writer: Writer, freenetLinkPart: FreenetLinkPart) {
-		renderLink(writer, "/${freenetLinkPart.link}", freenetLinkPart.text, freenetLinkPart.title, if (freenetLinkPart.trusted) "freenet-trusted" else "freenet")
+	private fun render(output: StringBuilder, freenetLinkPart: FreenetLinkPart) {
+		renderLink(output, "/${freenetLinkPart.link}", freenetLinkPart.text, freenetLinkPart.title, if (freenetLinkPart.trusted) "freenet-trusted" else "freenet")
 	}
 
-	private fun render(writer: Writer, linkPart: LinkPart) {
-		renderLink(writer, "/external-link/?_CHECKED_HTTP_=${linkPart.link.urlEncode()}", linkPart.text, linkPart.title, "internet")
+	private fun render(output: StringBuilder, linkPart: LinkPart) {
+		renderLink(output, "/external-link/?_CHECKED_HTTP_=${linkPart.link.urlEncode()}", linkPart.text, linkPart.title, "internet")
 	}
 
 	private fun String.urlEncode(): String = URLEncoder.encode(this, "UTF-8")
 
-	private fun render(writer: Writer, sonePart: SonePart) {
+	private fun render(output: StringBuilder, sonePart: SonePart) {
 		if (sonePart.sone.name != null) {
-			renderLink(writer, "viewSone.html?sone=${sonePart.sone.id}", SoneAccessor.getNiceName(sonePart.sone), SoneAccessor.getNiceName(sonePart.sone), "in-sone")
+			renderLink(output, "viewSone.html?sone=${sonePart.sone.id}", SoneAccessor.getNiceName(sonePart.sone), SoneAccessor.getNiceName(sonePart.sone), "in-sone")
 		} else {
-			renderLink(writer, "/WebOfTrust/ShowIdentity?id=${sonePart.sone.id}", sonePart.sone.id, sonePart.sone.id, "in-sone")
+			renderLink(output, "/WebOfTrust/ShowIdentity?id=${sonePart.sone.id}", sonePart.sone.id, sonePart.sone.id, "in-sone")
 		}
 	}
 
-	private fun render(writer: Writer, postPart: PostPart) {
-		val parser = SoneTextParser(core, core)
-		val parserContext = SoneTextParserContext(postPart.post.sone)
-		val parts = parser.parse(postPart.post.text, parserContext)
+	private fun render(output: StringBuilder, postPart: PostPart) {
+		val parts = parsedTextCache.parse(postPart.post.text, postPart.post.sone)
 		val excerpt = StringBuilder()
 		for (part in parts) {
 			excerpt.append(part.text)
@@ -96,26 +108,38 @@ class RenderFilter(private val core: Core, private val templateContextFactory: T
 				break
 			}
 		}
-		renderLink(writer, "viewPost.html?post=${postPart.post.id}", excerpt.toString(), SoneAccessor.getNiceName(postPart.post.sone), "in-sone")
+		renderLink(output, "viewPost.html?post=${postPart.post.id}", excerpt, SoneAccessor.getNiceName(postPart.post.sone), "in-sone")
 	}
 
-	private fun render(writer: Writer, freemailPart: FreemailPart) {
+	private fun render(output: StringBuilder, freemailPart: FreemailPart) {
 		val sone = core.getSone(freemailPart.identityId)
 		val soneName = sone?.let(SoneAccessor::getNiceName) ?: freemailPart.identityId
-		renderLink(writer,
+		renderLink(output,
 				"/Freemail/NewMessage?to=${freemailPart.identityId}",
 				"${freemailPart.emailLocalPart}@$soneName.freemail",
 				"$soneName\n${freemailPart.emailLocalPart}@${freemailPart.freemailId}.freemail",
 				"in-sone")
 	}
 
-	private fun renderLink(writer: Writer, link: String, text: String, title: String, cssClass: String) {
-		val templateContext = templateContextFactory.createTemplateContext()
-		templateContext["cssClass"] = cssClass
-		templateContext["link"] = link
-		templateContext["text"] = text
-		templateContext["title"] = title
-		linkTemplate.render(templateContext, writer)
+	private fun renderLink(output: StringBuilder, link: CharSequence, text: CharSequence, title: CharSequence, cssClass: CharSequence) {
+		output.append("<a class=\"").appendHtml(cssClass)
+				.append("\" href=\"").appendHtml(link)
+				.append("\" title=\"").appendHtml(title)
+				.append("\">").appendHtml(text)
+				.append("</a>")
+	}
+
+	private fun StringBuilder.appendHtml(text: CharSequence): StringBuilder {
+		for (index in 0 until text.length) {
+			val character = text[index]
+			val replacement = if (character.toInt() < htmlReplacements.size) htmlReplacements[character.toInt()] else null
+			if (replacement != null) {
+				append(replacement)
+			} else {
+				append(character)
+			}
+		}
+		return this
 	}
 
 }
@@ -0,0 +1,63 @@
+package net.pterodactylus.sone.text
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import net.pterodactylus.sone.core.Core
+import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.data.impl.IdOnlySone
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Bounded cache for the [Part]s the [SoneTextParser] creates from a text.
+ *
+ * The parsed parts of a text only depend on the text itself, the Sone that
+ * provided the text, and the Sones and posts the text links to, so cached
+ * parts are stored by the ID of the providing Sone and the text. Before
+ * cached parts are returned, all [SoneParts][SonePart] and
+ * [PostParts][PostPart] are checked against the current Sones and posts; if a
+ * linked Sone has been updated (e.g. because it changed its name), became
+ * known, or a linked post has been removed, the text is parsed again. Texts
+ * that link to posts that are not known yet are not cached at all.
+ *
+ * The web interface creates the only instance and hands it to the
+ * [ParserFilter][net.pterodactylus.sone.template.ParserFilter] and the
+ * [RenderFilter][net.pterodactylus.sone.template.RenderFilter].
+ */
+class ParsedTextCache(private val core: Core, private val soneTextParser: SoneTextParser) {
+
+	private val cache: Cache<Key, List<Part>> = CacheBuilder.newBuilder().maximumSize(maximumSize).build()
+	private val hits = AtomicLong()
+	private val misses = AtomicLong()
+
+	val hitCount get() = hits.get()
+	val missCount get() = misses.get()
+
+	fun parse(text: String, sone: Sone?): List<Part> {
+		val key = Key(sone?.id, text)
+		cache.getIfPresent(key)
+				?.takeIf { it.isCurrent() }
+				?.let { hits.incrementAndGet(); return it }
+		misses.incrementAndGet()
+		return soneTextParser.parse(text, SoneTextParserContext(sone))
+				.also { parts -> if (parts.none(Part::isUnknownPostLink)) cache.put(key, parts) }
+	}
+
+	fun clear() = cache.invalidateAll()
+
+	private fun List<Part>.isCurrent() = all {
+		when (it) {
+			is SonePart -> if (it.sone is IdOnlySone) core.getSone(it.sone.id) == null else core.getSone(it.sone.id) === it.sone
+			is PostPart -> core.getPost(it.post.id) != null
+			else -> true
+		}
+	}
+
+	private data class Key(val soneId: String?, val text: String)
+
+	companion object {
+		private const val maximumSize = 10000L
+	}
+
+}
+
+private val Part.isUnknownPostLink get() = this is PlainTextPart && "post://" in text
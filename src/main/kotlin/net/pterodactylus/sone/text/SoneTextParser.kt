@@ -24,33 +24,94 @@ import java.net.MalformedURLException
  */
 class SoneTextParser(private val soneProvider: SoneProvider?, private val postProvider: PostProvider?) {
 
-	fun parse(source: String, context: SoneTextParserContext?) =
-			source.split("\n")
-					.dropWhile { it.trim() == "" }
-					.dropLastWhile { it.trim() == "" }
-					.mergeMultipleEmptyLines()
-					.flatMap { splitLineIntoParts(it, context) }
-					.removeEmptyPlainTextParts()
-					.mergeAdjacentPlainTextParts()
-
-	private fun splitLineIntoParts(line: String, context: SoneTextParserContext?) =
-			generateSequence(PlainTextPart("") as Part to line) { remainder ->
-				if (remainder.second == "")
-					null
-				else
-					LinkType.values()
-							.mapNotNull { it.findNext(remainder.second) }
-							.minBy { it.position }
-							.let {
-								when {
-									it == null -> PlainTextPart(remainder.second) to ""
-									it.position == 0 -> it.toPart(context) to it.remainder
-									else -> PlainTextPart(remainder.second.substring(0, it.position)) to (it.link + it.remainder)
-								}
-							}
-			}.map { it.first }.toList()
-
-	private fun NextLink.toPart(context: SoneTextParserContext?) = when (linkType) {
+	/**
+	 * Parses the given source into a list of parts. Leading and trailing empty
+	 * lines are removed, and multiple consecutive empty lines are merged into
+	 * a single one. The source is scanned once; for every [LinkType] only the
+	 * next occurrence after the current position is kept, so no part of the
+	 * source is searched more than once per link type.
+	 */
+	fun parse(source: String, context: SoneTextParserContext?): List<Part> {
+		val firstText = source.indexOfFirst { !it.isWhitespace() }.takeIf { it != -1 } ?: return emptyList()
+		val end = source.indexOf('\n', source.indexOfLast { !it.isWhitespace() }).takeIf { it != -1 } ?: source.length
+		val partScanner = PartScanner(source, context)
+		var lineStart = source.lastIndexOf('\n', firstText) + 1
+		var lineEnd = source.endOfLine(lineStart)
+		partScanner.scan(lineStart, lineEnd)
+		var previousLineWasEmpty = false
+		while (lineEnd < end) {
+			lineStart = lineEnd + 1
+			lineEnd = source.endOfLine(lineStart)
+			val lineIsEmpty = lineStart == lineEnd
+			if (!lineIsEmpty || !previousLineWasEmpty) {
+				partScanner.scan(lineStart - 1, lineEnd)
+			}
+			previousLineWasEmpty = lineIsEmpty
+		}
+		return partScanner.finish()
+	}
+
+	/**
+	 * Splits the lines of a source into parts. Adjacent plain text is
+	 * collected and only turned into a [PlainTextPart] when a different part
+	 * follows, or when all lines have been scanned.
+	 */
+	private inner class PartScanner(private val source: String, private val context: SoneTextParserContext?) {
+
+		private val linkFinders = LinkType.values().map { it.createLinkFinder(source) }
+		private val parts = mutableListOf<Part>()
+		private val plainText = StringBuilder()
+
+		fun scan(start: Int, end: Int) {
+			var cursor = start
+			while (cursor < end) {
+				var nextLink: LinkFinder? = null
+				for (linkFinder in linkFinders) {
+					if (linkFinder.find(cursor, end) && ((nextLink == null) || (linkFinder.position < nextLink.position))) {
+						nextLink = linkFinder
+					}
+				}
+				when {
+					nextLink == null -> {
+						plainText.append(source, cursor, end)
+						cursor = end
+					}
+					nextLink.position == cursor -> {
+						add(toPart(nextLink.linkType, source.substring(nextLink.linkStart, nextLink.linkEnd), context))
+						cursor = nextLink.linkEnd
+					}
+					else -> {
+						plainText.append(source, cursor, nextLink.position)
+						cursor = nextLink.linkStart
+					}
+				}
+			}
+		}
+
+		fun finish(): List<Part> {
+			flushPlainText()
+			return parts
+		}
+
+		private fun add(part: Part) {
+			if (part is PlainTextPart) {
+				plainText.append(part.text)
+			} else {
+				flushPlainText()
+				parts += part
+			}
+		}
+
+		private fun flushPlainText() {
+			if (plainText.isNotEmpty()) {
+				parts += PlainTextPart(plainText.toString())
+				plainText.setLength(0)
+			}
+		}
+
+	}
+
+	private fun toPart(linkType: LinkType, link: String, context: SoneTextParserContext?) = when (linkType) {
 		KSK, CHK -> try {
 			FreenetURI(link).let { freenetUri ->
 				FreenetLinkPart(
@@ -89,28 +150,7 @@ class SoneTextParser(private val soneProvider: SoneProvider?, private val postPr
 
 }
 
-private fun List<String>.mergeMultipleEmptyLines() = fold(emptyList<String>()) { previous, current ->
-	if (previous.isEmpty()) {
-		previous + current
-	} else {
-		if ((previous.last() == "\n") && (current == "")) {
-			previous
-		} else {
-			previous + ("\n" + current)
-		}
-	}
-}
-
-private fun List<Part>.mergeAdjacentPlainTextParts() = fold(emptyList<Part>()) { parts, part ->
-	if ((parts.lastOrNull() is PlainTextPart) && (part is PlainTextPart)) {
-		parts.dropLast(1) + PlainTextPart(parts.last().text + part.text)
-	} else {
-		parts + part
-	}
-}
-
-private fun List<Part>.removeEmptyPlainTextParts() = filterNot { it == PlainTextPart("") }
-
+private fun String.endOfLine(lineStart: Int) = indexOf('\n', lineStart).takeIf { it != -1 } ?: length
 private val String.decodedId: String get() = Base64.encode(Base32.decode(this))
 private val String.withoutProtocol get() = substring(indexOf("//") + 2)
 private val String.withoutUrlParameters get() = split('?').first()
@@ -136,7 +176,7 @@ private val String.withoutTrailingSlash get() = if (endsWith("/")) substring(0,
 private val SoneTextParserContext.routingKey: ByteArray? get() = postingSone?.routingKey
 private val Sone.routingKey: ByteArray get() = Base64.decode(id)
 
-private enum class LinkType(private val scheme: String, private val freenetLink: Boolean) {
+private enum class LinkType(val scheme: String, val freenetLink: Boolean) {
 
 	KSK("KSK@", true),
 	CHK("CHK@", true),
@@ -145,53 +185,140 @@ private enum class LinkType(private val scheme: String, private val freenetLink:
 	HTTP("http://", false),
 	HTTPS("https://", false),
 	SONE("sone://", false) {
-		override fun validateLinkLength(length: Int) = length.takeIf { it == 50 }
+		override fun isValidLinkLength(length: Int) = length == 50
 	},
 	POST("post://", false),
 	FREEMAIL("", true) {
-		override fun findNext(line: String): NextLink? {
-			val nextFreemailSuffix = line.indexOf(".freemail").takeIf { it >= 54 } ?: return null
-			if (line[nextFreemailSuffix - 53] != '@') return null
-			if (!line.substring(nextFreemailSuffix - 52, nextFreemailSuffix).matches(Regex("^[a-z2-7]*\$"))) return null
-			val firstCharacterIndex = generateSequence(nextFreemailSuffix - 53) {
-				it.minus(1).takeIf { (it >= 0) && line[it].validLocalPart }
-			}.lastOrNull() ?: return null
-			return NextLink(firstCharacterIndex, this, line.substring(firstCharacterIndex, nextFreemailSuffix + 9), line.substring(nextFreemailSuffix + 9))
+		override fun createLinkFinder(source: String): LinkFinder = FreemailLinkFinder(source)
+	};
+
+	open fun createLinkFinder(source: String): LinkFinder = SchemeLinkFinder(this, source)
+	open fun isValidLinkLength(length: Int) = length > scheme.length
+
+}
+
+/**
+ * Finds the links of a single [LinkType] in a source. The occurrence that was
+ * found last is kept until [find] is called with a cursor beyond it, so that
+ * the source is only searched once, no matter how often [find] is called.
+ */
+private abstract class LinkFinder(val linkType: LinkType, protected val source: String) {
+
+	/** The position of the link, including a “freenet:” prefix. */
+	var position = 0
+		protected set
+
+	/** The start of the link, excluding a “freenet:” prefix. */
+	var linkStart = 0
+		protected set
+
+	/** The end of the link (exclusive). */
+	var linkEnd = 0
+		protected set
+
+	/**
+	 * Finds the first link between [cursor] and [end]. Only the first
+	 * occurrence of a link after [cursor] is considered; if it is not a valid
+	 * link, no link is found.
+	 *
+	 * @return `true` if a link was found and [position], [linkStart], and
+	 * [linkEnd] have been set, `false` otherwise
+	 */
+	abstract fun find(cursor: Int, end: Int): Boolean
+
+}
+
+/**
+ * [LinkFinder] for link types that start with a scheme. A link ends at the
+ * first whitespace, without trailing punctuation, and before the first
+ * unmatched closing parenthesis.
+ */
+private class SchemeLinkFinder(linkType: LinkType, source: String) : LinkFinder(linkType, source) {
+
+	private var occurrence = -1
+	private var endOfOccurrence = -1
+	private var nextWhitespace = -1
+	private var endOfText = -1
+
+	override fun find(cursor: Int, end: Int): Boolean {
+		if (occurrence < cursor) {
+			occurrence = source.indexOf(linkType.scheme, cursor).let { if (it == -1) Int.MAX_VALUE else it }
+			endOfOccurrence = if (occurrence == Int.MAX_VALUE) -1 else findEndOfLink()
+		}
+		if ((occurrence >= end) || (endOfOccurrence == -1)) {
+			return false
 		}
+		position = if (linkType.freenetLink && (occurrence - 8 >= cursor) && source.startsWith("freenet:", occurrence - 8)) occurrence - 8 else occurrence
+		linkStart = occurrence
+		linkEnd = endOfOccurrence
+		return true
+	}
 
-		private val Char.validLocalPart get() = (this in ('A'..'Z')) || (this in ('a'..'z')) || (this in ('0'..'9')) || (this == '-') || (this == '_') || (this == '.')
-	};
+	private fun findEndOfLink(): Int {
+		if (occurrence > nextWhitespace) {
+			nextWhitespace = source.indexOfAny(whitespace, occurrence).let { if (it == -1) source.length else it }
+			endOfText = nextWhitespace
+			while ((endOfText > occurrence) && isPunctuation(source[endOfText - 1])) {
+				endOfText--
+			}
+		}
+		val endOfLink = upToFirstUnmatchedParen()
+		return if (linkType.isValidLinkLength(endOfLink - occurrence)) endOfLink else -1
+	}
 
-	open fun findNext(line: String): NextLink? {
-		val nextLinkPosition = line.indexOf(scheme).takeIf { it != -1 } ?: return null
-		val endOfLink = line.substring(nextLinkPosition).findEndOfLink().validate() ?: return null
-		val link = line.substring(nextLinkPosition, nextLinkPosition + endOfLink)
-		val realNextLinkPosition = if (freenetLink && line.substring(0, nextLinkPosition).endsWith("freenet:")) nextLinkPosition - 8 else nextLinkPosition
-		return NextLink(realNextLinkPosition, this, link, line.substring(nextLinkPosition + endOfLink))
+	private fun upToFirstUnmatchedParen(): Int {
+		var openParens = 0
+		for (index in occurrence until endOfText) {
+			when (source[index]) {
+				'(' -> openParens++
+				')' -> if (openParens-- == 0) return index
+			}
+		}
+		return endOfText
 	}
 
-	private fun String.findEndOfLink() =
-			substring(0, whitespace.find(this)?.range?.start ?: length)
-					.dropLastWhile(::isPunctuation)
-					.upToFirstUnmatchedParen()
+}
 
-	private fun Int.validate() = validateLinkLength(this)
-	protected open fun validateLinkLength(length: Int) = length.takeIf { it > scheme.length }
+/**
+ * [LinkFinder] for Freemail addresses, i.e. a local part, an “@”, 52
+ * base32-encoded characters, and a “.freemail” suffix.
+ */
+private class FreemailLinkFinder(source: String) : LinkFinder(LinkType.FREEMAIL, source) {
 
-	private fun String.upToFirstUnmatchedParen() =
-			foldIndexed(Pair<Int, Int?>(0, null)) { index, (openParens, firstUnmatchedParen), currentChar ->
-				when (currentChar) {
-					'(' -> (openParens + 1) to firstUnmatchedParen
-					')' -> ((openParens - 1) to (if (openParens == 0) (firstUnmatchedParen ?: index) else firstUnmatchedParen))
-					else -> openParens to firstUnmatchedParen
-				}
-			}.second ?: length
+	private var suffix = -1
+	private var localPartStart = -1
+
+	override fun find(cursor: Int, end: Int): Boolean {
+		if (suffix < cursor) {
+			suffix = source.indexOf(".freemail", cursor).let { if (it == -1) Int.MAX_VALUE else it }
+			localPartStart = if (suffix == Int.MAX_VALUE) -1 else findLocalPartStart()
+		}
+		if ((suffix >= end) || (suffix - cursor < 54) || (localPartStart == -1)) {
+			return false
+		}
+		position = maxOf(localPartStart, cursor)
+		linkStart = position
+		linkEnd = suffix + 9
+		return true
+	}
+
+	private fun findLocalPartStart(): Int {
+		if ((suffix < 53) || (source[suffix - 53] != '@') || !(suffix - 52 until suffix).all { source[it].isBase32 }) {
+			return -1
+		}
+		var localPartStart = suffix - 53
+		while ((localPartStart > 0) && source[localPartStart - 1].validLocalPart) {
+			localPartStart--
+		}
+		return localPartStart
+	}
+
+	private val Char.isBase32 get() = (this in ('a'..'z')) || (this in ('2'..'7'))
+	private val Char.validLocalPart get() = (this in ('A'..'Z')) || (this in ('a'..'z')) || (this in ('0'..'9')) || (this == '-') || (this == '_') || (this == '.')
 
 }
 
 private val punctuationChars = listOf('.', ',', '?', '!')
 private fun isPunctuation(char: Char) = char in punctuationChars
 
-private val whitespace = Regex("[\\u000a\u0020\u00a0\u1680\u180e\u2000\u2001\u2002\u2003\u2004\u2005\u2006\u2007\u2008\u2009\u200a\u200b\u200c\u200d\u202f\u205f\u2060\u2800\u3000]")
-
-private data class NextLink(val position: Int, val linkType: LinkType, val link: String, val remainder: String)
+private val whitespace = charArrayOf('\u000a', '\u0020', '\u00a0', '\u1680', '\u180e', '\u2000', '\u2001', '\u2002', '\u2003', '\u2004', '\u2005', '\u2006', '\u2007', '\u2008', '\u2009', '\u200a', '\u200b', '\u200c', '\u200d', '\u202f', '\u205f', '\u2060', '\u2800', '\u3000')
@@ -9,10 +9,15 @@ package net.pterodactylus.sone.utils
  * from [Pagination.iterator] is requested, the iterator over
  * [Pagination.items] is returned.
  *
+ * <p>
+ * If the list does not contain all items but only the items up to the next
+ * page, [isComplete] is `false`, and [pageCount] only counts the pages up to
+ * the next page.
+ *
  * @param <T>
  *            The type of the list elements
  */
-class Pagination<out T>(private val originalItems: List<T>, pageSize: Int): Iterable<T> {
+class Pagination<out T>(private val originalItems: List<T>, pageSize: Int, val isComplete: Boolean = true): Iterable<T> {
 
 	var page: Int = 0
 		set(value) {
@@ -42,3 +47,16 @@ class Pagination<out T>(private val originalItems: List<T>, pageSize: Int): Iter
 }
 
 fun <T> Iterable<T>.paginate(pageSize: Int) = Pagination<T>(toList(), pageSize)
+
+/**
+ * Creates a pagination for the given page that only takes as many items from
+ * this iterable as are needed to show the page and to know whether there is a
+ * next page, so the items after the next page are not even iterated.
+ */
+fun <T> Iterable<T>.paginateUpTo(page: Int, pageSize: Int): Pagination<T> {
+	val necessaryItems = (maxOf(0, page) + 1) * maxOf(1, pageSize) + 1
+	val items = asSequence().take(necessaryItems).toList()
+	return Pagination(items, pageSize, items.size < necessaryItems).apply {
+		this.page = page
+	}
+}
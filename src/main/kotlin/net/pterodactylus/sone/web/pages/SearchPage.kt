@@ -1,5 +1,6 @@
 package net.pterodactylus.sone.web.pages
 
+import com.google.common.base.Optional
 import com.google.common.base.Ticker
 import com.google.common.cache.Cache
 import com.google.common.cache.CacheBuilder
@@ -55,12 +56,15 @@ class SearchPage @JvmOverloads constructor(template: Template, webInterface: Web
 		}
 
 		val soneNameCache = { sone: Sone -> sone.names() }.memoize()
+		val searchIndex = webInterface.core.searchIndex
+		val soneIds = phrases.findIds(searchIndex::findSoneIds)
 		val sonePagination = webInterface.core.sones
+				.filter { soneIds?.contains(it.id) ?: true }
 				.scoreAndPaginate(phrases) { it.allText(soneNameCache) }
 				.apply { page = freenetRequest.parameters["sonePage"].emptyToNull?.toIntOrNull() ?: 0 }
 		val postPagination = cache.get(phrases) {
-			webInterface.core.sones
-					.flatMap(Sone::getPosts)
+			(phrases.findIds(searchIndex::findPostIds)?.mapNotNull(webInterface.core::getPost)
+					?: webInterface.core.sones.flatMap(Sone::getPosts))
 					.filter { Post.FUTURE_POSTS_FILTER.apply(it) }
 					.scoreAndPaginate(phrases) { it.allText(soneNameCache) }
 		}.apply { page = freenetRequest.parameters["postPage"].emptyToNull?.toIntOrNull() ?: 0 }
@@ -72,6 +76,18 @@ class SearchPage @JvmOverloads constructor(template: Template, webInterface: Web
 		templateContext["postHits"] = postPagination.items
 	}
 
+	/**
+	 * Returns the IDs of all elements that can score at all, i.e. that can
+	 * contain at least one of the required or optional phrases, or `null` if
+	 * at least one of these phrases can not be looked up in the index.
+	 */
+	private fun Iterable<Phrase>.findIds(finder: (String) -> Optional<Set<String>>): Set<String>? {
+		return filterNot(Phrase::forbidden)
+				.map { finder(it.phrase).orNull() ?: return null }
+				.flatten()
+				.toSet()
+	}
+
 	private fun <T> Iterable<T>.scoreAndPaginate(phrases: Iterable<Phrase>, texter: (T) -> String) =
 			map { it to score(texter(it), phrases) }
 					.filter { it.second > 0 }
@@ -90,7 +106,7 @@ class SearchPage @JvmOverloads constructor(template: Template, webInterface: Web
 			(soneNameCache(this) + profile.fields.map { "${it.name} ${it.value}" }.joinToString(" ", " ")).toLowerCase()
 
 	private fun Post.allText(soneNameCache: (Sone) -> String) =
-			(text + recipient.orNull()?.let { " ${soneNameCache(it)}" } + webInterface.core.getReplies(id)
+			(text + (recipient.orNull()?.let { " ${soneNameCache(it)}" } ?: "") + webInterface.core.getReplies(id)
 					.filter { PostReply.FUTURE_REPLY_FILTER.apply(it) }
 					.map { "${soneNameCache(it.sone)} ${it.text}" }.joinToString(" ", " ")).toLowerCase()
 
@@ -0,0 +1,235 @@
+package net.pterodactylus.sone.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.pterodactylus.sone.data.Album;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.SoneOptions.DefaultSoneOptions;
+import net.pterodactylus.sone.test.TestValue;
+import net.pterodactylus.util.config.Configuration;
+import net.pterodactylus.util.config.ConfigurationException;
+import net.pterodactylus.util.config.Value;
+
+import com.google.common.base.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit test for {@link ConfigurationSoneWriter}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ConfigurationSoneWriterTest {
+
+	private static final int POSTS = 5000;
+
+	private final Map<String, Value<?>> values = new HashMap<String, Value<?>>();
+	private final Configuration configuration = mock(Configuration.class);
+	private final ConfigurationSoneWriter configurationSoneWriter = new ConfigurationSoneWriter(configuration);
+	private final Sone sone = mock(Sone.class);
+	private final List<Post> posts = new ArrayList<Post>();
+	private int writes;
+
+	@Before
+	public void setupConfiguration() {
+		when(configuration.getStringValue(anyString())).thenAnswer(new CountingValueAnswer());
+		when(configuration.getLongValue(anyString())).thenAnswer(new CountingValueAnswer());
+		when(configuration.getIntValue(anyString())).thenAnswer(new CountingValueAnswer());
+		when(configuration.getBooleanValue(anyString())).thenAnswer(new CountingValueAnswer());
+	}
+
+	@Before
+	public void setupSone() {
+		when(sone.getId()).thenReturn("sone");
+		when(sone.getTime()).thenReturn(1000L);
+		when(sone.getProfile()).thenReturn(new Profile(sone));
+		when(sone.getPosts()).thenReturn(posts);
+		when(sone.getReplies()).thenReturn(Collections.<PostReply>emptySet());
+		when(sone.getLikedPostIds()).thenReturn(Collections.<String>emptySet());
+		when(sone.getLikedReplyIds()).thenReturn(Collections.<String>emptySet());
+		Album rootAlbum = mock(Album.class);
+		when(rootAlbum.getAlbums()).thenReturn(Collections.<Album>emptyList());
+		when(sone.getRootAlbum()).thenReturn(rootAlbum);
+		when(sone.getOptions()).thenReturn(new DefaultSoneOptions());
+		for (int index = 0; index < POSTS; index++) {
+			posts.add(createPost("post-" + index));
+		}
+	}
+
+	private static Post createPost(String id) {
+		Post post = mock(Post.class);
+		when(post.getId()).thenReturn(id);
+		when(post.getRecipientId()).thenReturn(Optional.<String>absent());
+		when(post.getTime()).thenReturn(2000L);
+		when(post.getText()).thenReturn("Text of " + id);
+		return post;
+	}
+
+	private List<String> getWrittenPostIds() {
+		List<String> postIds = new ArrayList<String>();
+		while (true) {
+			Value<?> postId = values.get("Sone/sone/Posts/" + postIds.size() + "/ID");
+			if ((postId == null) || (postId.getValue(null) == null)) {
+				return postIds;
+			}
+			postIds.add((String) postId.getValue(null));
+		}
+	}
+
+	private List<String> getPostIds() {
+		List<String> postIds = new ArrayList<String>();
+		for (Post post : posts) {
+			postIds.add(post.getId());
+		}
+		return postIds;
+	}
+
+	@Test
+	public void completeSoneIsWrittenTheFirstTime() throws ConfigurationException {
+		configurationSoneWriter.write(sone, "fingerprint");
+		assertThat(values.get("Sone/sone/Time").getValue(null), is((Object) 1000L));
+		assertThat(values.get("Sone/sone/LastInsertFingerprint").getValue(null), is((Object) "fingerprint"));
+		assertThat(getWrittenPostIds(), is(getPostIds()));
+		assertThat(values.get("Sone/sone/Options/AutoFollow").getValue(null), is((Object) false));
+	}
+
+	@Test
+	public void unchangedSoneIsNotWrittenAgain() throws ConfigurationException {
+		configurationSoneWriter.write(sone, "fingerprint");
+		writes = 0;
+		configurationSoneWriter.write(sone, "fingerprint");
+		assertThat(writes, is(0));
+	}
+
+	@Test
+	public void singleNewPostOnSoneWithThousandsOfPostsOnlyWritesTheNewPost() throws ConfigurationException {
+		configurationSoneWriter.write(sone, "fingerprint");
+		assertThat(writes, is(lessThanOrEqualTo(POSTS * 4 + 100)));
+		writes = 0;
+		posts.add(0, createPost("new-post"));
+		configurationSoneWriter.write(sone, "fingerprint");
+		/* the post’s four values and the new end of the posts. */
+		assertThat(writes, is(5));
+		assertThat(getWrittenPostIds(), containsInAnyOrder(getPostIds().toArray()));
+	}
+
+	@Test
+	public void removedPostsAreReplacedByTheLastPosts() throws ConfigurationException {
+		configurationSoneWriter.write(sone, "fingerprint");
+		writes = 0;
+		posts.remove(POSTS - 2);
+		posts.remove(10);
+		configurationSoneWriter.write(sone, "fingerprint");
+		/* one post moved into the gap of post 10, and the new end of the posts. */
+		assertThat(writes, is(5));
+		assertThat(getWrittenPostIds(), containsInAnyOrder(getPostIds().toArray()));
+	}
+
+	@Test
+	public void changedTimeOnlyWritesTheTime() throws ConfigurationException {
+		configurationSoneWriter.write(sone, "fingerprint");
+		writes = 0;
+		when(sone.getTime()).thenReturn(3000L);
+		configurationSoneWriter.write(sone, "new-fingerprint");
+		assertThat(writes, is(2));
+		assertThat(values.get("Sone/sone/Time").getValue(null), is((Object) 3000L));
+	}
+
+	@Test
+	public void changedProfileIsWrittenAgain() throws ConfigurationException {
+		configurationSoneWriter.write(sone, "fingerprint");
+		writes = 0;
+		Profile profile = new Profile(sone);
+		profile.setFirstName("First");
+		when(sone.getProfile()).thenReturn(profile);
+		configurationSoneWriter.write(sone, "fingerprint");
+		assertThat(writes, is(8));
+		assertThat(values.get("Sone/sone/Profile/FirstName").getValue(null), is((Object) "First"));
+	}
+
+	@Test
+	public void forgottenSoneIsWrittenCompletely() throws ConfigurationException {
+		configurationSoneWriter.write(sone, "fingerprint");
+		int firstWrites = writes;
+		writes = 0;
+		configurationSoneWriter.forget("sone");
+		configurationSoneWriter.write(sone, "fingerprint");
+		assertThat(writes, is(firstWrites));
+	}
+
+	@Test
+	public void loadedSoneIsNotWrittenAgainAfterARestart() throws ConfigurationException {
+		configurationSoneWriter.write(sone, "fingerprint");
+		writes = 0;
+		ConfigurationSoneWriter restartedConfigurationSoneWriter = new ConfigurationSoneWriter(configuration);
+		restartedConfigurationSoneWriter.loaded(sone, "fingerprint");
+		restartedConfigurationSoneWriter.write(sone, "fingerprint");
+		assertThat(writes, is(0));
+	}
+
+	@Test
+	public void singleNewPostOnLoadedSoneOnlyWritesTheNewPost() throws ConfigurationException {
+		configurationSoneWriter.write(sone, "fingerprint");
+		writes = 0;
+		ConfigurationSoneWriter restartedConfigurationSoneWriter = new ConfigurationSoneWriter(configuration);
+		restartedConfigurationSoneWriter.loaded(sone, "fingerprint");
+		posts.add(0, createPost("new-post"));
+		posts.remove(POSTS - 2);
+		restartedConfigurationSoneWriter.write(sone, "fingerprint");
+		/* the last post moved into the gap, and the new post at the end. */
+		assertThat(writes, is(8));
+		assertThat(getWrittenPostIds(), containsInAnyOrder(getPostIds().toArray()));
+	}
+
+	@Test
+	public void postsOfLoadedSoneWithDuplicatePostIdsAreWrittenCompletely() throws ConfigurationException {
+		configurationSoneWriter.write(sone, "fingerprint");
+		values.get("Sone/sone/Posts/1/ID").setValue("post-0");
+		writes = 0;
+		ConfigurationSoneWriter restartedConfigurationSoneWriter = new ConfigurationSoneWriter(configuration);
+		restartedConfigurationSoneWriter.loaded(sone, "fingerprint");
+		restartedConfigurationSoneWriter.write(sone, "fingerprint");
+		assertThat(writes, is(POSTS * 4 + 1));
+		assertThat(getWrittenPostIds(), is(getPostIds()));
+	}
+
+	private class CountingValueAnswer implements Answer<Value<Object>> {
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Value<Object> answer(InvocationOnMock invocation) {
+			String key = invocation.getArgument(0);
+			Value<Object> value = (Value<Object>) values.get(key);
+			if (value == null) {
+				value = new TestValue<Object>(null) {
+					@Override
+					public void setValue(Object newValue) throws ConfigurationException {
+						writes++;
+						super.setValue(newValue);
+					}
+				};
+				values.put(key, value);
+			}
+			return value;
+		}
+
+	}
+
+}
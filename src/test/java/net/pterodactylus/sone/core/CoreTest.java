@@ -1,12 +1,22 @@
 package net.pterodactylus.sone.core;
 
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.hamcrest.MockitoHamcrest.argThat;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import net.pterodactylus.sone.core.Core.MarkPostKnown;
 import net.pterodactylus.sone.core.Core.MarkReplyKnown;
 import net.pterodactylus.sone.core.event.PostRemovedEvent;
@@ -16,10 +26,14 @@ import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.PostReply;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.database.Database;
+import net.pterodactylus.sone.database.SoneBuilder;
+import net.pterodactylus.sone.database.memory.MemorySoneBuilder;
 import net.pterodactylus.sone.freenet.wot.Identity;
 import net.pterodactylus.sone.freenet.wot.IdentityManager;
 import net.pterodactylus.sone.freenet.wot.OwnIdentity;
 import net.pterodactylus.sone.freenet.wot.event.IdentityRemovedEvent;
+import net.pterodactylus.sone.freenet.wot.event.OwnIdentitiesAddedEvent;
+import net.pterodactylus.sone.test.TestValue;
 import net.pterodactylus.util.config.Configuration;
 
 import com.google.common.collect.ImmutableList;
@@ -29,7 +43,10 @@ import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeDiagnosingMatcher;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 /**
  * Unit test for {@link Core} and its subclasses.
@@ -94,6 +111,40 @@ public class CoreTest {
 		inOrder.verify(database).removeSone(sone);
 	}
 
+	@Test
+	public void ownIdentitiesWithSoneContextAreStoredAsLocalSonesInOneBatch() {
+		Configuration configuration = mock(Configuration.class);
+		when(configuration.getLongValue(anyString())).thenReturn(TestValue.<Long>from(null));
+		final Database database = mock(Database.class);
+		when(database.newSoneBuilder()).thenAnswer(new Answer<SoneBuilder>() {
+			@Override
+			public SoneBuilder answer(InvocationOnMock invocation) {
+				return new MemorySoneBuilder(database);
+			}
+		});
+		Core core = new Core(configuration, mock(FreenetInterface.class), mock(IdentityManager.class), mock(SoneDownloader.class), mock(ImageInserter.class), mock(UpdateChecker.class), mock(WebOfTrustUpdater.class), mock(EventBus.class), database);
+		OwnIdentity firstOwnIdentity = createOwnIdentity("sone-1", true);
+		OwnIdentity secondOwnIdentity = createOwnIdentity("sone-2", true);
+		OwnIdentity otherOwnIdentity = createOwnIdentity("other", false);
+		core.ownIdentitiesAdded(new OwnIdentitiesAddedEvent(asList(firstOwnIdentity, secondOwnIdentity, otherOwnIdentity)));
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<Collection<Sone>> storedSones = ArgumentCaptor.forClass((Class) Collection.class);
+		verify(database).storeSones(storedSones.capture());
+		verify(database, never()).storeSone(any(Sone.class));
+		List<String> storedSoneIds = new ArrayList<String>();
+		for (Sone sone : storedSones.getValue()) {
+			storedSoneIds.add(sone.getId());
+		}
+		assertThat(storedSoneIds, containsInAnyOrder("sone-1", "sone-2"));
+	}
+
+	private static OwnIdentity createOwnIdentity(String id, boolean hasSoneContext) {
+		OwnIdentity ownIdentity = mock(OwnIdentity.class);
+		when(ownIdentity.getId()).thenReturn(id);
+		when(ownIdentity.hasContext("Sone")).thenReturn(hasSoneContext);
+		return ownIdentity;
+	}
+
 	private Matcher<Object> isPostRemoved(final Post post) {
 		return new TypeSafeDiagnosingMatcher<Object>() {
 			@Override
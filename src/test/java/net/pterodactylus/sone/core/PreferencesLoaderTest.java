@@ -30,6 +30,7 @@ public class PreferencesLoaderTest {
 	@Before
 	public void setupConfiguration() {
 		setupIntValue("InsertionDelay", 15);
+		setupIntValue("DownloadThreads", 5);
 		setupIntValue("PostsPerPage", 25);
 		setupIntValue("ImagesPerPage", 12);
 		setupIntValue("CharactersPerPost", 150);
@@ -59,6 +60,7 @@ public class PreferencesLoaderTest {
 		setupConfiguration();
 		preferencesLoader.loadFrom(configuration);
 		assertThat(preferences.getInsertionDelay(), is(15));
+		assertThat(preferences.getDownloadThreads(), is(5));
 		assertThat(preferences.getPostsPerPage(), is(25));
 		assertThat(preferences.getImagesPerPage(), is(12));
 		assertThat(preferences.getCharactersPerPost(), is(150));
@@ -10,6 +10,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
+import net.pterodactylus.sone.core.event.DownloadThreadsChangedEvent;
 import net.pterodactylus.sone.core.event.InsertionDelayChangedEvent;
 import net.pterodactylus.sone.fcp.FcpInterface.FullAccessRequired;
 import net.pterodactylus.sone.fcp.event.FcpInterfaceActivatedEvent;
@@ -60,6 +61,23 @@ public class PreferencesTest {
 		assertThat(preferences.getInsertionDelay(), is(60));
 	}
 
+	@Test
+	public void preferencesRetainDownloadThreads() {
+		preferences.setDownloadThreads(5);
+		assertThat(preferences.getDownloadThreads(), is(5));
+		verify(eventBus).post(any(DownloadThreadsChangedEvent.class));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidDownloadThreadsAreRejected() {
+		preferences.setDownloadThreads(0);
+	}
+
+	@Test
+	public void preferencesStartWithDownloadThreadsDefaultValue() {
+		assertThat(preferences.getDownloadThreads(), is(10));
+	}
+
 	@Test
 	public void preferencesRetainPostsPerPage() {
 		preferences.setPostsPerPage(15);
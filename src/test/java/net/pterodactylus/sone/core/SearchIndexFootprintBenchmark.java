@@ -0,0 +1,150 @@
+package net.pterodactylus.sone.core;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.impl.PostBuilderImpl;
+import net.pterodactylus.sone.data.impl.PostReplyBuilderImpl;
+import net.pterodactylus.sone.database.PostProvider;
+import net.pterodactylus.sone.database.PostReplyProvider;
+import net.pterodactylus.sone.database.SoneProvider;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Measures the heap a {@link SearchIndex} over 200,000 posts (2,000 Sones
+ * with 100 posts each) and 400,000 replies needs, and the time a couple of
+ * queries need. Every text consists of about 30 words from a vocabulary of
+ * 50,000 words, and every tenth text contains a unique Freenet key. For
+ * comparison, the heap of the texts themselves is measured as well. Run its
+ * {@link #main(String[])} method from the test classpath, with a heap of at
+ * least 2 GiB.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SearchIndexFootprintBenchmark {
+
+	private static final int SONES = 2000;
+	private static final int POSTS_PER_SONE = 100;
+	private static final int REPLIES_PER_POST = 2;
+	private static final int POSTS = SONES * POSTS_PER_SONE;
+	private static final int REPLIES = POSTS * REPLIES_PER_POST;
+	private static final int VOCABULARY = 50000;
+	private static final int WORDS_PER_TEXT = 30;
+	private static final String[] QUERIES = { "word123", "word1", "ssk@", "word7 word8", "zzz" };
+
+	public static void main(String... arguments) {
+		Random random = new Random(0);
+		final Map<String, Sone> sones = new HashMap<String, Sone>();
+		final Map<String, List<PostReply>> replies = new HashMap<String, List<PostReply>>();
+		SoneProvider soneProvider = mock(SoneProvider.class);
+		when(soneProvider.getSone(anyString())).thenAnswer(new Answer<Sone>() {
+			@Override
+			public Sone answer(InvocationOnMock invocation) {
+				return sones.get(invocation.<String>getArgument(0));
+			}
+		});
+		when(soneProvider.getSones()).thenReturn(sones.values());
+		when(soneProvider.getLocalSones()).thenReturn(Collections.<Sone>emptyList());
+		PostReplyProvider postReplyProvider = mock(PostReplyProvider.class);
+		when(postReplyProvider.getReplies(anyString())).thenAnswer(new Answer<List<PostReply>>() {
+			@Override
+			public List<PostReply> answer(InvocationOnMock invocation) {
+				return replies.get(invocation.<String>getArgument(0));
+			}
+		});
+		long heapBeforeTexts = getUsedHeap();
+		List<String> texts = new ArrayList<String>(POSTS + REPLIES);
+		for (int text = 0; text < POSTS + REPLIES; text++) {
+			texts.add(createText(random, text));
+		}
+		long heapOfTexts = getUsedHeap() - heapBeforeTexts;
+		int textIndex = 0;
+		for (int soneIndex = 0; soneIndex < SONES; soneIndex++) {
+			String soneId = "sone-" + soneIndex;
+			List<Post> posts = new ArrayList<Post>(POSTS_PER_SONE);
+			Set<PostReply> soneReplies = new HashSet<PostReply>();
+			for (int postIndex = 0; postIndex < POSTS_PER_SONE; postIndex++) {
+				String postId = soneId + "-post-" + postIndex;
+				posts.add(new PostBuilderImpl(soneProvider).withId(postId).from(soneId).withTime(1000L + postIndex).withText(texts.get(textIndex++)).build());
+				List<PostReply> postReplies = new ArrayList<PostReply>(REPLIES_PER_POST);
+				for (int replyIndex = 0; replyIndex < REPLIES_PER_POST; replyIndex++) {
+					PostReply postReply = new PostReplyBuilderImpl(soneProvider, null).withId(postId + "-reply-" + replyIndex).from(soneId).to(postId).withTime(2000L + replyIndex).withText(texts.get(textIndex++)).build();
+					postReplies.add(postReply);
+					soneReplies.add(postReply);
+				}
+				replies.put(postId, postReplies);
+			}
+			sones.put(soneId, createSone(soneId, posts, soneReplies));
+		}
+		SearchIndex searchIndex = new SearchIndex(soneProvider, mock(PostProvider.class), postReplyProvider);
+		long heapBeforeIndex = getUsedHeap();
+		long startTime = System.nanoTime();
+		searchIndex.findSoneIds("sone");
+		long indexTime = System.nanoTime() - startTime;
+		long heapOfIndex = getUsedHeap() - heapBeforeIndex;
+		System.out.println(String.format("%,d posts and %,d replies: %,d ms to index", POSTS, REPLIES, indexTime / 1000000));
+		System.out.println(String.format("texts:  %,12d bytes, %,8.1f bytes per post or reply", heapOfTexts, heapOfTexts / (double) (POSTS + REPLIES)));
+		System.out.println(String.format("index:  %,12d bytes, %,8.1f bytes per post or reply", heapOfIndex, heapOfIndex / (double) (POSTS + REPLIES)));
+		for (String query : QUERIES) {
+			searchIndex.findPostIds(query);
+			startTime = System.nanoTime();
+			int postIds = searchIndex.findPostIds(query).get().size();
+			System.out.println(String.format("query “%s”: %,d candidate posts in %,d ms", query, postIds, (System.nanoTime() - startTime) / 1000000));
+		}
+		keep(searchIndex, sones, replies, texts);
+	}
+
+	private static String createText(Random random, int textIndex) {
+		StringBuilder text = new StringBuilder();
+		for (int word = 0; word < WORDS_PER_TEXT; word++) {
+			/* words with a low number are a lot more common. */
+			int wordNumber = (int) Math.pow(VOCABULARY, random.nextDouble());
+			text.append((word == 0) ? "Word" : " word").append(wordNumber);
+		}
+		if ((textIndex % 10) == 0) {
+			text.append(" SSK@").append(Long.toString(random.nextLong(), 36)).append(Long.toString(random.nextLong(), 36)).append("/file.txt");
+		}
+		return text.toString();
+	}
+
+	private static Sone createSone(String soneId, List<Post> posts, Set<PostReply> replies) {
+		Sone sone = mock(Sone.class);
+		when(sone.getId()).thenReturn(soneId);
+		when(sone.getName()).thenReturn("Sone #" + soneId);
+		when(sone.getProfile()).thenReturn(new Profile(sone));
+		when(sone.getPosts()).thenReturn(posts);
+		when(sone.getReplies()).thenReturn(replies);
+		return sone;
+	}
+
+	private static long getUsedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int round = 0; round < 5; round++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void keep(Object... objects) {
+		if (System.identityHashCode(objects) == 0) {
+			System.out.println(objects.length);
+		}
+	}
+
+}
@@ -0,0 +1,269 @@
+package net.pterodactylus.sone.core;
+
+import static com.google.common.base.Optional.fromNullable;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.database.PostProvider;
+import net.pterodactylus.sone.database.PostReplyProvider;
+import net.pterodactylus.sone.database.SoneProvider;
+
+import com.google.common.base.Optional;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link SearchIndex}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SearchIndexTest {
+
+	private final SoneProvider soneProvider = mock(SoneProvider.class);
+	private final PostProvider postProvider = mock(PostProvider.class);
+	private final PostReplyProvider postReplyProvider = mock(PostReplyProvider.class);
+	private final SearchIndex searchIndex = new SearchIndex(soneProvider, postProvider, postReplyProvider);
+	private final Sone firstSone = createSone("first", "Alice");
+	private final Sone secondSone = createSone("second", "Bob");
+	private final Post firstPost = createPost("first-post", firstSone, "Hello World", null);
+	private final Post secondPost = createPost("second-post", secondSone, "Something else", firstSone);
+	private final PostReply reply = createPostReply("reply", secondSone, firstPost, "Greetings Earth");
+
+	@Before
+	public void setupSones() {
+		when(soneProvider.getSones()).thenReturn(asList(firstSone, secondSone));
+		when(soneProvider.getLocalSones()).thenReturn(Collections.<Sone>emptyList());
+		when(firstSone.getPosts()).thenReturn(asList(firstPost));
+		when(secondSone.getPosts()).thenReturn(asList(secondPost));
+		when(secondSone.getReplies()).thenReturn(new HashSet<PostReply>(asList(reply)));
+		when(postReplyProvider.getReplies("first-post")).thenReturn(asList(reply));
+	}
+
+	private Sone createSone(String id, String name) {
+		Sone sone = mock(Sone.class);
+		when(sone.getId()).thenReturn(id);
+		when(sone.getName()).thenReturn(name);
+		when(sone.getProfile()).thenReturn(new Profile(sone));
+		when(soneProvider.getSone(id)).thenReturn(sone);
+		return sone;
+	}
+
+	private Post createPost(String id, Sone sone, String text, Sone recipient) {
+		Post post = mock(Post.class);
+		when(post.getId()).thenReturn(id);
+		when(post.getSone()).thenReturn(sone);
+		when(post.getText()).thenReturn(text);
+		when(post.getRecipientId()).thenReturn(fromNullable((recipient == null) ? null : recipient.getId()));
+		when(post.getRecipient()).thenReturn(fromNullable(recipient));
+		when(postProvider.getPost(id)).thenReturn(post);
+		return post;
+	}
+
+	private PostReply createPostReply(String id, Sone sone, Post post, String text) {
+		PostReply postReply = mock(PostReply.class);
+		when(postReply.getId()).thenReturn(id);
+		when(postReply.getSone()).thenReturn(sone);
+		when(postReply.getPostId()).thenReturn(post.getId());
+		when(postReply.getText()).thenReturn(text);
+		return postReply;
+	}
+
+	@Test
+	public void sonesAreFoundByName() {
+		assertThat(searchIndex.findSoneIds("alice").get(), containsInAnyOrder("first"));
+	}
+
+	@Test
+	public void sonesAreFoundByProfileField() {
+		Profile profile = new Profile(secondSone);
+		profile.addField("Hobby").setValue("Knitting");
+		when(secondSone.getProfile()).thenReturn(profile);
+		assertThat(searchIndex.findSoneIds("knit").get(), containsInAnyOrder("second"));
+	}
+
+	@Test
+	public void postsAreFoundByText() {
+		assertThat(searchIndex.findPostIds("world").get(), containsInAnyOrder("first-post"));
+	}
+
+	@Test
+	public void postsAreFoundByTextOfReply() {
+		assertThat(searchIndex.findPostIds("earth").get(), containsInAnyOrder("first-post"));
+	}
+
+	@Test
+	public void postsAreFoundByNameOfReplyingSone() {
+		assertThat(searchIndex.findPostIds("bob").get(), containsInAnyOrder("first-post"));
+	}
+
+	@Test
+	public void postsAreFoundByNameOfRecipient() {
+		assertThat(searchIndex.findPostIds("alice").get(), containsInAnyOrder("second-post"));
+	}
+
+	@Test
+	public void phraseMustBeContainedCompletely() {
+		assertThat(searchIndex.findPostIds("worldly").get(), empty());
+	}
+
+	@Test
+	public void shortPhrasesAreLookedUp() {
+		assertThat(searchIndex.findSoneIds("al").get(), containsInAnyOrder("first"));
+		assertThat(searchIndex.findPostIds("wo").get(), containsInAnyOrder("first-post"));
+	}
+
+	@Test
+	public void phrasesWithSpacesAreLookedUpByAllTheirWords() {
+		assertThat(searchIndex.findPostIds("hello world").get(), containsInAnyOrder("first-post"));
+		assertThat(searchIndex.findPostIds("llo wor").get(), containsInAnyOrder("first-post"));
+		assertThat(searchIndex.findPostIds("hello moon").get(), empty());
+	}
+
+	@Test
+	public void phrasesWithSpacesCanSpanThePostAndItsReplies() {
+		assertThat(searchIndex.findPostIds("world bob").get(), containsInAnyOrder("first-post"));
+	}
+
+	@Test
+	public void phrasesWithoutWordsAreNotLookedUp() {
+		assertThat(searchIndex.findSoneIds(" "), is(Optional.<Set<String>>absent()));
+		assertThat(searchIndex.findPostIds(""), is(Optional.<Set<String>>absent()));
+	}
+
+	@Test
+	public void addedPostIsFound() {
+		searchIndex.findPostIds("world");
+		searchIndex.postAdded(createPost("new-post", firstSone, "Brave new world", null));
+		assertThat(searchIndex.findPostIds("world").get(), containsInAnyOrder("first-post", "new-post"));
+	}
+
+	@Test
+	public void removedPostIsNotFound() {
+		searchIndex.findPostIds("world");
+		searchIndex.postRemoved(firstPost);
+		assertThat(searchIndex.findPostIds("world").get(), empty());
+	}
+
+	@Test
+	public void addedReplyIsFound() {
+		searchIndex.findPostIds("world");
+		searchIndex.postReplyAdded(createPostReply("new-reply", firstSone, secondPost, "Moon"));
+		assertThat(searchIndex.findPostIds("moon").get(), containsInAnyOrder("second-post"));
+	}
+
+	@Test
+	public void removedReplyIsNotFound() {
+		searchIndex.findPostIds("world");
+		searchIndex.postReplyRemoved(reply);
+		assertThat(searchIndex.findPostIds("earth").get(), empty());
+	}
+
+	@Test
+	public void updatedSoneIsFoundByNewName() {
+		searchIndex.findPostIds("world");
+		when(secondSone.getName()).thenReturn("Carol");
+		searchIndex.soneUpdated(secondSone);
+		assertThat(searchIndex.findSoneIds("bob").get(), empty());
+		assertThat(searchIndex.findSoneIds("carol").get(), containsInAnyOrder("second"));
+		assertThat(searchIndex.findPostIds("carol").get(), containsInAnyOrder("first-post"));
+	}
+
+	@Test
+	public void postsDirectedAtUpdatedSoneAreFoundByNewName() {
+		searchIndex.findPostIds("world");
+		when(firstSone.getName()).thenReturn("Carol");
+		searchIndex.soneUpdated(firstSone);
+		assertThat(searchIndex.findPostIds("alice").get(), empty());
+		assertThat(searchIndex.findPostIds("carol").get(), containsInAnyOrder("second-post"));
+	}
+
+	@Test
+	public void changedProfileOfLocalSoneIsFound() {
+		searchIndex.findSoneIds("alice");
+		when(soneProvider.getLocalSones()).thenReturn(asList(firstSone));
+		when(firstSone.getName()).thenReturn("Alicia");
+		assertThat(searchIndex.findSoneIds("alicia").get(), containsInAnyOrder("first"));
+	}
+
+	@Test
+	public void removedSoneIsNotFound() {
+		searchIndex.findPostIds("world");
+		searchIndex.soneRemoved(firstSone);
+		assertThat(searchIndex.findSoneIds("alice").get(), empty());
+		assertThat(searchIndex.findPostIds("world").get(), empty());
+	}
+
+	@Test
+	public void changesBeforeTheBuildAreIndexed() {
+		searchIndex.postAdded(createPost("new-post", firstSone, "Brave new world", null));
+		assertThat(searchIndex.findPostIds("brave").get(), containsInAnyOrder("new-post"));
+	}
+
+	@Test
+	public void builtIndexIsNotBuiltAgain() {
+		searchIndex.build();
+		searchIndex.build();
+		assertThat(searchIndex.findPostIds("world").get(), containsInAnyOrder("first-post"));
+		verify(soneProvider).getSones();
+	}
+
+	@Test
+	public void longWordsAreFoundByTheirMiddle() {
+		assertThat(searchIndex.findPostIds("ethin").get(), containsInAnyOrder("second-post"));
+		assertThat(searchIndex.findPostIds("ethinx").get(), empty());
+	}
+
+	@Test
+	public void addedSoneIsFoundWithItsPostsAndReplies() {
+		searchIndex.findPostIds("world");
+		Sone thirdSone = createSone("third", "Carol");
+		Post thirdPost = createPost("third-post", thirdSone, "Distant galaxy", null);
+		when(thirdSone.getPosts()).thenReturn(asList(thirdPost));
+		when(thirdSone.getReplies()).thenReturn(new HashSet<PostReply>(asList(createPostReply("third-reply", thirdSone, secondPost, "Nebula"))));
+		searchIndex.soneAdded(thirdSone);
+		assertThat(searchIndex.findSoneIds("carol").get(), containsInAnyOrder("third"));
+		assertThat(searchIndex.findPostIds("galaxy").get(), containsInAnyOrder("third-post"));
+		assertThat(searchIndex.findPostIds("nebula").get(), containsInAnyOrder("second-post"));
+	}
+
+	@Test
+	public void updatedSoneWithUnchangedNamesDoesNotReindexPostsAndReplies() {
+		searchIndex.findPostIds("world");
+		searchIndex.soneUpdated(firstSone);
+		searchIndex.soneUpdated(secondSone);
+		verify(firstPost).getText();
+		verify(secondPost).getText();
+		verify(reply).getText();
+	}
+
+	@Test
+	public void elementsAreStillFoundAfterManyUpdates() {
+		searchIndex.findPostIds("world");
+		for (int update = 0; update < 100; update++) {
+			searchIndex.postReplyAdded(createPostReply("reply-" + update, firstSone, secondPost, "Update " + update));
+			searchIndex.postReplyRemoved(createPostReply("reply-" + update, firstSone, secondPost, "Update " + update));
+			when(secondSone.getName()).thenReturn("Bob" + update);
+			searchIndex.soneUpdated(secondSone);
+		}
+		assertThat(searchIndex.findPostIds("update").get(), empty());
+		assertThat(searchIndex.findSoneIds("bob99").get(), containsInAnyOrder("second"));
+		assertThat(searchIndex.findPostIds("bob99").get(), containsInAnyOrder("first-post"));
+		assertThat(searchIndex.findPostIds("world").get(), containsInAnyOrder("first-post"));
+		assertThat(searchIndex.findPostIds("else").get(), containsInAnyOrder("second-post"));
+	}
+
+}
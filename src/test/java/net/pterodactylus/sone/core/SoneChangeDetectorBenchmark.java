@@ -0,0 +1,112 @@
+package net.pterodactylus.sone.core;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.pterodactylus.sone.core.SoneChangeDetector.PostProcessor;
+import net.pterodactylus.sone.core.SoneChangeDetector.PostReplyProcessor;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.impl.PostBuilderImpl;
+import net.pterodactylus.sone.data.impl.PostReplyBuilderImpl;
+
+/**
+ * Compares the time the {@link SoneChangeDetector} needs to compare two
+ * versions of a Sone with 10,000 posts and 50,000 replies with the time the
+ * previous implementation, which looked up every element in the list of
+ * posts of the other Sone, needed. Run its {@link #main(String[])} method
+ * from the test classpath.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneChangeDetectorBenchmark {
+
+	private static final int POSTS = 10000;
+	private static final int REPLIES = 50000;
+	private static final int CHANGES = 100;
+
+	public static void main(String... arguments) {
+		Sone oldSone = createSone(0);
+		Sone newSone = createSone(CHANGES);
+		System.out.println(String.format("Sones: %d posts, %d replies, %d posts and replies added and removed.", POSTS, REPLIES, CHANGES));
+		measure("hash sets", oldSone, newSone, 5, 50);
+		measure("list scans", oldSone, newSone, 1, 3);
+	}
+
+	private static void measure(String name, Sone oldSone, Sone newSone, int warmupRounds, int measuredRounds) {
+		CountingProcessor countingProcessor = new CountingProcessor();
+		for (int round = 0; round < warmupRounds; round++) {
+			detectChanges(name, oldSone, newSone, countingProcessor);
+		}
+		countingProcessor.changes = 0;
+		long startTime = System.nanoTime();
+		for (int round = 0; round < measuredRounds; round++) {
+			detectChanges(name, oldSone, newSone, countingProcessor);
+		}
+		long duration = System.nanoTime() - startTime;
+		System.out.println(String.format("%-10s %10.2f ms per comparison, %d changes per comparison", name, duration / 1e6 / measuredRounds, countingProcessor.changes / measuredRounds));
+	}
+
+	private static void detectChanges(String name, Sone oldSone, Sone newSone, CountingProcessor countingProcessor) {
+		if (name.equals("hash sets")) {
+			SoneChangeDetector soneChangeDetector = new SoneChangeDetector(oldSone);
+			soneChangeDetector.onNewPosts(countingProcessor);
+			soneChangeDetector.onRemovedPosts(countingProcessor);
+			soneChangeDetector.onNewPostReplies(countingProcessor);
+			soneChangeDetector.onRemovedPostReplies(countingProcessor);
+			soneChangeDetector.detectChanges(newSone);
+		} else {
+			scanLists(newSone.getPosts(), oldSone.getPosts(), countingProcessor);
+			scanLists(oldSone.getPosts(), newSone.getPosts(), countingProcessor);
+			scanLists(newSone.getReplies(), oldSone.getReplies(), countingProcessor);
+			scanLists(oldSone.getReplies(), newSone.getReplies(), countingProcessor);
+		}
+	}
+
+	private static <T> void scanLists(Collection<T> elements, Collection<T> otherElements, CountingProcessor countingProcessor) {
+		for (T element : elements) {
+			if (!otherElements.contains(element)) {
+				countingProcessor.changes++;
+			}
+		}
+	}
+
+	private static Sone createSone(int offset) {
+		final List<Post> posts = new ArrayList<Post>();
+		for (int index = offset; index < POSTS + offset; index++) {
+			posts.add(new PostBuilderImpl(null).withId("post-" + index).from("sone").withTime(1000000L + index).withText("text").build());
+		}
+		final Set<PostReply> replies = new HashSet<PostReply>();
+		for (int index = offset; index < REPLIES + offset; index++) {
+			replies.add(new PostReplyBuilderImpl(null, null).withId("reply-" + index).from("sone").to("post-" + (index % POSTS)).withTime(1000000L + index).withText("text").build());
+		}
+		Sone sone = mock(Sone.class);
+		when(sone.getPosts()).thenReturn(posts);
+		when(sone.getReplies()).thenReturn(replies);
+		return sone;
+	}
+
+	private static class CountingProcessor implements PostProcessor, PostReplyProcessor {
+
+		private long changes;
+
+		@Override
+		public void processPost(Post post) {
+			changes++;
+		}
+
+		@Override
+		public void processPostReply(PostReply postReply) {
+			changes++;
+		}
+
+	}
+
+}
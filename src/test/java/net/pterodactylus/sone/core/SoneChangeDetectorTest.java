@@ -14,6 +14,7 @@ import net.pterodactylus.sone.core.SoneChangeDetector.PostReplyProcessor;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.PostReply;
 import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.impl.PostBuilderImpl;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -92,6 +93,40 @@ public class SoneChangeDetectorTest {
 				newPostReply);
 	}
 
+	@Test
+	public void changeDetectorDetectsUnchangedElements() {
+		PostProcessor unchangedPostProcessor = mock(PostProcessor.class);
+		PostReplyProcessor unchangedPostReplyProcessor = mock(PostReplyProcessor.class);
+		soneChangeDetector.onUnchangedPosts(unchangedPostProcessor);
+		soneChangeDetector.onUnchangedPostReplies(unchangedPostReplyProcessor);
+		soneChangeDetector.detectChanges(newSone);
+
+		verify(unchangedPostProcessor).processPost(oldPost);
+		verify(unchangedPostProcessor, never()).processPost(newPost);
+		verify(unchangedPostProcessor, never()).processPost(removedPost);
+		verify(newPostProcessor, never()).processPost(oldPost);
+		verify(removedPostProcessor, never()).processPost(oldPost);
+
+		verify(unchangedPostReplyProcessor).processPostReply(oldPostReply);
+		verify(unchangedPostReplyProcessor, never()).processPostReply(newPostReply);
+		verify(unchangedPostReplyProcessor, never()).processPostReply(removedPostReply);
+	}
+
+	@Test
+	public void equalPostsWithDifferentInstancesAreUnchanged() {
+		Post oldPostWithId = createPost("post-id");
+		Post newPostWithId = createPost("post-id");
+		when(oldSone.getPosts()).thenReturn(asList(oldPostWithId));
+		when(newSone.getPosts()).thenReturn(asList(newPostWithId));
+		soneChangeDetector.detectChanges(newSone);
+		verify(newPostProcessor, never()).processPost(any(Post.class));
+		verify(removedPostProcessor, never()).processPost(any(Post.class));
+	}
+
+	private static Post createPost(String id) {
+		return new PostBuilderImpl(null).withId(id).from("sone-id").withTime(1000L).withText("text").build();
+	}
+
 	@Test
 	public void changeDetectorDoesNotNotifyAnyProcessorIfProcessorsUnset() {
 	    soneChangeDetector.onNewPosts(null);
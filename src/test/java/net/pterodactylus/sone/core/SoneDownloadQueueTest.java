@@ -0,0 +1,153 @@
+package net.pterodactylus.sone.core;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link SoneDownloadQueue}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneDownloadQueueTest {
+
+	private final SoneDownloadQueue soneDownloadQueue = new SoneDownloadQueue(1, Executors.defaultThreadFactory());
+	private final List<String> fetches = Collections.synchronizedList(new ArrayList<String>());
+
+	@After
+	public void stopQueue() {
+		soneDownloadQueue.stop();
+	}
+
+	@Test
+	public void fetchIsRun() throws InterruptedException {
+		CountDownLatch finished = new CountDownLatch(1);
+		soneDownloadQueue.fetch("sone", new RecordingFetch("fetch", null, finished));
+		assertThat(finished.await(5, SECONDS), is(true));
+		assertThat(fetches, contains("fetch"));
+	}
+
+	@Test
+	public void queuedFetchesForTheSameSoneAreCoalesced() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch blocker = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(1);
+		soneDownloadQueue.fetch("other", new RecordingFetch("blocker", blocker, null, started));
+		assertThat(started.await(5, SECONDS), is(true));
+		soneDownloadQueue.fetch("sone", new RecordingFetch("first", null, null));
+		soneDownloadQueue.fetch("sone", new RecordingFetch("second", null, finished));
+		assertThat(soneDownloadQueue.getQueueDepth(), is(1));
+		blocker.countDown();
+		assertThat(finished.await(5, SECONDS), is(true));
+		assertThat(fetches, contains("blocker", "second"));
+	}
+
+	@Test
+	public void fetchForRunningSoneIsDeferredUntilTheRunningFetchHasFinished() throws InterruptedException {
+		SoneDownloadQueue soneDownloadQueue = new SoneDownloadQueue(2, Executors.defaultThreadFactory());
+		try {
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch blocker = new CountDownLatch(1);
+			CountDownLatch finished = new CountDownLatch(1);
+			soneDownloadQueue.fetch("sone", new RecordingFetch("first", blocker, null, started));
+			assertThat(started.await(5, SECONDS), is(true));
+			soneDownloadQueue.fetch("sone", new RecordingFetch("second", null, null));
+			soneDownloadQueue.fetch("sone", new RecordingFetch("third", null, finished));
+			assertThat(soneDownloadQueue.getInFlightCount(), is(1));
+			assertThat(soneDownloadQueue.getQueueDepth(), is(0));
+			blocker.countDown();
+			assertThat(finished.await(5, SECONDS), is(true));
+			assertThat(fetches, contains("first", "third"));
+		} finally {
+			soneDownloadQueue.stop();
+		}
+	}
+
+	@Test
+	public void finishedFetchesAreCounted() throws InterruptedException {
+		CountDownLatch finished = new CountDownLatch(2);
+		soneDownloadQueue.fetch("sone", new RecordingFetch("first", null, finished));
+		soneDownloadQueue.fetch("other", new RecordingFetch("second", null, finished));
+		assertThat(finished.await(5, SECONDS), is(true));
+		waitForIdleQueue();
+		assertThat(soneDownloadQueue.getFinishedFetches(), is(2L));
+	}
+
+	@Test
+	public void failingFetchDoesNotStopTheQueue() throws InterruptedException {
+		CountDownLatch finished = new CountDownLatch(1);
+		soneDownloadQueue.fetch("sone", new Runnable() {
+			@Override
+			public void run() {
+				throw new IllegalStateException();
+			}
+		});
+		soneDownloadQueue.fetch("other", new RecordingFetch("other", null, finished));
+		assertThat(finished.await(5, SECONDS), is(true));
+		assertThat(fetches, contains("other"));
+	}
+
+	@Test
+	public void fetchesAreNotRunAfterQueueWasStopped() {
+		soneDownloadQueue.stop();
+		soneDownloadQueue.fetch("sone", new RecordingFetch("fetch", null, null));
+		assertThat(soneDownloadQueue.getQueueDepth(), is(0));
+		assertThat(fetches.isEmpty(), is(true));
+	}
+
+	private void waitForIdleQueue() throws InterruptedException {
+		long end = System.currentTimeMillis() + SECONDS.toMillis(5);
+		while (((soneDownloadQueue.getInFlightCount() > 0) || (soneDownloadQueue.getQueueDepth() > 0)) && (System.currentTimeMillis() < end)) {
+			Thread.sleep(10);
+		}
+	}
+
+	private class RecordingFetch implements Runnable {
+
+		private final String name;
+		private final CountDownLatch blocker;
+		private final CountDownLatch finished;
+		private final CountDownLatch started;
+
+		private RecordingFetch(String name, CountDownLatch blocker, CountDownLatch finished) {
+			this(name, blocker, finished, null);
+		}
+
+		private RecordingFetch(String name, CountDownLatch blocker, CountDownLatch finished, CountDownLatch started) {
+			this.name = name;
+			this.blocker = blocker;
+			this.finished = finished;
+			this.started = started;
+		}
+
+		@Override
+		public void run() {
+			if (started != null) {
+				started.countDown();
+			}
+			try {
+				if (blocker != null) {
+					blocker.await();
+				}
+			} catch (InterruptedException ie1) {
+				return;
+			}
+			fetches.add(name);
+			if (finished != null) {
+				finished.countDown();
+			}
+		}
+
+	}
+
+}
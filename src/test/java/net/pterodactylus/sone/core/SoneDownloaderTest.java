@@ -1,5 +1,6 @@
 package net.pterodactylus.sone.core;
 
+import static com.google.common.io.ByteStreams.toByteArray;
 import static freenet.keys.InsertableClientSSK.createRandom;
 import static java.lang.System.currentTimeMillis;
 import static java.util.concurrent.TimeUnit.DAYS;
@@ -10,6 +11,8 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -17,10 +20,12 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 import net.pterodactylus.sone.core.FreenetInterface.Fetched;
+import net.pterodactylus.sone.core.SoneSnapshotStore.Snapshot;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.data.Sone.SoneStatus;
 import net.pterodactylus.sone.freenet.wot.Identity;
@@ -49,7 +54,9 @@ public class SoneDownloaderTest {
 	private final Core core = mock(Core.class);
 	private final FreenetInterface freenetInterface = mock(FreenetInterface.class);
 	private final SoneParser soneParser = mock(SoneParser.class);
-	private final SoneDownloaderImpl soneDownloader = new SoneDownloaderImpl(core, freenetInterface, soneParser);
+	private final SoneDownloadQueue soneDownloadQueue = mock(SoneDownloadQueue.class);
+	private final SoneSnapshotStore soneSnapshotStore = mock(SoneSnapshotStore.class);
+	private final SoneDownloaderImpl soneDownloader = new SoneDownloaderImpl(core, freenetInterface, soneParser, soneDownloadQueue, soneSnapshotStore);
 	private FreenetURI requestUri = mock(FreenetURI.class);
 	private Sone sone = mock(Sone.class);
 
@@ -94,6 +101,24 @@ public class SoneDownloaderTest {
 		verify(freenetInterface).unregisterUsk(sone);
 	}
 
+	@Test
+	public void newEditionIsFetchedUsingTheDownloadQueue() {
+		soneDownloader.addSone(sone);
+		ArgumentCaptor<USKCallback> uskCallback = forClass(USKCallback.class);
+		verify(freenetInterface).registerActiveUsk(eq(sone.getRequestUri()), uskCallback.capture());
+		uskCallback.getValue().onFoundEdition(1, null, null, false, (short) 0, null, false, false);
+		verify(soneDownloadQueue).fetch(eq("identity"), any(Runnable.class));
+	}
+
+	@Test
+	public void oldEditionIsNotFetched() {
+		when(sone.getLatestEdition()).thenReturn(2L);
+		soneDownloader.addSone(sone);
+		ArgumentCaptor<USKCallback> uskCallback = forClass(USKCallback.class);
+		verify(freenetInterface).registerActiveUsk(eq(sone.getRequestUri()), uskCallback.capture());
+		uskCallback.getValue().onFoundEdition(1, null, null, false, (short) 0, null, false, false);
+		verify(soneDownloadQueue, never()).fetch(eq("identity"), any(Runnable.class));
+	}
 
 	@Test
 	public void stoppingTheSoneDownloaderUnregistersTheSone() {
@@ -185,6 +210,114 @@ public class SoneDownloaderTest {
 		verifyThatSoneStatusWasChangedToDownloadingAndBackTo(idle);
 	}
 
+	@Test
+	public void fetchedSoneIsStoredAsSnapshot() throws IOException, SoneException {
+		FreenetURI finalRequestUri = requestUri.sskForUSK()
+				.setMetaString(new String[] { "sone.xml" });
+		final Fetched fetchResult = createFetchResult(requestUri, new ByteArrayInputStream("<sone/>".getBytes("UTF-8")));
+		when(freenetInterface.fetchUri(finalRequestUri)).thenReturn(fetchResult);
+		Sone parsedSone = createParsedSone();
+		when(parsedSone.getLatestEdition()).thenReturn(5L);
+		when(soneParser.parseSone(eq(sone), any(InputStream.class))).thenReturn(parsedSone);
+		when(core.updateSone(parsedSone)).thenReturn(true);
+		soneDownloader.fetchSoneAction(sone).run();
+		verify(core).updateSone(parsedSone);
+		ArgumentCaptor<InputStream> soneXml = forClass(InputStream.class);
+		verify(soneSnapshotStore).store(eq("identity"), eq(5L), soneXml.capture());
+		assertThat(toByteArray(soneXml.getValue()), is("<sone/>".getBytes("UTF-8")));
+	}
+
+	@Test
+	public void fetchedSoneThatIsNotNewerThanTheStoredSoneIsNotStoredAsSnapshot() throws IOException, SoneException {
+		FreenetURI finalRequestUri = requestUri.sskForUSK()
+				.setMetaString(new String[] { "sone.xml" });
+		final Fetched fetchResult = createFetchResult(requestUri, new ByteArrayInputStream("<sone/>".getBytes("UTF-8")));
+		when(freenetInterface.fetchUri(finalRequestUri)).thenReturn(fetchResult);
+		Sone parsedSone = createParsedSone();
+		when(soneParser.parseSone(eq(sone), any(InputStream.class))).thenReturn(parsedSone);
+		when(core.updateSone(parsedSone)).thenReturn(false);
+		soneDownloader.fetchSoneAction(sone).run();
+		verify(core).updateSone(parsedSone);
+		verify(soneSnapshotStore, never()).store(anyString(), anyLong(), any(InputStream.class));
+	}
+
+	@Test
+	public void onlyFetchingASoneDoesNotStoreASnapshot() throws IOException {
+		final Fetched fetchResult = createFetchResult(requestUri, getClass().getResourceAsStream("sone-parser-no-payload.xml"));
+		when(freenetInterface.fetchUri(requestUri)).thenReturn(fetchResult);
+		soneDownloader.fetchSone(sone, sone.getRequestUri(), true);
+		verify(soneSnapshotStore, never()).store(anyString(), anyLong(), any(InputStream.class));
+	}
+
+	@Test
+	public void soneWithCurrentSnapshotIsRestoredWithoutBeingFetched() throws SoneException {
+		Sone parsedSone = createParsedSone();
+		when(soneSnapshotStore.load("identity")).thenReturn(new Snapshot(5, new byte[0]));
+		when(soneParser.parseSone(eq(sone), any(InputStream.class))).thenReturn(parsedSone);
+		when(core.updateSone(parsedSone)).thenReturn(true);
+		when(sone.getLatestEdition()).thenReturn(5L);
+		assertThat(soneDownloader.restoreSone(sone), is(true));
+		verify(parsedSone).setLatestEdition(5L);
+		verify(core).updateSone(parsedSone);
+		verify(freenetInterface, never()).fetchUri(any(FreenetURI.class));
+	}
+
+	@Test
+	public void restoredSoneIsWatchedForUpdates() throws SoneException {
+		Sone parsedSone = createParsedSone();
+		when(soneSnapshotStore.load("identity")).thenReturn(new Snapshot(5, new byte[0]));
+		when(soneParser.parseSone(eq(sone), any(InputStream.class))).thenReturn(parsedSone);
+		when(core.updateSone(parsedSone)).thenReturn(true);
+		soneDownloader.restoreSone(sone);
+		verify(freenetInterface).registerPassiveUsk(eq(requestUri), any(USKCallback.class));
+	}
+
+	@Test
+	public void soneWithOutdatedSnapshotIsRestoredButNeedsToBeFetched() throws SoneException {
+		Sone parsedSone = createParsedSone();
+		when(soneSnapshotStore.load("identity")).thenReturn(new Snapshot(5, new byte[0]));
+		when(soneParser.parseSone(eq(sone), any(InputStream.class))).thenReturn(parsedSone);
+		when(core.updateSone(parsedSone)).thenReturn(true);
+		when(sone.getLatestEdition()).thenReturn(6L);
+		assertThat(soneDownloader.restoreSone(sone), is(false));
+		verify(core).updateSone(parsedSone);
+		verify(freenetInterface, never()).fetchUri(any(FreenetURI.class));
+	}
+
+	@Test
+	public void soneWithSnapshotThatIsNotNewerThanTheStoredSoneNeedsToBeFetched() throws SoneException {
+		Sone parsedSone = createParsedSone();
+		when(soneSnapshotStore.load("identity")).thenReturn(new Snapshot(5, new byte[0]));
+		when(soneParser.parseSone(eq(sone), any(InputStream.class))).thenReturn(parsedSone);
+		when(core.updateSone(parsedSone)).thenReturn(false);
+		when(sone.getLatestEdition()).thenReturn(5L);
+		assertThat(soneDownloader.restoreSone(sone), is(false));
+		verify(freenetInterface, never()).registerPassiveUsk(eq(requestUri), any(USKCallback.class));
+	}
+
+	@Test
+	public void soneWithoutSnapshotNeedsToBeFetched() {
+		assertThat(soneDownloader.restoreSone(sone), is(false));
+		verify(core, never()).updateSone(any(Sone.class));
+		verify(freenetInterface, never()).fetchUri(any(FreenetURI.class));
+	}
+
+	@Test
+	public void snapshotThatCanNotBeParsedIsRemovedAndSoneNeedsToBeFetched() throws SoneException {
+		when(soneSnapshotStore.load("identity")).thenReturn(new Snapshot(5, new byte[0]));
+		when(sone.getLatestEdition()).thenReturn(5L);
+		assertThat(soneDownloader.restoreSone(sone), is(false));
+		verify(soneSnapshotStore).remove("identity");
+		verify(core, never()).updateSone(any(Sone.class));
+	}
+
+	private Sone createParsedSone() {
+		Sone parsedSone = mock(Sone.class);
+		when(parsedSone.getId()).thenReturn("identity");
+		when(parsedSone.getRequestUri()).thenReturn(requestUri);
+		return parsedSone;
+	}
+
 	private Fetched createFetchResult(FreenetURI uri, InputStream inputStream) throws IOException {
 		ClientMetadata clientMetadata = new ClientMetadata("application/xml");
 		Bucket bucket = mock(Bucket.class);
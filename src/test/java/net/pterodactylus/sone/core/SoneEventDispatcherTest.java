@@ -0,0 +1,180 @@
+package net.pterodactylus.sone.core;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.sone.core.event.SoneUpdatedBatchEvent;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Sone;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link SoneEventDispatcher}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneEventDispatcherTest {
+
+	private final EventBus eventBus = new EventBus();
+	private final List<Object> postedEvents = Collections.synchronizedList(new ArrayList<Object>());
+	private final List<Thread> postingThreads = Collections.synchronizedList(new ArrayList<Thread>());
+	private final CountDownLatch subscriberBlocker = new CountDownLatch(1);
+	private volatile boolean blockSubscriber;
+
+	@Subscribe
+	public void eventPosted(String event) throws InterruptedException {
+		if (blockSubscriber) {
+			subscriberBlocker.await();
+		}
+		postingThreads.add(Thread.currentThread());
+		postedEvents.add(event);
+	}
+
+	@Subscribe
+	public void soneUpdated(SoneUpdatedBatchEvent soneUpdatedBatchEvent) {
+		postedEvents.add(soneUpdatedBatchEvent);
+	}
+
+	@Test
+	public void eventsArePostedInOrderOnAnotherThread() {
+		eventBus.register(this);
+		SoneEventDispatcher soneEventDispatcher = new SoneEventDispatcher(eventBus, 10);
+		for (int index = 0; index < 100; index++) {
+			soneEventDispatcher.dispatch("Event" + index);
+		}
+		soneEventDispatcher.stop();
+		assertThat(postedEvents.size(), is(100));
+		for (int index = 0; index < 100; index++) {
+			assertThat(postedEvents.get(index), is((Object) ("Event" + index)));
+			assertThat(postingThreads.get(index), not(Thread.currentThread()));
+		}
+	}
+
+	@Test
+	public void dispatchingBlocksWhileTooManyEventsAreWaiting() throws InterruptedException {
+		eventBus.register(this);
+		blockSubscriber = true;
+		final SoneEventDispatcher soneEventDispatcher = new SoneEventDispatcher(eventBus, 2);
+		soneEventDispatcher.dispatch("Event1");
+		soneEventDispatcher.dispatch("Event2");
+		final CountDownLatch thirdEventDispatched = new CountDownLatch(1);
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				soneEventDispatcher.dispatch("Event3");
+				thirdEventDispatched.countDown();
+			}
+		}).start();
+		assertThat(thirdEventDispatched.await(100, TimeUnit.MILLISECONDS), is(false));
+		subscriberBlocker.countDown();
+		assertThat(thirdEventDispatched.await(5, TimeUnit.SECONDS), is(true));
+		soneEventDispatcher.stop();
+		assertThat(postedEvents, contains((Object) "Event1", "Event2", "Event3"));
+	}
+
+	@Test
+	public void eventsAfterStopAreDropped() {
+		eventBus.register(this);
+		SoneEventDispatcher soneEventDispatcher = new SoneEventDispatcher(eventBus, 2);
+		soneEventDispatcher.stop();
+		soneEventDispatcher.dispatch("Event1");
+		soneEventDispatcher.dispatch("Event2");
+		soneEventDispatcher.dispatch("Event3");
+		assertThat(postedEvents.isEmpty(), is(true));
+	}
+
+	@Test
+	public void dispatchingContinuesAfterWaitingTooLong() throws InterruptedException {
+		eventBus.register(this);
+		blockSubscriber = true;
+		SoneEventDispatcher soneEventDispatcher = new SoneEventDispatcher(eventBus, 1, 50, Executors.newSingleThreadExecutor());
+		soneEventDispatcher.dispatch("Event1");
+		soneEventDispatcher.dispatch("Event2");
+		soneEventDispatcher.dispatch("Event3");
+		subscriberBlocker.countDown();
+		soneEventDispatcher.stop();
+		assertThat(postedEvents, contains((Object) "Event1", "Event2", "Event3"));
+	}
+
+	@Test
+	public void eventsDispatchedBySubscribersArePostedWithoutBeingQueued() {
+		final SoneEventDispatcher soneEventDispatcher = new SoneEventDispatcher(eventBus, 1, 5000, Executors.newSingleThreadExecutor());
+		eventBus.register(this);
+		eventBus.register(new Object() {
+			@Subscribe
+			public void eventPosted(Integer event) {
+				soneEventDispatcher.dispatch("Event" + event + "a");
+				soneEventDispatcher.dispatch("Event" + event + "b");
+			}
+		});
+		long start = System.currentTimeMillis();
+		soneEventDispatcher.dispatch(1);
+		soneEventDispatcher.dispatch(2);
+		soneEventDispatcher.stop();
+		assertThat(System.currentTimeMillis() - start, lessThan(5000L));
+		assertThat(postedEvents, contains((Object) "Event1a", "Event1b", "Event2a", "Event2b"));
+	}
+
+	@Test
+	public void queuedBatchEventsOfTheSameSoneAreMerged() {
+		eventBus.register(this);
+		blockSubscriber = true;
+		SoneEventDispatcher soneEventDispatcher = new SoneEventDispatcher(eventBus, 10);
+		Sone sone = createSone("Sone1");
+		Post firstPost = mock(Post.class);
+		Post secondPost = mock(Post.class);
+		soneEventDispatcher.dispatch("Event1");
+		soneEventDispatcher.dispatch(createBatchEvent(sone, asList(firstPost), Collections.<Post>emptyList()));
+		soneEventDispatcher.dispatch(createBatchEvent(sone, asList(secondPost), Collections.<Post>emptyList()));
+		soneEventDispatcher.dispatch(createBatchEvent(sone, Collections.<Post>emptyList(), asList(firstPost)));
+		subscriberBlocker.countDown();
+		soneEventDispatcher.stop();
+		assertThat(postedEvents.size(), is(2));
+		SoneUpdatedBatchEvent soneUpdatedBatchEvent = (SoneUpdatedBatchEvent) postedEvents.get(1);
+		assertThat(soneUpdatedBatchEvent.newPosts(), contains(secondPost));
+		assertThat(soneUpdatedBatchEvent.removedPosts(), contains(firstPost));
+	}
+
+	@Test
+	public void batchEventsAreNotMergedAcrossOtherEvents() {
+		eventBus.register(this);
+		blockSubscriber = true;
+		SoneEventDispatcher soneEventDispatcher = new SoneEventDispatcher(eventBus, 10);
+		Sone sone = createSone("Sone1");
+		soneEventDispatcher.dispatch("Event1");
+		soneEventDispatcher.dispatch(createBatchEvent(sone, asList(mock(Post.class)), Collections.<Post>emptyList()));
+		soneEventDispatcher.dispatch("Event2");
+		soneEventDispatcher.dispatch(createBatchEvent(sone, asList(mock(Post.class)), Collections.<Post>emptyList()));
+		subscriberBlocker.countDown();
+		soneEventDispatcher.stop();
+		assertThat(postedEvents.size(), is(4));
+	}
+
+	private static Sone createSone(String id) {
+		Sone sone = mock(Sone.class);
+		when(sone.getId()).thenReturn(id);
+		return sone;
+	}
+
+	private static SoneUpdatedBatchEvent createBatchEvent(Sone sone, List<Post> newPosts, List<Post> removedPosts) {
+		return new SoneUpdatedBatchEvent(sone, newPosts, removedPosts, Collections.<PostReply>emptyList(), Collections.<PostReply>emptyList());
+	}
+
+}
@@ -0,0 +1,170 @@
+package net.pterodactylus.sone.core;
+
+import static com.google.common.io.ByteStreams.copy;
+import static com.google.common.io.ByteStreams.nullOutputStream;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+
+import net.pterodactylus.sone.core.SoneInserter.InsertInformation;
+import net.pterodactylus.sone.data.Album;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.impl.PostBuilderImpl;
+import net.pterodactylus.sone.data.impl.PostReplyBuilderImpl;
+
+import freenet.keys.FreenetURI;
+import freenet.support.api.ManifestElement;
+
+import com.google.common.eventbus.EventBus;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Measures the time and the memory an insert of a Sone with 10,000 posts and
+ * 10,000 replies needs, from copying the Sone’s data to handing the rendered
+ * manifest entries to a stub {@link FreenetInterface} that reads all of
+ * them, once with the {@code sone.xml} rendered from the template and once
+ * with it written by the {@link SoneXmlWriter}. Run its
+ * {@link #main(String[])} method from the test classpath.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneInsertBenchmark {
+
+	private static final int POSTS = 10000;
+	private static final int REPLIES = 10000;
+
+	public static void main(String... arguments) throws Exception {
+		Core core = mock(Core.class);
+		when(core.getUpdateChecker()).thenReturn(mock(UpdateChecker.class));
+		FreenetInterface freenetInterface = createFreenetInterface();
+		SoneInserter soneInserter = new SoneInserter(core, new EventBus(), freenetInterface, "sone", mock(SoneModificationDetector.class), 1000);
+		Sone sone = createSone();
+		System.out.println(String.format("Sone: %d posts, %d replies.", POSTS, REPLIES));
+		soneInserter.setSoneXmlWriterUsed(false);
+		measure("template", soneInserter, freenetInterface, sone);
+		soneInserter.setSoneXmlWriterUsed(true);
+		measure("writer", soneInserter, freenetInterface, sone);
+	}
+
+	private static void measure(String name, SoneInserter soneInserter, FreenetInterface freenetInterface, Sone sone) throws SoneException {
+		for (int round = 0; round < 5; round++) {
+			insert(soneInserter, freenetInterface, sone);
+		}
+		int rounds = 20;
+		long allocatedBytes = 0;
+		long peakHeap = 0;
+		long duration = 0;
+		for (int round = 0; round < rounds; round++) {
+			System.gc();
+			resetPeakHeap();
+			long allocatedBefore = getAllocatedBytes();
+			long startTime = System.nanoTime();
+			insert(soneInserter, freenetInterface, sone);
+			duration += System.nanoTime() - startTime;
+			allocatedBytes += getAllocatedBytes() - allocatedBefore;
+			peakHeap = Math.max(peakHeap, getPeakHeap());
+		}
+		System.out.println(String.format("%-10s %10.2f ms per insert", name, duration / 1e6 / rounds));
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+			System.out.println(String.format("%-10s %10.2f MiB allocated per insert", name, allocatedBytes / 1048576.0 / rounds));
+		}
+		System.out.println(String.format("%-10s %10.2f MiB peak heap usage", name, peakHeap / 1048576.0));
+	}
+
+	private static void insert(SoneInserter soneInserter, FreenetInterface freenetInterface, Sone sone) throws SoneException {
+		InsertInformation insertInformation = soneInserter.new InsertInformation(sone);
+		try {
+			freenetInterface.insertDirectory(null, insertInformation.generateManifestEntries(), "index.html");
+		} finally {
+			insertInformation.close();
+		}
+	}
+
+	private static FreenetInterface createFreenetInterface() throws SoneException {
+		FreenetInterface freenetInterface = mock(FreenetInterface.class);
+		when(freenetInterface.insertDirectory(any(FreenetURI.class), any(HashMap.class), anyString())).thenAnswer(new Answer<FreenetURI>() {
+			@Override
+			public FreenetURI answer(InvocationOnMock invocation) throws IOException {
+				HashMap<String, Object> manifestEntries = invocation.getArgument(1);
+				for (Entry<String, Object> manifestEntry : manifestEntries.entrySet()) {
+					InputStream inputStream = ((ManifestElement) manifestEntry.getValue()).getData().getInputStream();
+					try {
+						copy(inputStream, nullOutputStream());
+					} finally {
+						inputStream.close();
+					}
+				}
+				return null;
+			}
+		});
+		return freenetInterface;
+	}
+
+	private static Sone createSone() {
+		Sone sone = mock(Sone.class);
+		when(sone.getId()).thenReturn("sone");
+		when(sone.getName()).thenReturn("Sone");
+		when(sone.getFingerprint()).thenReturn("fingerprint");
+		when(sone.getProfile()).thenReturn(new Profile(sone));
+		List<Post> posts = new ArrayList<Post>();
+		for (int index = 0; index < POSTS; index++) {
+			posts.add(new PostBuilderImpl(null).withId("post-" + index).from("sone").withTime(1000000L + index).withText("Post #" + index + " with <markup> & “quotes”.").build());
+		}
+		when(sone.getPosts()).thenReturn(posts);
+		List<PostReply> replies = new ArrayList<PostReply>();
+		for (int index = 0; index < REPLIES; index++) {
+			replies.add(new PostReplyBuilderImpl(null, null).withId("reply-" + index).from("sone").to("post-" + index).withTime(1000000L + index).withText("Reply #" + index + " with <markup> & “quotes”.").build());
+		}
+		when(sone.getReplies()).thenReturn(new HashSet<PostReply>(replies));
+		when(sone.getLikedPostIds()).thenReturn(Collections.<String>emptySet());
+		when(sone.getLikedReplyIds()).thenReturn(Collections.<String>emptySet());
+		Album rootAlbum = mock(Album.class);
+		when(rootAlbum.getAlbums()).thenReturn(Collections.<Album>emptyList());
+		when(sone.getRootAlbum()).thenReturn(rootAlbum);
+		return sone;
+	}
+
+	private static long getAllocatedBytes() {
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean memoryPoolMXBean : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (memoryPoolMXBean.getType() == MemoryType.HEAP) {
+				memoryPoolMXBean.resetPeakUsage();
+			}
+		}
+	}
+
+	private static long getPeakHeap() {
+		long peakHeap = 0;
+		for (MemoryPoolMXBean memoryPoolMXBean : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (memoryPoolMXBean.getType() == MemoryType.HEAP) {
+				peakHeap += memoryPoolMXBean.getPeakUsage().getUsed();
+			}
+		}
+		return peakHeap;
+	}
+
+}
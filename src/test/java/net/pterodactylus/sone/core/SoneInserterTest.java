@@ -264,6 +264,20 @@ public class SoneInserterTest {
 		assertThat(templateContent, containsString("Sone ID: " + "SoneId" + "\n"));
 	}
 
+	@Test
+	public void templateCanBeRenderedForSeveralInserts() throws IOException {
+		Map<String, Object> soneProperties = new HashMap<String, Object>();
+		soneProperties.put("id", "SoneId");
+		ManifestCreator firstManifestCreator = new ManifestCreator(core, soneProperties);
+		ManifestCreator secondManifestCreator = new ManifestCreator(core, soneProperties);
+		firstManifestCreator.createManifestElement("test.txt", "plain/text; charset=utf-8", "sone-inserter-manifest.txt");
+		ManifestElement secondManifestElement = secondManifestCreator.createManifestElement("test.txt", "plain/text; charset=utf-8", "sone-inserter-manifest.txt");
+		firstManifestCreator.close();
+		String templateContent = new String(toByteArray(secondManifestElement.getData().getInputStream()), Charsets.UTF_8);
+		assertThat(templateContent, containsString("Sone ID: " + "SoneId" + "\n"));
+		assertThat(secondManifestElement.getSize(), is((long) templateContent.getBytes(Charsets.UTF_8).length));
+	}
+
 	@Test
 	public void invalidTemplateReturnsANullManifestElement() {
 		Map<String, Object> soneProperties = new HashMap<String, Object>();
@@ -0,0 +1,167 @@
+package net.pterodactylus.sone.core;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static net.pterodactylus.sone.test.SoneXmlFixtures.createSoneXml;
+import static net.pterodactylus.sone.test.SoneXmlFixtures.describe;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.impl.AlbumBuilderImpl;
+import net.pterodactylus.sone.data.impl.ImageBuilderImpl;
+import net.pterodactylus.sone.data.impl.PostBuilderImpl;
+import net.pterodactylus.sone.data.impl.PostReplyBuilderImpl;
+import net.pterodactylus.sone.database.AlbumBuilder;
+import net.pterodactylus.sone.database.ImageBuilder;
+import net.pterodactylus.sone.database.PostBuilder;
+import net.pterodactylus.sone.database.PostReplyBuilder;
+import net.pterodactylus.sone.database.SoneBuilder;
+import net.pterodactylus.sone.database.memory.MemorySoneBuilder;
+import net.pterodactylus.sone.freenet.wot.Identity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Verifies that a single {@link SoneParser} or {@link StreamingSoneParser} can
+ * parse many Sones concurrently and creates the same Sones the
+ * {@link SoneParser} creates when parsing sequentially.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneParserConcurrencyTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int DOCUMENTS = 16;
+	private static final int THREADS = 8;
+	private static final int ROUNDS = 4;
+
+	private final Core core = mock(Core.class);
+	private final SoneParser soneParser = new SoneParser(core);
+	private final Sone originalSone = mock(Sone.class);
+	private final ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+
+	@Before
+	public void setupCore() {
+		when(core.soneBuilder()).thenAnswer(new Answer<SoneBuilder>() {
+			@Override
+			public SoneBuilder answer(InvocationOnMock invocation) {
+				return new MemorySoneBuilder(null);
+			}
+		});
+		when(core.postBuilder()).thenAnswer(new Answer<PostBuilder>() {
+			@Override
+			public PostBuilder answer(InvocationOnMock invocation) {
+				return new PostBuilderImpl(core);
+			}
+		});
+		when(core.postReplyBuilder()).thenAnswer(new Answer<PostReplyBuilder>() {
+			@Override
+			public PostReplyBuilder answer(InvocationOnMock invocation) {
+				return new PostReplyBuilderImpl(core, core);
+			}
+		});
+		when(core.albumBuilder()).thenAnswer(new Answer<AlbumBuilder>() {
+			@Override
+			public AlbumBuilder answer(InvocationOnMock invocation) {
+				return new AlbumBuilderImpl();
+			}
+		});
+		when(core.imageBuilder()).thenAnswer(new Answer<ImageBuilder>() {
+			@Override
+			public ImageBuilder answer(InvocationOnMock invocation) {
+				return new ImageBuilderImpl();
+			}
+		});
+	}
+
+	@Before
+	public void setupOriginalSone() {
+		Identity identity = mock(Identity.class);
+		when(identity.getId()).thenReturn("identity");
+		when(originalSone.getId()).thenReturn("identity");
+		when(originalSone.getIdentity()).thenReturn(identity);
+	}
+
+	@After
+	public void stopExecutorService() {
+		executorService.shutdownNow();
+	}
+
+	@Test
+	public void concurrentlyParsedSonesAreIdenticalToSequentiallyParsedSones() throws Exception {
+		List<byte[]> documents = new ArrayList<byte[]>();
+		List<String> expectedSones = new ArrayList<String>();
+		for (int documentIndex = 0; documentIndex < DOCUMENTS; documentIndex++) {
+			byte[] document = createSoneXml(documentIndex).getBytes(UTF_8);
+			documents.add(document);
+			expectedSones.add(describe(parse(document)));
+		}
+		List<Future<String>> parsedSones = new ArrayList<Future<String>>();
+		for (int round = 0; round < ROUNDS; round++) {
+			for (final byte[] document : documents) {
+				parsedSones.add(executorService.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return describe(parse(document));
+					}
+				}));
+			}
+		}
+		for (int index = 0; index < parsedSones.size(); index++) {
+			assertThat(parsedSones.get(index).get(1, MINUTES), is(expectedSones.get(index % DOCUMENTS)));
+		}
+	}
+
+	@Test
+	public void concurrentlyStreamedSonesAreIdenticalToSequentiallyParsedSones() throws Exception {
+		final StreamingSoneParser streamingSoneParser = new StreamingSoneParser(core);
+		List<byte[]> documents = new ArrayList<byte[]>();
+		List<String> expectedSones = new ArrayList<String>();
+		for (int documentIndex = 0; documentIndex < DOCUMENTS; documentIndex++) {
+			byte[] document = createSoneXml(documentIndex).getBytes(UTF_8);
+			documents.add(document);
+			expectedSones.add(describe(parse(document)));
+		}
+		List<Future<String>> parsedSones = new ArrayList<Future<String>>();
+		for (int round = 0; round < ROUNDS; round++) {
+			for (final byte[] document : documents) {
+				parsedSones.add(executorService.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return describe(parse(streamingSoneParser, document));
+					}
+				}));
+			}
+		}
+		for (int index = 0; index < parsedSones.size(); index++) {
+			assertThat(parsedSones.get(index).get(1, MINUTES), is(expectedSones.get(index % DOCUMENTS)));
+		}
+	}
+
+	private Sone parse(byte[] document) throws SoneException {
+		return parse(soneParser, document);
+	}
+
+	private Sone parse(SoneParser soneParser, byte[] document) throws SoneException {
+		Sone sone = soneParser.parseSone(originalSone, new ByteArrayInputStream(document));
+		assertThat(sone, notNullValue());
+		return sone;
+	}
+
+}
@@ -64,9 +64,9 @@ import org.mockito.stubbing.Answer;
  */
 public class SoneParserTest {
 
-	private final Core core = mock(Core.class);
-	private final SoneParser soneParser = new SoneParser(core);
-	private final Sone sone = mock(Sone.class);
+	protected final Core core = mock(Core.class);
+	private final SoneParser soneParser = createSoneParser(core);
+	protected final Sone sone = mock(Sone.class);
 	private FreenetURI requestUri = mock(FreenetURI.class);
 	private final PostBuilder postBuilder = mock(PostBuilder.class);
 	private final List<Post> createdPosts = new ArrayList<Post>();
@@ -84,6 +84,10 @@ public class SoneParserTest {
 	private Image image = mock(Image.class);
 	private final Map<String, Image> images = new HashMap<String, Image>();
 
+	protected SoneParser createSoneParser(Core core) {
+		return new SoneParser(core);
+	}
+
 	@Before
 	public void setupSone() {
 		setupSone(this.sone, Identity.class);
@@ -458,6 +462,12 @@ public class SoneParserTest {
 		assertThat(soneParser.parseSone(sone, inputStream), nullValue());
 	}
 
+	@Test
+	public void parsingASoneFailsWhenDocumentHasADocumentTypeDeclaration() throws SoneException {
+		InputStream inputStream = getClass().getResourceAsStream("sone-parser-with-external-entity.xml");
+		assertThat(soneParser.parseSone(sone, inputStream), nullValue());
+	}
+
 	@Test
 	public void parsingASoneFailsWhenDocumentHasNegativeProtocolVersion() throws SoneException {
 		InputStream inputStream = getClass().getResourceAsStream("sone-parser-negative-protocol-version.xml");
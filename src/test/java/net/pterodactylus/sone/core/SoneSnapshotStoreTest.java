@@ -0,0 +1,159 @@
+package net.pterodactylus.sone.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import net.pterodactylus.sone.core.SoneSnapshotStore.Snapshot;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for {@link SoneSnapshotStore}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneSnapshotStoreTest {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File directory;
+	private SoneSnapshotStore soneSnapshotStore;
+
+	@Before
+	public void setupStore() {
+		directory = new File(temporaryFolder.getRoot(), "snapshots");
+		soneSnapshotStore = new SoneSnapshotStore(directory, 1024 * 1024);
+		soneSnapshotStore.open();
+	}
+
+	private static byte[] createSoneXml(String soneId) {
+		StringBuilder soneXml = new StringBuilder("<sone><id>").append(soneId).append("</id><posts>");
+		for (int post = 0; post < 100; post++) {
+			soneXml.append("<post><id>").append(post).append("</id><text>Post #").append(post).append("</text></post>");
+		}
+		return soneXml.append("</posts></sone>").toString().getBytes();
+	}
+
+	private static byte[] createRandomBytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return bytes;
+	}
+
+	@Test
+	public void storedSnapshotCanBeLoaded() {
+		soneSnapshotStore.store("Sone1", 17, createSoneXml("Sone1"));
+		Snapshot snapshot = soneSnapshotStore.load("Sone1");
+		assertThat(snapshot.getEdition(), is(17L));
+		assertThat(snapshot.getSoneXml(), is(createSoneXml("Sone1")));
+	}
+
+	@Test
+	public void snapshotOfUnknownSoneIsNull() {
+		assertThat(soneSnapshotStore.load("Sone1"), nullValue());
+	}
+
+	@Test
+	public void snapshotsAreCompressed() {
+		byte[] soneXml = createSoneXml("Sone1");
+		soneSnapshotStore.store("Sone1", 17, soneXml);
+		assertThat(soneSnapshotStore.getTotalSize(), lessThan((long) soneXml.length / 4));
+	}
+
+	@Test
+	public void newSnapshotReplacesOldSnapshot() {
+		soneSnapshotStore.store("Sone1", 17, createSoneXml("Sone1"));
+		soneSnapshotStore.store("Sone1", 18, createSoneXml("Sone2"));
+		assertThat(soneSnapshotStore.size(), is(1));
+		assertThat(soneSnapshotStore.load("Sone1").getEdition(), is(18L));
+		assertThat(soneSnapshotStore.load("Sone1").getSoneXml(), is(createSoneXml("Sone2")));
+	}
+
+	@Test
+	public void snapshotsAreFoundAfterReopeningTheStore() {
+		soneSnapshotStore.store("Sone1", 17, createSoneXml("Sone1"));
+		soneSnapshotStore.store("sone1", 18, createSoneXml("sone1"));
+		SoneSnapshotStore reopenedStore = new SoneSnapshotStore(directory, 1024 * 1024);
+		reopenedStore.open();
+		assertThat(reopenedStore.size(), is(2));
+		assertThat(reopenedStore.getTotalSize(), is(soneSnapshotStore.getTotalSize()));
+		assertThat(reopenedStore.load("Sone1").getEdition(), is(17L));
+		assertThat(reopenedStore.load("sone1").getEdition(), is(18L));
+	}
+
+	@Test
+	public void removedSnapshotIsNotLoaded() {
+		soneSnapshotStore.store("Sone1", 17, createSoneXml("Sone1"));
+		soneSnapshotStore.remove("Sone1");
+		assertThat(soneSnapshotStore.load("Sone1"), nullValue());
+		assertThat(soneSnapshotStore.size(), is(0));
+		assertThat(soneSnapshotStore.getTotalSize(), is(0L));
+		assertThat(directory.list().length, is(0));
+	}
+
+	@Test
+	public void corruptSnapshotIsNotLoadedAndRemoved() throws IOException {
+		soneSnapshotStore.store("Sone1", 17, createSoneXml("Sone1"));
+		File snapshotFile = directory.listFiles()[0];
+		RandomAccessFile randomAccessFile = new RandomAccessFile(snapshotFile, "rw");
+		try {
+			randomAccessFile.seek(randomAccessFile.length() / 2);
+			int value = randomAccessFile.read();
+			randomAccessFile.seek(randomAccessFile.length() / 2);
+			randomAccessFile.write(value ^ 0x55);
+		} finally {
+			randomAccessFile.close();
+		}
+		assertThat(soneSnapshotStore.load("Sone1"), nullValue());
+		assertThat(snapshotFile.exists(), is(false));
+		assertThat(soneSnapshotStore.size(), is(0));
+	}
+
+	@Test
+	public void truncatedSnapshotIsNotLoaded() throws IOException {
+		soneSnapshotStore.store("Sone1", 17, createSoneXml("Sone1"));
+		File snapshotFile = directory.listFiles()[0];
+		RandomAccessFile randomAccessFile = new RandomAccessFile(snapshotFile, "rw");
+		try {
+			randomAccessFile.setLength(randomAccessFile.length() - 10);
+		} finally {
+			randomAccessFile.close();
+		}
+		assertThat(soneSnapshotStore.load("Sone1"), nullValue());
+	}
+
+	@Test
+	public void oldestSnapshotsAreRemovedWhenTheStoreIsFull() throws InterruptedException {
+		for (int sone = 0; sone < 5; sone++) {
+			soneSnapshotStore.store("Sone" + sone, sone, createRandomBytes(300 * 1024));
+			Thread.sleep(5);
+		}
+		assertThat(soneSnapshotStore.getTotalSize(), lessThanOrEqualTo(1024 * 1024L));
+		assertThat(soneSnapshotStore.size(), is(3));
+		assertThat(soneSnapshotStore.load("Sone0"), nullValue());
+		assertThat(soneSnapshotStore.load("Sone1"), nullValue());
+		assertThat(soneSnapshotStore.load("Sone4"), notNullValue());
+		assertThat(directory.list().length, is(3));
+	}
+
+	@Test
+	public void snapshotLargerThanTheStoreIsNotStored() {
+		soneSnapshotStore.store("Sone1", 17, createRandomBytes(2 * 1024 * 1024));
+		assertThat(soneSnapshotStore.size(), is(0));
+		assertThat(directory.list().length, is(0));
+	}
+
+}
@@ -0,0 +1,181 @@
+package net.pterodactylus.sone.core;
+
+import static com.google.common.io.ByteStreams.toByteArray;
+import static java.util.Arrays.asList;
+import static net.pterodactylus.sone.test.SoneXmlFixtures.createSoneXml;
+import static net.pterodactylus.sone.test.SoneXmlFixtures.describe;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.pterodactylus.sone.core.SoneInserter.InsertInformation;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.impl.AlbumBuilderImpl;
+import net.pterodactylus.sone.data.impl.ImageBuilderImpl;
+import net.pterodactylus.sone.data.impl.PostBuilderImpl;
+import net.pterodactylus.sone.data.impl.PostReplyBuilderImpl;
+import net.pterodactylus.sone.database.AlbumBuilder;
+import net.pterodactylus.sone.database.ImageBuilder;
+import net.pterodactylus.sone.database.PostBuilder;
+import net.pterodactylus.sone.database.PostReplyBuilder;
+import net.pterodactylus.sone.database.SoneBuilder;
+import net.pterodactylus.sone.database.memory.MemorySoneBuilder;
+import net.pterodactylus.sone.freenet.wot.Identity;
+
+import freenet.support.api.ManifestElement;
+
+import com.google.common.base.Optional;
+import com.google.common.eventbus.EventBus;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit test for {@link SoneXmlWriter}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneXmlWriterTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final Core core = mock(Core.class);
+	private final SoneParser soneParser = new SoneParser(core);
+	private final Sone originalSone = mock(Sone.class);
+	private final SoneInserter soneInserter = new SoneInserter(core, new EventBus(), mock(FreenetInterface.class), "identity", mock(SoneModificationDetector.class), 1);
+
+	@Before
+	public void setupCore() {
+		when(core.getUpdateChecker()).thenReturn(mock(UpdateChecker.class));
+		when(core.soneBuilder()).thenAnswer(new Answer<SoneBuilder>() {
+			@Override
+			public SoneBuilder answer(InvocationOnMock invocation) {
+				return new MemorySoneBuilder(null);
+			}
+		});
+		when(core.postBuilder()).thenAnswer(new Answer<PostBuilder>() {
+			@Override
+			public PostBuilder answer(InvocationOnMock invocation) {
+				return new PostBuilderImpl(core);
+			}
+		});
+		when(core.postReplyBuilder()).thenAnswer(new Answer<PostReplyBuilder>() {
+			@Override
+			public PostReplyBuilder answer(InvocationOnMock invocation) {
+				return new PostReplyBuilderImpl(core, core);
+			}
+		});
+		when(core.albumBuilder()).thenAnswer(new Answer<AlbumBuilder>() {
+			@Override
+			public AlbumBuilder answer(InvocationOnMock invocation) {
+				return new AlbumBuilderImpl();
+			}
+		});
+		when(core.imageBuilder()).thenAnswer(new Answer<ImageBuilder>() {
+			@Override
+			public ImageBuilder answer(InvocationOnMock invocation) {
+				return new ImageBuilderImpl();
+			}
+		});
+	}
+
+	@Before
+	public void setupOriginalSone() {
+		Identity identity = mock(Identity.class);
+		when(identity.getId()).thenReturn("identity");
+		when(identity.getRequestUri()).thenReturn("USK@nwa8lHa271k2QvJ8aa0Ov7IHAV-DFOCFgmDt3X6BpCI,DuQSUZiI~agF8c-6tjsFFGuZ8eICrzWCILB60nT8KKo,AQACAAE/WebOfTrust/0");
+		when(originalSone.getId()).thenReturn("identity");
+		when(originalSone.getIdentity()).thenReturn(identity);
+	}
+
+	@Test
+	public void writtenSoneIsParsedIntoTheSameSone() throws Exception {
+		Sone sone = parse(createSoneXml(3).getBytes(UTF_8));
+		long before = System.currentTimeMillis();
+		Sone writtenSone = parse(generateSoneXml(sone, true));
+		long after = System.currentTimeMillis();
+		assertThat(writtenSone.getTime(), greaterThanOrEqualTo(before));
+		assertThat(writtenSone.getTime(), lessThanOrEqualTo(after));
+		assertThat(withoutTimeAndClient(describe(writtenSone)), is(withoutTimeAndClient(describe(sone))));
+	}
+
+	@Test
+	public void writtenSoneIsParsedIntoTheSameSoneAsTheRenderedTemplate() throws Exception {
+		Sone sone = parse(createSoneXml(5).getBytes(UTF_8));
+		Sone writtenSone = parse(generateSoneXml(sone, true));
+		Sone renderedSone = parse(generateSoneXml(sone, false));
+		assertThat(withoutTime(describe(writtenSone)), is(withoutTime(describe(renderedSone))));
+	}
+
+	@Test
+	public void writtenSoneXmlIsIdenticalToTheRenderedTemplate() throws Exception {
+		Sone sone = parse(createSoneXml(7).getBytes(UTF_8));
+		InsertInformation insertInformation = soneInserter.new InsertInformation(sone);
+		try {
+			byte[] writtenSoneXml = generateSoneXml(insertInformation, true);
+			byte[] renderedSoneXml = generateSoneXml(insertInformation, false);
+			assertThat(new String(writtenSoneXml, UTF_8), is(new String(renderedSoneXml, UTF_8)));
+			assertThat(writtenSoneXml, is(renderedSoneXml));
+		} finally {
+			insertInformation.close();
+		}
+	}
+
+	@Test
+	public void textIsEscaped() throws IOException {
+		Post post = mock(Post.class);
+		when(post.getId()).thenReturn("post-id");
+		when(post.getRecipientId()).thenReturn(Optional.<String>absent());
+		when(post.getText()).thenReturn("<b>Tom & “Jerry”</b> say \"hi\" and 'bye'");
+		Map<String, Object> soneProperties = new HashMap<String, Object>();
+		soneProperties.put("posts", asList(post));
+		StringWriter stringWriter = new StringWriter();
+		new SoneXmlWriter(stringWriter).write(soneProperties, "1.0");
+		assertThat(stringWriter.toString(), containsString("<text>&lt;b&gt;Tom &amp; “Jerry”&lt;/b&gt; say &quot;hi&quot; and &apos;bye&apos;</text>"));
+		assertThat(stringWriter.toString(), containsString("<recipient></recipient>"));
+	}
+
+	private byte[] generateSoneXml(Sone sone, boolean soneXmlWriterUsed) throws IOException {
+		InsertInformation insertInformation = soneInserter.new InsertInformation(sone);
+		try {
+			return generateSoneXml(insertInformation, soneXmlWriterUsed);
+		} finally {
+			insertInformation.close();
+		}
+	}
+
+	private byte[] generateSoneXml(InsertInformation insertInformation, boolean soneXmlWriterUsed) throws IOException {
+		soneInserter.setSoneXmlWriterUsed(soneXmlWriterUsed);
+		ManifestElement manifestElement = (ManifestElement) insertInformation.generateManifestEntries().get("sone.xml");
+		return toByteArray(manifestElement.getData().getInputStream());
+	}
+
+	private Sone parse(byte[] document) throws SoneException {
+		Sone sone = soneParser.parseSone(originalSone, new ByteArrayInputStream(document));
+		assertThat(sone, notNullValue());
+		return sone;
+	}
+
+	private static String withoutTime(String description) {
+		return description.substring(description.indexOf("Client: "));
+	}
+
+	private static String withoutTimeAndClient(String description) {
+		return description.substring(description.indexOf("Profile: "));
+	}
+
+}
@@ -0,0 +1,77 @@
+package net.pterodactylus.sone.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link StreamingSoneParser}. All tests of the
+ * {@link SoneParserTest} are run against the streaming parser as well.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class StreamingSoneParserTest extends SoneParserTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Override
+	protected SoneParser createSoneParser(Core core) {
+		return new StreamingSoneParser(core);
+	}
+
+	@Test
+	public void parsingASoneSucceedsWithinAllLimits() throws SoneException {
+		StreamingSoneParser soneParser = new StreamingSoneParser(core, 1000, 10, 20);
+		assertThat(soneParser.parseSone(sone, createInputStream("<sone><time>1407197508000</time><profile></profile></sone>")), notNullValue());
+	}
+
+	@Test
+	public void parsingASoneFailsWhenItHasTooManyBytes() throws SoneException {
+		StreamingSoneParser soneParser = new StreamingSoneParser(core, 50, 10, 20);
+		assertThat(soneParser.parseSone(sone, createInputStream("<sone><time>1407197508000</time><profile></profile></sone>")), nullValue());
+	}
+
+	@Test
+	public void parsingASoneFailsWhenItHasTooManyElements() throws SoneException {
+		StreamingSoneParser soneParser = new StreamingSoneParser(core, 1000, 3, 20);
+		assertThat(soneParser.parseSone(sone, createInputStream("<sone><time>1407197508000</time><profile></profile><posts></posts></sone>")), nullValue());
+	}
+
+	@Test
+	public void parsingASoneFailsWhenIgnoredElementsExceedTheElementLimit() throws SoneException {
+		StreamingSoneParser soneParser = new StreamingSoneParser(core, 1000, 5, 20);
+		assertThat(soneParser.parseSone(sone, createInputStream("<sone><time>1407197508000</time><profile></profile><a><b><c><d/></c></b></a></sone>")), nullValue());
+	}
+
+	@Test
+	public void parsingASoneFailsWhenATextIsTooLong() throws SoneException {
+		StreamingSoneParser soneParser = new StreamingSoneParser(core, 1000, 10, 10);
+		assertThat(soneParser.parseSone(sone, createInputStream("<sone><time>1407197508000</time><profile></profile></sone>")), nullValue());
+	}
+
+	@Test
+	public void parsingASoneFailsWhenTheXmlIsTruncated() throws SoneException {
+		assertThat(new StreamingSoneParser(core).parseSone(sone, createInputStream("<sone><time>1407197508000</time><profile></profile>")), nullValue());
+	}
+
+	@Test
+	public void parsingASoneFailsWhenTheXmlHasTrailingGarbage() throws SoneException {
+		assertThat(new StreamingSoneParser(core).parseSone(sone, createInputStream("<sone><time>1407197508000</time><profile></profile></sone><sone>")), nullValue());
+	}
+
+	@Test
+	public void parsingASoneFailsWhenTheXmlContainsADocumentTypeDefinition() throws SoneException {
+		assertThat(new StreamingSoneParser(core).parseSone(sone, createInputStream("<!DOCTYPE sone [<!ENTITY time \"1407197508000\">]><sone><time>&time;</time><profile></profile></sone>")), nullValue());
+	}
+
+	private static InputStream createInputStream(String xml) {
+		return new ByteArrayInputStream(xml.getBytes(UTF_8));
+	}
+
+}
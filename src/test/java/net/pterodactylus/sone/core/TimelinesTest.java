@@ -0,0 +1,172 @@
+package net.pterodactylus.sone.core;
+
+import static com.google.common.base.Optional.fromNullable;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.database.PostProvider;
+import net.pterodactylus.sone.database.SoneProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link Timelines}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class TimelinesTest {
+
+	private final SoneProvider soneProvider = mock(SoneProvider.class);
+	private final PostProvider postProvider = mock(PostProvider.class);
+	private final Timelines timelines = new Timelines(soneProvider, postProvider);
+	private final Sone localSone = createSone("local");
+	private final Sone friendSone = createSone("friend");
+	private final Sone otherSone = createSone("other");
+	private final Post localPost = createPost("local-post", localSone, null, 3000);
+	private final Post friendPost = createPost("friend-post", friendSone, null, 2000);
+	private final Post directedPost = createPost("directed-post", otherSone, "local", 1000);
+	private final Post otherPost = createPost("other-post", otherSone, null, 2500);
+
+	@Before
+	public void setupSones() {
+		when(localSone.getPosts()).thenReturn(asList(localPost));
+		when(localSone.getFriends()).thenReturn(asList("friend"));
+		when(localSone.hasFriend("friend")).thenReturn(true);
+		when(friendSone.getPosts()).thenReturn(asList(friendPost));
+		when(otherSone.getPosts()).thenReturn(asList(otherPost, directedPost));
+		when(postProvider.getDirectedPosts("local")).thenReturn(asList(directedPost));
+	}
+
+	private Sone createSone(String id) {
+		Sone sone = mock(Sone.class);
+		when(sone.getId()).thenReturn(id);
+		when(soneProvider.getSone(id)).thenReturn(sone);
+		return sone;
+	}
+
+	private Post createPost(String id, Sone sone, String recipientId, long time) {
+		Post post = mock(Post.class);
+		when(post.getId()).thenReturn(id);
+		when(post.getSone()).thenReturn(sone);
+		when(post.getRecipientId()).thenReturn(fromNullable(recipientId));
+		when(post.getTime()).thenReturn(time);
+		return post;
+	}
+
+	@Test
+	public void timelineContainsOwnFriendAndDirectedPostsNewestFirst() {
+		assertThat(timelines.getTimeline(localSone), contains(localPost, friendPost, directedPost));
+	}
+
+	@Test
+	public void timelineDoesNotContainDuplicatePosts() {
+		when(localSone.getFriends()).thenReturn(asList("friend", "other"));
+		assertThat(timelines.getTimeline(localSone), contains(localPost, otherPost, friendPost, directedPost));
+	}
+
+	@Test
+	public void addedPostOfFriendIsAddedToTimeline() {
+		timelines.getTimeline(localSone);
+		Post newPost = createPost("new-post", friendSone, null, 4000);
+		timelines.postAdded(newPost);
+		assertThat(timelines.getTimeline(localSone), contains(newPost, localPost, friendPost, directedPost));
+	}
+
+	@Test
+	public void addedPostOfNonFriendIsNotAddedToTimeline() {
+		timelines.getTimeline(localSone);
+		timelines.postAdded(createPost("new-post", otherSone, null, 4000));
+		assertThat(timelines.getTimeline(localSone), contains(localPost, friendPost, directedPost));
+	}
+
+	@Test
+	public void addedDirectedPostOfNonFriendIsAddedToTimeline() {
+		timelines.getTimeline(localSone);
+		Post newPost = createPost("new-post", otherSone, "local", 4000);
+		timelines.postAdded(newPost);
+		assertThat(timelines.getTimeline(localSone), contains(newPost, localPost, friendPost, directedPost));
+	}
+
+	@Test
+	public void removedPostIsRemovedFromTimeline() {
+		timelines.getTimeline(localSone);
+		timelines.postRemoved(friendPost);
+		assertThat(timelines.getTimeline(localSone), contains(localPost, directedPost));
+	}
+
+	@Test
+	public void postsOfRemovedSoneAreRemovedFromTimeline() {
+		timelines.getTimeline(localSone);
+		timelines.soneRemoved(otherSone);
+		assertThat(timelines.getTimeline(localSone), contains(localPost, friendPost));
+	}
+
+	@Test
+	public void postsOfFollowedSoneAreAddedToTimeline() {
+		timelines.getTimeline(localSone);
+		when(localSone.hasFriend("other")).thenReturn(true);
+		timelines.friendAdded(localSone, "other");
+		assertThat(timelines.getTimeline(localSone), contains(localPost, otherPost, friendPost, directedPost));
+	}
+
+	@Test
+	public void postsOfUnfollowedSoneAreRemovedFromTimeline() {
+		timelines.getTimeline(localSone);
+		when(localSone.hasFriend("friend")).thenReturn(false);
+		timelines.friendRemoved(localSone, "friend");
+		assertThat(timelines.getTimeline(localSone), contains(localPost, directedPost));
+	}
+
+	@Test
+	public void directedPostsOfUnfollowedSoneStayInTimeline() {
+		when(localSone.getFriends()).thenReturn(asList("friend", "other"));
+		when(localSone.hasFriend("other")).thenReturn(true);
+		timelines.getTimeline(localSone);
+		when(localSone.hasFriend("other")).thenReturn(false);
+		timelines.friendRemoved(localSone, "other");
+		assertThat(timelines.getTimeline(localSone), contains(localPost, friendPost, directedPost));
+	}
+
+	@Test
+	public void timelineOfLocalSoneWithoutPostsIsEmpty() {
+		when(localSone.getPosts()).thenReturn(Collections.<Post>emptyList());
+		when(localSone.getFriends()).thenReturn(Collections.<String>emptyList());
+		when(postProvider.getDirectedPosts("local")).thenReturn(Collections.<Post>emptyList());
+		assertThat(timelines.getTimeline(localSone), empty());
+	}
+
+	@Test
+	public void timelineReflectsPostsThatAreAddedLater() {
+		Collection<Post> timeline = timelines.getTimeline(localSone);
+		Post newPost = createPost("new-post", friendSone, null, 4000);
+		timelines.postAdded(newPost);
+		assertThat(timeline, contains(newPost, localPost, friendPost, directedPost));
+	}
+
+	@Test
+	public void timelineCanBeIteratedWhilePostsAreRemoved() {
+		Iterator<Post> posts = timelines.getTimeline(localSone).iterator();
+		posts.next();
+		timelines.postRemoved(directedPost);
+		assertThat(posts.next(), is(friendPost));
+		assertThat(posts.hasNext(), is(false));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void timelineCanNotBeModified() {
+		timelines.getTimeline(localSone).clear();
+	}
+
+}
@@ -6,6 +6,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
@@ -28,6 +29,9 @@ import net.pterodactylus.sone.freenet.wot.OwnIdentity;
 import net.pterodactylus.sone.freenet.wot.Trust;
 import net.pterodactylus.sone.freenet.wot.WebOfTrustConnector;
 import net.pterodactylus.sone.freenet.wot.WebOfTrustException;
+import net.pterodactylus.sone.freenet.wot.event.TrustUpdatedEvent;
+
+import com.google.common.eventbus.EventBus;
 
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
@@ -46,7 +50,8 @@ public class WebOfTrustUpdaterTest {
 	private static final String TRUST_COMMENT = "set in a test";
 	private static final String PROPERTY_NAME = "test-property";
 	private final WebOfTrustConnector webOfTrustConnector = mock(WebOfTrustConnector.class);
-	private final WebOfTrustUpdaterImpl webOfTrustUpdater = new WebOfTrustUpdaterImpl(webOfTrustConnector);
+	private final EventBus eventBus = mock(EventBus.class);
+	private final WebOfTrustUpdaterImpl webOfTrustUpdater = new WebOfTrustUpdaterImpl(webOfTrustConnector, eventBus);
 	private final OwnIdentity ownIdentity = when(mock(OwnIdentity.class).getId()).thenReturn("own-identity-id").getMock();
 	private final WebOfTrustUpdateJob successfulWebOfTrustUpdateJob = createWebOfTrustUpdateJob(true);
 	private final WebOfTrustUpdateJob failingWebOfTrustUpdateJob = createWebOfTrustUpdateJob(false);
@@ -242,6 +247,7 @@ public class WebOfTrustUpdaterTest {
 		setTrustJob.run();
 		verify(webOfTrustConnector).setTrust(eq(ownIdentity), eq(trustee), eq(SCORE), eq(TRUST_COMMENT));
 		verify(trustee).setTrust(eq(ownIdentity), eq(new Trust(SCORE, null, 0)));
+		verify(eventBus).post(new TrustUpdatedEvent(ownIdentity, trustee));
 		assertThat(setTrustJob.waitForCompletion(), is(true));
 	}
 
@@ -251,6 +257,7 @@ public class WebOfTrustUpdaterTest {
 		setTrustJob.run();
 		verify(webOfTrustConnector).removeTrust(eq(ownIdentity), eq(trustee));
 		verify(trustee).removeTrust(eq(ownIdentity));
+		verify(eventBus).post(new TrustUpdatedEvent(ownIdentity, trustee));
 		assertThat(setTrustJob.waitForCompletion(), is(true));
 	}
 
@@ -261,6 +268,7 @@ public class WebOfTrustUpdaterTest {
 		setTrustJob.run();
 		verify(webOfTrustConnector).setTrust(eq(ownIdentity), eq(trustee), eq(SCORE), eq(TRUST_COMMENT));
 		verify(trustee, never()).setTrust(eq(ownIdentity), eq(new Trust(SCORE, null, 0)));
+		verify(eventBus, never()).post(any());
 		assertThat(setTrustJob.waitForCompletion(), is(false));
 	}
 
@@ -0,0 +1,191 @@
+package net.pterodactylus.sone.data.impl;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashSet;
+
+import net.pterodactylus.sone.data.Album;
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.database.Database;
+import net.pterodactylus.sone.freenet.wot.Identity;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link SoneImpl}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneImplTest {
+
+	private final Database database = mock(Database.class);
+	private final Identity identity = mock(Identity.class);
+	private final SoneImpl sone = createSone();
+
+	private SoneImpl createSone() {
+		when(identity.getId()).thenReturn("sone-id");
+		return new SoneImpl(database, identity, false);
+	}
+
+	private Post createPost(Sone sone, String id, long time) {
+		Post post = mock(Post.class);
+		when(post.getId()).thenReturn(id);
+		when(post.getSone()).thenReturn(sone);
+		when(post.getTime()).thenReturn(time);
+		return post;
+	}
+
+	private PostReply createPostReply(Sone sone, String id, long time) {
+		PostReply postReply = mock(PostReply.class);
+		when(postReply.getId()).thenReturn(id);
+		when(postReply.getSone()).thenReturn(sone);
+		when(postReply.getTime()).thenReturn(time);
+		return postReply;
+	}
+
+	private Album createAlbum(Sone sone, String id, String title) {
+		Album album = new AlbumImpl(sone, id).modify().setTitle(title).setDescription("").update();
+		sone.getRootAlbum().addAlbum(album);
+		return album;
+	}
+
+	private Image createImage(Sone sone, Album album, String id, String key) {
+		Image image = new ImageImpl(id).modify().setSone(sone).setTitle(id).setDescription("").setKey(key).update();
+		album.addImage(image);
+		return image;
+	}
+
+	@Test
+	public void fingerprintIsOnlyCalculatedOnceWhileSoneIsNotModified() {
+		String fingerprint = sone.getFingerprint();
+		assertThat(sone.getFingerprint(), is(fingerprint));
+	}
+
+	@Test
+	public void fingerprintChangesWhenPostIsAddedAndRemoved() {
+		String fingerprint = sone.getFingerprint();
+		Post post = createPost(sone, "post-id", 1000);
+		sone.addPost(post);
+		assertThat(sone.getFingerprint(), not(fingerprint));
+		sone.removePost(post);
+		assertThat(sone.getFingerprint(), is(fingerprint));
+	}
+
+	@Test
+	public void fingerprintChangesWhenReplyIsAddedAndRemoved() {
+		String fingerprint = sone.getFingerprint();
+		PostReply postReply = createPostReply(sone, "reply-id", 1000);
+		sone.addReply(postReply);
+		assertThat(sone.getFingerprint(), not(fingerprint));
+		sone.removeReply(postReply);
+		assertThat(sone.getFingerprint(), is(fingerprint));
+	}
+
+	@Test
+	public void fingerprintChangesWhenLikesChange() {
+		String fingerprint = sone.getFingerprint();
+		sone.addLikedPostId("post-id");
+		String postLikedFingerprint = sone.getFingerprint();
+		assertThat(postLikedFingerprint, not(fingerprint));
+		sone.addLikedReplyId("reply-id");
+		assertThat(sone.getFingerprint(), not(postLikedFingerprint));
+		sone.removeLikedReplyId("reply-id");
+		sone.removeLikedPostId("post-id");
+		assertThat(sone.getFingerprint(), is(fingerprint));
+	}
+
+	@Test
+	public void fingerprintChangesWhenProfileChanges() {
+		String fingerprint = sone.getFingerprint();
+		Profile profile = sone.getProfile();
+		profile.setFirstName("First");
+		sone.setProfile(profile);
+		assertThat(sone.getFingerprint(), not(fingerprint));
+	}
+
+	@Test
+	public void fingerprintChangesWhenImageIsAddedToAlbum() {
+		Album album = createAlbum(sone, "album-id", "Album");
+		String fingerprint = sone.getFingerprint();
+		createImage(sone, album, "image-id", "KSK@image");
+		assertThat(sone.getFingerprint(), not(fingerprint));
+	}
+
+	@Test
+	public void fingerprintChangesWhenTitleOfNestedAlbumChanges() {
+		Album album = createAlbum(sone, "album-id", "Album");
+		Album nestedAlbum = new AlbumImpl(sone, "nested-album-id").modify().setTitle("Nested").setDescription("").update();
+		album.addAlbum(nestedAlbum);
+		createImage(sone, nestedAlbum, "image-id", "KSK@image");
+		String fingerprint = sone.getFingerprint();
+		nestedAlbum.modify().setTitle("Renamed").update();
+		assertThat(sone.getFingerprint(), not(fingerprint));
+	}
+
+	@Test
+	public void fingerprintChangesWhenImageIsInserted() {
+		Album album = createAlbum(sone, "album-id", "Album");
+		createImage(sone, album, "first-image-id", "KSK@image");
+		Image image = new ImageImpl("image-id").modify().setSone(sone).setTitle("Image").setDescription("").update();
+		album.addImage(image);
+		String fingerprint = sone.getFingerprint();
+		image.modify().setKey("KSK@inserted").update();
+		assertThat(sone.getFingerprint(), not(fingerprint));
+	}
+
+	@Test
+	public void fingerprintIsTheSameAsTheFingerprintOfAnUnmodifiedSoneWithTheSameContent() {
+		sone.getFingerprint();
+		fillSone(sone);
+		SoneImpl otherSone = new SoneImpl(database, identity, false);
+		fillSone(otherSone);
+		assertThat(sone.getFingerprint(), is(otherSone.getFingerprint()));
+	}
+
+	@Test
+	public void settingLikedPostIdsUpdatesTheLikesInTheDatabase() {
+		sone.setLikePostIds(new HashSet<String>(asList("post-1", "post-2")));
+		sone.setLikePostIds(new HashSet<String>(asList("post-2", "post-3")));
+		verify(database).likePost(sone, "post-1");
+		verify(database).likePost(sone, "post-2");
+		verify(database).likePost(sone, "post-3");
+		verify(database).unlikePost(sone, "post-1");
+		verify(database, never()).unlikePost(sone, "post-2");
+	}
+
+	@Test
+	public void settingLikedReplyIdsUpdatesTheLikesInTheDatabase() {
+		sone.setLikeReplyIds(new HashSet<String>(asList("reply-1", "reply-2")));
+		sone.setLikeReplyIds(new HashSet<String>(asList("reply-2", "reply-3")));
+		verify(database).likePostReply(sone, "reply-1");
+		verify(database).likePostReply(sone, "reply-2");
+		verify(database).likePostReply(sone, "reply-3");
+		verify(database).unlikePostReply(sone, "reply-1");
+		verify(database, never()).unlikePostReply(sone, "reply-2");
+	}
+
+	private void fillSone(SoneImpl sone) {
+		sone.setPosts(asList(createPost(sone, "post-1", 1000), createPost(sone, "post-2", 2000)));
+		sone.getFingerprint();
+		sone.setReplies(asList(createPostReply(sone, "reply-1", 1500)));
+		sone.getFingerprint();
+		sone.setLikePostIds(new HashSet<String>(asList("liked-post")));
+		sone.setLikeReplyIds(new HashSet<String>(asList("liked-reply")));
+		sone.getFingerprint();
+		Album album = createAlbum(sone, "album-id", "Album");
+		sone.getFingerprint();
+		createImage(sone, album, "image-id", "KSK@image");
+	}
+
+}
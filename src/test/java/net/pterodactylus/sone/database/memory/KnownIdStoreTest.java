@@ -0,0 +1,162 @@
+package net.pterodactylus.sone.database.memory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for {@link KnownIdStore}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class KnownIdStoreTest {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File storeFile() {
+		return new File(temporaryFolder.getRoot(), "known-ids.dat");
+	}
+
+	private KnownIdStore openStore() throws IOException {
+		KnownIdStore knownIdStore = new KnownIdStore(storeFile());
+		knownIdStore.open();
+		return knownIdStore;
+	}
+
+	@Test
+	public void openingANewStoreCreatesTheFile() throws IOException {
+		KnownIdStore knownIdStore = new KnownIdStore(storeFile());
+		assertThat(knownIdStore.open(), is(false));
+		assertThat(storeFile().exists(), is(true));
+		assertThat(knownIdStore.size(), is(0));
+		knownIdStore.close();
+	}
+
+	@Test
+	public void addedIdsAreKnownAfterReopening() throws IOException {
+		KnownIdStore knownIdStore = openStore();
+		knownIdStore.add("id1");
+		knownIdStore.add("id2");
+		knownIdStore.close();
+		KnownIdStore reopenedStore = new KnownIdStore(storeFile());
+		assertThat(reopenedStore.open(), is(true));
+		assertThat(reopenedStore.contains("id1"), is(true));
+		assertThat(reopenedStore.contains("id2"), is(true));
+		assertThat(reopenedStore.contains("id3"), is(false));
+		reopenedStore.close();
+	}
+
+	@Test
+	public void flushedIdsAreKnownWithoutClosingTheStore() throws IOException {
+		KnownIdStore knownIdStore = openStore();
+		knownIdStore.add("id1");
+		knownIdStore.flush();
+		KnownIdStore secondStore = openStore();
+		assertThat(secondStore.contains("id1"), is(true));
+		secondStore.close();
+		knownIdStore.close();
+	}
+
+	@Test
+	public void removedIdsAreNotKnownAfterReopening() throws IOException {
+		KnownIdStore knownIdStore = openStore();
+		knownIdStore.add("id1");
+		knownIdStore.add("id2");
+		knownIdStore.remove("id1");
+		knownIdStore.close();
+		KnownIdStore reopenedStore = openStore();
+		assertThat(reopenedStore.contains("id1"), is(false));
+		assertThat(reopenedStore.contains("id2"), is(true));
+		reopenedStore.close();
+	}
+
+	@Test
+	public void addingAKnownIdDoesNotAppendARecord() throws IOException {
+		KnownIdStore knownIdStore = openStore();
+		knownIdStore.add("id1");
+		knownIdStore.flush();
+		long length = storeFile().length();
+		knownIdStore.add("id1");
+		knownIdStore.close();
+		assertThat(storeFile().length(), is(length));
+	}
+
+	@Test
+	public void incompleteRecordAtTheEndIsIgnored() throws IOException {
+		KnownIdStore knownIdStore = openStore();
+		knownIdStore.add("id1");
+		knownIdStore.add("id2");
+		knownIdStore.close();
+		RandomAccessFile randomAccessFile = new RandomAccessFile(storeFile(), "rw");
+		try {
+			randomAccessFile.setLength(randomAccessFile.length() - 2);
+		} finally {
+			randomAccessFile.close();
+		}
+		KnownIdStore reopenedStore = openStore();
+		assertThat(reopenedStore.size(), is(1));
+		reopenedStore.add("id3");
+		reopenedStore.close();
+		KnownIdStore thirdStore = openStore();
+		assertThat(thirdStore.size(), is(2));
+		assertThat(thirdStore.contains("id3"), is(true));
+		thirdStore.close();
+	}
+
+	@Test
+	public void unreadableFileIsMovedAsideAndNotOverwritten() throws IOException {
+		byte[] content = "not a known ID store".getBytes("UTF-8");
+		FileOutputStream fileOutputStream = new FileOutputStream(storeFile());
+		try {
+			fileOutputStream.write(content);
+		} finally {
+			fileOutputStream.close();
+		}
+		KnownIdStore knownIdStore = new KnownIdStore(storeFile());
+		assertThat(knownIdStore.open(), is(true));
+		assertThat(knownIdStore.size(), is(0));
+		knownIdStore.add("id1");
+		knownIdStore.close();
+		File corruptFile = new File(storeFile().getPath() + ".corrupt");
+		assertThat(Files.readAllBytes(corruptFile.toPath()), is(content));
+		KnownIdStore reopenedStore = openStore();
+		assertThat(reopenedStore.size(), is(1));
+		assertThat(reopenedStore.contains("id1"), is(true));
+		reopenedStore.close();
+	}
+
+	@Test
+	public void storeIsCompactedWhenItContainsManyRemovedIds() throws IOException {
+		KnownIdStore knownIdStore = openStore();
+		for (int id = 0; id < 2000; id++) {
+			knownIdStore.add("id" + id);
+		}
+		knownIdStore.flush();
+		long length = storeFile().length();
+		for (int id = 0; id < 1990; id++) {
+			knownIdStore.remove("id" + id);
+		}
+		knownIdStore.flush();
+		assertThat(storeFile().length(), lessThan(length / 100));
+		knownIdStore.add("id0");
+		knownIdStore.close();
+		KnownIdStore reopenedStore = openStore();
+		assertThat(reopenedStore.size(), is(11));
+		assertThat(reopenedStore.contains("id0"), is(true));
+		assertThat(reopenedStore.contains("id1"), is(false));
+		assertThat(reopenedStore.contains("id1999"), is(true));
+		reopenedStore.close();
+	}
+
+}
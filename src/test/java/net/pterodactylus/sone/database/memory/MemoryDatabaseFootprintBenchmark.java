@@ -0,0 +1,135 @@
+package net.pterodactylus.sone.database.memory;
+
+import static java.util.UUID.randomUUID;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import net.pterodactylus.sone.data.Album;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.util.config.Configuration;
+
+/**
+ * Measures the heap that 1,000,000 posts (1,000 Sones with 1,000 posts each)
+ * need once they are stored in a {@link MemoryDatabase}, are known, and are
+ * liked by another Sone. The IDs of all posts are created as separate strings
+ * for posts and likes, the same way the parser creates them. For comparison,
+ * the heap of the same number of {@link UUID}s and of separate copies of the
+ * IDs is measured as well; before IDs were shared, every post held a UUID, and
+ * the maps of posts, known posts, and likes each held another copy of the ID.
+ * Run its {@link #main(String[])} method from the test classpath, with a
+ * heap of at least 2 GiB.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class MemoryDatabaseFootprintBenchmark {
+
+	private static final int SONES = 1000;
+	private static final int POSTS_PER_SONE = 1000;
+	private static final int POSTS = SONES * POSTS_PER_SONE;
+
+	public static void main(String... arguments) throws Exception {
+		File knownPostsFile = File.createTempFile("known-posts", ".dat");
+		File knownPostRepliesFile = File.createTempFile("known-replies", ".dat");
+		knownPostsFile.delete();
+		knownPostRepliesFile.delete();
+		try {
+			measureDatabase(knownPostsFile, knownPostRepliesFile);
+			measureIdCopies();
+		} finally {
+			knownPostsFile.delete();
+			knownPostRepliesFile.delete();
+		}
+	}
+
+	private static void measureDatabase(File knownPostsFile, File knownPostRepliesFile) {
+		List<String> postIds = createPostIds();
+		long heapBefore = getUsedHeap();
+		MemoryDatabase memoryDatabase = new MemoryDatabase(null, mock(Configuration.class), knownPostsFile, knownPostRepliesFile);
+		List<Sone> sones = new ArrayList<Sone>();
+		for (int soneIndex = 0; soneIndex < SONES; soneIndex++) {
+			sones.add(createSone(memoryDatabase, soneIndex, postIds));
+		}
+		for (Sone sone : sones) {
+			memoryDatabase.storeSone(sone);
+			for (Post post : sone.getPosts()) {
+				post.setKnown(true);
+			}
+		}
+		long heapAfter = getUsedHeap();
+		System.out.println(String.format("%,d posts stored, known, and liked: %,.1f bytes per post", POSTS, (heapAfter - heapBefore) / (double) POSTS));
+		keep(memoryDatabase, sones, postIds);
+	}
+
+	private static void measureIdCopies() {
+		List<String> postIds = createPostIds();
+		long heapBefore = getUsedHeap();
+		List<UUID> uuids = new ArrayList<UUID>(POSTS);
+		for (String postId : postIds) {
+			uuids.add(UUID.fromString(postId));
+		}
+		long heapAfterUuids = getUsedHeap();
+		List<String> idCopies = new ArrayList<String>(POSTS);
+		for (String postId : postIds) {
+			idCopies.add(new String(postId.toCharArray()));
+		}
+		long heapAfterCopies = getUsedHeap();
+		System.out.println(String.format("%,d UUIDs: %,.1f bytes per post", POSTS, (heapAfterUuids - heapBefore) / (double) POSTS));
+		System.out.println(String.format("%,d copies of IDs: %,.1f bytes per copy", POSTS, (heapAfterCopies - heapAfterUuids) / (double) POSTS));
+		keep(uuids, idCopies, postIds);
+	}
+
+	private static List<String> createPostIds() {
+		List<String> postIds = new ArrayList<String>(POSTS);
+		for (int index = 0; index < POSTS; index++) {
+			postIds.add(randomUUID().toString());
+		}
+		return postIds;
+	}
+
+	private static Sone createSone(MemoryDatabase memoryDatabase, int soneIndex, List<String> postIds) {
+		String soneId = "sone-" + soneIndex;
+		Sone sone = mock(Sone.class);
+		when(sone.getId()).thenReturn(soneId);
+		List<Post> posts = new ArrayList<Post>(POSTS_PER_SONE);
+		Set<String> likedPostIds = new HashSet<String>();
+		int likedSoneIndex = (soneIndex + 1) % SONES;
+		for (int postIndex = 0; postIndex < POSTS_PER_SONE; postIndex++) {
+			String postId = new String(postIds.get(soneIndex * POSTS_PER_SONE + postIndex).toCharArray());
+			posts.add(memoryDatabase.newPostBuilder().withId(postId).from(soneId).withTime(1000L + postIndex).withText("Post #" + postIndex).build());
+			likedPostIds.add(new String(postIds.get(likedSoneIndex * POSTS_PER_SONE + postIndex).toCharArray()));
+		}
+		when(sone.getPosts()).thenReturn(posts);
+		when(sone.getReplies()).thenReturn(Collections.<PostReply>emptySet());
+		when(sone.getLikedPostIds()).thenReturn(likedPostIds);
+		when(sone.getLikedReplyIds()).thenReturn(Collections.<String>emptySet());
+		Album rootAlbum = mock(Album.class);
+		when(rootAlbum.getAlbums()).thenReturn(Collections.<Album>emptyList());
+		when(sone.getRootAlbum()).thenReturn(rootAlbum);
+		return sone;
+	}
+
+	private static long getUsedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int round = 0; round < 5; round++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void keep(Object... objects) {
+		if (System.identityHashCode(objects) == 0) {
+			System.out.println(objects.length);
+		}
+	}
+
+}
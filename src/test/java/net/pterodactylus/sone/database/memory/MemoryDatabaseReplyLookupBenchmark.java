@@ -0,0 +1,87 @@
+package net.pterodactylus.sone.database.memory;
+
+import static com.google.common.collect.FluentIterable.from;
+import static net.pterodactylus.sone.data.Reply.TIME_COMPARATOR;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.util.config.Configuration;
+
+import com.google.common.base.Predicate;
+
+/**
+ * Compares the time {@link MemoryDatabase#getReplies(String)} needs to look up
+ * the replies of a post among 500,000 replies (50,000 posts with 10 replies
+ * each) with the time the previous implementation, which filtered all replies
+ * and sorted the result, needed. Run its {@link #main(String[])} method from
+ * the test classpath.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class MemoryDatabaseReplyLookupBenchmark {
+
+	private static final int POSTS = 50000;
+	private static final int REPLIES_PER_POST = 10;
+	private static final int LOOKUPS = 200;
+
+	public static void main(String... arguments) {
+		MemoryDatabase memoryDatabase = new MemoryDatabase(null, mock(Configuration.class));
+		List<PostReply> allPostReplies = new ArrayList<PostReply>(POSTS * REPLIES_PER_POST);
+		for (int postIndex = 0; postIndex < POSTS; postIndex++) {
+			for (int replyIndex = 0; replyIndex < REPLIES_PER_POST; replyIndex++) {
+				PostReply postReply = memoryDatabase.newPostReplyBuilder()
+						.withId("reply-" + postIndex + "-" + replyIndex)
+						.from("sone")
+						.to("post-" + postIndex)
+						.withTime(replyIndex * 1000L)
+						.withText("reply")
+						.build();
+				memoryDatabase.storePostReply(postReply);
+				allPostReplies.add(postReply);
+			}
+		}
+		System.out.println(String.format("%,d posts with %d replies each, %d lookups.", POSTS, REPLIES_PER_POST, LOOKUPS));
+		measure("index", memoryDatabase, allPostReplies, 5, 50);
+		measure("filtering", memoryDatabase, allPostReplies, 1, 3);
+	}
+
+	private static void measure(String name, MemoryDatabase memoryDatabase, List<PostReply> allPostReplies, int warmupRounds, int measuredRounds) {
+		for (int round = 0; round < warmupRounds; round++) {
+			lookUpReplies(name, memoryDatabase, allPostReplies);
+		}
+		long replies = 0;
+		long startTime = System.nanoTime();
+		for (int round = 0; round < measuredRounds; round++) {
+			replies += lookUpReplies(name, memoryDatabase, allPostReplies);
+		}
+		long duration = System.nanoTime() - startTime;
+		System.out.println(String.format("%-10s %10.3f µs per lookup, %d replies per lookup", name, duration / 1e3 / measuredRounds / LOOKUPS, replies / measuredRounds / LOOKUPS));
+	}
+
+	private static long lookUpReplies(String name, MemoryDatabase memoryDatabase, List<PostReply> allPostReplies) {
+		long replies = 0;
+		for (int lookup = 0; lookup < LOOKUPS; lookup++) {
+			String postId = "post-" + (lookup * (POSTS / LOOKUPS));
+			if (name.equals("index")) {
+				replies += memoryDatabase.getReplies(postId).size();
+			} else {
+				replies += filterReplies(allPostReplies, postId).size();
+			}
+		}
+		return replies;
+	}
+
+	private static List<PostReply> filterReplies(List<PostReply> allPostReplies, final String postId) {
+		return from(allPostReplies)
+				.filter(new Predicate<PostReply>() {
+					@Override
+					public boolean apply(PostReply postReply) {
+						return postReply.getPostId().equals(postId);
+					}
+				}).toSortedList(TIME_COMPARATOR);
+	}
+
+}
@@ -20,6 +20,7 @@ package net.pterodactylus.sone.database.memory;
 import static com.google.common.base.Optional.of;
 import static java.util.Arrays.asList;
 import static java.util.UUID.randomUUID;
+import static net.pterodactylus.sone.data.Reply.TIME_COMPARATOR;
 import static net.pterodactylus.sone.test.Matchers.isAlbum;
 import static net.pterodactylus.sone.test.Matchers.isImage;
 import static net.pterodactylus.sone.test.Matchers.isPost;
@@ -31,6 +32,7 @@ import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.emptyIterable;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -38,13 +40,19 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import net.pterodactylus.sone.core.event.PostRemovedEvent;
+import net.pterodactylus.sone.core.event.PostReplyRemovedEvent;
+import net.pterodactylus.sone.core.event.SoneUpdatedBatchEvent;
 import net.pterodactylus.sone.data.Album;
 import net.pterodactylus.sone.data.Image;
 import net.pterodactylus.sone.data.Post;
@@ -61,7 +69,9 @@ import net.pterodactylus.util.config.Value;
 
 import com.google.common.base.Optional;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
@@ -74,10 +84,15 @@ public class MemoryDatabaseTest {
 
 	private static final String SONE_ID = "sone";
 	private static final String RECIPIENT_ID = "recipient";
+	private static final String MENTIONED_SONE_ID = "DAxKQzS48mtaQc7sUVHIgx3fnWZPQBz0EueBreUVWrU";
+	private static final String OTHER_MENTIONED_SONE_ID = "nwa8lHa271k2QvJ8aa0Ov7IHAV-DFOCFgmDt3X6BpCI";
 	private final Configuration configuration = mock(Configuration.class);
 	private final MemoryDatabase memoryDatabase = new MemoryDatabase(null, configuration);
 	private final Sone sone = mock(Sone.class);
 
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@Before
 	public void setupSone() {
 		when(sone.getId()).thenReturn(SONE_ID);
@@ -227,6 +242,26 @@ public class MemoryDatabaseTest {
 				contains(postWithRecipient));
 	}
 
+	@Test
+	public void removedPostsAreNotReturnedAsDirectedPosts() {
+		Post post = createPost(of(RECIPIENT_ID));
+		memoryDatabase.storePost(post);
+		memoryDatabase.removePost(post);
+		assertThat(memoryDatabase.getDirectedPosts(RECIPIENT_ID), emptyIterable());
+	}
+
+	@Test
+	public void directedPostsOfStoredSoneAreReturned() {
+		Post postWithRecipient = createPost(of(RECIPIENT_ID));
+		Post postWithoutRecipient = createPost(Optional.<String>absent());
+		when(sone.getPosts()).thenReturn(asList(postWithRecipient, postWithoutRecipient));
+		memoryDatabase.storeSone(sone);
+		assertThat(memoryDatabase.getDirectedPosts(RECIPIENT_ID),
+				contains(postWithRecipient));
+		memoryDatabase.removeSone(sone);
+		assertThat(memoryDatabase.getDirectedPosts(RECIPIENT_ID), emptyIterable());
+	}
+
 	private Post createPost(Optional<String> recipient) {
 		Post postWithRecipient = mock(Post.class);
 		when(postWithRecipient.getId()).thenReturn(randomUUID().toString());
@@ -253,6 +288,72 @@ public class MemoryDatabaseTest {
 				contains(secondPostFirstReply, secondPostSecondReply));
 	}
 
+	@Test
+	public void repliesWithTheSameTimeAreAllReturned() {
+		Post post = createPost(Optional.<String>absent());
+		PostReply firstPostReply = createPostReply(post, 1000L);
+		PostReply secondPostReply = createPostReply(post, 1000L);
+		memoryDatabase.storePostReply(firstPostReply);
+		memoryDatabase.storePostReply(secondPostReply);
+		assertThat(memoryDatabase.getReplies(post.getId()),
+				containsInAnyOrder(firstPostReply, secondPostReply));
+	}
+
+	@Test
+	public void removedRepliesAreNotReturned() {
+		Post post = createPost(Optional.<String>absent());
+		PostReply firstPostReply = createPostReply(post, 1000L);
+		PostReply secondPostReply = createPostReply(post, 2000L);
+		memoryDatabase.storePostReply(firstPostReply);
+		memoryDatabase.storePostReply(secondPostReply);
+		memoryDatabase.removePostReply(firstPostReply);
+		assertThat(memoryDatabase.getReplies(post.getId()),
+				contains(secondPostReply));
+	}
+
+	@Test
+	public void repliesOfRemovedSoneAreNotReturned() {
+		Post post = createPost(Optional.<String>absent());
+		PostReply postReply = createPostReply(post, 1000L);
+		when(sone.getReplies()).thenReturn(new HashSet<PostReply>(asList(postReply)));
+		memoryDatabase.storeSone(sone);
+		assertThat(memoryDatabase.getReplies(post.getId()), contains(postReply));
+		memoryDatabase.removeSone(sone);
+		assertThat(memoryDatabase.getReplies(post.getId()), emptyIterable());
+	}
+
+	@Test
+	public void repliesOfManyPostsAreReturnedForTheirPostSortedByTime() {
+		int postCount = 500;
+		int repliesPerPost = 10;
+		List<PostReply> allPostReplies = new ArrayList<PostReply>();
+		for (int postIndex = 0; postIndex < postCount; postIndex++) {
+			for (int replyIndex = 0; replyIndex < repliesPerPost; replyIndex++) {
+				PostReply postReply = memoryDatabase.newPostReplyBuilder()
+						.withId("reply-" + postIndex + "-" + replyIndex)
+						.from(SONE_ID)
+						.to("post-" + postIndex)
+						.withTime(((replyIndex * 7) % repliesPerPost) * 1000L)
+						.withText("reply")
+						.build();
+				memoryDatabase.storePostReply(postReply);
+				allPostReplies.add(postReply);
+			}
+		}
+		for (int postIndex = 0; postIndex < postCount; postIndex += 50) {
+			String postId = "post-" + postIndex;
+			List<PostReply> scannedReplies = new ArrayList<PostReply>();
+			for (PostReply postReply : allPostReplies) {
+				if (postReply.getPostId().equals(postId)) {
+					scannedReplies.add(postReply);
+				}
+			}
+			Collections.sort(scannedReplies, TIME_COMPARATOR);
+			assertThat(memoryDatabase.getReplies(postId), is(scannedReplies));
+		}
+		assertThat(memoryDatabase.getReplies("post-" + postCount), emptyIterable());
+	}
+
 	private PostReply createPostReply(Post post, long time) {
 		PostReply postReply = mock(PostReply.class);
 		when(postReply.getId()).thenReturn(randomUUID().toString());
@@ -263,6 +364,71 @@ public class MemoryDatabaseTest {
 		return postReply;
 	}
 
+	@Test
+	public void likesOfStoredSoneAreReturned() {
+		Post post = createPost(Optional.<String>absent());
+		PostReply postReply = createPostReply(post, 1000L);
+		when(sone.getLikedPostIds()).thenReturn(new HashSet<String>(asList(post.getId())));
+		when(sone.getLikedReplyIds()).thenReturn(new HashSet<String>(asList(postReply.getId())));
+		memoryDatabase.storeSone(sone);
+		assertThat(memoryDatabase.getLikes(post), contains(sone));
+		assertThat(memoryDatabase.getLikes(postReply), contains(sone));
+	}
+
+	@Test
+	public void likesOfRemovedSoneAreNotReturned() {
+		Post post = createPost(Optional.<String>absent());
+		PostReply postReply = createPostReply(post, 1000L);
+		when(sone.getLikedPostIds()).thenReturn(new HashSet<String>(asList(post.getId())));
+		when(sone.getLikedReplyIds()).thenReturn(new HashSet<String>(asList(postReply.getId())));
+		memoryDatabase.storeSone(sone);
+		memoryDatabase.removeSone(sone);
+		assertThat(memoryDatabase.getLikes(post), empty());
+		assertThat(memoryDatabase.getLikes(postReply), empty());
+	}
+
+	@Test
+	public void likedAndUnlikedPostsAreTracked() {
+		Post post = createPost(Optional.<String>absent());
+		memoryDatabase.storeSone(sone);
+		memoryDatabase.likePost(sone, post.getId());
+		assertThat(memoryDatabase.getLikes(post), contains(sone));
+		memoryDatabase.unlikePost(sone, post.getId());
+		assertThat(memoryDatabase.getLikes(post), empty());
+	}
+
+	@Test
+	public void likedAndUnlikedPostRepliesAreTracked() {
+		PostReply postReply = createPostReply(createPost(Optional.<String>absent()), 1000L);
+		memoryDatabase.storeSone(sone);
+		memoryDatabase.likePostReply(sone, postReply.getId());
+		assertThat(memoryDatabase.getLikes(postReply), contains(sone));
+		memoryDatabase.unlikePostReply(sone, postReply.getId());
+		assertThat(memoryDatabase.getLikes(postReply), empty());
+	}
+
+	@Test
+	public void likesOfSonesThatAreNotStoredAreIgnored() {
+		Post post = createPost(Optional.<String>absent());
+		memoryDatabase.likePost(sone, post.getId());
+		assertThat(memoryDatabase.getLikes(post), empty());
+	}
+
+	@Test
+	public void unlikesOfSonesThatAreNotStoredAreIgnored() {
+		Post post = createPost(Optional.<String>absent());
+		PostReply postReply = createPostReply(post, 1000L);
+		when(sone.getLikedPostIds()).thenReturn(new HashSet<String>(asList(post.getId())));
+		when(sone.getLikedReplyIds()).thenReturn(new HashSet<String>(asList(postReply.getId())));
+		memoryDatabase.storeSone(sone);
+		Sone otherSone = mock(Sone.class);
+		when(otherSone.getId()).thenReturn(SONE_ID);
+		memoryDatabase.unlikePost(otherSone, post.getId());
+		memoryDatabase.unlikePostReply(otherSone, postReply.getId());
+		assertThat(memoryDatabase.getLikes(post), contains(sone));
+		assertThat(memoryDatabase.getLikes(postReply), contains(sone));
+	}
+
 	@Test
 	public void testBasicAlbumFunctionality() {
 		Album newAlbum = new AlbumImpl(mock(Sone.class));
@@ -383,4 +549,144 @@ public class MemoryDatabaseTest {
 		verify(configuration).getStringValue(anyString());
 	}
 
+	private MemoryDatabase createDatabaseWithKnownIdFiles() {
+		return new MemoryDatabase(null, configuration, new File(temporaryFolder.getRoot(), "known-posts.dat"), new File(temporaryFolder.getRoot(), "known-replies.dat"));
+	}
+
+	@Test
+	public void knownPostsAndRepliesAreMovedFromTheConfiguration() {
+		prepareConfigurationValues();
+		Value<String> knownPost = TestValue.from("Post1");
+		Value<String> knownReply = TestValue.from("Reply1");
+		when(configuration.getStringValue("KnownPosts/0/ID")).thenReturn(knownPost);
+		when(configuration.getStringValue("KnownReplies/0/ID")).thenReturn(knownReply);
+		MemoryDatabase memoryDatabase = createDatabaseWithKnownIdFiles();
+		memoryDatabase.startAndWait();
+		Post post = new TestPostBuilder().withId("Post1").build();
+		PostReply postReply = new TestPostReplyBuilder().withId("Reply1").build();
+		assertThat(memoryDatabase.isPostKnown(post), is(true));
+		assertThat(memoryDatabase.isPostReplyKnown(postReply), is(true));
+		assertThat(knownPost, is(TestValue.<String>from(null)));
+		assertThat(knownReply, is(TestValue.<String>from(null)));
+		memoryDatabase.stopAndWait();
+	}
+
+	@Test
+	public void knownPostsAndRepliesAreLoadedAfterRestart() {
+		prepareConfigurationValues();
+		MemoryDatabase memoryDatabase = createDatabaseWithKnownIdFiles();
+		memoryDatabase.startAndWait();
+		Post post = new TestPostBuilder().withId("Post1").build();
+		PostReply postReply = new TestPostReplyBuilder().withId("Reply1").build();
+		memoryDatabase.setPostKnown(post, true);
+		memoryDatabase.setPostReplyKnown(postReply, true);
+		memoryDatabase.stopAndWait();
+		MemoryDatabase restartedDatabase = createDatabaseWithKnownIdFiles();
+		restartedDatabase.startAndWait();
+		assertThat(restartedDatabase.isPostKnown(post), is(true));
+		assertThat(restartedDatabase.isPostReplyKnown(postReply), is(true));
+		restartedDatabase.stopAndWait();
+		verify(configuration, never()).getStringValue("KnownPosts/1/ID");
+	}
+
+	@Test
+	public void removedPostsAndRepliesAreForgotten() {
+		prepareConfigurationValues();
+		MemoryDatabase memoryDatabase = createDatabaseWithKnownIdFiles();
+		memoryDatabase.startAndWait();
+		Post post = new TestPostBuilder().withId("Post1").build();
+		PostReply postReply = new TestPostReplyBuilder().withId("Reply1").build();
+		memoryDatabase.setPostKnown(post, true);
+		memoryDatabase.setPostReplyKnown(postReply, true);
+		memoryDatabase.postRemoved(new PostRemovedEvent(post));
+		memoryDatabase.postReplyRemoved(new PostReplyRemovedEvent(postReply));
+		assertThat(memoryDatabase.isPostKnown(post), is(false));
+		assertThat(memoryDatabase.isPostReplyKnown(postReply), is(false));
+		memoryDatabase.stopAndWait();
+	}
+
+	@Test
+	public void removedPostsAndRepliesOfUpdatedSoneAreForgotten() {
+		prepareConfigurationValues();
+		MemoryDatabase memoryDatabase = createDatabaseWithKnownIdFiles();
+		memoryDatabase.startAndWait();
+		Post post = new TestPostBuilder().withId("Post1").build();
+		PostReply postReply = new TestPostReplyBuilder().withId("Reply1").build();
+		memoryDatabase.setPostKnown(post, true);
+		memoryDatabase.setPostReplyKnown(postReply, true);
+		memoryDatabase.soneUpdated(new SoneUpdatedBatchEvent(mock(Sone.class), Collections.<Post>emptyList(), asList(post), Collections.<PostReply>emptyList(), asList(postReply)));
+		assertThat(memoryDatabase.isPostKnown(post), is(false));
+		assertThat(memoryDatabase.isPostReplyKnown(postReply), is(false));
+		memoryDatabase.stopAndWait();
+	}
+
+	@Test
+	public void mentionedSonesAreExtractedWhenPostsAndRepliesAreBuilt() {
+		Post post = memoryDatabase.newPostBuilder().randomId().from(SONE_ID).currentTime().withText("Hi sone://" + MENTIONED_SONE_ID + ", sone://" + OTHER_MENTIONED_SONE_ID + ", and sone://" + MENTIONED_SONE_ID + "!").build();
+		PostReply postReply = memoryDatabase.newPostReplyBuilder().randomId().from(SONE_ID).currentTime().withText("Thanks, sone://" + OTHER_MENTIONED_SONE_ID + ".").to(post.getId()).build();
+		assertThat(memoryDatabase.getMentionedSoneIds(post), containsInAnyOrder(MENTIONED_SONE_ID, OTHER_MENTIONED_SONE_ID));
+		assertThat(memoryDatabase.getMentionedSoneIds(postReply), contains(OTHER_MENTIONED_SONE_ID));
+	}
+
+	@Test
+	public void textsWithoutSoneLinksDoNotMentionSones() {
+		Post post = memoryDatabase.newPostBuilder().randomId().from(SONE_ID).currentTime().withText("Hi " + MENTIONED_SONE_ID + ", sone://too-short, and KSK@sone://" + MENTIONED_SONE_ID).build();
+		assertThat(memoryDatabase.getMentionedSoneIds(post), empty());
+	}
+
+	@Test
+	public void postsAndRepliesOfStoredSoneAreReturnedAsMentioning() {
+		Post post = memoryDatabase.newPostBuilder().randomId().from(SONE_ID).currentTime().withText("Hi sone://" + MENTIONED_SONE_ID).build();
+		Post otherPost = memoryDatabase.newPostBuilder().randomId().from(SONE_ID).currentTime().withText("Hi").build();
+		PostReply postReply = memoryDatabase.newPostReplyBuilder().randomId().from(SONE_ID).currentTime().withText("Hi sone://" + MENTIONED_SONE_ID).to(otherPost.getId()).build();
+		when(sone.getPosts()).thenReturn(asList(post, otherPost));
+		when(sone.getReplies()).thenReturn(new HashSet<PostReply>(asList(postReply)));
+		memoryDatabase.storeSone(sone);
+		assertThat(memoryDatabase.getMentioningPosts(MENTIONED_SONE_ID), contains(post));
+		assertThat(memoryDatabase.getMentioningPostReplies(MENTIONED_SONE_ID), contains(postReply));
+		assertThat(memoryDatabase.getMentioningPosts(OTHER_MENTIONED_SONE_ID), empty());
+		memoryDatabase.removeSone(sone);
+		assertThat(memoryDatabase.getMentioningPosts(MENTIONED_SONE_ID), empty());
+		assertThat(memoryDatabase.getMentioningPostReplies(MENTIONED_SONE_ID), empty());
+	}
+
+	@Test
+	public void removedRepliesAreNotReturnedAsMentioning() {
+		PostReply postReply = memoryDatabase.newPostReplyBuilder().randomId().from(SONE_ID).currentTime().withText("Hi sone://" + MENTIONED_SONE_ID).to(randomUUID().toString()).build();
+		memoryDatabase.storePostReply(postReply);
+		assertThat(memoryDatabase.getMentioningPostReplies(MENTIONED_SONE_ID), contains(postReply));
+		memoryDatabase.removePostReply(postReply);
+		assertThat(memoryDatabase.getMentioningPostReplies(MENTIONED_SONE_ID), empty());
+	}
+
+	@Test
+	public void mentionedSonesOfStoredPostsAreNotExtractedAgain() {
+		String postId = randomUUID().toString();
+		String text = "Hi sone://" + MENTIONED_SONE_ID;
+		Post post = memoryDatabase.newPostBuilder().withId(postId).from(SONE_ID).currentTime().withText(text).build();
+		when(sone.getPosts()).thenReturn(asList(post));
+		memoryDatabase.storeSone(sone);
+		Post rebuiltPost = memoryDatabase.newPostBuilder().withId(postId).from(SONE_ID).currentTime().withText(new String(text)).build();
+		Post changedPost = memoryDatabase.newPostBuilder().withId(postId).from(SONE_ID).currentTime().withText("Hi sone://" + OTHER_MENTIONED_SONE_ID).build();
+		assertThat(memoryDatabase.getMentionedSoneIds(rebuiltPost), sameInstance(memoryDatabase.getMentionedSoneIds(post)));
+		assertThat(memoryDatabase.getMentionedSoneIds(changedPost), contains(OTHER_MENTIONED_SONE_ID));
+	}
+
+	@Test
+	public void idOfPostIsNotCreatedForEveryCall() {
+		Post post = memoryDatabase.newPostBuilder().randomId().from(SONE_ID).currentTime().withText("text").build();
+		assertThat(post.getId(), sameInstance(post.getId()));
+	}
+
+	@Test
+	public void postsRepliesAndLikesShareTheSameIdInstance() {
+		String postId = randomUUID().toString();
+		Post post = memoryDatabase.newPostBuilder().withId(new String(postId)).from(SONE_ID).currentTime().withText("text").build();
+		Post samePost = memoryDatabase.newPostBuilder().withId(new String(postId)).from(SONE_ID).currentTime().withText("text").build();
+		PostReply postReply = memoryDatabase.newPostReplyBuilder().randomId().from(SONE_ID).currentTime().withText("text").to(new String(postId)).build();
+		assertThat(samePost.getId(), sameInstance(post.getId()));
+		assertThat(postReply.getPostId(), sameInstance(post.getId()));
+		assertThat(CanonicalIds.canonicalId(new String(postId)), sameInstance(post.getId()));
+	}
+
 }
@@ -0,0 +1,154 @@
+package net.pterodactylus.sone.database.memory;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit test for {@link MemoryFriendDatabase}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class MemoryFriendDatabaseTest {
+
+	private static final int READERS = 16;
+	private static final int NEW_FRIENDS = 1000;
+
+	private final ConfigurationLoader configurationLoader = mock(ConfigurationLoader.class);
+	private final MemoryFriendDatabase friendDatabase = new MemoryFriendDatabase(configurationLoader);
+	private final ExecutorService executorService = Executors.newFixedThreadPool(READERS);
+
+	@After
+	public void stopExecutorService() {
+		executorService.shutdownNow();
+	}
+
+	@Test
+	public void friendsAreLoadedFromConfiguration() {
+		when(configurationLoader.loadFriends("Sone")).thenReturn(new HashSet<String>(asList("Friend1", "Friend2")));
+		assertThat(friendDatabase.getFriends("Sone"), containsInAnyOrder("Friend1", "Friend2"));
+		assertThat(friendDatabase.isFriend("Sone", "Friend1"), is(true));
+		assertThat(friendDatabase.isFriend("Sone", "Friend3"), is(false));
+	}
+
+	@Test
+	public void sonesWithoutFriendsAreOnlyLoadedOnce() {
+		when(configurationLoader.loadFriends("Sone")).thenReturn(new HashSet<String>());
+		friendDatabase.isFriend("Sone", "Friend1");
+		friendDatabase.isFriend("Sone", "Friend1");
+		verify(configurationLoader, times(1)).loadFriends("Sone");
+	}
+
+	@Test
+	public void returnedFriendsAreNotChangedByAddingAFriend() {
+		when(configurationLoader.loadFriends("Sone")).thenReturn(new HashSet<String>(asList("Friend1")));
+		Collection<String> friends = friendDatabase.getFriends("Sone");
+		friendDatabase.addFriend("Sone", "Friend2");
+		assertThat(friends, containsInAnyOrder("Friend1"));
+		assertThat(friendDatabase.getFriends("Sone"), containsInAnyOrder("Friend1", "Friend2"));
+	}
+
+	@Test
+	public void removedFriendIsSaved() {
+		when(configurationLoader.loadFriends("Sone")).thenReturn(new HashSet<String>(asList("Friend1", "Friend2")));
+		friendDatabase.removeFriend("Sone", "Friend1");
+		assertThat(friendDatabase.isFriend("Sone", "Friend1"), is(false));
+		verify(configurationLoader).saveFriends("Sone", new HashSet<String>(asList("Friend2")));
+	}
+
+	@Test
+	public void friendsAreLoadedOnceWhenManyThreadsAccessThemConcurrently() throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		when(configurationLoader.loadFriends("Sone")).thenAnswer(new Answer<Set<String>>() {
+			@Override
+			public Set<String> answer(InvocationOnMock invocation) throws InterruptedException {
+				Thread.sleep(50);
+				return new HashSet<String>(asList("Friend1"));
+			}
+		});
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		for (int reader = 0; reader < READERS; reader++) {
+			results.add(executorService.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws InterruptedException {
+					start.await();
+					return friendDatabase.isFriend("Sone", "Friend1");
+				}
+			}));
+		}
+		start.countDown();
+		for (Future<Boolean> result : results) {
+			assertThat(result.get(1, MINUTES), is(true));
+		}
+		verify(configurationLoader, times(1)).loadFriends(anyString());
+	}
+
+	@Test
+	public void readersSeeConsistentFriendsWhileFriendsAreAdded() throws Exception {
+		when(configurationLoader.loadFriends("Sone")).thenReturn(new HashSet<String>(asList("Friend")));
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		final CountDownLatch readersStarted = new CountDownLatch(READERS);
+		List<Future<Long>> readers = new ArrayList<Future<Long>>();
+		for (int reader = 0; reader < READERS; reader++) {
+			readers.add(executorService.submit(new Callable<Long>() {
+				@Override
+				public Long call() {
+					readersStarted.countDown();
+					long reads = 0;
+					int lastSize = 0;
+					while (writing.get()) {
+						if (!friendDatabase.isFriend("Sone", "Friend")) {
+							throw new IllegalStateException("Existing friend was not found.");
+						}
+						int size = 0;
+						for (String friend : friendDatabase.getFriends("Sone")) {
+							size++;
+						}
+						if (size < lastSize) {
+							throw new IllegalStateException("Friends disappeared.");
+						}
+						lastSize = size;
+						reads++;
+					}
+					return reads;
+				}
+			}));
+		}
+		readersStarted.await();
+		for (int friend = 0; friend < NEW_FRIENDS; friend++) {
+			friendDatabase.addFriend("Sone", "NewFriend" + friend);
+		}
+		writing.set(false);
+		for (Future<Long> reader : readers) {
+			reader.get(1, MINUTES);
+		}
+		assertThat(friendDatabase.getFriends("Sone"), hasSize(NEW_FRIENDS + 1));
+		verify(configurationLoader, times(1)).loadFriends("Sone");
+	}
+
+}
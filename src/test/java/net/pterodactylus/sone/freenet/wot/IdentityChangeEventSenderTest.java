@@ -34,6 +34,7 @@ import java.util.Map;
 import net.pterodactylus.sone.freenet.wot.event.IdentityAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.IdentityRemovedEvent;
 import net.pterodactylus.sone.freenet.wot.event.IdentityUpdatedEvent;
+import net.pterodactylus.sone.freenet.wot.event.OwnIdentitiesAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.OwnIdentityAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.OwnIdentityRemovedEvent;
 
@@ -68,6 +69,7 @@ public class IdentityChangeEventSenderTest {
 		verify(eventBus).post(eq(new OwnIdentityRemovedEvent(ownIdentities.get(0))));
 		verify(eventBus).post(eq(new IdentityRemovedEvent(ownIdentities.get(0), identities.get(0))));
 		verify(eventBus).post(eq(new IdentityRemovedEvent(ownIdentities.get(0), identities.get(1))));
+		verify(eventBus).post(eq(new OwnIdentitiesAddedEvent(asList(ownIdentities.get(2)))));
 		verify(eventBus).post(eq(new OwnIdentityAddedEvent(ownIdentities.get(2))));
 		verify(eventBus).post(eq(new IdentityAddedEvent(ownIdentities.get(2), identities.get(1))));
 		verify(eventBus).post(eq(new IdentityAddedEvent(ownIdentities.get(2), identities.get(2))));
@@ -0,0 +1,73 @@
+package net.pterodactylus.sone.freenet.wot;
+
+import static com.google.common.base.Optional.of;
+import static java.util.Arrays.asList;
+import static net.pterodactylus.sone.freenet.wot.Identities.createIdentity;
+import static net.pterodactylus.sone.freenet.wot.Identities.createOwnIdentity;
+
+import java.util.Collections;
+import java.util.Random;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.eventbus.EventBus;
+
+/**
+ * Compares the cost of a complete reload of 50,000 identities with the cost
+ * of applying the changes a subscription to the Web of Trust plugin delivers
+ * in one update cycle, against a {@link SimulatedWebOfTrust}. For every cycle
+ * the time, the number of requests, and the number of fields the Web of Trust
+ * plugin has to send (including the notifications) are printed. Run its
+ * {@link #main(String[])} method from the test classpath.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class IdentitySyncBenchmark {
+
+	private static final int IDENTITIES = 50000;
+	private static final int CHANGES_PER_CYCLE = 20;
+	private static final int CYCLES = 10;
+
+	public static void main(String... arguments) {
+		EventBus eventBus = new EventBus();
+		SimulatedWebOfTrust simulatedWebOfTrust = new SimulatedWebOfTrust(eventBus);
+		WebOfTrustConnector webOfTrustConnector = new WebOfTrustConnector(simulatedWebOfTrust);
+		eventBus.register(webOfTrustConnector);
+		IdentityManagerImpl identityManager = new IdentityManagerImpl(eventBus, webOfTrustConnector, new IdentityLoader(webOfTrustConnector, of(new Context("Sone"))));
+
+		OwnIdentity ownIdentity = createOwnIdentity("Own", asList("Sone"), Collections.<String, String>emptyMap());
+		simulatedWebOfTrust.addOwnIdentity(ownIdentity);
+		for (int index = 0; index < IDENTITIES; index++) {
+			Identity identity = createIdentity("Identity" + index, asList("Sone"), ImmutableMap.of("Sone.LatestEdition", "1"));
+			simulatedWebOfTrust.addIdentity(identity);
+			simulatedWebOfTrust.setScore(ownIdentity, identity, 1 + (index % 100));
+		}
+		identityManager.subscribe();
+
+		Random random = new Random(0);
+		for (int cycle = 0; cycle < CYCLES; cycle++) {
+			simulatedWebOfTrust.resetCounters();
+			long reloadStart = System.nanoTime();
+			identityManager.reloadIdentities();
+			long reloadTime = System.nanoTime() - reloadStart;
+			long reloadFields = simulatedWebOfTrust.getSentFields();
+
+			simulatedWebOfTrust.resetCounters();
+			for (int change = 0; change < CHANGES_PER_CYCLE; change++) {
+				int index = random.nextInt(IDENTITIES);
+				if ((change % 2) == 0) {
+					simulatedWebOfTrust.changeIdentity(createIdentity("Identity" + index, asList("Sone"), ImmutableMap.of("Sone.LatestEdition", String.valueOf(cycle + 2))));
+				} else {
+					simulatedWebOfTrust.changeScore(ownIdentity, createIdentity("Identity" + index, asList("Sone"), Collections.<String, String>emptyMap()), random.nextInt(201) - 100);
+				}
+			}
+			long updateStart = System.nanoTime();
+			identityManager.updateIdentities();
+			long updateTime = System.nanoTime() - updateStart;
+			int updateRequests = simulatedWebOfTrust.getRequests("GetIdentity");
+			long updateFields = simulatedWebOfTrust.getSentFields();
+
+			System.out.println(String.format("Cycle %2d: reload %,8.2f ms (%,d fields), %d changes %,6.2f ms (%d requests, %,d fields)", cycle, reloadTime / 1000000.0, reloadFields, CHANGES_PER_CYCLE, updateTime / 1000000.0, updateRequests, updateFields));
+		}
+	}
+
+}
@@ -0,0 +1,214 @@
+package net.pterodactylus.sone.freenet.wot;
+
+import static com.google.common.base.Optional.of;
+import static java.util.Arrays.asList;
+import static net.pterodactylus.sone.freenet.wot.Identities.createIdentity;
+import static net.pterodactylus.sone.freenet.wot.Identities.createOwnIdentity;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.pterodactylus.sone.freenet.wot.event.IdentityAddedEvent;
+import net.pterodactylus.sone.freenet.wot.event.IdentityEvent;
+import net.pterodactylus.sone.freenet.wot.event.IdentityRemovedEvent;
+import net.pterodactylus.sone.freenet.wot.event.IdentityUpdatedEvent;
+import net.pterodactylus.sone.freenet.wot.event.TrustUpdatedEvent;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link IncrementalIdentityUpdater} and its use by the
+ * {@link IdentityManagerImpl}, against a {@link SimulatedWebOfTrust}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class IncrementalIdentityUpdaterTest {
+
+	private final EventBus eventBus = new EventBus();
+	private final SimulatedWebOfTrust simulatedWebOfTrust = new SimulatedWebOfTrust(eventBus);
+	private final WebOfTrustConnector webOfTrustConnector = new WebOfTrustConnector(simulatedWebOfTrust);
+	private final IdentityManagerImpl identityManager = new IdentityManagerImpl(eventBus, webOfTrustConnector, new IdentityLoader(webOfTrustConnector, of(new Context("Sone"))));
+	private final OwnIdentity ownIdentity = createOwnIdentity("O1", asList("Sone"), Collections.<String, String>emptyMap());
+	private final Identity identity1 = createIdentity("I1", asList("Sone"), Collections.<String, String>emptyMap());
+	private final Identity identity2 = createIdentity("I2", asList("Sone"), Collections.<String, String>emptyMap());
+	private final List<IdentityEvent> identityEvents = new ArrayList<IdentityEvent>();
+
+	@Before
+	public void setupWebOfTrust() {
+		eventBus.register(webOfTrustConnector);
+		simulatedWebOfTrust.addOwnIdentity(ownIdentity);
+		simulatedWebOfTrust.addIdentity(identity1);
+		simulatedWebOfTrust.setScore(ownIdentity, identity1, 50);
+		simulatedWebOfTrust.addIdentity(identity2);
+	}
+
+	@Before
+	public void subscribeAndLoadIdentities() {
+		assertThat(identityManager.subscribe(), is(true));
+		assertThat(identityManager.reloadIdentities(), is(true));
+		eventBus.register(this);
+		simulatedWebOfTrust.resetCounters();
+	}
+
+	@Subscribe
+	public void identityEvent(IdentityEvent identityEvent) {
+		identityEvents.add(identityEvent);
+	}
+
+	@Test
+	public void noChangesDoNotSendRequests() {
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents, empty());
+		assertThat(simulatedWebOfTrust.getRequests("GetIdentity"), is(0));
+		assertThat(simulatedWebOfTrust.getRequests("GetIdentitiesByScore"), is(0));
+	}
+
+	@Test
+	public void identityWithNewPositiveScoreIsAdded() {
+		simulatedWebOfTrust.changeScore(ownIdentity, identity2, 20);
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents, contains((IdentityEvent) new IdentityAddedEvent(ownIdentity, identity2)));
+		assertThat(identityEvents.get(0).identity().getTrust(ownIdentity).getImplicit(), is(20));
+		assertThat(simulatedWebOfTrust.getRequests("GetIdentity"), is(1));
+		assertThat(simulatedWebOfTrust.getRequests("GetIdentitiesByScore"), is(0));
+	}
+
+	@Test
+	public void identityWithNegativeScoreIsRemoved() {
+		simulatedWebOfTrust.changeScore(ownIdentity, identity1, -10);
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents, contains((IdentityEvent) new IdentityRemovedEvent(ownIdentity, identity1)));
+	}
+
+	@Test
+	public void identityWithoutScoreIsRemoved() {
+		simulatedWebOfTrust.removeScore(ownIdentity, identity1);
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents, contains((IdentityEvent) new IdentityRemovedEvent(ownIdentity, identity1)));
+	}
+
+	@Test
+	public void changedScoreOfTrackedIdentitySendsTrustUpdatedEvent() {
+		simulatedWebOfTrust.changeScore(ownIdentity, identity1, 80);
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents, contains((IdentityEvent) new TrustUpdatedEvent(ownIdentity, identity1)));
+		assertThat(identityEvents.get(0).identity().getTrust(ownIdentity), is(new Trust(null, 80, 1)));
+		assertThat(simulatedWebOfTrust.getRequests("GetIdentity"), is(0));
+	}
+
+	@Test
+	public void unchangedScoreOfTrackedIdentityDoesNotSendEvents() {
+		simulatedWebOfTrust.changeScore(ownIdentity, identity1, 50);
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents, empty());
+	}
+
+	@Test
+	public void notificationsAreAcknowledged() {
+		simulatedWebOfTrust.changeScore(ownIdentity, identity1, 80);
+		simulatedWebOfTrust.changeIdentity(identity2);
+		assertThat(simulatedWebOfTrust.getRequests("Success"), is(2));
+		assertThat(simulatedWebOfTrust.getRequests("Error"), is(0));
+		assertThat(simulatedWebOfTrust.isSubscribed(), is(true));
+	}
+
+	@Test
+	public void deletedIdentityIsRemoved() {
+		simulatedWebOfTrust.deleteIdentity(identity1);
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents, contains((IdentityEvent) new IdentityRemovedEvent(ownIdentity, identity1)));
+	}
+
+	@Test
+	public void identityWithChangedPropertiesIsUpdated() {
+		simulatedWebOfTrust.changeIdentity(createIdentity("I1", asList("Sone"), ImmutableMap.of("Key", "Value")));
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents, contains((IdentityEvent) new IdentityUpdatedEvent(ownIdentity, identity1)));
+		assertThat(identityEvents.get(0).identity().getProperty("Key"), is("Value"));
+		assertThat(identityEvents.get(0).identity().getTrust(ownIdentity).getImplicit(), is(50));
+	}
+
+	@Test
+	public void identityWithUnchangedContextsAndPropertiesIsNotUpdated() {
+		simulatedWebOfTrust.changeIdentity(createIdentity("I1", asList("Sone"), Collections.<String, String>emptyMap()));
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents, empty());
+	}
+
+	@Test
+	public void identityThatLosesTheContextIsRemoved() {
+		simulatedWebOfTrust.changeIdentity(createIdentity("I1", Collections.<String>emptyList(), Collections.<String, String>emptyMap()));
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents, contains((IdentityEvent) new IdentityRemovedEvent(ownIdentity, identity1)));
+	}
+
+	@Test
+	public void trustedIdentityThatGainsTheContextIsAdded() {
+		Identity identity3 = createIdentity("I3", Collections.<String>emptyList(), Collections.<String, String>emptyMap());
+		simulatedWebOfTrust.addIdentity(identity3);
+		simulatedWebOfTrust.setScore(ownIdentity, identity3, 10);
+		simulatedWebOfTrust.changeIdentity(createIdentity("I3", asList("Sone"), Collections.<String, String>emptyMap()));
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents, contains((IdentityEvent) new IdentityAddedEvent(ownIdentity, identity3)));
+	}
+
+	@Test
+	public void untrustedIdentityThatGainsTheContextIsNotAdded() {
+		simulatedWebOfTrust.changeIdentity(createIdentity("I2", asList("Sone", "Other"), Collections.<String, String>emptyMap()));
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents, empty());
+	}
+
+	@Test
+	public void multipleChangesToTheSameIdentityAreMerged() {
+		simulatedWebOfTrust.changeIdentity(createIdentity("I1", asList("Sone"), ImmutableMap.of("Key", "Value1")));
+		simulatedWebOfTrust.changeIdentity(createIdentity("I1", asList("Sone"), ImmutableMap.of("Key", "Value2")));
+		assertThat(identityManager.updateIdentities(), is(true));
+		assertThat(identityEvents.size(), is(1));
+		assertThat(identityEvents.get(0).identity().getProperty("Key"), is("Value2"));
+	}
+
+	@Test
+	public void changedOwnIdentityRequiresReload() {
+		simulatedWebOfTrust.changeOwnIdentity(ownIdentity);
+		assertThat(identityManager.updateIdentities(), is(false));
+	}
+
+	@Test
+	public void lostSubscriptionRequiresReload() {
+		simulatedWebOfTrust.terminateSubscriptions();
+		assertThat(identityManager.updateIdentities(), is(false));
+	}
+
+	@Test
+	public void reloadAfterMissedChangesSendsEvents() {
+		simulatedWebOfTrust.terminateSubscriptions();
+		simulatedWebOfTrust.changeScore(ownIdentity, identity2, 20);
+		assertThat(identityManager.reloadIdentities(), is(true));
+		assertThat(identityEvents.size(), is(1));
+		assertThat(identityEvents.get(0), instanceOf(IdentityAddedEvent.class));
+	}
+
+	@Test
+	public void rejectedSubscriptionIsRecognized() {
+		EventBus eventBus = new EventBus();
+		SimulatedWebOfTrust simulatedWebOfTrust = new SimulatedWebOfTrust(eventBus);
+		simulatedWebOfTrust.rejectSubscriptions();
+		WebOfTrustConnector webOfTrustConnector = new WebOfTrustConnector(simulatedWebOfTrust);
+		eventBus.register(webOfTrustConnector);
+		IdentityManagerImpl identityManager = new IdentityManagerImpl(eventBus, webOfTrustConnector, new IdentityLoader(webOfTrustConnector));
+		assertThat(identityManager.subscribe(), is(false));
+		assertThat(simulatedWebOfTrust.isSubscribed(), is(false));
+	}
+
+}
@@ -0,0 +1,284 @@
+package net.pterodactylus.sone.freenet.wot;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.pterodactylus.sone.freenet.plugin.PluginConnector;
+
+import com.google.common.eventbus.EventBus;
+
+import freenet.support.SimpleFieldSet;
+import freenet.support.api.Bucket;
+
+/**
+ * {@link PluginConnector} that simulates the Web of Trust plugin. Requests
+ * are answered synchronously, from the identities and scores stored in the
+ * simulation; changes to the simulation are sent as notifications to
+ * subscribers, which acknowledge them. The number of requests (including
+ * acknowledgements) and the number of fields sent in replies are counted.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SimulatedWebOfTrust extends PluginConnector {
+
+	private static final String WOT_PLUGIN_NAME = "plugins.WebOfTrust.WebOfTrust";
+
+	private final Map<String, OwnIdentity> ownIdentities = new LinkedHashMap<String, OwnIdentity>();
+	private final Map<String, Identity> identities = new LinkedHashMap<String, Identity>();
+	private final Map<String, Map<String, Integer>> scores = new HashMap<String, Map<String, Integer>>();
+	private final Map<String, String> subscriptions = new HashMap<String, String>();
+	private final Map<String, Integer> requests = new HashMap<String, Integer>();
+	private boolean rejectingSubscriptions;
+	private long sentFields;
+
+	public SimulatedWebOfTrust(EventBus eventBus) {
+		super(eventBus, null);
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	public int getRequests(String message) {
+		Integer count = requests.get(message);
+		return (count == null) ? 0 : count;
+	}
+
+	public long getSentFields() {
+		return sentFields;
+	}
+
+	public void resetCounters() {
+		requests.clear();
+		sentFields = 0;
+	}
+
+	public void rejectSubscriptions() {
+		rejectingSubscriptions = true;
+	}
+
+	public boolean isSubscribed() {
+		return !subscriptions.isEmpty();
+	}
+
+	//
+	// SIMULATION
+	//
+
+	public void addOwnIdentity(OwnIdentity ownIdentity) {
+		ownIdentities.put(ownIdentity.getId(), ownIdentity);
+		scores.put(ownIdentity.getId(), new HashMap<String, Integer>());
+	}
+
+	public void addIdentity(Identity identity) {
+		identities.put(identity.getId(), identity);
+	}
+
+	public void setScore(OwnIdentity ownIdentity, Identity identity, int score) {
+		scores.get(ownIdentity.getId()).put(identity.getId(), score);
+	}
+
+	public void changeIdentity(Identity identity) {
+		Identity oldIdentity = identities.put(identity.getId(), identity);
+		SimpleFieldSet fields = createFields("IdentityChangedNotification");
+		if (oldIdentity != null) {
+			putIdentity(fields, "BeforeChange.", "", oldIdentity);
+			put(fields, "BeforeChange.Type", "Identity");
+		} else {
+			put(fields, "BeforeChange.Type", "Inexistent");
+		}
+		putIdentity(fields, "AfterChange.", "", identity);
+		put(fields, "AfterChange.Type", "Identity");
+		sendNotification("Identities", fields);
+	}
+
+	public void deleteIdentity(Identity identity) {
+		identities.remove(identity.getId());
+		SimpleFieldSet fields = createFields("IdentityChangedNotification");
+		putIdentity(fields, "BeforeChange.", "", identity);
+		put(fields, "BeforeChange.Type", "Identity");
+		put(fields, "AfterChange.Type", "Inexistent");
+		sendNotification("Identities", fields);
+	}
+
+	public void changeOwnIdentity(OwnIdentity ownIdentity) {
+		ownIdentities.put(ownIdentity.getId(), ownIdentity);
+		SimpleFieldSet fields = createFields("IdentityChangedNotification");
+		put(fields, "BeforeChange.Type", "OwnIdentity");
+		putIdentity(fields, "AfterChange.", "", ownIdentity);
+		put(fields, "AfterChange.Type", "OwnIdentity");
+		sendNotification("Identities", fields);
+	}
+
+	public void changeScore(OwnIdentity ownIdentity, Identity identity, int score) {
+		setScore(ownIdentity, identity, score);
+		SimpleFieldSet fields = createFields("ScoreChangedNotification");
+		put(fields, "BeforeChange.Type", "Score");
+		put(fields, "AfterChange.Type", "Score");
+		put(fields, "AfterChange.Truster", ownIdentity.getId());
+		put(fields, "AfterChange.Trustee", identity.getId());
+		put(fields, "AfterChange.Value", String.valueOf(score));
+		put(fields, "AfterChange.Rank", "1");
+		sendNotification("Scores", fields);
+	}
+
+	public void removeScore(OwnIdentity ownIdentity, Identity identity) {
+		scores.get(ownIdentity.getId()).remove(identity.getId());
+		SimpleFieldSet fields = createFields("ScoreChangedNotification");
+		put(fields, "BeforeChange.Type", "Score");
+		put(fields, "BeforeChange.Truster", ownIdentity.getId());
+		put(fields, "BeforeChange.Trustee", identity.getId());
+		put(fields, "AfterChange.Type", "Inexistent");
+		sendNotification("Scores", fields);
+	}
+
+	public void terminateSubscriptions() {
+		for (Entry<String, String> subscription : subscriptions.entrySet()) {
+			SimpleFieldSet fields = createFields("Error");
+			put(fields, "Description", "Subscription terminated.");
+			onReply(WOT_PLUGIN_NAME, subscription.getValue(), fields, null);
+		}
+		subscriptions.clear();
+	}
+
+	//
+	// PLUGINCONNECTOR METHODS
+	//
+
+	@Override
+	public void sendRequest(String pluginName, String identifier, SimpleFieldSet fields, Bucket data) {
+		String message = fields.get("Message");
+		Integer count = requests.get(message);
+		requests.put(message, (count == null) ? 1 : (count + 1));
+		if (subscriptions.containsValue(identifier) && ("Success".equals(message) || "Error".equals(message))) {
+			/* acknowledgement of a notification, the plugin does not reply. */
+			return;
+		}
+		SimpleFieldSet reply;
+		if ("GetOwnIdentities".equals(message)) {
+			reply = getOwnIdentities();
+		} else if ("GetIdentitiesByScore".equals(message)) {
+			reply = getIdentitiesByScore(fields.get("Truster"), fields.get("Context"));
+		} else if ("GetIdentity".equals(message)) {
+			reply = getIdentity(fields.get("Truster"), fields.get("Identity"));
+		} else if ("Subscribe".equals(message)) {
+			reply = subscribe(fields.get("To"), identifier);
+		} else if ("Unsubscribe".equals(message)) {
+			reply = unsubscribe(fields.get("SubscriptionID"));
+		} else if ("Ping".equals(message)) {
+			reply = createFields("Pong");
+		} else {
+			reply = createError("Unknown message: " + message);
+		}
+		onReply(pluginName, identifier, reply, null);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private SimpleFieldSet getOwnIdentities() {
+		SimpleFieldSet fields = createFields("OwnIdentities");
+		int ownIdentityCounter = 0;
+		for (OwnIdentity ownIdentity : ownIdentities.values()) {
+			putIdentity(fields, "", String.valueOf(ownIdentityCounter), ownIdentity);
+			put(fields, "InsertURI" + ownIdentityCounter, ownIdentity.getInsertUri());
+			ownIdentityCounter++;
+		}
+		return fields;
+	}
+
+	private SimpleFieldSet getIdentitiesByScore(String trusterId, String context) {
+		SimpleFieldSet fields = createFields("Identities");
+		int identityCounter = 0;
+		for (Entry<String, Integer> score : scores.get(trusterId).entrySet()) {
+			Identity identity = identities.get(score.getKey());
+			if ((identity == null) || (score.getValue() <= 0) || (!"".equals(context) && !identity.hasContext(context))) {
+				continue;
+			}
+			putIdentity(fields, "", String.valueOf(identityCounter), identity);
+			put(fields, "Score" + identityCounter, String.valueOf(score.getValue()));
+			put(fields, "Rank" + identityCounter, "1");
+			identityCounter++;
+		}
+		return fields;
+	}
+
+	private SimpleFieldSet getIdentity(String trusterId, String identityId) {
+		Identity identity = identities.get(identityId);
+		if (identity == null) {
+			return createError("Unknown identity: " + identityId);
+		}
+		SimpleFieldSet fields = createFields("Identity");
+		putIdentity(fields, "", "", identity);
+		Integer score = scores.get(trusterId).get(identityId);
+		if (score != null) {
+			put(fields, "Score", String.valueOf(score));
+			put(fields, "Rank", "1");
+		}
+		return fields;
+	}
+
+	private SimpleFieldSet subscribe(String to, String identifier) {
+		if (rejectingSubscriptions) {
+			return createError("Subscriptions are not supported.");
+		}
+		String subscriptionId = "Subscription-" + to;
+		subscriptions.put(subscriptionId, identifier);
+		SimpleFieldSet fields = createFields("Subscribed");
+		put(fields, "SubscriptionID", subscriptionId);
+		put(fields, "To", to);
+		return fields;
+	}
+
+	private SimpleFieldSet unsubscribe(String subscriptionId) {
+		if (subscriptions.remove(subscriptionId) == null) {
+			return createError("Unknown subscription: " + subscriptionId);
+		}
+		SimpleFieldSet fields = createFields("Unsubscribed");
+		put(fields, "SubscriptionID", subscriptionId);
+		return fields;
+	}
+
+	private void sendNotification(String to, SimpleFieldSet fields) {
+		String identifier = subscriptions.get("Subscription-" + to);
+		if (identifier != null) {
+			onReply(WOT_PLUGIN_NAME, identifier, fields, null);
+		}
+	}
+
+	private void putIdentity(SimpleFieldSet fields, String prefix, String suffix, Identity identity) {
+		put(fields, prefix + "Identity" + suffix, identity.getId());
+		put(fields, prefix + "Nickname" + suffix, identity.getNickname());
+		put(fields, prefix + "RequestURI" + suffix, identity.getRequestUri());
+		int contextCounter = 0;
+		for (String context : identity.getContexts()) {
+			put(fields, prefix + "Contexts" + suffix + ".Context" + contextCounter++, context);
+		}
+		int propertyCounter = 0;
+		for (Entry<String, String> property : identity.getProperties().entrySet()) {
+			put(fields, prefix + "Properties" + suffix + ".Property" + propertyCounter + ".Name", property.getKey());
+			put(fields, prefix + "Properties" + suffix + ".Property" + propertyCounter++ + ".Value", property.getValue());
+		}
+	}
+
+	private SimpleFieldSet createError(String description) {
+		SimpleFieldSet fields = createFields("Error");
+		put(fields, "Description", description);
+		return fields;
+	}
+
+	private SimpleFieldSet createFields(String message) {
+		SimpleFieldSet fields = new SimpleFieldSet(true);
+		put(fields, "Message", message);
+		return fields;
+	}
+
+	private void put(SimpleFieldSet fields, String name, String value) {
+		fields.putOverwrite(name, value);
+		sentFields++;
+	}
+
+}
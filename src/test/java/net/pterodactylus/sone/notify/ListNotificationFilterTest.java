@@ -40,9 +40,8 @@ public class ListNotificationFilterTest {
 
 	private static final String LOCAL_ID = "local-id";
 
-	private final PostVisibilityFilter postVisibilityFilter = mock(PostVisibilityFilter.class);
-	private final ReplyVisibilityFilter replyVisibilityFilter = mock(ReplyVisibilityFilter.class);
-	private final ListNotificationFilter listNotificationFilter = new ListNotificationFilter(postVisibilityFilter, replyVisibilityFilter);
+	private final VisibilityCache visibilityCache = mock(VisibilityCache.class);
+	private final ListNotificationFilter listNotificationFilter = new ListNotificationFilter(visibilityCache);
 
 	private final Sone localSone = mock(Sone.class);
 	private final SoneOptions soneOptions = mock(SoneOptions.class);
@@ -118,7 +117,7 @@ public class ListNotificationFilterTest {
 	}
 
 	private void setPostVisibilityPredicate(Predicate<Post> value) {
-		when(postVisibilityFilter.isVisible(ArgumentMatchers.<Sone>any())).thenReturn(value);
+		when(visibilityCache.isPostVisible(ArgumentMatchers.<Sone>any())).thenReturn(value);
 	}
 
 	@Test
@@ -180,7 +179,7 @@ public class ListNotificationFilterTest {
 	}
 
 	private void setReplyVisibilityPredicate(Predicate<PostReply> value) {
-		when(replyVisibilityFilter.isVisible(any(Sone.class))).thenReturn(value);
+		when(visibilityCache.isReplyVisible(any(Sone.class))).thenReturn(value);
 	}
 
 	@Test
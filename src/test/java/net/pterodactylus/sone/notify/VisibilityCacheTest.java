@@ -0,0 +1,217 @@
+package net.pterodactylus.sone.notify;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import net.pterodactylus.sone.core.event.FriendsChangedEvent;
+import net.pterodactylus.sone.core.event.PostRemovedEvent;
+import net.pterodactylus.sone.core.event.SoneUpdatedBatchEvent;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.freenet.wot.Identity;
+import net.pterodactylus.sone.freenet.wot.OwnIdentity;
+import net.pterodactylus.sone.freenet.wot.event.IdentityUpdatedEvent;
+import net.pterodactylus.sone.freenet.wot.event.TrustUpdatedEvent;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link VisibilityCache}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class VisibilityCacheTest {
+
+	private final PostVisibilityFilter postVisibilityFilter = mock(PostVisibilityFilter.class);
+	private final ReplyVisibilityFilter replyVisibilityFilter = mock(ReplyVisibilityFilter.class);
+	private final VisibilityCache visibilityCache = new VisibilityCache(postVisibilityFilter, replyVisibilityFilter);
+	private final OwnIdentity localIdentity = mock(OwnIdentity.class);
+	private final Sone localSone = createSone("local-sone", localIdentity);
+	private final Identity remoteIdentity = mock(Identity.class);
+	private final Sone remoteSone = createSone("remote-sone", remoteIdentity);
+	private final Post post = createPost("post-id", remoteSone);
+
+	private static Sone createSone(String id, Identity identity) {
+		when(identity.getId()).thenReturn(id);
+		Sone sone = mock(Sone.class);
+		when(sone.getId()).thenReturn(id);
+		when(sone.getIdentity()).thenReturn(identity);
+		return sone;
+	}
+
+	private static Post createPost(String id, Sone sone) {
+		Post post = mock(Post.class);
+		when(post.getId()).thenReturn(id);
+		when(post.getSone()).thenReturn(sone);
+		when(post.isLoaded()).thenReturn(true);
+		return post;
+	}
+
+	private PostReply createPostReply(String id, Post post, long time) {
+		PostReply postReply = mock(PostReply.class);
+		when(postReply.getId()).thenReturn(id);
+		when(postReply.getPost()).thenReturn(Optional.of(post));
+		when(postReply.getTime()).thenReturn(time);
+		return postReply;
+	}
+
+	@Test
+	public void visibilityCacheIsOnlyCreatedOnce() {
+		Injector injector = Guice.createInjector();
+		VisibilityCache firstCache = injector.getInstance(VisibilityCache.class);
+		VisibilityCache secondCache = injector.getInstance(VisibilityCache.class);
+		assertThat(firstCache, sameInstance(secondCache));
+	}
+
+	@Test
+	public void visibilityOfPostIsOnlyCalculatedOnce() {
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(1000L);
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(true));
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(true));
+		verify(postVisibilityFilter, times(1)).getVisibleTime(localSone, post);
+	}
+
+	@Test
+	public void invisiblePostIsNotVisible() {
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(Long.MAX_VALUE);
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(false));
+	}
+
+	@Test
+	public void postFromTheFutureTurnsVisibleWithoutBeingCheckedAgain() throws InterruptedException {
+		long postTime = currentTimeMillis() + 100;
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(postTime);
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(false));
+		while (currentTimeMillis() <= postTime) {
+			Thread.sleep(10);
+		}
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(true));
+		verify(postVisibilityFilter, times(1)).getVisibleTime(localSone, post);
+	}
+
+	@Test
+	public void visibilityOfPostThatIsNotLoadedIsNotCached() {
+		when(post.isLoaded()).thenReturn(false);
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(false));
+		when(post.isLoaded()).thenReturn(true);
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(1000L);
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(true));
+	}
+
+	@Test
+	public void nullPostIsNotVisible() {
+		assertThat(visibilityCache.isPostVisible(localSone).apply(null), is(false));
+	}
+
+	@Test
+	public void visibilityForNoSoneIsDeterminedByTheFilter() {
+		Predicate<Post> predicate = mock(Predicate.class);
+		when(postVisibilityFilter.isVisible(null)).thenReturn(predicate);
+		assertThat(visibilityCache.isPostVisible(null), sameInstance(predicate));
+	}
+
+	@Test
+	public void updatedIdentityOfTheSoneOfThePostInvalidatesTheVisibility() {
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(1000L, Long.MAX_VALUE);
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(true));
+		visibilityCache.identityUpdated(new IdentityUpdatedEvent(localIdentity, remoteIdentity));
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(false));
+	}
+
+	@Test
+	public void updatedIdentityOfAnotherSoneDoesNotInvalidateTheVisibility() {
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(1000L, Long.MAX_VALUE);
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(true));
+		Identity otherIdentity = mock(Identity.class);
+		when(otherIdentity.getId()).thenReturn("other-sone");
+		visibilityCache.identityUpdated(new IdentityUpdatedEvent(localIdentity, otherIdentity));
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(true));
+	}
+
+	@Test
+	public void updatedTrustInvalidatesTheVisibility() {
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(1000L, Long.MAX_VALUE);
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(true));
+		visibilityCache.trustUpdated(new TrustUpdatedEvent(localIdentity, remoteIdentity));
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(false));
+	}
+
+	@Test
+	public void changedFriendsInvalidateTheVisibility() {
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(Long.MAX_VALUE, 1000L);
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(false));
+		visibilityCache.friendsChanged(new FriendsChangedEvent(localSone, "remote-sone"));
+		assertThat(visibilityCache.isPostVisible(localSone).apply(post), is(true));
+	}
+
+	@Test
+	public void removedPostIsRemovedFromTheCache() {
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(1000L);
+		visibilityCache.isPostVisible(localSone).apply(post);
+		visibilityCache.postRemoved(new PostRemovedEvent(post));
+		visibilityCache.isPostVisible(localSone).apply(post);
+		verify(postVisibilityFilter, times(2)).getVisibleTime(localSone, post);
+	}
+
+	@Test
+	public void removedPostOfUpdatedSoneIsRemovedFromTheCache() {
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(1000L);
+		visibilityCache.isPostVisible(localSone).apply(post);
+		visibilityCache.soneUpdated(new SoneUpdatedBatchEvent(remoteSone, Collections.<Post>emptyList(), asList(post), Collections.<PostReply>emptyList(), Collections.<PostReply>emptyList()));
+		visibilityCache.isPostVisible(localSone).apply(post);
+		verify(postVisibilityFilter, times(2)).getVisibleTime(localSone, post);
+	}
+
+	@Test
+	public void replyIsVisibleIfItsPostIsVisible() {
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(1000L);
+		PostReply postReply = createPostReply("reply-id", post, 2000L);
+		assertThat(visibilityCache.isReplyVisible(localSone).apply(postReply), is(true));
+	}
+
+	@Test
+	public void replyIsNotVisibleIfItsPostIsNotVisible() {
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(Long.MAX_VALUE);
+		PostReply postReply = createPostReply("reply-id", post, 2000L);
+		assertThat(visibilityCache.isReplyVisible(localSone).apply(postReply), is(false));
+	}
+
+	@Test
+	public void replyFromTheFutureIsNotVisible() {
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(1000L);
+		PostReply postReply = createPostReply("reply-id", post, currentTimeMillis() + 60000);
+		assertThat(visibilityCache.isReplyVisible(localSone).apply(postReply), is(false));
+	}
+
+	@Test
+	public void replyWithoutPostIsNotVisible() {
+		PostReply postReply = mock(PostReply.class);
+		when(postReply.getId()).thenReturn("reply-id");
+		when(postReply.getPost()).thenReturn(Optional.<Post>absent());
+		assertThat(visibilityCache.isReplyVisible(localSone).apply(postReply), is(false));
+	}
+
+	@Test
+	public void visibilityOfReplyIsInvalidatedWithTheVisibilityOfItsPost() {
+		when(postVisibilityFilter.getVisibleTime(localSone, post)).thenReturn(1000L, Long.MAX_VALUE);
+		PostReply postReply = createPostReply("reply-id", post, 2000L);
+		assertThat(visibilityCache.isReplyVisible(localSone).apply(postReply), is(true));
+		visibilityCache.trustUpdated(new TrustUpdatedEvent(localIdentity, remoteIdentity));
+		assertThat(visibilityCache.isReplyVisible(localSone).apply(postReply), is(false));
+	}
+
+}
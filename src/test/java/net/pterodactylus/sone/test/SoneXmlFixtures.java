@@ -0,0 +1,130 @@
+package net.pterodactylus.sone.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.pterodactylus.sone.data.Album;
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile.Field;
+import net.pterodactylus.sone.data.Sone;
+
+/**
+ * Creates sone.xml documents for tests and describes parsed Sones so that
+ * they can be compared.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneXmlFixtures {
+
+	private static final int DOCUMENTS = 16;
+
+	/**
+	 * Creates a sone.xml with 400 posts, 800 replies, likes, and 4 albums with
+	 * 10 images each. The replies and likes refer to the posts and replies of
+	 * the other documents with an index below 16.
+	 *
+	 * @param documentIndex
+	 *            The index of the document
+	 * @return The sone.xml
+	 */
+	public static String createSoneXml(int documentIndex) {
+		StringBuilder soneXml = new StringBuilder();
+		soneXml.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<sone>\n");
+		soneXml.append("<protocol-version>0</protocol-version>\n");
+		soneXml.append("<time>").append(1407197508000L + documentIndex).append("</time>\n");
+		soneXml.append("<client><name>Sone</name><version>0.9.").append(documentIndex).append("</version></client>\n");
+		soneXml.append("<profile><first-name>Fïrst ").append(documentIndex).append("</first-name><last-name>Läst</last-name>");
+		soneXml.append("<birth-day>").append(documentIndex % 28 + 1).append("</birth-day><avatar>image-").append(documentIndex).append("-0-0</avatar><fields>");
+		for (int field = 0; field < 5; field++) {
+			soneXml.append("<field><field-name>Field ").append(field).append("</field-name><field-value>Value &amp; ").append(documentIndex).append("</field-value></field>");
+		}
+		soneXml.append("</fields></profile>\n<posts>\n");
+		for (int post = 0; post < 400; post++) {
+			soneXml.append("<post><id>post-").append(documentIndex).append("-").append(post).append("</id>");
+			if ((post % 7) == 0) {
+				soneXml.append("<recipient>recipient-recipient-recipient-recipient-ab").append(post % 10).append("</recipient>");
+			}
+			soneXml.append("<time>").append(1407197508000L - post * 1000L).append("</time>");
+			soneXml.append("<text>Post ").append(post).append(" of Sone ").append(documentIndex).append(": &lt;b&gt;Grüße&lt;/b&gt; &amp; “quotes” 🎉\nsecond line</text></post>\n");
+		}
+		soneXml.append("</posts>\n<replies>\n");
+		for (int reply = 0; reply < 800; reply++) {
+			soneXml.append("<reply><id>reply-").append(documentIndex).append("-").append(reply).append("</id>");
+			soneXml.append("<post-id>post-").append((documentIndex + 1) % DOCUMENTS).append("-").append(reply % 400).append("</post-id>");
+			soneXml.append("<time>").append(1407197508000L - reply * 500L).append("</time>");
+			soneXml.append("<text>Reply ").append(reply).append(" &lt;i&gt;with&lt;/i&gt; markup</text></reply>\n");
+		}
+		soneXml.append("</replies>\n<post-likes>");
+		for (int like = 0; like < 100; like++) {
+			soneXml.append("<post-like>post-").append(like % DOCUMENTS).append("-").append(like).append("</post-like>");
+		}
+		soneXml.append("</post-likes>\n<reply-likes>");
+		for (int like = 0; like < 100; like++) {
+			soneXml.append("<reply-like>reply-").append(like % DOCUMENTS).append("-").append(like).append("</reply-like>");
+		}
+		soneXml.append("</reply-likes>\n<albums>\n");
+		for (int album = 0; album < 4; album++) {
+			soneXml.append("<album><id>album-").append(documentIndex).append("-").append(album).append("</id>");
+			soneXml.append("<title>Album ").append(album).append("</title><description>Description ").append(album).append("</description><images>");
+			for (int image = 0; image < 10; image++) {
+				soneXml.append("<image><id>image-").append(documentIndex).append("-").append(album).append("-").append(image).append("</id>");
+				soneXml.append("<creation-time>").append(1407197508000L + image).append("</creation-time><key>KSK@image-").append(image).append("</key>");
+				soneXml.append("<title>Image ").append(image).append("</title><description>Image description</description>");
+				soneXml.append("<width>").append(100 + image).append("</width><height>").append(200 + album).append("</height></image>");
+			}
+			soneXml.append("</images></album>\n");
+		}
+		soneXml.append("</albums>\n</sone>\n");
+		return soneXml.toString();
+	}
+
+	/**
+	 * Describes everything of the given Sone that is stored in a sone.xml,
+	 * with the replies and likes in a stable order, so that two Sones can be
+	 * compared.
+	 *
+	 * @param sone
+	 *            The Sone to describe
+	 * @return The description of the Sone
+	 */
+	public static String describe(Sone sone) {
+		StringBuilder description = new StringBuilder();
+		description.append("Time: ").append(sone.getTime()).append('\n');
+		description.append("Client: ").append(sone.getClient().getName()).append(' ').append(sone.getClient().getVersion()).append('\n');
+		description.append("Profile: ").append(sone.getProfile().getFirstName()).append(' ').append(sone.getProfile().getLastName()).append(' ').append(sone.getProfile().getBirthDay()).append(' ').append(sone.getProfile().getAvatar()).append('\n');
+		for (Field field : sone.getProfile().getFields()) {
+			description.append("Field: ").append(field.getName()).append('=').append(field.getValue()).append('\n');
+		}
+		for (Post post : sone.getPosts()) {
+			description.append("Post: ").append(post.getId()).append(' ').append(post.getTime()).append(' ').append(post.getRecipientId().orNull()).append(' ').append(post.getText()).append('\n');
+		}
+		List<PostReply> replies = new ArrayList<PostReply>(sone.getReplies());
+		Collections.sort(replies, new Comparator<PostReply>() {
+			@Override
+			public int compare(PostReply leftReply, PostReply rightReply) {
+				return leftReply.getId().compareTo(rightReply.getId());
+			}
+		});
+		for (PostReply reply : replies) {
+			description.append("Reply: ").append(reply.getId()).append(' ').append(reply.getPostId()).append(' ').append(reply.getTime()).append(' ').append(reply.getText()).append('\n');
+		}
+		List<String> likedPostIds = new ArrayList<String>(sone.getLikedPostIds());
+		Collections.sort(likedPostIds);
+		description.append("Liked Posts: ").append(likedPostIds).append('\n');
+		List<String> likedReplyIds = new ArrayList<String>(sone.getLikedReplyIds());
+		Collections.sort(likedReplyIds);
+		description.append("Liked Replies: ").append(likedReplyIds).append('\n');
+		for (Album album : sone.getRootAlbum().getAlbums()) {
+			description.append("Album: ").append(album.getId()).append(' ').append(album.getTitle()).append(' ').append(album.getDescription()).append('\n');
+			for (Image image : album.getImages()) {
+				description.append("Image: ").append(image.getId()).append(' ').append(image.getCreationTime()).append(' ').append(image.getKey()).append(' ').append(image.getTitle()).append(' ').append(image.getDescription()).append(' ').append(image.getWidth()).append('x').append(image.getHeight()).append('\n');
+			}
+		}
+		return description.toString();
+	}
+
+}
@@ -67,12 +67,9 @@ class GetPostFeedCommandTest : SoneCommandTest() {
 		whenever(core.getLikes(post2Reply1)).thenReturn(setOf(sone4, sone1))
 		whenever(core.getLikes(post2Reply2)).thenReturn(setOf(sone1, sone2, sone3))
 		whenever(core.getReplies("Post2")).thenReturn(listOf(post2Reply1, post2Reply2))
-		whenever(localSone.posts).thenReturn(listOf(post2, post1))
 		whenever(core.getLikes(friendPost1)).thenReturn(setOf(sone1, friend1))
-		whenever(friend1.posts).thenReturn(listOf(friendPost1))
-		whenever(localSone.friends).thenReturn(setOf("Friend1", "Friend2"))
-		whenever(core.getDirectedPosts("ValidSoneId")).thenReturn(setOf(directedPost))
 		whenever(core.getLikes(directedPost)).thenReturn(setOf(sone2, sone4))
+		whenever(core.getTimeline(localSone)).thenReturn(listOf(post2, friendPost1, post1, directedPost))
 	}
 
 	private fun verifyFirstPost(replyParameters: SimpleFieldSet) {
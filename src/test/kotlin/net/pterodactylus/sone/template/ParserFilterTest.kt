@@ -6,6 +6,7 @@ import net.pterodactylus.sone.data.Sone
 import net.pterodactylus.sone.test.getInstance
 import net.pterodactylus.sone.test.isProvidedByMock
 import net.pterodactylus.sone.test.mock
+import net.pterodactylus.sone.text.ParsedTextCache
 import net.pterodactylus.sone.text.SoneTextParser
 import net.pterodactylus.sone.text.SoneTextParserContext
 import net.pterodactylus.util.template.TemplateContext
@@ -34,7 +35,7 @@ class ParserFilterTest {
 	private val soneTextParser = mock<SoneTextParser>()
 	private val templateContext = TemplateContext()
 	private val parameters = mutableMapOf<String, Any?>()
-	private val filter = ParserFilter(core, soneTextParser)
+	private val filter = ParserFilter(core, ParsedTextCache(core, soneTextParser))
 
 	private fun setupSone(identity: String): Sone {
 		val sone = mock<Sone>()
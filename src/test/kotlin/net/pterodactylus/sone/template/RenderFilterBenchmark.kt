@@ -0,0 +1,51 @@
+package net.pterodactylus.sone.template
+
+import net.pterodactylus.sone.core.Core
+import net.pterodactylus.sone.test.mock
+import net.pterodactylus.sone.text.ParsedTextCache
+import net.pterodactylus.sone.text.Part
+import net.pterodactylus.sone.text.SoneTextParser
+import net.pterodactylus.util.template.Filter
+import net.pterodactylus.util.template.HtmlFilter
+import net.pterodactylus.util.template.TemplateContextFactory
+import java.lang.management.ManagementFactory
+
+/**
+ * Compares the throughput and the allocation rate of the [RenderFilter] with
+ * rendering every part using templates, as the [RenderFilter] used to do.
+ * Run its [main] method from the test classpath.
+ */
+object RenderFilterBenchmark {
+
+	private const val warmupRounds = 200
+	private const val measuredRounds = 1000
+
+	@JvmStatic
+	fun main(arguments: Array<String>) {
+		val core = mock<Core>()
+		val parsedTextCache = ParsedTextCache(core, SoneTextParser(core, core))
+		val corpus = createCorpus(core)
+		val templateContextFactory = TemplateContextFactory().apply { addFilter("html", HtmlFilter()) }
+		val renderFilter = RenderFilter(core, parsedTextCache)
+		val templateRenderer = TemplateRenderer(core, parsedTextCache, templateContextFactory)
+		val renderedBytes = corpus.sumBy { (renderFilter.format(null, it, null) as String).length }
+		println("Corpus: ${corpus.size} posts, ${corpus.sumBy { it.size }} parts, $renderedBytes characters of HTML.")
+		measure("templates", corpus, templateRenderer)
+		measure("direct", corpus, renderFilter)
+	}
+
+	private fun measure(name: String, corpus: List<List<Part>>, filter: Filter) {
+		repeat(warmupRounds) { corpus.forEach { filter.format(null, it, null) } }
+		val allocatedBefore = allocatedBytes()
+		val startTime = System.nanoTime()
+		repeat(measuredRounds) { corpus.forEach { filter.format(null, it, null) } }
+		val duration = System.nanoTime() - startTime
+		val allocated = allocatedBytes() - allocatedBefore
+		val renderedPosts = corpus.size.toLong() * measuredRounds
+		println("%-10s %10.0f posts/s %10d bytes allocated per post".format(name, renderedPosts * 1e9 / duration, allocated / renderedPosts))
+	}
+
+	private fun allocatedBytes() =
+			(ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean).getThreadAllocatedBytes(Thread.currentThread().id)
+
+}
@@ -0,0 +1,130 @@
+package net.pterodactylus.sone.template
+
+import net.pterodactylus.sone.core.Core
+import net.pterodactylus.sone.data.Post
+import net.pterodactylus.sone.data.Profile
+import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.test.mock
+import net.pterodactylus.sone.test.whenever
+import net.pterodactylus.sone.text.FreemailPart
+import net.pterodactylus.sone.text.FreenetLinkPart
+import net.pterodactylus.sone.text.LinkPart
+import net.pterodactylus.sone.text.ParsedTextCache
+import net.pterodactylus.sone.text.Part
+import net.pterodactylus.sone.text.PlainTextPart
+import net.pterodactylus.sone.text.PostPart
+import net.pterodactylus.sone.text.SonePart
+import net.pterodactylus.sone.utils.asTemplate
+import net.pterodactylus.util.template.Filter
+import net.pterodactylus.util.template.TemplateContext
+import net.pterodactylus.util.template.TemplateContextFactory
+import java.io.StringWriter
+import java.io.Writer
+import java.net.URLEncoder
+import java.util.Random
+
+/* Fixtures shared by the RenderFilterTest and the RenderFilterBenchmark. */
+
+/**
+ * Creates a reproducible corpus of posts that mixes texts with characters
+ * that need escaping with links to Freenet, the internet, Sones, posts, and
+ * Freemail addresses.
+ */
+internal fun createCorpus(core: Core, posts: Int = 250): List<List<Part>> {
+	val random = Random(42)
+	val sones = listOf(
+			createSone(core, "nwa8lHa271k2QvJ8aa0Ov7IHAV-DFOCFgmDt3X6BpCI", "Bombe", "David"),
+			createSone(core, "DAxKQzS48mtaQc7sUVHIgx3fnWZPQBz0EueBreUVWrU", "Sone-Nutzer", "Jürgen"),
+			createSone(core, "-1Q6LhHvx91C1mSjOS3zznRSNUC4OxoHUbhIgBAyW1U", null, null)
+	)
+	val words = listOf("Hello", "world", "it’s", "“quoted”", "<b>bold</b>", "Tom & Jerry", "naïve", "façade", "2 < 3", "a > b", "\"double\"", "'single'", "…", "Grüße", "€100", "\n", "\n\n", "🎉")
+	val linkedPosts = (0 until 10).map { createPost("post-$it", sones[it % sones.size], (0 until 12).joinToString(" ") { words[random.nextInt(words.size)] }) }
+	return (0 until posts).map {
+		(0 until 5 + random.nextInt(30)).map {
+			when (random.nextInt(20)) {
+				0 -> FreenetLinkPart("KSK@gpl.txt", "gpl.txt", false)
+				1 -> FreenetLinkPart("USK@nwa8lHa271k2QvJ8aa0Ov7IHAV-DFOCFgmDt3X6BpCI,DuQSUZiI~agF8c-6tjsFFGuZ8eICrzWCILB60nT8KKo,AQACAAE/sone/79/", "sone", true)
+				2 -> LinkPart("https://www.example.com/some/path/page.html?query=1&other=\"2\"", "example.com/…/page.html")
+				3 -> SonePart(sones[random.nextInt(sones.size)])
+				4 -> PostPart(linkedPosts[random.nextInt(linkedPosts.size)])
+				5 -> FreemailPart("sone", "t4dlzfdww3xvsnsc6j6gtliox6zaoak7ymkobbmcmdw527ubuqra", sones[random.nextInt(sones.size)].id)
+				else -> PlainTextPart((0..random.nextInt(8)).joinToString(" ", postfix = " ") { words[random.nextInt(words.size)] })
+			}
+		}
+	}
+}
+
+private fun createSone(core: Core, id: String, name: String?, firstName: String?) = mock<Sone>().apply {
+	whenever(this.id).thenReturn(id)
+	whenever(this.name).thenReturn(name)
+	whenever(profile).thenReturn(Profile(this).apply { this.firstName = firstName })
+	whenever(core.getSone(id)).thenReturn(this)
+}
+
+private fun createPost(id: String, sone: Sone, text: String) = mock<Post>().apply {
+	whenever(this.id).thenReturn(id)
+	whenever(this.sone).thenReturn(sone)
+	whenever(this.text).thenReturn(text)
+}
+
+/**
+ * Renders parts using one template per part, as the [RenderFilter] did before
+ * it wrote the HTML directly; used as reference for the [RenderFilter].
+ */
+internal class TemplateRenderer(private val core: Core, private val parsedTextCache: ParsedTextCache, private val templateContextFactory: TemplateContextFactory) : Filter {
+
+	companion object {
+		private val plainTextTemplate = "<%text|html>".asTemplate()
+		private val linkTemplate = "<a class=\"<%cssClass|html>\" href=\"<%link|html>\" title=\"<%title|html>\"><%text|html></a>".asTemplate()
+	}
+
+	override fun format(templateContext: TemplateContext?, data: Any?, parameters: MutableMap<String, Any?>?): Any? {
+		@Suppress("UNCHECKED_CAST")
+		val parts = data as? Iterable<Part> ?: return null
+		val parsedTextWriter = StringWriter()
+		parts.forEach { render(parsedTextWriter, it) }
+		return parsedTextWriter.toString()
+	}
+
+	private fun render(writer: Writer, part: Part) {
+		when (part) {
+			is PlainTextPart -> templateContextFactory.createTemplateContext().apply { set("text", part.text) }.let { plainTextTemplate.render(it, writer) }
+			is FreenetLinkPart -> renderLink(writer, "/${part.link}", part.text, part.title, if (part.trusted) "freenet-trusted" else "freenet")
+			is LinkPart -> renderLink(writer, "/external-link/?_CHECKED_HTTP_=${URLEncoder.encode(part.link, "UTF-8")}", part.text, part.title, "internet")
+			is SonePart -> if (part.sone.name != null) {
+				renderLink(writer, "viewSone.html?sone=${part.sone.id}", SoneAccessor.getNiceName(part.sone), SoneAccessor.getNiceName(part.sone), "in-sone")
+			} else {
+				renderLink(writer, "/WebOfTrust/ShowIdentity?id=${part.sone.id}", part.sone.id, part.sone.id, "in-sone")
+			}
+			is PostPart -> renderPostPart(writer, part)
+			is FreemailPart -> {
+				val soneName = core.getSone(part.identityId)?.let(SoneAccessor::getNiceName) ?: part.identityId
+				renderLink(writer, "/Freemail/NewMessage?to=${part.identityId}", "${part.emailLocalPart}@$soneName.freemail", "$soneName\n${part.emailLocalPart}@${part.freemailId}.freemail", "in-sone")
+			}
+		}
+	}
+
+	private fun renderPostPart(writer: Writer, postPart: PostPart) {
+		val excerpt = StringBuilder()
+		for (part in parsedTextCache.parse(postPart.post.text, postPart.post.sone)) {
+			excerpt.append(part.text)
+			if (excerpt.length > 20) {
+				val lastSpace = excerpt.lastIndexOf(" ", 20)
+				excerpt.setLength(if (lastSpace > -1) lastSpace else 20)
+				excerpt.append("…")
+				break
+			}
+		}
+		renderLink(writer, "viewPost.html?post=${postPart.post.id}", excerpt.toString(), SoneAccessor.getNiceName(postPart.post.sone), "in-sone")
+	}
+
+	private fun renderLink(writer: Writer, link: String, text: String, title: String, cssClass: String) {
+		val templateContext = templateContextFactory.createTemplateContext()
+		templateContext["cssClass"] = cssClass
+		templateContext["link"] = link
+		templateContext["text"] = text
+		templateContext["title"] = title
+		linkTemplate.render(templateContext, writer)
+	}
+
+}
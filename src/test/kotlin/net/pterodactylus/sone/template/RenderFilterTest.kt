@@ -8,10 +8,12 @@ import net.pterodactylus.sone.test.mock
 import net.pterodactylus.sone.text.FreemailPart
 import net.pterodactylus.sone.text.FreenetLinkPart
 import net.pterodactylus.sone.text.LinkPart
+import net.pterodactylus.sone.text.ParsedTextCache
 import net.pterodactylus.sone.text.Part
 import net.pterodactylus.sone.text.PlainTextPart
 import net.pterodactylus.sone.text.PostPart
 import net.pterodactylus.sone.text.SonePart
+import net.pterodactylus.sone.text.SoneTextParser
 import net.pterodactylus.util.template.HtmlFilter
 import net.pterodactylus.util.template.TemplateContext
 import net.pterodactylus.util.template.TemplateContextFactory
@@ -48,7 +50,7 @@ class RenderFilterTest {
 		templateContext = templateContextFactory.createTemplateContext()
 	}
 
-	private val filter = RenderFilter(core, templateContextFactory)
+	private val filter = RenderFilter(core, ParsedTextCache(core, SoneTextParser(core, core)))
 
 	@Test
 	fun `plain text part is rendered correctly`() {
@@ -146,6 +148,15 @@ class RenderFilterTest {
 		assertThat(renderParts(*parts), `is`("text"))
 	}
 
+	@Test
+	fun `rendered corpus is identical to rendering every part with a template`() {
+		val parsedTextCache = ParsedTextCache(core, SoneTextParser(core, core))
+		val templateRenderer = TemplateRenderer(core, parsedTextCache, templateContextFactory)
+		createCorpus(core).forEach { parts ->
+			assertThat(filter.format(templateContext, parts, parameters) as String, `is`(templateRenderer.format(templateContext, parts, parameters) as String))
+		}
+	}
+
 	@Test
 	fun `freemail address is displayed correctly`() {
 		val linkNode = renderParts(FreemailPart("sone", FREEMAIL_ID, SONE_IDENTITY)).toLinkNode()
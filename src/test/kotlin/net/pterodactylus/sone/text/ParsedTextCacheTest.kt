@@ -0,0 +1,98 @@
+package net.pterodactylus.sone.text
+
+import net.pterodactylus.sone.core.Core
+import net.pterodactylus.sone.data.Post
+import net.pterodactylus.sone.data.Profile
+import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.test.mock
+import net.pterodactylus.sone.test.whenever
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.not
+import org.hamcrest.Matchers.sameInstance
+import org.junit.Test
+
+/**
+ * Unit test for [ParsedTextCache].
+ */
+class ParsedTextCacheTest {
+
+	companion object {
+		private const val SONE_ID = "nwa8lHa271k2QvJ8aa0Ov7IHAV-DFOCFgmDt3X6BpCI"
+		private const val OTHER_SONE_ID = "DAxKQzS48mtaQc7sUVHIgx3fnWZPQBz0EueBreUVWrU"
+	}
+
+	private val core = mock<Core>()
+	private val cache = ParsedTextCache(core, SoneTextParser(core, core))
+	private val sone = createSone(SONE_ID, "Sone")
+	private val post = createPost("post-id", "Post text")
+
+	private fun createSone(id: String, name: String) = mock<Sone>().apply {
+		whenever(this.id).thenReturn(id)
+		whenever(this.name).thenReturn(name)
+		whenever(profile).thenReturn(Profile(this))
+		whenever(core.getSone(id)).thenReturn(this)
+	}
+
+	private fun createPost(id: String, text: String) = mock<Post>().apply {
+		whenever(this.id).thenReturn(id)
+		whenever(this.text).thenReturn(text)
+		whenever(core.getPost(id)).thenReturn(this)
+	}
+
+	@Test
+	fun `parsing a text the first time is a miss`() {
+		assertThat(cache.parse("text", sone), contains<Part>(PlainTextPart("text")))
+		assertThat(cache.hitCount, equalTo(0L))
+		assertThat(cache.missCount, equalTo(1L))
+	}
+
+	@Test
+	fun `parsing the same text again returns the cached parts`() {
+		val parts = cache.parse("text", sone)
+		assertThat(cache.parse("text", sone), sameInstance(parts))
+		assertThat(cache.hitCount, equalTo(1L))
+		assertThat(cache.missCount, equalTo(1L))
+	}
+
+	@Test
+	fun `same text from a different sone is parsed again`() {
+		val parts = cache.parse("text", sone)
+		assertThat(cache.parse("text", null), not(sameInstance(parts)))
+		assertThat(cache.missCount, equalTo(2L))
+	}
+
+	@Test
+	fun `text is parsed again when a linked sone was updated`() {
+		cache.parse("Hello sone://$SONE_ID!", null)
+		val updatedSone = createSone(SONE_ID, "New Name")
+		assertThat(cache.parse("Hello sone://$SONE_ID!", null), contains<Part>(PlainTextPart("Hello "), SonePart(updatedSone), PlainTextPart("!")))
+		assertThat(cache.missCount, equalTo(2L))
+	}
+
+	@Test
+	fun `text is parsed again when a linked sone became known`() {
+		cache.parse("Hello sone://$OTHER_SONE_ID!", null)
+		val otherSone = createSone(OTHER_SONE_ID, "Other")
+		assertThat(cache.parse("Hello sone://$OTHER_SONE_ID!", null), contains<Part>(PlainTextPart("Hello "), SonePart(otherSone), PlainTextPart("!")))
+		assertThat(cache.missCount, equalTo(2L))
+	}
+
+	@Test
+	fun `text with a linked post is cached while the post exists`() {
+		val parts = cache.parse("See post://post-id", null)
+		assertThat(cache.parse("See post://post-id", null), sameInstance(parts))
+		whenever(core.getPost("post-id")).thenReturn(null)
+		assertThat(cache.parse("See post://post-id", null), not(sameInstance(parts)))
+	}
+
+	@Test
+	fun `text with a link to an unknown post is not cached`() {
+		cache.parse("See post://unknown-post", null)
+		cache.parse("See post://unknown-post", null)
+		assertThat(cache.hitCount, equalTo(0L))
+		assertThat(cache.missCount, equalTo(2L))
+	}
+
+}
@@ -0,0 +1,72 @@
+package net.pterodactylus.sone.text
+
+import net.pterodactylus.sone.core.Core
+import net.pterodactylus.sone.test.mock
+import java.lang.management.ManagementFactory
+import java.util.Random
+
+/**
+ * Compares the time and the allocation per parsed text of the
+ * [SoneTextParser] with the [ReferenceSoneTextParser], for posts of different
+ * lengths. Run its [main] method from the test classpath.
+ */
+object SoneTextParserBenchmark {
+
+	private val textLengths = listOf(1000, 10000, 50000)
+	private const val measuringTime = 2000000000L
+
+	@JvmStatic
+	fun main(arguments: Array<String>) {
+		val core = mock<Core>()
+		val parser = SoneTextParser(core, core)
+		val referenceParser = ReferenceSoneTextParser(core, core)
+		textLengths.forEach { textLength ->
+			val text = createLongPost(Random(42), textLength)
+			println("Post with ${text.length} characters, ${text.count { it == '\n' }} line breaks, and ${parser.parse(text, null).size} parts:")
+			measure("reference") { referenceParser.parse(text, null) }
+			measure("single-pass") { parser.parse(text, null) }
+		}
+	}
+
+	private fun measure(name: String, parse: () -> List<Part>) {
+		repeat(3) { parse() }
+		val allocatedBefore = allocatedBytes()
+		val startTime = System.nanoTime()
+		var rounds = 0L
+		while ((rounds == 0L) || (System.nanoTime() - startTime < measuringTime)) {
+			parse()
+			rounds++
+		}
+		val duration = System.nanoTime() - startTime
+		val allocated = allocatedBytes() - allocatedBefore
+		println("  %-12s %12.3f ms per post %14d bytes allocated per post".format(name, duration / rounds / 1e6, allocated / rounds))
+	}
+
+	private fun allocatedBytes() =
+			(ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean).getThreadAllocatedBytes(Thread.currentThread().id)
+
+}
+
+private val words = listOf("Hello", "world,", "this", "is", "a", "rather", "long", "post", "(with", "parens)", "and", "punctuation!", "Grüße", "…")
+private val links = listOf(
+		"KSK@gpl.txt", "freenet:CHK@DAxKQzS48mtaQc7sUVHIgx3fnWZPQBz0EueBreUVWrU,AQACAAE/file.txt",
+		"USK@nwa8lHa271k2QvJ8aa0Ov7IHAV-DFOCFgmDt3X6BpCI,DuQSUZiI~agF8c-6tjsFFGuZ8eICrzWCILB60nT8KKo,AQACAAE/sone/79/",
+		"https://www.example.com/some/path/page.html?query=1", "sone://DAxKQzS48mtaQc7sUVHIgx3fnWZPQBz0EueBreUVWrU",
+		"post://f3757817-b45a-497a-803f-9c5aafc10dc6", "sone@t4dlzfdww3xvsnsc6j6gtliox6zaoak7ymkobbmcmdw527ubuqra.freemail"
+)
+
+/**
+ * Creates a post of at least the given length that consists of words, a link
+ * every couple of words, and line breaks and empty lines.
+ */
+private fun createLongPost(random: Random, length: Int) = StringBuilder().apply {
+	while (this.length < length) {
+		when (random.nextInt(20)) {
+			0, 1 -> append(links[random.nextInt(links.size)])
+			2 -> append("\n")
+			3 -> append("\n\n\n")
+			else -> append(words[random.nextInt(words.size)])
+		}
+		append(' ')
+	}
+}.toString()
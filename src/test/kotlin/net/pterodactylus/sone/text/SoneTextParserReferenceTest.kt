@@ -0,0 +1,106 @@
+package net.pterodactylus.sone.text
+
+import net.pterodactylus.sone.data.Post
+import net.pterodactylus.sone.data.Profile
+import net.pterodactylus.sone.data.Sone
+import net.pterodactylus.sone.database.PostProvider
+import net.pterodactylus.sone.database.SoneProvider
+import net.pterodactylus.sone.test.mock
+import net.pterodactylus.sone.test.whenever
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import java.util.Random
+
+/**
+ * Compares the parts created by the [SoneTextParser] with the parts created
+ * by the [ReferenceSoneTextParser], for a couple of corner cases and for a lot
+ * of random texts.
+ */
+class SoneTextParserReferenceTest {
+
+	private val soneProvider = mock<SoneProvider>().apply {
+		val sone = mock<Sone>().apply {
+			whenever(id).thenReturn(SONE_ID)
+			whenever(profile).thenReturn(Profile(this))
+		}
+		whenever(getSone(SONE_ID)).thenReturn(sone)
+	}
+	private val postProvider = mock<PostProvider>().apply {
+		val post = mock<Post>().apply {
+			whenever(id).thenReturn(POST_ID)
+			whenever(text).thenReturn("text")
+		}
+		whenever(getPost(POST_ID)).thenReturn(post)
+	}
+	private val parser = SoneTextParser(soneProvider, postProvider)
+	private val referenceParser = ReferenceSoneTextParser(soneProvider, postProvider)
+
+	@Test
+	fun `parser creates the same parts as the reference for corner cases`() {
+		listOf(
+				"", " ", "\n", " \n \t\n", "\r\n\r\n", "\u00a0\n\u2000",
+				"Text", "\n\n Text \n\n", "a\n\n\n\nb", "a\n \n\n \nb", "a\r\n\r\n\r\nb", "\n\na\n\n\nb\n\n\n",
+				"KSK@", "KSK@a", "KSK@a.", "KSK@a!?.,", "KSK@a)", "(KSK@a)", "KSK@a(b)c)d", "KSK@)a", "KSK@a\tb c",
+				"freenet:KSK@a", "xfreenet:KSK@a", "freenet:freenet:KSK@a", "freenet:http://a", "freenet:", "freenet:KSK@",
+				"KSK@aKSK@b", "http://a https://b http://", "https://www.example.com/a/b/c?d=e", "http://KSK@a",
+				"sone://$SONE_ID", "sone://${SONE_ID}x", "sone://$OTHER_SONE_ID.", "xsone://$SONE_ID",
+				"post://$POST_ID", "post://other-post", "post://",
+				"sone@$FREEMAIL_ID.freemail", "@$FREEMAIL_ID.freemail", "a@$FREEMAIL_ID.freemail", "a.b-c_d@$FREEMAIL_ID.freemail!",
+				"x!sone@$FREEMAIL_ID.freemail", "sone@${FREEMAIL_ID.toUpperCase()}.freemail", "sone@${FREEMAIL_ID.substring(1)}.freemail",
+				".freemail sone@$FREEMAIL_ID.freemail", "sone@$FREEMAIL_ID.freemail@$FREEMAIL_ID.freemail",
+				"KSK@a.freemail sone@$FREEMAIL_ID.freemail", "freenet:sone@$FREEMAIL_ID.freemail",
+				"Line 1\nKSK@a\n\nhttp://b\n\n\nsone://$SONE_ID\n"
+		).forEach(::verifyParts)
+	}
+
+	@Test
+	fun `parser creates the same parts as the reference for random texts`() {
+		val random = Random(0)
+		repeat(20000) {
+			verifyParts(createRandomText(random, random.nextInt(40)))
+		}
+	}
+
+	private fun verifyParts(text: String) {
+		assertThat(text, describe { parser.parse(text, null) }, equalTo(describe { referenceParser.parse(text, null) }))
+	}
+
+}
+
+private const val SONE_ID = "DAxKQzS48mtaQc7sUVHIgx3fnWZPQBz0EueBreUVWrU"
+private const val OTHER_SONE_ID = "nwa8lHa271k2QvJ8aa0Ov7IHAV-DFOCFgmDt3X6BpCI"
+private const val POST_ID = "f3757817-b45a-497a-803f-9c5aafc10dc6"
+private const val FREEMAIL_ID = "t4dlzfdww3xvsnsc6j6gtliox6zaoak7ymkobbmcmdw527ubuqra"
+
+private val fragments = listOf(
+		"KSK@", "CHK@", "SSK@", "USK@", "http://", "https://", "sone://", "post://", "freenet:", ".freemail", "@",
+		SONE_ID, OTHER_SONE_ID, POST_ID, FREEMAIL_ID, "sone@$FREEMAIL_ID.freemail", "gpl.txt", "www.example.com/a/b?c=d",
+		"a", "B", "7", "-", "_", "/", "(", ")", ".", ",", "?", "!", " ", " ", "\n", "\n", "\n\n", "\t", "\r", "\u00a0", "\u2009", "Ü", "–"
+)
+
+/**
+ * Creates a random text that contains the given number of fragments. The
+ * fragments are chosen so that valid links, almost valid links, and links
+ * next to each other are likely.
+ */
+private fun createRandomText(random: Random, fragmentCount: Int) =
+		(0 until fragmentCount).joinToString("") { fragments[random.nextInt(fragments.size)] }
+
+/**
+ * Describes the parsed parts so that parts with the same content are equal,
+ * or the exception that was thrown while parsing.
+ */
+private fun describe(parse: () -> List<Part>) =
+		try {
+			parse().map { describe(it) }
+		} catch (e: Exception) {
+			listOf(e.javaClass.name)
+		}
+
+private fun describe(part: Part) = when (part) {
+	is SonePart -> "SonePart(${part.sone.id})"
+	is PostPart -> "PostPart(${part.post.id})"
+	is FreemailPart -> "FreemailPart(${part.emailLocalPart}, ${part.freemailId}, ${part.identityId})"
+	else -> part.toString()
+}
@@ -184,4 +184,30 @@ class PaginationTest {
 		assertThat(pagination.iterator().asSequence().toList(), contains(1, 2))
 	}
 
+	@Test
+	fun `pagination up to a page only iterates the items up to the next page`() {
+		val iteratedItems = mutableListOf<Int>()
+		val pagination = (1..20).asSequence().onEach { iteratedItems += it }.asIterable().paginateUpTo(1, 3)
+		assertThat(pagination.items, contains(4, 5, 6))
+		assertThat(iteratedItems, contains(1, 2, 3, 4, 5, 6, 7))
+		assertThat(pagination.isComplete, equalTo(false))
+		assertThat(pagination, hasPages(3).isOnPage(1))
+	}
+
+	@Test
+	fun `pagination up to a page is complete if there is no next page`() {
+		val pagination = listOf(1, 2, 3, 4, 5).paginateUpTo(1, 3)
+		assertThat(pagination.items, contains(4, 5))
+		assertThat(pagination.isComplete, equalTo(true))
+		assertThat(pagination, hasPages(2).isOnPage(1))
+	}
+
+	@Test
+	fun `pagination up to a page caps a too large page`() {
+		val pagination = listOf(1, 2, 3, 4, 5).paginateUpTo(5, 2)
+		assertThat(pagination.items, contains(5))
+		assertThat(pagination.isComplete, equalTo(true))
+		assertThat(pagination, hasPages(3).isOnPage(2))
+	}
+
 }
@@ -1,10 +1,8 @@
 package net.pterodactylus.sone.web.pages
 
-import com.google.common.base.Optional.fromNullable
 import com.google.common.base.Predicate
 import net.pterodactylus.sone.data.Post
-import net.pterodactylus.sone.data.Sone
-import net.pterodactylus.sone.notify.PostVisibilityFilter
+import net.pterodactylus.sone.notify.VisibilityCache
 import net.pterodactylus.sone.test.mock
 import net.pterodactylus.sone.test.whenever
 import net.pterodactylus.sone.utils.Pagination
@@ -19,10 +17,10 @@ import org.mockito.ArgumentMatchers
 /**
  * Unit test for [IndexPage].
  */
-class IndexPageTest: WebPageTest({ template, webInterface -> IndexPage(template, webInterface, postVisibilityFilter) }) {
+class IndexPageTest: WebPageTest({ template, webInterface -> IndexPage(template, webInterface, visibilityCache) }) {
 
 	companion object {
-		private val postVisibilityFilter = mock<PostVisibilityFilter>()
+		private val visibilityCache = mock<VisibilityCache>()
 	}
 
 	@Test
@@ -42,8 +40,8 @@ class IndexPageTest: WebPageTest({ template, webInterface -> IndexPage(template,
 	}
 
 	@Before
-	fun setupPostVisibilityFilter() {
-		whenever(postVisibilityFilter.isVisible(ArgumentMatchers.eq(currentSone))).thenReturn(Predicate<Post> { true })
+	fun setupVisibilityCache() {
+		whenever(visibilityCache.isPostVisible(ArgumentMatchers.eq(currentSone))).thenReturn(Predicate<Post> { true })
 	}
 
 	@Before
@@ -51,78 +49,35 @@ class IndexPageTest: WebPageTest({ template, webInterface -> IndexPage(template,
 		whenever(currentSone.id).thenReturn("current")
 	}
 
-	@Before
-	fun setupDirectedPosts() {
-		whenever(core.getDirectedPosts("current")).thenReturn(emptyList())
-	}
-
-	private fun createPost(time: Long, directed: Boolean = false) = mock<Post>().apply {
+	private fun createPost(time: Long) = mock<Post>().apply {
 		whenever(this.time).thenReturn(time)
-		whenever(recipient).thenReturn(fromNullable(if (directed) currentSone else null))
 	}
 
 	@Test
-	fun `index page shows all posts of current sone`() {
+	fun `index page shows all posts of the timeline of the current sone`() {
 		val posts = listOf(createPost(3000), createPost(2000), createPost(1000))
-		whenever(currentSone.posts).thenReturn(posts)
+		whenever(core.getTimeline(currentSone)).thenReturn(posts)
 		page.processTemplate(freenetRequest, templateContext)
 		@Suppress("UNCHECKED_CAST")
 		assertThat(templateContext["posts"] as Iterable<Post>, contains(*posts.toTypedArray()))
 	}
 
 	@Test
-	fun `index page shows posts directed at current sone from non-followed sones`() {
-		val posts = listOf(createPost(3000), createPost(2000), createPost(1000))
-		whenever(currentSone.posts).thenReturn(posts)
-		val notFollowedSone = mock<Sone>()
-		val notFollowedPosts = listOf(createPost(2500, true), createPost(1500))
-		whenever(notFollowedSone.posts).thenReturn(notFollowedPosts)
-		addSone("notfollowed1", notFollowedSone)
-		whenever(core.getDirectedPosts("current")).thenReturn(listOf(notFollowedPosts[0]))
+	fun `index page uses visibility cache`() {
+		val posts = listOf(createPost(3000), createPost(2500), createPost(2000), createPost(1500), createPost(1000))
+		whenever(core.getTimeline(currentSone)).thenReturn(posts)
+		whenever(visibilityCache.isPostVisible(ArgumentMatchers.eq(currentSone))).thenReturn(Predicate<Post> { (it?.time ?: 10000) < 2500 })
 		page.processTemplate(freenetRequest, templateContext)
 		@Suppress("UNCHECKED_CAST")
 		assertThat(templateContext["posts"] as Iterable<Post>, contains(
-				posts[0], notFollowedPosts[0], posts[1], posts[2]
-		))
-	}
-
-	@Test
-	fun `index page does not show duplicate posts`() {
-		val posts = listOf(createPost(3000), createPost(2000), createPost(1000))
-		whenever(currentSone.posts).thenReturn(posts)
-		val followedSone = mock<Sone>()
-		val followedPosts = listOf(createPost(2500, true), createPost(1500))
-		whenever(followedSone.posts).thenReturn(followedPosts)
-		whenever(currentSone.friends).thenReturn(listOf("followed1", "followed2"))
-		addSone("followed1", followedSone)
-		page.processTemplate(freenetRequest, templateContext)
-		@Suppress("UNCHECKED_CAST")
-		assertThat(templateContext["posts"] as Iterable<Post>, contains(
-				posts[0], followedPosts[0], posts[1], followedPosts[1], posts[2]
-		))
-	}
-
-	@Test
-	fun `index page uses post visibility filter`() {
-		val posts = listOf(createPost(3000), createPost(2000), createPost(1000))
-		whenever(currentSone.posts).thenReturn(posts)
-		val followedSone = mock<Sone>()
-		val followedPosts = listOf(createPost(2500, true), createPost(1500))
-		whenever(followedSone.posts).thenReturn(followedPosts)
-		whenever(currentSone.friends).thenReturn(listOf("followed1", "followed2"))
-		whenever(postVisibilityFilter.isVisible(ArgumentMatchers.eq(currentSone))).thenReturn(Predicate<Post> { (it?.time ?: 10000) < 2500 })
-		addSone("followed1", followedSone)
-		page.processTemplate(freenetRequest, templateContext)
-		@Suppress("UNCHECKED_CAST")
-		assertThat(templateContext["posts"] as Iterable<Post>, contains(
-				posts[1], followedPosts[1], posts[2]
+				posts[2], posts[3], posts[4]
 		))
 	}
 
 	@Test
 	fun `index page sets pagination correctly`() {
 		val posts = listOf(createPost(3000), createPost(2000), createPost(1000))
-		whenever(currentSone.posts).thenReturn(posts)
+		whenever(core.getTimeline(currentSone)).thenReturn(posts)
 		page.processTemplate(freenetRequest, templateContext)
 		@Suppress("UNCHECKED_CAST")
 		assertThat((templateContext["pagination"] as Pagination<Post>).items, contains(
@@ -133,7 +88,7 @@ class IndexPageTest: WebPageTest({ template, webInterface -> IndexPage(template,
 	@Test
 	fun `index page sets page correctly`() {
 		val posts = listOf(createPost(3000), createPost(2000), createPost(1000))
-		whenever(currentSone.posts).thenReturn(posts)
+		whenever(core.getTimeline(currentSone)).thenReturn(posts)
 		core.preferences.postsPerPage = 1
 		addHttpRequestParameter("page", "2")
 		page.processTemplate(freenetRequest, templateContext)
@@ -151,4 +106,18 @@ class IndexPageTest: WebPageTest({ template, webInterface -> IndexPage(template,
 		}
 	}
 
+	@Test
+	fun `index page only checks the visibility of posts up to the next page`() {
+		val posts = (1..10).map { createPost(10000L - it) }
+		whenever(core.getTimeline(currentSone)).thenReturn(posts)
+		val checkedPosts = mutableListOf<Post>()
+		whenever(visibilityCache.isPostVisible(ArgumentMatchers.eq(currentSone))).thenReturn(Predicate<Post> { checkedPosts += it!!; true })
+		core.preferences.postsPerPage = 2
+		addHttpRequestParameter("page", "1")
+		page.processTemplate(freenetRequest, templateContext)
+		@Suppress("UNCHECKED_CAST")
+		assertThat(templateContext["posts"] as Iterable<Post>, contains(posts[2], posts[3]))
+		assertThat(checkedPosts, contains(*posts.take(5).toTypedArray()))
+	}
+
 }
@@ -2,6 +2,7 @@ package net.pterodactylus.sone.web.pages
 
 import com.google.common.base.Optional.absent
 import com.google.common.base.Ticker
+import net.pterodactylus.sone.core.SearchIndex
 import net.pterodactylus.sone.data.Album
 import net.pterodactylus.sone.data.Image
 import net.pterodactylus.sone.data.Post
@@ -28,6 +29,10 @@ class SearchPageTest: WebPageTest({ template, webInterface -> SearchPage(templat
 		val ticker = mock<Ticker>()
 	}
 
+	init {
+		whenever(core.searchIndex).thenReturn(SearchIndex(core, core, core))
+	}
+
 	@Test
 	fun `page returns correct path`() {
 		assertThat(page.path, equalTo("search.html"))
@@ -133,7 +138,8 @@ class SearchPageTest: WebPageTest({ template, webInterface -> SearchPage(templat
 		verifyRedirect("imageBrowser.html?image=image-id")
 	}
 
-	private fun createReply(text: String, postId: String? = null, sone: Sone? = null) = mock<PostReply>().apply {
+	private fun createReply(id: String, text: String, postId: String? = null, sone: Sone? = null) = mock<PostReply>().apply {
+		whenever(this.id).thenReturn(id)
 		whenever(this.text).thenReturn(text)
 		postId?.run { whenever(this@apply.postId).thenReturn(postId) }
 		sone?.run { whenever(this@apply.sone).thenReturn(sone) }
@@ -141,15 +147,19 @@ class SearchPageTest: WebPageTest({ template, webInterface -> SearchPage(templat
 
 	private fun createPost(id: String, text: String) = mock<Post>().apply {
 		whenever(this.id).thenReturn(id)
+		whenever(recipientId).thenReturn(absent())
 		whenever(recipient).thenReturn(absent())
 		whenever(this.text).thenReturn(text)
 	}
 
-	private fun createSoneWithPost(post: Post, sone: Sone? = null) = sone?.apply {
-		whenever(posts).thenReturn(listOf(post))
-	} ?: mock<Sone>().apply {
-		whenever(posts).thenReturn(listOf(post))
-		whenever(profile).thenReturn(Profile(this))
+	private fun createSoneWithPost(post: Post, sone: Sone? = null): Sone {
+		addPost(post.id, post)
+		return sone?.apply {
+			whenever(posts).thenReturn(listOf(post))
+		} ?: mock<Sone>().apply {
+			whenever(posts).thenReturn(listOf(post))
+			whenever(profile).thenReturn(Profile(this))
+		}
 	}
 
 	@Test
@@ -172,8 +182,8 @@ class SearchPageTest: WebPageTest({ template, webInterface -> SearchPage(templat
 		val postWithoutMatch = createPost("post-without-match", "no match here")
 		val soneWithMatch = createSoneWithPost(postWithMatch)
 		val soneWithoutMatch = createSoneWithPost(postWithoutMatch)
-		val replyWithMatch = createReply("the word here", "post-with-match", soneWithMatch)
-		val replyWithoutMatch = createReply("no match here", "post-without-match", soneWithoutMatch)
+		val replyWithMatch = createReply("reply-with-match", "the word here", "post-with-match", soneWithMatch)
+		val replyWithoutMatch = createReply("reply-without-match", "no match here", "post-without-match", soneWithoutMatch)
 		addPostReply("reply-with-match", replyWithMatch)
 		addPostReply("reply-without-match", replyWithoutMatch)
 		addSone("sone-with-match", soneWithMatch)
@@ -339,8 +349,9 @@ class SearchPageTest: WebPageTest({ template, webInterface -> SearchPage(templat
 		verifyNoRedirect {
 			assertThat(this["postHits"], contains(post))
 		}
+		val textAccesses = callCounter.get()
 		verifyNoRedirect {
-			assertThat(callCounter.get(), equalTo(1))
+			assertThat(callCounter.get(), equalTo(textAccesses))
 		}
 	}
 
@@ -355,9 +366,10 @@ class SearchPageTest: WebPageTest({ template, webInterface -> SearchPage(templat
 		verifyNoRedirect {
 			assertThat(this["postHits"], contains(post))
 		}
+		val textAccesses = callCounter.get()
 		whenever(ticker.read()).thenReturn(TimeUnit.MINUTES.toNanos(5) + 1)
 		verifyNoRedirect {
-			assertThat(callCounter.get(), equalTo(2))
+			assertThat(callCounter.get(), equalTo(textAccesses + 1))
 		}
 	}
 